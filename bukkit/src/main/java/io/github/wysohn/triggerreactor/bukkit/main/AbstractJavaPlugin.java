@@ -47,6 +47,8 @@ import io.github.wysohn.triggerreactor.core.script.interpreter.Interpreter;
 import io.github.wysohn.triggerreactor.core.script.parser.Node;
 import io.github.wysohn.triggerreactor.core.script.wrapper.SelfReference;
 import io.github.wysohn.triggerreactor.tools.ContinuingTasks;
+import io.github.wysohn.triggerreactor.tools.mysql.JdbcKeyValueBackend;
+import io.github.wysohn.triggerreactor.tools.mysql.KeyValueStore;
 import io.github.wysohn.triggerreactor.tools.mysql.MiniConnectionPoolManager;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -80,12 +82,11 @@ import org.bukkit.plugin.messaging.PluginMessageListener;
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
@@ -190,7 +191,11 @@ public abstract class AbstractJavaPlugin extends JavaPlugin implements ICommandM
                         config.getString("Mysql.DbName"),
                         "data",
                         config.getString("Mysql.UserName"),
-                        config.getString("Mysql.Password"));
+                        config.getString("Mysql.Password"),
+                        config.getInt("Mysql.PoolSize", KeyValueStore.Builder.DEFAULT_THREADS),
+                        config.getLong("Mysql.FlushIntervalMillis", KeyValueStore.Builder.DEFAULT_FLUSH_INTERVAL_MILLIS),
+                        config.getInt("Mysql.CacheSize", KeyValueStore.Builder.DEFAULT_CACHE_SIZE),
+                        config.getLong("Mysql.CacheTtlMillis", KeyValueStore.Builder.DEFAULT_CACHE_TTL_MILLIS));
                 getLogger().info(mysqlHelper.toString());
                 getLogger().info("Done!");
             } catch (SQLException e) {
@@ -213,6 +218,18 @@ public abstract class AbstractJavaPlugin extends JavaPlugin implements ICommandM
             path = "Mysql.Password";
             if (!config.isSet(path))
                 config.set(path, "1234");
+            path = "Mysql.PoolSize";
+            if (!config.isSet(path))
+                config.set(path, KeyValueStore.Builder.DEFAULT_THREADS);
+            path = "Mysql.FlushIntervalMillis";
+            if (!config.isSet(path))
+                config.set(path, KeyValueStore.Builder.DEFAULT_FLUSH_INTERVAL_MILLIS);
+            path = "Mysql.CacheSize";
+            if (!config.isSet(path))
+                config.set(path, KeyValueStore.Builder.DEFAULT_CACHE_SIZE);
+            path = "Mysql.CacheTtlMillis";
+            if (!config.isSet(path))
+                config.set(path, KeyValueStore.Builder.DEFAULT_CACHE_TTL_MILLIS);
 
             saveConfig();
         }
@@ -224,6 +241,10 @@ public abstract class AbstractJavaPlugin extends JavaPlugin implements ICommandM
                 .append(() -> Bukkit.getPluginManager().callEvent(new TriggerReactorStopEvent()))
                 .append(() -> bungeeConnectionThread.interrupt())
                 .append(() -> core.onCoreDisable(this))
+                .append(() -> {
+                    if (mysqlHelper != null)
+                        mysqlHelper.close();
+                })
                 .run(Throwable::printStackTrace);
     }
 
@@ -655,18 +676,18 @@ public abstract class AbstractJavaPlugin extends JavaPlugin implements ICommandM
     }
 
     public class MysqlSupport {
-        private final String KEY = "dbkey";
-        private final String VALUE = "dbval";
-
         private final MysqlConnectionPoolDataSource ds;
         private final MiniConnectionPoolManager pool;
+        private final KeyValueStore store;
 
         private final String dbName;
         private final String tablename;
 
         private final String address;
 
-        private MysqlSupport(String address, String dbName, String tablename, String userName, String password) throws SQLException {
+        private MysqlSupport(String address, String dbName, String tablename, String userName, String password,
+                             int poolSize, long flushIntervalMillis, int cacheSize, long cacheTtlMillis)
+                throws SQLException {
             this.dbName = dbName;
             this.tablename = tablename;
             this.address = address;
@@ -683,79 +704,62 @@ public abstract class AbstractJavaPlugin extends JavaPlugin implements ICommandM
 
             ds.setCachePreparedStatements(true);
             ds.setCachePrepStmts(true);
-
-            pool = new MiniConnectionPoolManager(ds, 2);
-
-            Connection conn = createConnection();
-            initTable(conn);
-            conn.close();
+            // the batch of REPLACE is sent as a single statement
+            ds.setRewriteBatchedStatements(true);
+
+            poolSize = Math.max(1, poolSize);
+            pool = new MiniConnectionPoolManager(ds, poolSize);
+            store = new KeyValueStore.Builder(new JdbcKeyValueBackend(pool, poolSize, tablename))
+                    .threads(poolSize)
+                    .flushIntervalMillis(flushIntervalMillis)
+                    .cacheSize(cacheSize)
+                    .cacheTtlMillis(cacheTtlMillis)
+                    .build();
         }
 
-        private Connection createConnection() {
-            Connection conn = null;
-
+        /**
+         * Blocks until the value is read, unless it's in memory. Use {@link #getAsync(String)} not to block.
+         */
+        public Object get(String key) throws SQLException {
             try {
-                conn = pool.getConnection();
-            } catch (SQLException e) {
-                // e.printStackTrace();
-            } finally {
-                if (conn == null)
-                    conn = pool.getValidConnection();
+                return store.get(key);
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof SQLException)
+                    throw (SQLException) e.getCause();
+                throw e;
             }
-
-            return conn;
         }
 
-        private final String CREATETABLEQUARY = "" + "CREATE TABLE IF NOT EXISTS %s (" + "" + KEY
-                + " CHAR(128) PRIMARY KEY," + "" + VALUE + " MEDIUMBLOB" + ")";
-
-        private void initTable(Connection conn) throws SQLException {
-            PreparedStatement pstmt = conn.prepareStatement(String.format(CREATETABLEQUARY, tablename));
-            pstmt.executeUpdate();
-            pstmt.close();
+        public CompletableFuture<Object> getAsync(String key) {
+            return store.getAsync(key);
         }
 
-        public Object get(String key) throws SQLException {
-            Object out = null;
-
-            try (Connection conn = createConnection();
-                 PreparedStatement pstmt = conn.prepareStatement("SELECT " + VALUE + " FROM " + tablename + " WHERE " + KEY + " = ?")) {
-                pstmt.setString(1, key);
-                ResultSet rs = pstmt.executeQuery();
-
-                if (!rs.next())
-                    return null;
-                InputStream is = rs.getBinaryStream(VALUE);
-
-                try (ObjectInputStream ois = new ObjectInputStream(is)) {
-                    out = ois.readObject();
-                } catch (IOException | ClassNotFoundException e1) {
-                    e1.printStackTrace();
-                    return null;
-                }
-            }
-
-            return out;
+        /**
+         * @return the values of the keys, read together. The keys not found are mapped to null.
+         */
+        public CompletableFuture<Map<String, Object>> getAllAsync(Collection<String> keys) {
+            return store.getAllAsync(keys);
         }
 
-        public void set(String key, Serializable value) throws SQLException {
-            try (Connection conn = createConnection();
-                 PreparedStatement pstmt = conn.prepareStatement("REPLACE INTO " + tablename + " VALUES (?, ?)")) {
-
-
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                     ObjectOutputStream oos = new ObjectOutputStream(baos)) {
-                    oos.writeObject(value);
-
-                    ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
+        /**
+         * Returns right away, and the value is written shortly after.
+         */
+        public CompletableFuture<Void> set(String key, Object value) throws IOException {
+            return store.set(key, value);
+        }
 
-                    pstmt.setString(1, key);
-                    pstmt.setBinaryStream(2, bais);
+        public void flush() {
+            store.flush();
+        }
 
-                    pstmt.executeUpdate();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+        /**
+         * Write the values set so far, and then close the connections.
+         */
+        private void close() {
+            try {
+                store.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
             }
         }
 
@@ -29,6 +29,7 @@ import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.*;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
 import io.github.wysohn.triggerreactor.core.manager.trigger.Trigger;
+import io.github.wysohn.triggerreactor.core.manager.trigger.TriggerExecutionService;
 import io.github.wysohn.triggerreactor.core.manager.trigger.area.AbstractAreaTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.command.AbstractCommandTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.custom.AbstractCustomTriggerManager;
@@ -203,6 +204,7 @@ public class BukkitTriggerReactorCore extends TriggerReactorCore implements Plug
         ValidationUtil.notNull(WRAPPER);
 
         super.onCoreEnable();
+        bukkit.getServer().getScheduler().runTaskTimer(bukkit, createSyncDrainTask(), 1L, 1L);
 
         for (Entry<String, Class<? extends AbstractAPISupport>> entry : APISupport.getSharedVars().entrySet()) {
             AbstractAPISupport.addSharedVar(sharedVars, entry.getKey(), entry.getValue());
@@ -274,7 +276,7 @@ public class BukkitTriggerReactorCore extends TriggerReactorCore implements Plug
         super.onCoreDisable();
 
         getLogger().info("Finalizing the scheduled script executions...");
-        CACHED_THREAD_POOL.shutdown();
+        TriggerExecutionService.getInstance().shutdown();
         getLogger().info("Shut down complete!");
     }
 
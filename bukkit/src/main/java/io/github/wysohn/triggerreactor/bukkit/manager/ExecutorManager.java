@@ -84,7 +84,7 @@ public class ExecutorManager extends AbstractExecutorManager implements BukkitSc
                     call.call();
                 } else {
                     try {
-                        plugin.callSyncMethod(call).get();
+                        plugin.submitSync(call).get();
                     } catch (Exception ex) {
                         //to double check
                         call.deOpIfWasNotOp();
@@ -18,6 +18,8 @@ package io.github.wysohn.triggerreactor.bukkit.manager;
 
 import io.github.wysohn.triggerreactor.bukkit.bridge.event.BukkitPlayerBlockLocationEvent;
 import io.github.wysohn.triggerreactor.bukkit.manager.event.PlayerBlockLocationEvent;
+import io.github.wysohn.triggerreactor.bukkit.manager.trigger.AreaTriggerManager;
+import io.github.wysohn.triggerreactor.bukkit.manager.trigger.WalkTriggerManager;
 import io.github.wysohn.triggerreactor.bukkit.tools.BukkitUtil;
 import io.github.wysohn.triggerreactor.bukkit.tools.LocationUtil;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
@@ -29,6 +31,7 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.*;
+import org.bukkit.plugin.RegisteredListener;
 
 public class PlayerLocationManager extends AbstractPlayerLocationManager implements Listener {
 
@@ -72,10 +75,18 @@ public class PlayerLocationManager extends AbstractPlayerLocationManager impleme
         if (e.getTo() == e.getFrom())
             return;
 
+        Location moveTo = e.getTo();
+        if (moveTo == null || moveTo.getWorld() == null)
+            return;
+
         Player player = e.getPlayer();
 
-        SimpleLocation from = getCurrentBlockLocation(player.getUniqueId());
-        SimpleLocation to = LocationUtil.convertToSimpleLocation(e.getTo());
+        SimpleLocation from = filterMove(player.getUniqueId(), moveTo.getWorld().getName(),
+                moveTo.getBlockX(), moveTo.getBlockY(), moveTo.getBlockZ(), hasOtherListeners());
+        if (from == null)
+            return;
+
+        SimpleLocation to = LocationUtil.convertToSimpleLocation(moveTo);
 
         PlayerBlockLocationEvent pble = new PlayerBlockLocationEvent(player, from, to);
         onMove(new BukkitPlayerBlockLocationEvent(pble));
@@ -88,6 +99,19 @@ public class PlayerLocationManager extends AbstractPlayerLocationManager impleme
         }
     }
 
+    /**
+     * @return true if anything other than the Walk Trigger and Area Trigger listens to PlayerBlockLocationEvent,
+     * such as a Custom Trigger or another plugin.
+     */
+    private boolean hasOtherListeners() {
+        for (RegisteredListener listener : PlayerBlockLocationEvent.getHandlerList().getRegisteredListeners()) {
+            if (!(listener.getListener() instanceof WalkTriggerManager)
+                    && !(listener.getListener() instanceof AreaTriggerManager))
+                return true;
+        }
+        return false;
+    }
+
     @Override
     public void reload() {
         for (Player player : BukkitUtil.getOnlinePlayers()) {
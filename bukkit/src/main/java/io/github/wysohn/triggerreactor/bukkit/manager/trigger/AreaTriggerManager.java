@@ -25,7 +25,10 @@ import io.github.wysohn.triggerreactor.core.manager.location.Area;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
 import io.github.wysohn.triggerreactor.core.manager.trigger.area.AbstractAreaTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.area.AreaTrigger;
+import io.github.wysohn.triggerreactor.core.manager.trigger.area.EntitySnapshot;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.event.EventHandler;
@@ -34,115 +37,98 @@ import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.event.entity.EntitySpawnEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
-import org.bukkit.plugin.IllegalPluginAccessException;
 
 import java.io.File;
 import java.lang.ref.WeakReference;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 public class AreaTriggerManager extends AbstractAreaTriggerManager implements BukkitTriggerManager {
 
     public AreaTriggerManager(TriggerReactorCore plugin) {
         super(plugin, new File(plugin.getDataFolder(), "AreaTrigger"));
 
-        Thread entityTrackingThread = new Thread(new Runnable() {
+        //the snapshot is taken in the server thread every tick, and compared in the tracking thread
+        Bukkit.getScheduler().runTaskTimer(plugin.getMain(), this::takeEntitySnapshot, 1L, 1L);
+    }
 
-            private Collection<WeakReference<Entity>> getEntitiesSync(World w) {
-                Collection<WeakReference<Entity>> entities = new LinkedList<>();
-                try {
-                    Bukkit.getScheduler().callSyncMethod(plugin.getMain(), new Callable<Void>() {
-                        @Override
-                        public Void call() throws Exception {
-                            for (Entity e : w.getEntities())
-                                entities.add(new WeakReference<>(e));
-                            return null;
-                        }
-                    }).get();
-                } catch (InterruptedException | CancellationException e1) {
-                } catch (ExecutionException e1) {
-                    e1.printStackTrace();
-                }
-                return entities;
+    private final ExecutorService entityTrackingThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AreaTriggerManager -- EntityTrackingThread");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //true while the previous snapshot is still being compared
+    private final AtomicBoolean tracking = new AtomicBoolean();
+    private final Location reusedLocation = new Location(null, 0, 0, 0);
+    private int lastSnapshotSize = 0;
+
+    private void takeEntitySnapshot() {
+        //no entity can enter or leave an area
+        if (areaIndex.size() == 0)
+            return;
+
+        //skip this tick rather than piling up the snapshots
+        if (!tracking.compareAndSet(false, true))
+            return;
+
+        EntitySnapshot.Builder builder = new EntitySnapshot.Builder(lastSnapshotSize);
+        //only the entities in the chunks of the areas can enter or leave them
+        for (World w : Bukkit.getWorlds()) {
+            String name = w.getName();
+            int world = builder.world(name);
+            for (Chunk chunk : w.getLoadedChunks()) {
+                if (!hasAreaInChunk(name, chunk.getX(), chunk.getZ()))
+                    continue;
+
+                for (Entity e : chunk.getEntities())
+                    addToSnapshot(builder, world, e);
             }
+        }
+        //and the ones which were in an area but left the chunks of the areas at once, such as by teleport
+        for (AreaTrigger trigger : getAllTriggers()) {
+            for (IEntity entity : trigger.getEntities()) {
+                Entity e = entity.get();
+                Location loc = e.getLocation(reusedLocation);
+                String name = loc.getWorld().getName();
+                if (hasAreaInChunk(name, loc.getBlockX() >> 4, loc.getBlockZ() >> 4))
+                    continue;
 
-            @Override
-            public void run() {
-                while (plugin.isEnabled() && !Thread.interrupted()) {
-                    try{
-                        //track entity locations
-                        for (World w : Bukkit.getWorlds()) {
-                            Collection<WeakReference<Entity>> entityCollection = getEntitiesSync(w);
-                            for (WeakReference<Entity> wr : entityCollection) {
-                                Entity e = wr.get();
-
-                                //reference disposed so ignore
-                                if (e == null)
-                                    continue;
-
-                                UUID uuid = e.getUniqueId();
-
-                                if (!plugin.isEnabled())
-                                    break;
-
-                                Future<Boolean> future = plugin.callSyncMethod(new Callable<Boolean>() {
-
-                                    @Override
-                                    public Boolean call() throws Exception {
-                                        return !e.isDead() && e.isValid();
-                                    }
-
-                                });
-
-                                boolean valid = false;
-                                try {
-                                    if (future != null)
-                                        valid = future.get();
-                                } catch (InterruptedException | CancellationException e1) {
-                                } catch (ExecutionException e1) {
-                                    e1.printStackTrace();
-                                }
-
-                                if (!valid)
-                                    continue;
-
-                                if (!entityLocationMap.containsKey(uuid))
-                                    continue;
-
-                                SimpleLocation previous = entityLocationMap.get(uuid);
-                                SimpleLocation current = LocationUtil.convertToSimpleLocation(e.getLocation());
-
-                                //update location if equal
-                                if (!previous.equals(current)) {
-                                    entityLocationMap.put(uuid, current);
-                                    onEntityBlockMoveAsync(e, previous, current);
-                                }
-
-                            }
-                        }
-                    } catch (IllegalPluginAccessException ex){
-                        plugin.getLogger().info("Entity tracking has stopped. Plugin is disabling...");
-                        return;
-                    } catch (Exception ex){
-                        ex.printStackTrace();
-                        // some other unknown issues.
-                        return;
-                    }
-
-                    try {
-                        Thread.sleep(50L);//same as one tick
-                    } catch (InterruptedException e) {
-                    }
-                }
+                addToSnapshot(builder, builder.world(name), e);
             }
+        }
+        EntitySnapshot snapshot = builder.build();
+        lastSnapshotSize = snapshot.size();
+
+        try {
+            entityTrackingThread.execute(() -> {
+                try {
+                    onEntitySnapshot(snapshot);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                } finally {
+                    tracking.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            tracking.set(false);
+        }
+    }
 
-        });
-        entityTrackingThread.setName("AreaTriggerManager -- EntityTrackingThread");
-        entityTrackingThread.setDaemon(true);
-        entityTrackingThread.start();
+    private void addToSnapshot(EntitySnapshot.Builder builder, int world, Entity e) {
+        Location loc = e.getLocation(reusedLocation);
+        builder.add(e.getUniqueId(), world, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(),
+                !e.isDead() && e.isValid());
+    }
+
+    @Override
+    public void disable() {
+        super.disable();
+
+        entityTrackingThread.shutdown();
     }
 
     @Override
@@ -170,37 +156,67 @@ public class AreaTriggerManager extends AbstractAreaTriggerManager implements Bu
     @EventHandler(priority = EventPriority.MONITOR)
     public void onJoin(PlayerJoinEvent e) {
         SimpleLocation currentSloc = LocationUtil.convertToSimpleLocation(e.getPlayer().getLocation());
-        getAreaForLocation(currentSloc).stream()
-                .map(Map.Entry::getValue)
-                .forEach((trigger) -> trigger.addEntity(new BukkitEntity(e.getPlayer())));
+        BukkitEntity entity = new BukkitEntity(e.getPlayer());
+        areaIndex.forEachAt(currentSloc, (area, trigger) -> trigger.addEntity(entity));
     }
 
+    //reused for every movement in the server thread, so moving around doesn't allocate
+    private final MoveVisitor moveVisitor = new MoveVisitor();
+
     @EventHandler(priority = EventPriority.MONITOR)
     public void onLocationChange(PlayerBlockLocationEvent e) {
-        List<Map.Entry<Area, AreaTrigger>> from = getAreaForLocation(e.getFrom());
-        List<Map.Entry<Area, AreaTrigger>> to = getAreaForLocation(e.getTo());
-
-        Map<String, Object> varMap = new HashMap<>();
-        varMap.put("player", e.getPlayer());
-        varMap.put("from", e.getFrom());
-        varMap.put("to", e.getTo());
-
-        from.stream()
-                .filter((entry) -> !entry.getKey().isInThisArea(e.getTo()))//only for area leaving
-                .map(Map.Entry::getValue)
-                .forEach((trigger) -> {
-                    trigger.removeEntity(e.getPlayer().getUniqueId());
-                    trigger.activate(e, varMap, EventType.EXIT);
-                });
-
-
-        to.stream()
-                .filter((entry) -> !entry.getKey().isInThisArea(e.getFrom()))//only for entering area
-                .map(Map.Entry::getValue)
-                .forEach((trigger) -> {
-                    trigger.addEntity(new BukkitEntity(e.getPlayer()));
-                    trigger.activate(e, varMap, EventType.ENTER);
-                });
+        SimpleLocation fromLoc = e.getFrom();
+        SimpleLocation toLoc = e.getTo();
+        if (!hasAreaInChunk(fromLoc.getWorld(), fromLoc.getX() >> 4, fromLoc.getZ() >> 4)
+                && !hasAreaInChunk(toLoc.getWorld(), toLoc.getX() >> 4, toLoc.getZ() >> 4))
+            return;
+
+        //the Triggers may move the player again, while the visitor is still in use
+        MoveVisitor visitor = moveVisitor.event == null ? moveVisitor : new MoveVisitor();
+        visitor.visit(e);
+    }
+
+    /**
+     * Fire the Triggers of the areas left, and then of the areas entered.
+     */
+    private class MoveVisitor implements BiConsumer<Area, AreaTrigger> {
+        private PlayerBlockLocationEvent event;
+        private EventType type;
+        //created only if any Trigger fires
+        private Map<String, Object> varMap;
+
+        private void visit(PlayerBlockLocationEvent event) {
+            this.event = event;
+            try {
+                type = EventType.EXIT;
+                areaIndex.forEachAt(event.getFrom(), this);
+                type = EventType.ENTER;
+                areaIndex.forEachAt(event.getTo(), this);
+            } finally {
+                this.event = null;
+                this.varMap = null;
+            }
+        }
+
+        @Override
+        public void accept(Area area, AreaTrigger trigger) {
+            //only for leaving or entering the area
+            if (area.isInThisArea(type == EventType.EXIT ? event.getTo() : event.getFrom()))
+                return;
+
+            if (varMap == null) {
+                varMap = new HashMap<>();
+                varMap.put("player", event.getPlayer());
+                varMap.put("from", event.getFrom());
+                varMap.put("to", event.getTo());
+            }
+
+            if (type == EventType.EXIT)
+                trigger.removeEntity(event.getPlayer().getUniqueId());
+            else
+                trigger.addEntity(new BukkitEntity(event.getPlayer()));
+            trigger.activate(event, varMap, type);
+        }
     }
 
     @EventHandler
@@ -210,18 +226,17 @@ public class AreaTriggerManager extends AbstractAreaTriggerManager implements Bu
         entityTrackMap.put(e.getEntity().getUniqueId(), new WeakReference<IEntity>(new BukkitEntity(e.getEntity())));
         entityLocationMap.put(e.getEntity().getUniqueId(), sloc);
 
-        getAreaForLocation(sloc).stream()
-                .map(Map.Entry::getValue)
-                .forEach((trigger) -> trigger.addEntity(new BukkitEntity(e.getEntity())));
+        BukkitEntity entity = new BukkitEntity(e.getEntity());
+        areaIndex.forEachAt(sloc, (area, trigger) -> trigger.addEntity(entity));
     }
 
     protected synchronized void onEntityBlockMoveAsync(Entity entity, SimpleLocation from, SimpleLocation current) {
-        getAreaForLocation(from).stream()
-                .map(Map.Entry::getValue)
-                .forEach((trigger) -> trigger.removeEntity(entity.getUniqueId()));
-        getAreaForLocation(current).stream()
-                .map(Map.Entry::getValue)
-                .forEach((trigger) -> trigger.addEntity(new BukkitEntity(entity)));
+        UUID uuid = entity.getUniqueId();
+        if (from != null)
+            areaIndex.forEachAt(from, (area, trigger) -> trigger.removeEntity(uuid));
+
+        BukkitEntity bukkitEntity = new BukkitEntity(entity);
+        areaIndex.forEachAt(current, (area, trigger) -> trigger.addEntity(bukkitEntity));
     }
 
     @EventHandler
@@ -236,8 +251,7 @@ public class AreaTriggerManager extends AbstractAreaTriggerManager implements Bu
         entityTrackMap.remove(e.getEntity().getUniqueId());
         entityLocationMap.remove(e.getEntity().getUniqueId());
 
-        getAreaForLocation(sloc).stream()
-                .map(Map.Entry::getValue)
-                .forEach((trigger) -> trigger.removeEntity(e.getEntity().getUniqueId()));
+        UUID uuid = e.getEntity().getUniqueId();
+        areaIndex.forEachAt(sloc, (area, trigger) -> trigger.removeEntity(uuid));
     }
 }
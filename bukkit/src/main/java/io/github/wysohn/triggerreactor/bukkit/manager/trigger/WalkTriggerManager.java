@@ -71,13 +71,16 @@ public class WalkTriggerManager extends LocationBasedTriggerManager<AbstractLoca
 
     private void handleWalk(PlayerBlockLocationEvent e, SimpleLocation to) {
         Player player = e.getPlayer();
-        SimpleLocation bottomLoc = to.clone();
-        bottomLoc.add(0, -1, 0);
+        if (!hasTriggerInChunk(to.getWorld(), to.getX() >> 4, to.getZ() >> 4))
+            return;
 
-        WalkTrigger trigger = getTriggerForLocation(bottomLoc);
+        WalkTrigger trigger = getTriggerForLocation(to.getWorld(), to.getX(), to.getY() - 1, to.getZ());
         if (trigger == null)
             return;
 
+        SimpleLocation bottomLoc = to.clone();
+        bottomLoc.add(0, -1, 0);
+
         Map<String, Object> varMap = new HashMap<>();
         varMap.put("player", player);
         varMap.put("from", e.getFrom());
@@ -0,0 +1,73 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to open a large var file and read one variable from it, in json and in the binary snapshot.
+ * <p>
+ * ./gradlew :core:jmh -PjmhArgs="BinarySnapshotBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinarySnapshotBenchmark {
+    @Param({"10000", "100000"})
+    public int players;
+
+    private File folder;
+    private String lookup;
+
+    @Setup
+    public void setup() throws IOException {
+        GsonConfigSource.configure(TimeUnit.HOURS.toMillis(1), false);
+        folder = Files.createTempDirectory("snapshot").toFile();
+
+        GsonConfigSource json = new GsonConfigSource(new File(folder, "var.json"));
+        for (int i = 0; i < players; i++) {
+            String uuid = UUID.randomUUID().toString();
+            json.putCached("player." + uuid + ".coins", i);
+            json.putCached("player." + uuid + ".name", "player" + i);
+            json.putCached("player." + uuid + ".balance", i * 1.5);
+            lookup = "player." + uuid + ".coins";
+        }
+        json.saveAll();
+        Map<String, Object> values = new HashMap<>();
+        for (String key : json.keys()) {
+            json.get(key).ifPresent(value -> values.put(key, value));
+        }
+        BinaryConfigSource.toBinary(values, folder, "var");
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : folder.listFiles())
+            file.delete();
+        folder.delete();
+        GsonConfigSource.configure(GsonConfigSource.DEFAULT_FLUSH_DELAY_MILLIS, false);
+    }
+
+    @Benchmark
+    public Object openJson() {
+        GsonConfigSource source = new GsonConfigSource(new File(folder, "var.json"));
+        source.reload();
+        return source.get(lookup).orElse(null);
+    }
+
+    @Benchmark
+    public Object openBinary() {
+        BinaryConfigSource source = new BinaryConfigSource(folder, "var");
+        source.reload();
+        return source.get(lookup).orElse(null);
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes of a shared config from several threads at once, as the scripts do with the global
+ * variables. Three threads read while one thread writes, compared to the previous implementation which locked
+ * the whole cache for both.
+ * <p>
+ * ./gradlew :core:jmh -PjmhArgs="GsonConfigSourceBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class GsonConfigSourceBenchmark {
+    @Param({"100", "10000"})
+    public int size;
+
+    private String[] keys;
+
+    private LegacyCache legacy;
+    private GsonConfigSource source;
+
+    @Setup
+    public void setup() {
+        // nothing is written to the file while measuring
+        GsonConfigSource.configure(TimeUnit.HOURS.toMillis(1), false);
+
+        legacy = new LegacyCache();
+        source = new GsonConfigSource(new File("benchmark.json"));
+
+        keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "player" + i + ".money";
+            legacy.put(keys[i], i);
+            source.put(keys[i], i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ConfigFlushService.getInstance().cancel(source);
+        GsonConfigSource.configure(GsonConfigSource.DEFAULT_FLUSH_DELAY_MILLIS, false);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = 0;
+
+        String nextKey(GsonConfigSourceBenchmark benchmark) {
+            String key = benchmark.keys[next];
+            next = (next + 1) % benchmark.keys.length;
+            return key;
+        }
+    }
+
+    @Benchmark
+    @Group("legacy")
+    @GroupThreads(3)
+    public Object legacyRead(Cursor cursor) {
+        return legacy.get(cursor.nextKey(this));
+    }
+
+    @Benchmark
+    @Group("legacy")
+    @GroupThreads(1)
+    public void legacyWrite(Cursor cursor) {
+        legacy.put(cursor.nextKey(this), cursor.next);
+    }
+
+    @Benchmark
+    @Group("persistent")
+    @GroupThreads(3)
+    public Object persistentRead(Cursor cursor) {
+        return source.get(cursor.nextKey(this)).orElse(null);
+    }
+
+    @Benchmark
+    @Group("persistent")
+    @GroupThreads(1)
+    public void persistentWrite(Cursor cursor) {
+        source.put(cursor.nextKey(this), cursor.next);
+    }
+
+    /**
+     * The cache before the snapshots, which locked the nested HashMaps for both the reads and the writes.
+     */
+    static class LegacyCache {
+        private final Map<String, Object> cache = new HashMap<>();
+
+        Object get(String key) {
+            synchronized (cache) {
+                Map<String, Object> map = cache;
+                String[] path = IConfigSource.toPath(key);
+                for (int i = 0; i < path.length; i++) {
+                    Object value = map.get(path[i]);
+                    if (i == path.length - 1)
+                        return value;
+                    else if (value instanceof Map) {
+                        @SuppressWarnings("unchecked") Map<String, Object> child = (Map<String, Object>) value;
+                        map = child;
+                    } else
+                        return null;
+                }
+                return null;
+            }
+        }
+
+        void put(String key, Object value) {
+            synchronized (cache) {
+                Map<String, Object> map = cache;
+                String[] path = IConfigSource.toPath(key);
+                for (int i = 0; i < path.length - 1; i++) {
+                    @SuppressWarnings("unchecked") Map<String, Object> child =
+                            (Map<String, Object>) map.computeIfAbsent(path[i], (k) -> new HashMap<>());
+                    map = child;
+                }
+                map.put(path[path.length - 1], value);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import io.github.wysohn.gsoncopy.Gson;
+import io.github.wysohn.gsoncopy.stream.JsonReader;
+import io.github.wysohn.triggerreactor.tools.PersistentMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a large var file: the tree of GsonHelper.readJson() copied into the cache as GsonConfigSource used to,
+ * and the one pass GsonHelper.loadJson(), with and without the lazy player sections.
+ * <p>
+ * ./gradlew :core:jmh -PjmhArgs="GsonLoadBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GsonLoadBenchmark {
+    @Param({"10000", "100000"})
+    public int players;
+
+    private final Gson gson = new Gson();
+    private String json;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder("{\"player\":{");
+        for (int i = 0; i < players; i++) {
+            if (i > 0)
+                builder.append(',');
+            builder.append('"').append(UUID.randomUUID()).append("\":{\"coins\":").append(i)
+                    .append(",\"name\":\"player").append(i).append("\",\"balance\":").append(i * 1.5).append('}');
+        }
+        json = builder.append("}}").toString();
+    }
+
+    @Benchmark
+    public Object treeThenCopy() throws IOException {
+        return PersistentMap.copyOf(GsonHelper.readJson(new JsonReader(new StringReader(json)), gson));
+    }
+
+    @Benchmark
+    public Object streaming() throws IOException {
+        return GsonHelper.loadJson(new JsonReader(new StringReader(json)), gson, Collections.emptyList());
+    }
+
+    @Benchmark
+    public Object streamingLazy() throws IOException {
+        return GsonHelper.loadJson(new JsonReader(new StringReader(json)), gson,
+                Collections.singletonList("player.*"));
+    }
+}
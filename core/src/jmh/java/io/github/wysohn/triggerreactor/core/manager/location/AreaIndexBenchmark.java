@@ -0,0 +1,129 @@
+package io.github.wysohn.triggerreactor.core.manager.location;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Area lookups with {@link AreaIndex} compared to the previous implementation, which mapped every chunk covered by
+ * an area to the areas in it. 10k areas of various sizes overlap each other in a 4000x4000 region.
+ * <p>
+ * ./gradlew :core:jmh -PjmhArgs="AreaIndexBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AreaIndexBenchmark {
+    private static final int AREAS = 10000;
+    private static final int POINTS = 1024;
+
+    private LegacyAreaMap legacy;
+    private AreaIndex<Object> indexed;
+    private Map<Area, Object> areas;
+
+    private SimpleLocation[] points;
+    private int next = 0;
+
+    private Area large;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        areas = new HashMap<>();
+        legacy = new LegacyAreaMap();
+        while (areas.size() < AREAS) {
+            int x = random.nextInt(4000) - 2000, y = random.nextInt(200), z = random.nextInt(4000) - 2000;
+            // mostly small areas with a few huge ones, like the regions of a server
+            int size = random.nextInt(100) == 0 ? 500 + random.nextInt(1500) : 5 + random.nextInt(60);
+            Area area = new Area(new SimpleLocation("world", x, y, z),
+                    new SimpleLocation("world", x + size, y + random.nextInt(40), z + size));
+            Object value = new Object();
+            areas.put(area, value);
+            legacy.put(area, value);
+        }
+        indexed = new AreaIndex<>();
+        indexed.reset(areas);
+
+        points = new SimpleLocation[POINTS];
+        for (int i = 0; i < POINTS; i++)
+            points[i] = new SimpleLocation("world",
+                    random.nextInt(4000) - 2000, random.nextInt(240), random.nextInt(4000) - 2000);
+
+        large = new Area(new SimpleLocation("world", -3000, 0, -3000), new SimpleLocation("world", 3000, 255, 3000));
+    }
+
+    private SimpleLocation nextPoint() {
+        SimpleLocation point = points[next];
+        next = (next + 1) & (POINTS - 1);
+        return point;
+    }
+
+    /**
+     * Lookup on each block move.
+     */
+    @Benchmark
+    public Object legacyLookup() {
+        return legacy.getAreaForLocation(nextPoint());
+    }
+
+    @Benchmark
+    public Object indexedLookup() {
+        return indexed.getAreasAt(nextPoint());
+    }
+
+    @Benchmark
+    public void indexedForEach(Blackhole blackhole) {
+        indexed.forEachAt(nextPoint(), (area, value) -> blackhole.consume(value));
+    }
+
+    /**
+     * Adding and removing a huge area.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void legacyPutRemoveLarge() {
+        legacy.put(large, large);
+        legacy.remove(large);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void indexedPutRemoveLarge() {
+        indexed.put(large, large);
+        indexed.remove(large);
+    }
+
+    /**
+     * The implementation before the areas were indexed.
+     */
+    static class LegacyAreaMap {
+        private final Map<SimpleChunkLocation, Map<Area, Object>> areaTriggersByLocation = new ConcurrentHashMap<>();
+
+        void put(Area area, Object value) {
+            for (SimpleChunkLocation scloc : Area.getAllChunkLocations(area))
+                areaTriggersByLocation.computeIfAbsent(scloc, key -> new ConcurrentHashMap<>()).put(area, value);
+        }
+
+        void remove(Area area) {
+            for (SimpleChunkLocation scloc : Area.getAllChunkLocations(area))
+                areaTriggersByLocation.get(scloc).remove(area);
+        }
+
+        List<Map.Entry<Area, Object>> getAreaForLocation(SimpleLocation sloc) {
+            SimpleChunkLocation scloc = new SimpleChunkLocation(sloc);
+            if (!areaTriggersByLocation.containsKey(scloc))
+                return new ArrayList<>();
+
+            return areaTriggersByLocation.get(scloc).entrySet().stream()
+                    .filter(entry -> entry.getKey().isInThisArea(sloc))
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.wysohn.triggerreactor.core.manager.location;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup cost of the Click/Walk Triggers by location. The legacy map is the nested chunk map that
+ * AbstractLocationBasedTriggerManager used before the packed keys.
+ * <p>
+ * ./gradlew :core:jmh -PjmhArgs="BlockLocationMapBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BlockLocationMapBenchmark {
+    private static final int LOOKUPS = 1024;
+
+    @Param({"1000"})
+    public int triggers;
+
+    private final Map<SimpleChunkLocation, Map<SimpleLocation, Object>> legacy = new ConcurrentHashMap<>();
+    private final BlockLocationMap<Object> indexed = new BlockLocationMap<>();
+
+    private final String[] worlds = new String[LOOKUPS];
+    private final int[] xs = new int[LOOKUPS];
+    private final int[] ys = new int[LOOKUPS];
+    private final int[] zs = new int[LOOKUPS];
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        for (int i = 0; i < triggers; i++) {
+            SimpleLocation sloc = new SimpleLocation("world", random.nextInt(2000) - 1000, random.nextInt(256),
+                    random.nextInt(2000) - 1000);
+            legacy.computeIfAbsent(new SimpleChunkLocation(sloc), key -> new ConcurrentHashMap<>()).put(sloc, i);
+            indexed.put(sloc, i);
+        }
+
+        //players walking around, mostly where nothing is registered
+        for (int i = 0; i < LOOKUPS; i++) {
+            worlds[i] = "world";
+            xs[i] = random.nextInt(2000) - 1000;
+            ys[i] = random.nextInt(256);
+            zs[i] = random.nextInt(2000) - 1000;
+        }
+    }
+
+    /**
+     * The lookup as getTriggerForLocation() used to do: a SimpleLocation for the block, and a
+     * SimpleChunkLocation for the chunk.
+     */
+    @Benchmark
+    public Object legacyLookup() {
+        int i = next++ & (LOOKUPS - 1);
+        SimpleLocation sloc = new SimpleLocation(worlds[i], xs[i], ys[i], zs[i]);
+        Map<SimpleLocation, Object> locationMap = legacy.get(new SimpleChunkLocation(sloc));
+        return locationMap == null ? null : locationMap.get(sloc);
+    }
+
+    @Benchmark
+    public Object indexedLookup() {
+        int i = next++ & (LOOKUPS - 1);
+        return indexed.get(worlds[i], xs[i], ys[i], zs[i]);
+    }
+}
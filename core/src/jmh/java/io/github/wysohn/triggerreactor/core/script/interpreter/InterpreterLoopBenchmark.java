@@ -0,0 +1,57 @@
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.compiler.CompiledScript;
+import io.github.wysohn.triggerreactor.core.script.compiler.Compiler;
+import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+import io.github.wysohn.triggerreactor.core.script.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A tight arithmetic loop, which mostly exercises the operand stack. Run with the gc profiler to see the
+ * allocation rate; the numbers and booleans in {@link CompiledInterpreter} stay in the primitive slots of
+ * {@link OperandStack}, while the tree {@link Interpreter} creates a Token for each of them.
+ * <p>
+ * ./gradlew :core:jmh -PjmhArgs="InterpreterLoopBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InterpreterLoopBenchmark {
+    private static final String SCRIPT = ""
+            + "sum = 0;"
+            + "FOR i = 0:100000\n"
+            + "    IF i % 3 == 0 && i > 10\n"
+            + "        sum = sum + i * 2 - 1\n"
+            + "    ENDIF\n"
+            + "ENDFOR";
+
+    private Node root;
+    private CompiledScript compiled;
+
+    @Setup
+    public void setup() throws Exception {
+        root = new Parser(new Lexer(SCRIPT, StandardCharsets.UTF_8)).parse();
+        compiled = new Compiler(root).compile();
+    }
+
+    @Benchmark
+    public Object compiledInterpreter() throws Exception {
+        Interpreter interpreter = new CompiledInterpreter(compiled);
+        interpreter.startWithContext(null);
+        return interpreter.getVars().get("sum");
+    }
+
+    @Benchmark
+    public Object treeInterpreter() throws Exception {
+        Interpreter interpreter = new Interpreter(root);
+        interpreter.startWithContext(null);
+        return interpreter.getVars().get("sum");
+    }
+}
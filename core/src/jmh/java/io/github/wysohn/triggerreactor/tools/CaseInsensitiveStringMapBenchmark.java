@@ -0,0 +1,126 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup cost of {@link CaseInsensitiveStringMap} compared to the previous implementation, which scanned
+ * every key with equalsIgnoreCase().
+ * <p>
+ * ./gradlew :core:jmh -PjmhArgs="CaseInsensitiveStringMapBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CaseInsensitiveStringMapBenchmark {
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private Map<String, Object> legacy;
+    private CaseInsensitiveStringMap<Object> indexed;
+
+    private String[] lookups;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        legacy = new LegacyCaseInsensitiveStringMap<>();
+        indexed = new CaseInsensitiveStringMap<>();
+
+        lookups = new String[size];
+        for (int i = 0; i < size; i++) {
+            String key = "executor" + i;
+            legacy.put(key, i);
+            indexed.put(key, i);
+
+            // scripts usually use a different case than the file name
+            lookups[i] = key.toUpperCase();
+        }
+    }
+
+    private String nextKey() {
+        String key = lookups[next];
+        next = (next + 1) % lookups.length;
+        return key;
+    }
+
+    /**
+     * containsKey() followed by get(), as Interpreter used to do for each executor.
+     */
+    @Benchmark
+    public Object legacyContainsAndGet() {
+        String key = nextKey();
+        return legacy.containsKey(key) ? legacy.get(key) : null;
+    }
+
+    @Benchmark
+    public Object indexedContainsAndGet() {
+        String key = nextKey();
+        return indexed.containsKey(key) ? indexed.get(key) : null;
+    }
+
+    @Benchmark
+    public Object indexedGetIgnoreCase() {
+        return indexed.getIgnoreCase(nextKey());
+    }
+
+    @Benchmark
+    public Object legacyPut() {
+        String key = nextKey();
+        return legacy.put(key, key);
+    }
+
+    @Benchmark
+    public Object indexedPut() {
+        String key = nextKey();
+        return indexed.put(key, key);
+    }
+
+    /**
+     * The implementation before the keys were indexed.
+     */
+    static class LegacyCaseInsensitiveStringMap<T> extends HashMap<String, T> {
+        private static final long serialVersionUID = 1L;
+
+        private String caseInsensitiveMatch(String key) {
+            for (String s : keySet()) {
+                if (s.equalsIgnoreCase(key)) {
+                    return s;
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (!(key instanceof String)) {
+                return super.containsKey(key);
+            }
+
+            return caseInsensitiveMatch((String) key) != null;
+        }
+
+        @Override
+        public T get(Object key) {
+            if (!(key instanceof String)) {
+                return super.get(key);
+            }
+
+            String match = caseInsensitiveMatch((String) key);
+            return match == null ? null : super.get(match);
+        }
+
+        @Override
+        public T put(String key, T value) {
+            String match = caseInsensitiveMatch(key);
+            return super.put(match == null ? key : match, value);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import io.github.wysohn.triggerreactor.tools.ValidationUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Config source saved in the binary form of {@link BinarySnapshot}. The file is memory mapped on reload, and the
+ * sections are decoded only when they are used, so opening even a large file takes little time. Changes are
+ * written the same way as {@link GsonConfigSource}, but the sections not decoded yet are copied as they are.
+ * <p>
+ * Use {@link #toBinary(Map, File, String)} and {@link #toJson(Map, File, String)} to export the values of a config
+ * source into this, or into the json file, which is still the format for exporting or editing the values.
+ */
+public class BinaryConfigSource implements IConfigSource, ConfigFlushService.Flushable {
+    //Windows can't replace a file while it's mapped
+    private static final boolean MAP = !System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+
+    private final File file;
+    //the values in memory. Its json file is never written.
+    private final GsonConfigSource values;
+
+    BinaryConfigSource(File folder, String name) {
+        ValidationUtil.notNull(folder);
+        ValidationUtil.notNull(name);
+
+        this.file = new File(folder, name + ".bin");
+        this.values = new GsonConfigSource(new File(folder, name + ".json"));
+    }
+
+    /**
+     * Write the values into the binary file. The file must not be the one of a config source in use.
+     *
+     * @param values the values, usually the snapshot of the config source in use
+     * @param folder the folder of the file
+     * @param name   name of the file without the extension
+     */
+    public static void toBinary(Map<String, Object> values, File folder, String name) throws IOException {
+        // only to write the values which are neither numbers, booleans, nor strings
+        GsonConfigSource json = new GsonConfigSource(new File(folder, name + ".json"));
+        write(new File(folder, name + ".bin"), values, json);
+    }
+
+    /**
+     * Write the values into the json file. The file must not be the one of a config source in use.
+     *
+     * @param values the values, usually the snapshot of the config source in use
+     * @param folder the folder of the file
+     * @param name   name of the file without the extension
+     */
+    public static void toJson(Map<String, Object> values, File folder, String name) throws IOException {
+        GsonConfigSource target = new GsonConfigSource(new File(folder, name + ".json"));
+        if (!target.saveSnapshot(values))
+            throw new IOException("Could not write " + name + ".json");
+    }
+
+    private static ByteBuffer read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (MAP)
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    break;
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * Write into a temporary file next to the file, and then move it over the file.
+     */
+    private static void write(File file, Map<String, Object> snapshot, GsonConfigSource json) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists())
+            parent.mkdirs();
+
+        File temp = new File(parent, file.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BinarySnapshot.write(snapshot, channel, json);
+            channel.force(false);
+        }
+
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public boolean fileExists() {
+        return file.exists() && file.length() > 0;
+    }
+
+    @Override
+    public <T> Optional<T> get(String key, Class<T> asType) {
+        return values.get(key, asType);
+    }
+
+    @Override
+    public <T> Optional<T> get(String key) {
+        return values.get(key);
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        if (values.putCached(key, value))
+            ConfigFlushService.getInstance().markDirty(this, GsonConfigSource.getFlushDelayMillis());
+    }
+
+    @Override
+    public boolean has(String key) {
+        return values.has(key);
+    }
+
+    @Override
+    public Set<String> keys() {
+        return values.keys();
+    }
+
+    @Override
+    public boolean isSection(String key) {
+        return values.isSection(key);
+    }
+
+    @Override
+    public void reload() {
+        synchronized (file) {
+            try {
+                if (fileExists())
+                    values.replaceAll(BinarySnapshot.read(read(file), values));
+                else
+                    values.replaceAll(Collections.emptyMap());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void saveAll() {
+        synchronized (file) {
+            try {
+                write(file, values.snapshot(), values);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Write the values now. Usually called by {@link ConfigFlushService} after the changes are collected.
+     */
+    @Override
+    public void flush() {
+        saveAll();
+    }
+
+    @Override
+    public void disable() {
+        ConfigFlushService.getInstance().flushNow(this);
+    }
+
+    @Override
+    public void delete() {
+        ConfigFlushService.getInstance().cancel(this);
+        synchronized (file) {
+            file.delete();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryConfigSource{" +
+                "file=" + file +
+                '}';
+    }
+}
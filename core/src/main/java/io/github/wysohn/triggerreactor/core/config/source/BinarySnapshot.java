@@ -0,0 +1,389 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary form of the config values, which can be read without parsing the whole file.
+ * <p>
+ * After the magic number and the version, the file is a single section. A section is the number of its entries,
+ * the entries sorted by their keys, and then the directory, which is the position of each entry. Each entry is the
+ * key, the type, and the value. A value which is a section has its length in front, so the sections are skipped
+ * over until they are used.
+ * <p>
+ * Nothing is decoded when the file is read. Looking up a key finds the entry by binary search on the directory and
+ * decodes only that entry, and a section is decoded as a whole only when all of its entries are needed. The values
+ * other than numbers, booleans, and strings are saved as the json of {@link GsonConfigSource}.
+ * <p>
+ * All the lengths and positions are int, so the file can't be larger than 2GB.
+ */
+final class BinarySnapshot {
+    static final int MAGIC = 0x54525642; // TRVB
+    static final int VERSION = 1;
+
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte STRING = 6;
+    private static final byte JSON = 7;
+    private static final byte SECTION = 8;
+
+    private BinarySnapshot() {
+
+    }
+
+    /**
+     * @param buffer the whole file. Not modified.
+     * @param json   the source which reads the json values
+     * @return the root section, of which nothing is decoded yet.
+     * @throws IOException if it's not a binary snapshot
+     */
+    static Map<String, Object> read(ByteBuffer buffer, GsonConfigSource json) throws IOException {
+        if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a binary snapshot.");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported version " + buffer.getInt(4) + " of binary snapshot.");
+
+        return new LazySection(buffer, 8, buffer.limit() - 8, json);
+    }
+
+    /**
+     * Write the values from the current position of the channel.
+     *
+     * @param values the values
+     * @param out    the channel to write
+     * @param json   the source which writes the json values
+     */
+    static void write(Map<String, Object> values, FileChannel out, GsonConfigSource json) throws IOException {
+        Output output = new Output(out);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        writeSection(output, values, json);
+        output.flush();
+    }
+
+    private static void writeSection(Output out, Map<String, Object> section, GsonConfigSource json)
+            throws IOException {
+        if (section instanceof LazySection) {
+            // unchanged since it was read, so just copy the bytes
+            ((LazySection) section).copyTo(out);
+            return;
+        }
+
+        List<Map.Entry<String, Object>> entries = new ArrayList<>(section.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+
+        long start = out.position();
+        int[] directory = new int[entries.size()];
+        out.writeInt(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Map.Entry<String, Object> entry = entries.get(i);
+            directory[i] = (int) (out.position() - start);
+            out.writeString(entry.getKey());
+
+            Object value = entry.getValue();
+            if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeLong(Double.doubleToRawLongBits((Double) value));
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                out.writeString((String) value);
+            } else if (value instanceof Map) {
+                out.writeByte(SECTION);
+                long lengthAt = out.position();
+                out.writeInt(0);
+                @SuppressWarnings("unchecked")
+                Map<String, Object> child = (Map<String, Object>) value;
+                writeSection(out, child, json);
+                out.patchInt(lengthAt, (int) (out.position() - lengthAt - 4));
+            } else {
+                out.writeByte(JSON);
+                out.writeString(json.toJson(value));
+            }
+        }
+
+        for (int position : directory)
+            out.writeInt(position);
+    }
+
+    /**
+     * Section which decodes its entries when it's used for the first time.
+     */
+    private static final class LazySection extends AbstractMap<String, Object> {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+        private final GsonConfigSource json;
+
+        private volatile Map<String, Object> decoded;
+        //sections and json values found by get(), so they are decoded only once
+        private final Map<String, Object> found = new ConcurrentHashMap<>();
+
+        private LazySection(ByteBuffer buffer, int offset, int length, GsonConfigSource json) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            this.json = json;
+        }
+
+        private Map<String, Object> decoded() {
+            Map<String, Object> map = decoded;
+            if (map == null) {
+                synchronized (this) {
+                    map = decoded;
+                    if (map == null) {
+                        try {
+                            map = decode();
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                        decoded = map;
+                    }
+                }
+            }
+            return map;
+        }
+
+        private Map<String, Object> decode() throws IOException {
+            // own position, as the sections can be decoded by several threads at once
+            ByteBuffer in = buffer.duplicate();
+            in.position(offset);
+
+            int count = in.getInt();
+            Map<String, Object> map = new LinkedHashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                Object value = found.get(key);
+                if (value == null) {
+                    value = readValue(in);
+                } else {
+                    skipValue(in);
+                }
+
+                if (value != null)
+                    map.put(key, value);
+            }
+            return Collections.unmodifiableMap(map);
+        }
+
+        private Object readValue(ByteBuffer in) throws IOException {
+            byte type = in.get();
+            switch (type) {
+                case INT:
+                    return in.getInt();
+                case LONG:
+                    return in.getLong();
+                case DOUBLE:
+                    return Double.longBitsToDouble(in.getLong());
+                case TRUE:
+                    return true;
+                case FALSE:
+                    return false;
+                case STRING:
+                    return readString(in);
+                case JSON:
+                    return json.fromJson(readString(in));
+                case SECTION:
+                    int sectionLength = in.getInt();
+                    LazySection section = new LazySection(buffer, in.position(), sectionLength, json);
+                    in.position(in.position() + sectionLength);
+                    return section;
+                default:
+                    throw new IOException("Unknown type " + type + " at " + (in.position() - 1));
+            }
+        }
+
+        private static void skipValue(ByteBuffer in) throws IOException {
+            byte type = in.get();
+            switch (type) {
+                case INT:
+                    in.position(in.position() + 4);
+                    break;
+                case LONG:
+                case DOUBLE:
+                    in.position(in.position() + 8);
+                    break;
+                case TRUE:
+                case FALSE:
+                    break;
+                case STRING:
+                case JSON:
+                case SECTION:
+                    int skip = in.getInt();
+                    in.position(in.position() + skip);
+                    break;
+                default:
+                    throw new IOException("Unknown type " + type + " at " + (in.position() - 1));
+            }
+        }
+
+        /**
+         * Find the entry by binary search on the directory, without decoding the other entries.
+         *
+         * @return the value, or null if not found.
+         */
+        private Object lookup(String key) throws IOException {
+            ByteBuffer in = buffer.duplicate();
+            int count = in.getInt(offset);
+            int directory = offset + length - count * 4;
+
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                in.position(offset + in.getInt(directory + mid * 4));
+                int compare = readString(in).compareTo(key);
+                if (compare < 0) {
+                    low = mid + 1;
+                } else if (compare > 0) {
+                    high = mid - 1;
+                } else {
+                    return readValue(in);
+                }
+            }
+            return null;
+        }
+
+        private static String readString(ByteBuffer in) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void copyTo(Output out) throws IOException {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(offset);
+            slice.limit(offset + length);
+            out.write(slice);
+        }
+
+        @Override
+        public Object get(Object key) {
+            Map<String, Object> map = decoded;
+            if (map != null)
+                return map.get(key);
+            if (!(key instanceof String))
+                return null;
+
+            Object value = found.get(key);
+            if (value != null)
+                return value;
+
+            try {
+                value = lookup((String) key);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            if (value instanceof LazySection || value instanceof Map || value instanceof Collection) {
+                Object previous = found.putIfAbsent((String) key, value);
+                if (previous != null)
+                    return previous;
+            }
+            return value;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return decoded().size();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return decoded().entrySet();
+        }
+    }
+
+    /**
+     * Buffered writer to a channel, which can go back and fill the length of a section once it's written.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        //position of the channel where the buffer starts
+        private long flushed;
+
+        private Output(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.flushed = channel.position();
+        }
+
+        private long position() {
+            return flushed + buffer.position();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                flushed += channel.write(buffer);
+            buffer.clear();
+        }
+
+        private void writeByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        private void writeInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        private void writeLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            write(ByteBuffer.wrap(bytes));
+        }
+
+        private void write(ByteBuffer bytes) throws IOException {
+            if (bytes.remaining() <= buffer.remaining()) {
+                buffer.put(bytes);
+                return;
+            }
+
+            flush();
+            while (bytes.hasRemaining())
+                flushed += channel.write(bytes);
+        }
+
+        private void patchInt(long at, int value) throws IOException {
+            if (at >= flushed) {
+                buffer.putInt((int) (at - flushed), value);
+            } else {
+                ByteBuffer bytes = ByteBuffer.allocate(4).putInt(0, value);
+                while (bytes.hasRemaining())
+                    channel.write(bytes, at + bytes.position());
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The threads which write the config sources into the files. Every config source shares the same few threads,
+ * instead of having its own, as there is one config source for each Trigger.
+ * <p>
+ * A config source marked dirty is written once after the given delay, no matter how many times it's marked in the
+ * meantime. The writes run in the order the sources became dirty, so a source which changes all the time can't
+ * keep the others waiting.
+ */
+public class ConfigFlushService {
+    public static final int DEFAULT_THREADS = 2;
+
+    private static ConfigFlushService instance;
+
+    public static synchronized ConfigFlushService getInstance() {
+        if (instance == null)
+            instance = new ConfigFlushService(DEFAULT_THREADS);
+        return instance;
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<Flushable, Pending> pending = new ConcurrentHashMap<>();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    ConfigFlushService(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "TriggerReactor Config Flusher-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        this.executor = new ScheduledThreadPoolExecutor(threads, factory);
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Schedule the target to be flushed after the delay, unless it's already scheduled.
+     *
+     * @param target      the target to be flushed
+     * @param delayMillis how long to wait for the other changes before flushing
+     */
+    public void markDirty(Flushable target, long delayMillis) {
+        if (pending.containsKey(target))
+            return;
+
+        try {
+            pending.computeIfAbsent(target, key -> new Pending(
+                    executor.schedule(() -> run(key), delayMillis, TimeUnit.MILLISECONDS)));
+        } catch (RejectedExecutionException e) {
+            //shut down already, so flush it here
+            flush(target);
+        }
+    }
+
+    private void run(Flushable target) {
+        //the changes from now on need another flush
+        if (pending.remove(target) == null)
+            return;
+
+        flush(target);
+    }
+
+    private void flush(Flushable target) {
+        try {
+            target.flush();
+            flushed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Flush the target in this thread right away if it's waiting to be flushed.
+     *
+     * @param target the target
+     * @return true if it was flushed; false if there was nothing to flush
+     */
+    public boolean flushNow(Flushable target) {
+        Pending removed = pending.remove(target);
+        if (removed == null)
+            return false;
+
+        removed.future.cancel(false);
+        flush(target);
+        return true;
+    }
+
+    /**
+     * Drop the scheduled flush of the target, if any.
+     *
+     * @param target the target
+     */
+    public void cancel(Flushable target) {
+        Pending removed = pending.remove(target);
+        if (removed != null)
+            removed.future.cancel(false);
+    }
+
+    /**
+     * Flush every target waiting to be flushed in this thread, in the order they became dirty.
+     */
+    public void flushAll() {
+        List<Map.Entry<Flushable, Pending>> entries = new ArrayList<>(pending.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().since));
+        for (Map.Entry<Flushable, Pending> entry : entries) {
+            flushNow(entry.getKey());
+        }
+    }
+
+    /**
+     * Flush all the pending targets and stop the threads. The targets marked dirty after this are flushed
+     * immediately in the calling thread. Blocks until the flushes in progress are done.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        flushAll();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Report of the targets waiting to be flushed, the oldest first.
+     *
+     * @param limit maximum number of the targets to show
+     * @return the report. One line for each target, with how long it has been waiting.
+     */
+    public List<String> getPendingReport(int limit) {
+        long now = System.nanoTime();
+        List<Map.Entry<Flushable, Pending>> entries = new ArrayList<>(pending.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().since));
+
+        List<String> report = new ArrayList<>();
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            Map.Entry<Flushable, Pending> entry = entries.get(i);
+            report.add(entry.getKey() + " " + TimeUnit.NANOSECONDS.toMillis(now - entry.getValue().since) + "ms");
+        }
+        if (entries.size() > limit)
+            report.add("... and " + (entries.size() - limit) + " more");
+        return report;
+    }
+
+    @Override
+    public String toString() {
+        return "pending=" + pending.size() +
+                ", flushed=" + flushed.sum() +
+                ", failed=" + failed.sum() +
+                ", threads=" + executor.getPoolSize() + "/" + executor.getCorePoolSize();
+    }
+
+    /**
+     * Something written by {@link ConfigFlushService}.
+     */
+    @FunctionalInterface
+    public interface Flushable {
+        /**
+         * Write the changes. Called from one of the flusher threads.
+         */
+        void flush();
+    }
+
+    private static class Pending {
+        private final ScheduledFuture<?> future;
+        private final long since = System.nanoTime();
+
+        private Pending(ScheduledFuture<?> future) {
+            this.future = future;
+        }
+    }
+}
@@ -14,6 +14,9 @@ public class ConfigSourceFactory {
     static {
         factories.put("none", (type, folder, fileName) -> new EmptyConfigSource());
         factories.put("gson", (type, folder, fileName) -> new GsonConfigSource(new File(folder, fileName + ".json")));
+        factories.put("sharded", (type, folder, fileName) -> new ShardedConfigSource(new File(folder, fileName)));
+        factories.put("wal", (type, folder, fileName) -> new WalConfigSource(folder, fileName));
+        factories.put("binary", (type, folder, fileName) -> new BinaryConfigSource(folder, fileName));
     }
 
     /**
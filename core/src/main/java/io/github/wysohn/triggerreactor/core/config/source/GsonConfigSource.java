@@ -4,6 +4,7 @@ import io.github.wysohn.gsoncopy.Gson;
 import io.github.wysohn.gsoncopy.GsonBuilder;
 import io.github.wysohn.gsoncopy.internal.bind.TypeAdapters;
 import io.github.wysohn.gsoncopy.stream.JsonReader;
+import io.github.wysohn.gsoncopy.stream.JsonWriter;
 import io.github.wysohn.triggerreactor.core.config.NullTypeAdapters;
 import io.github.wysohn.triggerreactor.core.config.serialize.Serializer;
 import io.github.wysohn.triggerreactor.core.config.serialize.SimpleChunkLocationSerializer;
@@ -15,18 +16,21 @@ import io.github.wysohn.triggerreactor.core.config.validation.SimpleLocationVali
 import io.github.wysohn.triggerreactor.core.config.validation.UUIDValidator;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleChunkLocation;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
+import io.github.wysohn.triggerreactor.tools.PersistentMap;
 import io.github.wysohn.triggerreactor.tools.ValidationUtil;
 
 import java.io.*;
 import java.lang.reflect.Array;
 import java.lang.reflect.Modifier;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
-public class GsonConfigSource implements IConfigSource {
+public class GsonConfigSource implements IConfigSource, ConfigFlushService.Flushable {
     private static final GsonBuilder GSON_BUILDER = new GsonBuilder()
             .excludeFieldsWithModifiers(Modifier.TRANSIENT, Modifier.STATIC).enableComplexMapKeySerialization()
             .setPrettyPrinting().serializeNulls()
@@ -38,7 +42,8 @@ public class GsonConfigSource implements IConfigSource {
             .registerTypeAdapterFactory(TypeAdapters.newFactory(double.class, Double.class, NullTypeAdapters.NULL_ADOPTER_NUMBER))
             .registerTypeAdapter(UUID.class, new UUIDSerializer())
             .registerTypeAdapter(SimpleLocation.class, new SimpleLocationSerializer())
-            .registerTypeAdapter(SimpleChunkLocation.class, new SimpleChunkLocationSerializer());
+            .registerTypeAdapter(SimpleChunkLocation.class, new SimpleChunkLocationSerializer())
+            .registerTypeAdapterFactory(LazyJsonSection.FACTORY);
 
     public static <T> void registerSerializer(Class<T> type, Serializer<T> serializer) {
         GSON_BUILDER.registerTypeHierarchyAdapter(type, serializer);
@@ -58,34 +63,73 @@ public class GsonConfigSource implements IConfigSource {
         }
     }
 
-    private final ExecutorService exec = Executors.newSingleThreadExecutor();
+    public static final int DEFAULT_FLUSH_DELAY_MILLIS = 100;
 
-    //Lock order: file -> cache
+    private static volatile long flushDelayMillis = DEFAULT_FLUSH_DELAY_MILLIS;
+    private static volatile boolean prettyPrinting = false;
+
+    private static final LongAdder totalFlushes = new LongAdder();
+    private static final LongAdder totalBytesWritten = new LongAdder();
+
+    /**
+     * Change how the files are written. Applies to the writes scheduled after this call.
+     *
+     * @param flushDelayMillis how long the changes are collected before they are written to the file. 0 to write
+     *                         as soon as possible, though the changes made while writing are still collected.
+     * @param prettyPrinting   true to indent the files so they are easier to read; false to write them compact.
+     */
+    public static void configure(long flushDelayMillis, boolean prettyPrinting) {
+        GsonConfigSource.flushDelayMillis = Math.max(0L, flushDelayMillis);
+        GsonConfigSource.prettyPrinting = prettyPrinting;
+    }
+
+    static long getFlushDelayMillis() {
+        return flushDelayMillis;
+    }
+
+    /**
+     * @return number of the writes and the bytes written by all the GsonConfigSources so far.
+     */
+    public static String getMetrics() {
+        return "flushes=" + totalFlushes.sum() + ", written=" + totalBytesWritten.sum() / 1024 + "KB";
+    }
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    //Lock order: file -> writeLock
     private final File file;
     private final Function<File, Reader> readerFactory;
+    //null to write into a temporary file and then replace the file with it
     private final Function<File, Writer> writerFactory;
-    private final Map<String, Object> cache = new HashMap<>();
+    //never modified once published, so the readers don't have to lock. Sections are copied on write.
+    private volatile PersistentMap<String, Object> cache = PersistentMap.empty();
+    private final Object writeLock = new Object();
+    //number of the changes made so far, and how many of them are in the file
+    private final AtomicLong changes = new AtomicLong();
+    private volatile long savedChanges = 0L;
 
     private final Gson gson = GSON_BUILDER.create();
 
     private final ITypeValidator typeValidator;
 
+    //sections decoded only when they are used
+    private volatile Collection<String> lazySections = Collections.emptyList();
+
     GsonConfigSource(File file) {
-        this(file, f -> {
+        ValidationUtil.notNull(file);
+
+        this.file = file;
+        this.readerFactory = f -> {
             try {
                 return new FileReader(f);
             } catch (FileNotFoundException e) {
                 e.printStackTrace();
                 return null;
             }
-        }, f -> {
-            try {
-                return new FileWriter(f);
-            } catch (IOException e) {
-                e.printStackTrace();
-                return null;
-            }
-        });
+        };
+        this.writerFactory = null;
+        this.typeValidator = VALIDATOR_BUILDER.build();
     }
 
     /**
@@ -107,6 +151,17 @@ public class GsonConfigSource implements IConfigSource {
         this.typeValidator = VALIDATOR_BUILDER.build();
     }
 
+    /**
+     * Change which sections are decoded only when they are used. Applies to the next {@link #reload()}.
+     *
+     * @param lazySections paths of the sections, like 'player.*'. See
+     *                     {@link GsonHelper#loadJson(JsonReader, Gson, Collection)}
+     */
+    public void setLazySections(Collection<String> lazySections) {
+        ValidationUtil.notNull(lazySections);
+        this.lazySections = Collections.unmodifiableList(new ArrayList<>(lazySections));
+    }
+
     @Override
     public boolean fileExists() {
         // this is not a perfect way yet can cover most cases.
@@ -132,14 +187,13 @@ public class GsonConfigSource implements IConfigSource {
 
         synchronized (file) {
             try (Reader fr = this.readerFactory.apply(file)) {
-                synchronized (cache) {
-                    Map<String, Object> loaded = null;
-                    if (file.exists() && file.length() > 0L)
-                        loaded = GsonHelper.readJson(new JsonReader(fr), gson);
-
-                    cache.clear();
-                    if (loaded != null)
-                        cache.putAll(loaded);
+                PersistentMap<String, Object> loaded = null;
+                if (file.exists() && file.length() > 0L)
+                    loaded = GsonHelper.loadJson(new JsonReader(fr), gson, lazySections);
+
+                synchronized (writeLock) {
+                    cache = loaded == null ? PersistentMap.empty() : loaded;
+                    savedChanges = changes.get();
                 }
             } catch (IOException e) {
                 e.printStackTrace();
@@ -165,14 +219,151 @@ public class GsonConfigSource implements IConfigSource {
      * Blocking operation
      */
     private void cacheToFile() {
-        try (Writer fw = this.writerFactory.apply(file)) {
-            synchronized (cache) {
-                String ser = gson.toJson(cache);
-                fw.write(ser);
+        long saving = changes.get();
+        if (writeToFile(cache))
+            savedChanges = saving;
+    }
+
+    /**
+     * Blocking operation
+     *
+     * @return true if written; false if failed.
+     */
+    private boolean writeToFile(Map<String, Object> values) {
+        try {
+            long written;
+            if (writerFactory == null) {
+                written = writeAtomically(values);
+            } else {
+                try (CountingWriter writer = new CountingWriter(writerFactory.apply(file))) {
+                    writeValues(writer, values);
+                    written = writer.count;
+                }
             }
+
+            flushes.incrementAndGet();
+            bytesWritten.addAndGet(written);
+            totalFlushes.increment();
+            totalBytesWritten.add(written);
+            return true;
         } catch (Exception e) {
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Write into a temporary file next to the file, and then move it over the file. The file is either the
+     * previous one or the new one even if the server crashes in the middle.
+     *
+     * @return the bytes written
+     */
+    private long writeAtomically(Map<String, Object> values) throws IOException {
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(fos))) {
+            writeValues(writer, values);
+            writer.flush();
+            fos.getFD().sync();
+        }
+
+        long written = temp.length();
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
+        return written;
+    }
+
+    private void writeValues(Writer writer, Map<String, Object> values) throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        if (prettyPrinting)
+            jsonWriter.setIndent("  ");
+
+        gson.toJson(values, Map.class, jsonWriter);
+        jsonWriter.flush();
+    }
+
+    /**
+     * @return the values as they are now. Never changes afterward.
+     */
+    PersistentMap<String, Object> snapshot() {
+        return cache;
+    }
+
+    /**
+     * Replace all the values in the memory with the ones read from somewhere else than the file.
+     *
+     * @param values the values. Used as it is if it's a PersistentMap.
+     */
+    void replaceAll(Map<String, Object> values) {
+        synchronized (writeLock) {
+            cache = PersistentMap.copyOf(values);
+            savedChanges = changes.get();
+        }
+    }
+
+    /**
+     * Write the given values into the file instead of the current ones. Used by the sources which keep their
+     * changes somewhere else until they are written here.
+     *
+     * @param values the values, usually from {@link #snapshot()}
+     * @return true if written; false if failed.
+     */
+    boolean saveSnapshot(Map<String, Object> values) {
+        ensureFile();
+
+        synchronized (file) {
+            return writeToFile(values);
+        }
+    }
+
+    /**
+     * Serialize a single value the same way it's saved in the file.
+     */
+    String toJson(Object value) {
+        return gson.toJson(Collections.singletonMap("value", value), Map.class);
+    }
+
+    /**
+     * Read back the value serialized by {@link #toJson(Object)}.
+     */
+    Object fromJson(String json) throws IOException {
+        Map<String, Object> map = GsonHelper.loadJson(new JsonReader(new StringReader(json)), gson,
+                Collections.emptyList());
+        return map == null ? null : map.get("value");
+    }
+
+    /**
+     * Write the cache now. Usually called by {@link ConfigFlushService} after the changes are collected.
+     */
+    @Override
+    public void flush() {
+        saveAll();
+    }
+
+    /**
+     * @return true if something was put after the file was last written or loaded. Stays true until the
+     * write is done, even if it's in progress.
+     */
+    public boolean hasUnsavedChanges() {
+        return savedChanges != changes.get();
+    }
+
+    /**
+     * @return number of the times the file was written.
+     */
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    /**
+     * @return total bytes written into the file.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
     }
 
     private <T> T get(Map<String, Object> map, String[] path, Class<T> asType) {
@@ -194,61 +385,76 @@ public class GsonConfigSource implements IConfigSource {
 
     @Override
     public <T> Optional<T> get(String key, Class<T> asType) {
-        synchronized (cache) {
-            return Optional.ofNullable(get(cache, IConfigSource.toPath(key), asType));
-        }
+        return Optional.ofNullable(get(cache, IConfigSource.toPath(key), asType));
     }
 
     @Override
     public <T> Optional<T> get(String key) {
-        synchronized (cache) {
-            return Optional.ofNullable((T) get(cache, IConfigSource.toPath(key), Object.class));
-        }
+        return Optional.ofNullable((T) get(cache, IConfigSource.toPath(key), Object.class));
     }
 
-    private void put(Map<String, Object> map, String[] path, Object value) {
-        for (int i = 0; i < path.length; i++) {
-            String key = path[i];
+    /**
+     * Copy the sections along the path with the value changed. The given map is not modified.
+     *
+     * @param map   the section at the index. Can be null if it doesn't exist yet.
+     * @param path  the path to the value
+     * @param index index of the key of this section in the path
+     * @param value the new value. null to remove it.
+     * @return the copy of the section
+     */
+    private PersistentMap<String, Object> put(Map<String, Object> map, String[] path, int index, Object value) {
+        PersistentMap<String, Object> section = map == null ? PersistentMap.empty() : PersistentMap.copyOf(map);
+        String key = path[index];
 
-            if (i == path.length - 1) {
-                if (value == null) {
-                    map.remove(key);
-                } else if (value.getClass().isArray()) {
-                    List l = new LinkedList();
-                    for (int k = 0; k < Array.getLength(value); k++) {
-                        Object elem = Array.get(value, k);
-                        if (!typeValidator.isSerializable(elem))
-                            throw new RuntimeException(Arrays.toString(path) + "< " + elem + " is not serializable.");
-
-                        l.add(elem);
-                    }
-                    map.put(key, l);
-                } else {
-                    if (!typeValidator.isSerializable(value))
-                        throw new RuntimeException(Arrays.toString(path) + "< " + value + " is not serializable.");
-
-                    map.put(key, value);
-                }
-            } else {
-                Object previous = map.computeIfAbsent(key, (k) -> new HashMap<>());
-                if (!(previous instanceof Map))
-                    throw new RuntimeException("Value found at " + key + " is not a section.");
+        if (index < path.length - 1) {
+            Object previous = section.get(key);
+            if (previous != null && !(previous instanceof Map))
+                throw new RuntimeException("Value found at " + key + " is not a section.");
+
+            return section.plus(key, put((Map<String, Object>) previous, path, index + 1, value));
+        }
+
+        if (value == null) {
+            return section.minus(key);
+        } else if (value.getClass().isArray()) {
+            List l = new LinkedList();
+            for (int k = 0; k < Array.getLength(value); k++) {
+                Object elem = Array.get(value, k);
+                if (!typeValidator.isSerializable(elem))
+                    throw new RuntimeException(Arrays.toString(path) + "< " + elem + " is not serializable.");
 
-                map = (Map<String, Object>) previous;
+                l.add(elem);
             }
+            return section.plus(key, l);
+        } else {
+            if (!typeValidator.isSerializable(value))
+                throw new RuntimeException(Arrays.toString(path) + "< " + value + " is not serializable.");
+
+            return section.plus(key, value);
         }
     }
 
     @Override
     public void put(String key, Object value) {
-        synchronized (cache) {
-            put(cache, IConfigSource.toPath(key), value);
-            exec.execute(() -> {
-                synchronized (file) {
-                    cacheToFile();
-                }
-            });
+        if (putCached(key, value))
+            ConfigFlushService.getInstance().markDirty(this, flushDelayMillis);
+    }
+
+    /**
+     * Change the value in the memory only, without scheduling the write.
+     *
+     * @return false if the key is empty and nothing changed.
+     */
+    boolean putCached(String key, Object value) {
+        String[] path = IConfigSource.toPath(key);
+        if (path.length == 0)
+            return false;
+
+        synchronized (writeLock) {
+            cache = put(cache, path, 0, value);
+            changes.incrementAndGet();
         }
+        return true;
     }
 
     @Override
@@ -258,34 +464,28 @@ public class GsonConfigSource implements IConfigSource {
 
     @Override
     public Set<String> keys() {
-        synchronized (cache) {
-            return new HashSet<>(cache.keySet());
-        }
+        // the snapshot never changes, so no copy is needed
+        return Collections.unmodifiableSet(cache.keySet());
     }
 
     @Override
     public boolean isSection(String key) {
-        synchronized (cache) {
-            return get(cache, IConfigSource.toPath(key), Object.class) instanceof Map;
-        }
+        return get(cache, IConfigSource.toPath(key), Object.class) instanceof Map;
     }
 
     /**
-     * Shutdown the saving tasks. Blocks the thread until the scheduled tasks are done.
+     * Write the pending changes now instead of waiting for the flush delay.
      */
     public void shutdown() {
-        exec.shutdownNow().forEach(Runnable::run);
-        try {
-            exec.awaitTermination(10, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        ConfigFlushService.getInstance().flushNow(this);
     }
 
     @Override
     public void delete() {
-        exec.shutdownNow();
-        file.delete();
+        ConfigFlushService.getInstance().cancel(this);
+        synchronized (file) {
+            file.delete();
+        }
     }
 
     @Override
@@ -294,4 +494,30 @@ public class GsonConfigSource implements IConfigSource {
                 "file=" + file +
                 '}';
     }
+
+    private static class CountingWriter extends FilterWriter {
+        private long count = 0;
+
+        private CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            super.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            super.write(cbuf, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            super.write(str, off, len);
+            count += len;
+        }
+    }
 }
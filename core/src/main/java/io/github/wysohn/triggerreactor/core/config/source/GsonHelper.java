@@ -7,11 +7,12 @@ import io.github.wysohn.gsoncopy.stream.JsonReader;
 import io.github.wysohn.gsoncopy.stream.JsonToken;
 import io.github.wysohn.gsoncopy.stream.JsonWriter;
 import io.github.wysohn.triggerreactor.core.config.serialize.CustomSerializer;
+import io.github.wysohn.triggerreactor.tools.PersistentMap;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.*;
 
 public class GsonHelper {
     public static Map<String, Object> readJson(JsonReader jsonReader, Gson gson) throws IOException {
@@ -89,16 +90,7 @@ public class GsonHelper {
                 return jsonReader.nextString();
 
             case NUMBER:
-                String value = jsonReader.nextString();
-                if (value.contains(".")) {
-                    return Double.parseDouble(value);
-                } else {
-                    try {
-                        return Integer.parseInt(value);
-                    } catch (NumberFormatException ex) {
-                        return Long.parseLong(value);
-                    }
-                }
+                return parseNumber(jsonReader.nextString());
 
             case BOOLEAN:
                 return jsonReader.nextBoolean();
@@ -112,6 +104,232 @@ public class GsonHelper {
         }
     }
 
+    /**
+     * @return Integer if it fits, Long if not, and Double if it has a fraction or an exponent, or it doesn't fit
+     * even in the long.
+     */
+    static Number parseNumber(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E')
+                return Double.parseDouble(value);
+        }
+
+        try {
+            long number = Long.parseLong(value);
+            if (number == (int) number)
+                return (int) number;
+            return number;
+        } catch (NumberFormatException ex) {
+            return Double.parseDouble(value);
+        }
+    }
+
+    /**
+     * Read the json object in one pass directly into the {@link PersistentMap}s, which {@link GsonConfigSource}
+     * keeps as they are, so no intermediate tree is made. Unlike {@link #readJson(JsonReader, Gson)}, the same keys
+     * share one String, and the entries with null value are left out.
+     *
+     * @param jsonReader   the reader
+     * @param gson         the gson which reads the custom serialized values
+     * @param lazySections paths of the sections to be decoded only when they are used, like 'player'. A '*' matches
+     *                     any key, so 'player.*' makes each player's section decoded separately. Until decoded, the
+     *                     section is kept as the json text, which is also written back as it is.
+     * @return the values, or null if it's not a json object.
+     */
+    public static PersistentMap<String, Object> loadJson(JsonReader jsonReader, Gson gson,
+                                                         Collection<String> lazySections) throws IOException {
+        if (!jsonReader.hasNext())
+            return null;
+
+        JsonToken token = jsonReader.peek();
+        if (token != JsonToken.BEGIN_OBJECT)
+            return null;
+
+        Object read = new Loader(gson, lazySections).readObject(jsonReader, 0);
+        // custom serialized value, not a section
+        if (!(read instanceof PersistentMap))
+            return null;
+
+        // the sections are always built with the String keys
+        @SuppressWarnings("unchecked")
+        PersistentMap<String, Object> section = (PersistentMap<String, Object>) read;
+        return section;
+    }
+
+    private static final class Loader {
+        private final Gson gson;
+        //split by the dots
+        private final List<String[]> lazySections = new ArrayList<>();
+        private final Map<String, String> keys = new HashMap<>();
+        //keys of the sections being read, to be matched with the lazySections
+        private String[] path = new String[8];
+
+        private Loader(Gson gson, Collection<String> lazySections) {
+            this.gson = gson;
+            for (String section : lazySections)
+                this.lazySections.add(IConfigSource.toPath(section));
+        }
+
+        private String intern(String key) {
+            String interned = keys.putIfAbsent(key, key);
+            return interned == null ? key : interned;
+        }
+
+        private boolean isLazy(int depth) {
+            outer:
+            for (String[] section : lazySections) {
+                if (section.length != depth)
+                    continue;
+
+                for (int i = 0; i < depth; i++) {
+                    if (!section[i].equals("*") && !section[i].equals(path[i]))
+                        continue outer;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @param depth number of the keys to this object, or -1 if it's in a list.
+         * @return the section, or the custom serialized value.
+         */
+        private Object readObject(JsonReader jsonReader, int depth) throws IOException {
+            jsonReader.beginObject();
+
+            PersistentMap.Builder<String, Object> section = new PersistentMap.Builder<>();
+            TypeAdapter<?> adapter = null;
+            while (jsonReader.hasNext()) {
+                String key = intern(jsonReader.nextName());
+                if (CustomSerializer.SER_KEY.equals(key)) { // custom serializer found
+                    String className = jsonReader.nextString();
+                    try {
+                        adapter = gson.getAdapter(Class.forName(className));
+                    } catch (ClassNotFoundException e) {
+                        e.printStackTrace();
+                    }
+                    continue;
+                }
+
+                if (adapter != null) {
+                    if (!CustomSerializer.SER_VALUE.equals(key))
+                        throw new RuntimeException("Found serializable key but field name of value is not " + CustomSerializer.SER_VALUE);
+
+                    final Object read = adapter.read(jsonReader);
+                    if (jsonReader.hasNext())
+                        throw new RuntimeException("Finished deserialization, yet there are still more fields to read.");
+                    jsonReader.endObject();
+                    return read;
+                }
+
+                Object value;
+                if (depth >= 0 && !lazySections.isEmpty() && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                    if (path.length == depth)
+                        path = Arrays.copyOf(path, depth * 2);
+                    path[depth] = key;
+                    value = isLazy(depth + 1) ? readLazy(jsonReader) : readValue(jsonReader, depth + 1);
+                } else {
+                    value = readValue(jsonReader, depth < 0 ? -1 : depth + 1);
+                }
+
+                if (value != null)
+                    section.put(key, value);
+            }
+            jsonReader.endObject();
+            return section.build();
+        }
+
+        private Object readValue(JsonReader jsonReader, int depth) throws IOException {
+            switch (jsonReader.peek()) {
+                case BEGIN_OBJECT:
+                    return readObject(jsonReader, depth);
+
+                case BEGIN_ARRAY:
+                    ArrayList<Object> list = new ArrayList<>();
+                    jsonReader.beginArray();
+                    while (jsonReader.hasNext()) {
+                        list.add(readValue(jsonReader, -1));
+                    }
+                    jsonReader.endArray();
+                    list.trimToSize();
+                    return list;
+
+                case STRING:
+                    return jsonReader.nextString();
+
+                case NUMBER:
+                    return parseNumber(jsonReader.nextString());
+
+                case BOOLEAN:
+                    return jsonReader.nextBoolean();
+
+                case NULL:
+                    jsonReader.nextNull();
+                    return null;
+
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+
+        private Object readLazy(JsonReader jsonReader) throws IOException {
+            StringWriter writer = new StringWriter();
+            copy(jsonReader, new JsonWriter(writer));
+            String json = writer.toString();
+
+            // custom serialized value, not a section
+            if (json.startsWith("{\"" + CustomSerializer.SER_KEY + "\""))
+                return new Loader(gson, Collections.emptyList()).readObject(new JsonReader(new StringReader(json)), -1);
+            return new LazyJsonSection(json, gson);
+        }
+
+        private static void copy(JsonReader in, JsonWriter out) throws IOException {
+            switch (in.peek()) {
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    out.beginObject();
+                    while (in.hasNext()) {
+                        out.name(in.nextName());
+                        copy(in, out);
+                    }
+                    in.endObject();
+                    out.endObject();
+                    break;
+
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    out.beginArray();
+                    while (in.hasNext()) {
+                        copy(in, out);
+                    }
+                    in.endArray();
+                    out.endArray();
+                    break;
+
+                case STRING:
+                    out.value(in.nextString());
+                    break;
+
+                case NUMBER:
+                    out.jsonValue(in.nextString());
+                    break;
+
+                case BOOLEAN:
+                    out.value(in.nextBoolean());
+                    break;
+
+                case NULL:
+                    in.nextNull();
+                    out.nullValue();
+                    break;
+
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
     public static void writeJson(Map<String, Object> map, JsonWriter out, Gson gson) throws IOException {
         if (map == null) {
             out.beginObject();
@@ -1,32 +1,31 @@
 package io.github.wysohn.triggerreactor.core.config.source;
 
-import java.util.LinkedList;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.Set;
 
 public interface IConfigSource {
     static String[] toPath(String key) {
-        Queue<String> path = new LinkedList<>();
-
-        StringBuilder builder = new StringBuilder();
+        int count = 0;
         for (int i = 0; i < key.length(); i++) {
-            if (key.charAt(i) == '.') {
-                if (builder.length() > 0) {
-                    path.add(builder.toString());
-                    builder = new StringBuilder();
-                }
-                continue;
-            }
-
-            builder.append(key.charAt(i));
+            if (key.charAt(i) != '.' && (i == 0 || key.charAt(i - 1) == '.'))
+                count++;
         }
 
-        if (builder.length() > 0) {
-            path.add(builder.toString());
+        String[] path = new String[count];
+        int index = 0;
+        int start = -1;
+        for (int i = 0; i <= key.length(); i++) {
+            if (i == key.length() || key.charAt(i) == '.') {
+                if (start >= 0) {
+                    path[index++] = key.substring(start, i);
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
         }
 
-        return path.toArray(new String[0]);
+        return path;
     }
 
     /**
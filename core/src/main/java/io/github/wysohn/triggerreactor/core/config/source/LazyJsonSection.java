@@ -0,0 +1,117 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import io.github.wysohn.gsoncopy.Gson;
+import io.github.wysohn.gsoncopy.TypeAdapter;
+import io.github.wysohn.gsoncopy.TypeAdapterFactory;
+import io.github.wysohn.gsoncopy.reflect.TypeToken;
+import io.github.wysohn.gsoncopy.stream.JsonReader;
+import io.github.wysohn.gsoncopy.stream.JsonWriter;
+import io.github.wysohn.triggerreactor.tools.PersistentMap;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Section kept as its json text until it's used for the first time. Made by
+ * {@link GsonHelper#loadJson(JsonReader, Gson, java.util.Collection)} for the lazy sections.
+ * <p>
+ * If it's never used, the text is written back as it is by {@link #FACTORY}, so the sections which are rarely used,
+ * like the ones of the players who are offline, don't have to be decoded at all.
+ */
+final class LazyJsonSection extends AbstractMap<String, Object> {
+    static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != LazyJsonSection.class)
+                return null;
+
+            TypeAdapter<Map<String, Object>> mapAdapter = gson.getAdapter(new TypeToken<Map<String, Object>>() {
+            });
+            TypeAdapter<LazyJsonSection> adapter = new TypeAdapter<LazyJsonSection>() {
+                @Override
+                public void write(JsonWriter out, LazyJsonSection value) throws IOException {
+                    String json = value.json;
+                    if (json != null) {
+                        out.jsonValue(json);
+                    } else {
+                        mapAdapter.write(out, value.decoded());
+                    }
+                }
+
+                @Override
+                public LazyJsonSection read(JsonReader in) {
+                    throw new UnsupportedOperationException("Use GsonHelper.loadJson()");
+                }
+            };
+            // T is LazyJsonSection, as checked above
+            @SuppressWarnings("unchecked")
+            TypeAdapter<T> typed = (TypeAdapter<T>) adapter;
+            return typed;
+        }
+    };
+
+    private final Gson gson;
+    //null once decoded
+    private volatile String json;
+    private volatile Map<String, Object> decoded;
+
+    LazyJsonSection(String json, Gson gson) {
+        this.json = json;
+        this.gson = gson;
+    }
+
+    /**
+     * @return true if it's decoded already.
+     */
+    boolean isDecoded() {
+        return decoded != null;
+    }
+
+    private Map<String, Object> decoded() {
+        Map<String, Object> map = decoded;
+        if (map == null) {
+            synchronized (this) {
+                map = decoded;
+                if (map == null) {
+                    try {
+                        map = GsonHelper.loadJson(new JsonReader(new StringReader(json)), gson,
+                                Collections.emptyList());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    if (map == null)
+                        map = PersistentMap.empty();
+
+                    decoded = map;
+                    json = null;
+                }
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return decoded().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return decoded().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return decoded().size();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return decoded().entrySet();
+    }
+}
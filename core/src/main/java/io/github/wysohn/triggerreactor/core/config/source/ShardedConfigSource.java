@@ -0,0 +1,391 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import io.github.wysohn.triggerreactor.tools.ValidationUtil;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Config source which splits the values into several json files, so a change rewrites only the file it belongs
+ * to. The file (shard) of a key is decided by the hash of its first few parts; for example, with the depth of 2,
+ * 'player.uuid.coins' and 'player.uuid.level' are in the same shard, while the other uuids are spread over
+ * the other shards.
+ * <p>
+ * A shard is loaded when it's used for the first time, and dropped from the memory again once it's not used for
+ * a while and its changes are written. Only the shards with changes are written.
+ * <p>
+ * A value of the key with less parts than the depth, such as 'count', is in the shard of the key itself. But a
+ * section of such key, such as 'player', spans all the shards, so reading or replacing it loads every shard.
+ * A section put is split into its values, as they may belong to the different shards.
+ * The number of shards and the depth must not change once the values are saved.
+ */
+public class ShardedConfigSource implements IConfigSource {
+    public static final int DEFAULT_SHARDS = 256;
+    public static final int DEFAULT_DEPTH = 2;
+    public static final long DEFAULT_IDLE_MILLIS = 5 * 60 * 1000L;
+
+    private final File folder;
+    private final File[] files;
+    private final int depth;
+    private final long idleMillis;
+    private final LongSupplier clock;
+
+    private final Map<Integer, Shard> shards = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep;
+
+    ShardedConfigSource(File folder) {
+        this(folder, DEFAULT_SHARDS, DEFAULT_DEPTH, DEFAULT_IDLE_MILLIS, System::currentTimeMillis);
+    }
+
+    /**
+     * @param folder     the folder where the shards are saved
+     * @param shardCount number of the shards
+     * @param depth      number of the parts of the key used to find the shard
+     * @param idleMillis how long a shard stays in memory after it was last used
+     * @param clock      the current time in milliseconds
+     */
+    ShardedConfigSource(File folder, int shardCount, int depth, long idleMillis, LongSupplier clock) {
+        ValidationUtil.notNull(folder);
+        ValidationUtil.notNull(clock);
+        if (shardCount < 1 || depth < 1)
+            throw new IllegalArgumentException("shardCount and depth must be positive.");
+
+        this.folder = folder;
+        this.files = new File[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            // always the same File, so the old and the new GsonConfigSource of a shard lock the same object
+            files[i] = new File(folder, i + ".json");
+        }
+        this.depth = depth;
+        this.idleMillis = idleMillis;
+        this.clock = clock;
+        this.lastSweep = new AtomicLong(clock.getAsLong());
+    }
+
+    private int indexOf(String[] path) {
+        int hash = 1;
+        for (int i = 0; i < path.length && i < depth; i++) {
+            hash = 31 * hash + path[i].hashCode();
+        }
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, files.length);
+    }
+
+    /**
+     * @return the shard, loaded if it's not in the memory.
+     */
+    private Shard shard(int index) {
+        Shard shard = shards.computeIfAbsent(index, i -> {
+            GsonConfigSource source = new GsonConfigSource(files[i]);
+            source.reload();
+            return new Shard(source);
+        });
+
+        long now = clock.getAsLong();
+        shard.lastAccess = now;
+        sweep(now);
+        return shard;
+    }
+
+    /**
+     * Drop the shards which are not used for a while. Only the shards of which changes are in the file
+     * are dropped, so nothing is written here; the others are dropped in a later sweep after the
+     * {@link ConfigFlushService} writes them.
+     */
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last < Math.max(1000L, idleMillis / 4) || !lastSweep.compareAndSet(last, now))
+            return;
+
+        shards.forEach((index, shard) -> {
+            if (now - shard.lastAccess < idleMillis)
+                return;
+
+            synchronized (shard) {
+                if (shard.evicted || shard.source.hasUnsavedChanges())
+                    return;
+
+                shard.evicted = true;
+                shards.remove(index, shard);
+            }
+        });
+    }
+
+    private void put(int index, String key, Object value) {
+        while (true) {
+            Shard shard = shard(index);
+            synchronized (shard) {
+                // dropped in the meantime, so put it in the new one instead
+                if (shard.evicted)
+                    continue;
+
+                shard.source.put(key, value);
+                return;
+            }
+        }
+    }
+
+    private boolean spansShards(String[] path) {
+        return path.length < depth;
+    }
+
+    /**
+     * Read the value without loading the shard if it's known to be empty.
+     *
+     * @return the value, or null if not found.
+     */
+    private Object valueIn(int index, String key) {
+        if (!shards.containsKey(index) && files[index].length() == 0L)
+            return null;
+        return shard(index).source.get(key).orElse(null);
+    }
+
+    /**
+     * Find the value of the key with less parts than the depth. It's looked up in the shard of the key first, and
+     * all the shards are read only if it's a section or not found there.
+     *
+     * @return the value, the merged section, or null if not found.
+     */
+    private Object getSpanning(String key, String[] path) {
+        Object value = valueIn(indexOf(path), key);
+        if (value != null && !(value instanceof Map))
+            return value;
+
+        return getFromAll(key);
+    }
+
+    /**
+     * Check the keys of the sections containing the given path which may be in the other shards, like 'player' of
+     * 'player.a.coins', as {@link GsonConfigSource} does for the keys in the same file.
+     */
+    private void checkParents(String[] path) {
+        for (int length = 1; length < path.length && length < depth; length++) {
+            String[] parent = Arrays.copyOf(path, length);
+            String parentKey = String.join(".", parent);
+            Object value = valueIn(indexOf(parent), parentKey);
+            if (value != null && !(value instanceof Map))
+                throw new RuntimeException("Value found at " + parentKey + " is not a section.");
+        }
+    }
+
+    /**
+     * Put the value, splitting the sections into their values. The previous section of the key must be removed
+     * already.
+     */
+    private void putSplit(String key, String[] path, Object value) {
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String[] childPath = Arrays.copyOf(path, path.length + 1);
+                childPath[path.length] = String.valueOf(entry.getKey());
+                putSplit(key + "." + childPath[path.length], childPath, entry.getValue());
+            }
+            return;
+        }
+
+        put(indexOf(path), key, value);
+    }
+
+    /**
+     * Merge the sections of the key from all the shards.
+     *
+     * @return the value, the merged section, or null if not found.
+     */
+    private Object getFromAll(String key) {
+        Map<String, Object> merged = null;
+        for (int i = 0; i < files.length; i++) {
+            Object value = valueIn(i, key);
+            if (value == null)
+                continue;
+
+            if (!(value instanceof Map))
+                return value;
+
+            if (merged == null)
+                merged = new HashMap<>();
+            @SuppressWarnings("unchecked")
+            Map<String, Object> section = (Map<String, Object>) value;
+            merge(merged, section);
+        }
+        return merged;
+    }
+
+    private static void merge(Map<String, Object> into, Map<String, Object> from) {
+        from.forEach((key, value) -> {
+            Object previous = into.get(key);
+            if (previous instanceof Map && value instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> copy = new HashMap<>((Map<String, Object>) previous);
+                @SuppressWarnings("unchecked")
+                Map<String, Object> section = (Map<String, Object>) value;
+                merge(copy, section);
+                into.put(key, copy);
+            } else {
+                into.put(key, value);
+            }
+        });
+    }
+
+    @Override
+    public boolean fileExists() {
+        for (File file : files) {
+            if (file.exists() && file.length() > 0)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public <T> Optional<T> get(String key, Class<T> asType) {
+        String[] path = IConfigSource.toPath(key);
+        if (spansShards(path))
+            return Optional.ofNullable(asType.cast(getSpanning(key, path)));
+
+        return shard(indexOf(path)).source.get(key, asType);
+    }
+
+    @Override
+    public <T> Optional<T> get(String key) {
+        String[] path = IConfigSource.toPath(key);
+        if (spansShards(path)) {
+            @SuppressWarnings("unchecked")
+            T value = (T) getSpanning(key, path);
+            return Optional.ofNullable(value);
+        }
+
+        return shard(indexOf(path)).source.get(key);
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        String[] path = IConfigSource.toPath(key);
+        checkParents(path);
+
+        int index = indexOf(path);
+        if (spansShards(path)) {
+            Object previous = valueIn(index, key);
+            if (previous == null || previous instanceof Map) {
+                // the section may be spread over all the shards
+                for (int i = 0; i < files.length; i++) {
+                    if (i != index && valueIn(i, key) != null)
+                        put(i, key, null);
+                }
+            }
+            // a value replaces the previous one in place, but a section is split into the other shards
+            boolean leaf = value != null && !(value instanceof Map);
+            if (previous != null && !leaf)
+                put(index, key, null);
+            if (value == null)
+                return;
+        } else if (value instanceof Map) {
+            put(index, key, null);
+        }
+
+        putSplit(key, path, value);
+    }
+
+    @Override
+    public boolean has(String key) {
+        String[] path = IConfigSource.toPath(key);
+        if (!spansShards(path))
+            return shard(indexOf(path)).source.has(key);
+
+        Object value = valueIn(indexOf(path), key);
+        if (value != null && !(value instanceof Map))
+            return true;
+
+        for (int i = 0; i < files.length; i++) {
+            if (shard(i).source.has(key))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Set<String> keys() {
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < files.length; i++) {
+            keys.addAll(shard(i).source.keys());
+        }
+        return keys;
+    }
+
+    @Override
+    public boolean isSection(String key) {
+        String[] path = IConfigSource.toPath(key);
+        if (!spansShards(path))
+            return shard(indexOf(path)).source.isSection(key);
+
+        return getSpanning(key, path) instanceof Map;
+    }
+
+    /**
+     * Drop all the shards from the memory, so they are read from the files again when used. The changes not
+     * written yet are lost.
+     */
+    @Override
+    public void reload() {
+        shards.forEach((index, shard) -> {
+            synchronized (shard) {
+                shard.evicted = true;
+                shards.remove(index, shard);
+                ConfigFlushService.getInstance().cancel(shard.source);
+            }
+        });
+    }
+
+    /**
+     * Write the shards which have changes.
+     */
+    @Override
+    public void saveAll() {
+        for (Shard shard : shards.values()) {
+            ConfigFlushService.getInstance().flushNow(shard.source);
+        }
+    }
+
+    @Override
+    public void disable() {
+        saveAll();
+    }
+
+    @Override
+    public void delete() {
+        reload();
+        for (File file : files) {
+            synchronized (file) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    /**
+     * @return number of the shards in the memory.
+     */
+    public int getLoadedShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedConfigSource{" +
+                "folder=" + folder +
+                ", shards=" + files.length +
+                ", loaded=" + shards.size() +
+                '}';
+    }
+
+    private static class Shard {
+        private final GsonConfigSource source;
+        private volatile long lastAccess;
+        //guarded by this
+        private boolean evicted = false;
+
+        private Shard(GsonConfigSource source) {
+            this.source = source;
+        }
+    }
+}
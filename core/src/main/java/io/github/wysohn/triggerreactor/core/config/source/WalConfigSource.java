@@ -0,0 +1,511 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import io.github.wysohn.triggerreactor.tools.PersistentMap;
+import io.github.wysohn.triggerreactor.tools.ValidationUtil;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Config source which appends each change to a log instead of writing all the values again. The values are kept
+ * in the json file of the same name, which is written only when the log grows too large (compaction), so the
+ * cost of a put is the size of the change rather than the size of all the values.
+ * <p>
+ * On reload, the json file is read first and then the logs are replayed on it in order. A record cut in the middle
+ * by a crash is detected by its checksum and dropped along with the rest of the log.
+ * <p>
+ * How often the log is synced to the disk is set by {@link #configure(Durability, int, long)}.
+ */
+public class WalConfigSource implements IConfigSource, ConfigFlushService.Flushable {
+    public enum Durability {
+        /**
+         * Sync after each put. Nothing is lost, but each put waits for the disk.
+         */
+        WRITE,
+        /**
+         * Keep the records in the memory and write them with a single sync once there are enough of them, or after
+         * the interval. Up to a batch of changes can be lost if the server crashes.
+         */
+        BATCH,
+        /**
+         * Write each record right away but sync only after the interval. The changes survive a crash of the
+         * server, but the changes in the interval can be lost if the OS crashes.
+         */
+        INTERVAL
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final int DEFAULT_INTERVAL_MILLIS = 1000;
+    public static final long DEFAULT_COMPACT_BYTES = 4L * 1024 * 1024;
+
+    private static volatile Durability durability = Durability.INTERVAL;
+    private static volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private static volatile long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+
+    /**
+     * Change how often the logs are synced. Applies to the puts after this call.
+     *
+     * @param durability     when to sync
+     * @param batchSize      number of the records written together for {@link Durability#BATCH}
+     * @param intervalMillis the longest time a change waits to be synced for {@link Durability#BATCH} and
+     *                       {@link Durability#INTERVAL}
+     */
+    public static void configure(Durability durability, int batchSize, long intervalMillis) {
+        ValidationUtil.notNull(durability);
+
+        WalConfigSource.durability = durability;
+        WalConfigSource.batchSize = Math.max(1, batchSize);
+        WalConfigSource.intervalMillis = Math.max(0L, intervalMillis);
+    }
+
+    private static final byte REMOVE = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte STRING = 5;
+    private static final byte JSON = 6;
+
+    //length and checksum in front of each record
+    private static final int HEADER = 8;
+
+    private final File folder;
+    private final String name;
+    private final long compactBytes;
+    //the values in memory, and the file they are compacted into
+    private final GsonConfigSource values;
+
+    //Lock order: compactLock -> lock -> values
+    private final Object lock = new Object();
+    private final Object compactLock = new Object();
+    //guarded by lock
+    private FileChannel log;
+    private long generation = 0L;
+    private long logBytes = 0L;
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    private int batchCount = 0;
+
+    WalConfigSource(File folder, String name) {
+        this(folder, name, DEFAULT_COMPACT_BYTES);
+    }
+
+    /**
+     * @param folder       the folder of the files
+     * @param name         name of the files without the extension
+     * @param compactBytes size of the log which starts the compaction
+     */
+    WalConfigSource(File folder, String name, long compactBytes) {
+        ValidationUtil.notNull(folder);
+        ValidationUtil.notNull(name);
+
+        this.folder = folder;
+        this.name = name;
+        this.compactBytes = compactBytes;
+        this.values = new GsonConfigSource(new File(folder, name + ".json"));
+    }
+
+    private File logFile(long generation) {
+        return new File(folder, name + "." + generation + ".wal");
+    }
+
+    /**
+     * @return generations of the logs in the folder, the oldest first.
+     */
+    private long[] logGenerations() {
+        String prefix = name + ".";
+        File[] files = folder.listFiles((dir, fileName) -> fileName.startsWith(prefix) && fileName.endsWith(".wal"));
+        if (files == null)
+            return new long[0];
+
+        List<Long> generations = new ArrayList<>();
+        for (File file : files) {
+            String middle = file.getName().substring(prefix.length(), file.getName().length() - ".wal".length());
+            try {
+                generations.add(Long.parseLong(middle));
+            } catch (NumberFormatException ex) {
+                // not one of ours
+            }
+        }
+
+        return generations.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private byte[] encode(String key, Object value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER + 16 + key.length());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(0L); // header, filled below
+            out.writeUTF(key);
+
+            if (value == null) {
+                out.writeByte(REMOVE);
+            } else if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString(out, (String) value);
+            } else {
+                out.writeByte(JSON);
+                writeString(out, values.toJson(value));
+            }
+
+            byte[] record = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(record, HEADER, record.length - HEADER);
+            ByteBuffer.wrap(record).putInt(record.length - HEADER).putInt((int) crc.getValue());
+            return record;
+        } catch (IOException ex) {
+            // ByteArrayOutputStream never throws
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String key = in.readUTF();
+        Object value;
+        switch (in.readByte()) {
+            case REMOVE:
+                value = null;
+                break;
+            case INT:
+                value = in.readInt();
+                break;
+            case LONG:
+                value = in.readLong();
+                break;
+            case DOUBLE:
+                value = in.readDouble();
+                break;
+            case BOOLEAN:
+                value = in.readBoolean();
+                break;
+            case STRING:
+                value = readString(in);
+                break;
+            case JSON:
+                value = values.fromJson(readString(in));
+                break;
+            default:
+                throw new IOException("Unknown record type.");
+        }
+        values.putCached(key, value);
+    }
+
+    /**
+     * Apply the records of the log to the values.
+     *
+     * @return the length of the log up to the last complete record.
+     */
+    private long replay(File file) throws IOException {
+        long valid = 0L;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long remaining = file.length();
+            while (remaining >= HEADER) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > remaining - HEADER)
+                    break;
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum)
+                    break;
+
+                apply(payload);
+                remaining -= HEADER + length;
+                valid += HEADER + length;
+            }
+        }
+        return valid;
+    }
+
+    private void openLog(long generation) throws IOException {
+        this.generation = generation;
+        this.log = FileChannel.open(logFile(generation).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.logBytes = log.size();
+    }
+
+    private void closeLog() {
+        if (log == null)
+            return;
+
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        log = null;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            log.write(buffer);
+    }
+
+    private void writeBatch() throws IOException {
+        if (batchCount == 0)
+            return;
+
+        write(ByteBuffer.wrap(batch.toByteArray()));
+        batch.reset();
+        batchCount = 0;
+    }
+
+    @Override
+    public boolean fileExists() {
+        return values.fileExists() || logGenerations().length > 0;
+    }
+
+    @Override
+    public <T> Optional<T> get(String key, Class<T> asType) {
+        return values.get(key, asType);
+    }
+
+    @Override
+    public <T> Optional<T> get(String key) {
+        return values.get(key);
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        if (IConfigSource.toPath(key).length == 0)
+            return;
+
+        boolean loaded;
+        synchronized (lock) {
+            loaded = log != null;
+        }
+        if (!loaded)
+            reload();
+
+        byte[] record = encode(key, value);
+        Durability durability = WalConfigSource.durability;
+        long size;
+        synchronized (lock) {
+            if (log == null)
+                throw new IllegalStateException(this + " could not open the log.");
+
+            values.putCached(key, value);
+            try {
+                if (durability == Durability.BATCH) {
+                    batch.write(record);
+                    if (++batchCount >= batchSize) {
+                        writeBatch();
+                        log.force(false);
+                    }
+                } else {
+                    write(ByteBuffer.wrap(record));
+                    if (durability == Durability.WRITE)
+                        log.force(false);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to log the change of " + key, ex);
+            }
+            logBytes += record.length;
+            size = logBytes;
+        }
+
+        if (size >= compactBytes)
+            ConfigFlushService.getInstance().markDirty(this, 0L);
+        else if (durability != Durability.WRITE)
+            ConfigFlushService.getInstance().markDirty(this, intervalMillis);
+    }
+
+    @Override
+    public boolean has(String key) {
+        return values.has(key);
+    }
+
+    @Override
+    public Set<String> keys() {
+        return values.keys();
+    }
+
+    @Override
+    public boolean isSection(String key) {
+        return values.isSection(key);
+    }
+
+    /**
+     * Read the json file and replay the logs on it. The changes not synced yet are lost.
+     */
+    @Override
+    public void reload() {
+        ConfigFlushService.getInstance().cancel(this);
+        synchronized (compactLock) {
+            synchronized (lock) {
+                closeLog();
+                batch.reset();
+                batchCount = 0;
+
+                if (!folder.exists())
+                    folder.mkdirs();
+                values.reload();
+
+                long[] generations = logGenerations();
+                try {
+                    for (int i = 0; i < generations.length; i++) {
+                        File file = logFile(generations[i]);
+                        long valid = replay(file);
+                        if (valid < file.length()) {
+                            // cut by a crash while writing the last record
+                            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                                channel.truncate(valid);
+                            }
+                        }
+                    }
+
+                    openLog(generations.length == 0 ? 0L : generations[generations.length - 1]);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the values into the json file and delete the logs up to now. The puts continue in the new log while
+     * the file is written.
+     */
+    public void compact() {
+        synchronized (compactLock) {
+            PersistentMap<String, Object> snapshot;
+            long last;
+            synchronized (lock) {
+                if (log == null)
+                    return;
+
+                try {
+                    writeBatch();
+                    log.force(false);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return;
+                }
+
+                snapshot = values.snapshot();
+                last = generation;
+                closeLog();
+                try {
+                    openLog(last + 1);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return;
+                }
+            }
+
+            // the older logs are replayed on the previous file if this fails, so nothing is lost either way
+            if (!values.saveSnapshot(snapshot))
+                return;
+
+            for (long generation : logGenerations()) {
+                if (generation <= last)
+                    logFile(generation).delete();
+            }
+        }
+    }
+
+    /**
+     * Write and sync the records in the memory, and compact the logs if they are large enough. Usually called
+     * by {@link ConfigFlushService}.
+     */
+    @Override
+    public void flush() {
+        long size;
+        synchronized (lock) {
+            if (log == null)
+                return;
+
+            try {
+                writeBatch();
+                log.force(false);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            size = logBytes;
+        }
+
+        if (size >= compactBytes)
+            compact();
+    }
+
+    @Override
+    public void saveAll() {
+        ConfigFlushService.getInstance().cancel(this);
+        flush();
+    }
+
+    /**
+     * Compact the logs and close the log. The json file alone has all the values afterward.
+     */
+    @Override
+    public void disable() {
+        ConfigFlushService.getInstance().cancel(this);
+        compact();
+        synchronized (lock) {
+            closeLog();
+        }
+    }
+
+    @Override
+    public void delete() {
+        ConfigFlushService.getInstance().cancel(this);
+        synchronized (compactLock) {
+            synchronized (lock) {
+                closeLog();
+                for (long generation : logGenerations())
+                    logFile(generation).delete();
+                values.delete();
+            }
+        }
+    }
+
+    /**
+     * @return size of the current log in bytes.
+     */
+    public long getLogBytes() {
+        synchronized (lock) {
+            return logBytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WalConfigSource{" +
+                "folder=" + folder +
+                ", name=" + name +
+                ", generation=" + generation +
+                '}';
+    }
+}
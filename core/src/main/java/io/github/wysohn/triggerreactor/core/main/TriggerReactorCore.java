@@ -22,6 +22,10 @@ import io.github.wysohn.triggerreactor.core.bridge.IItemStack;
 import io.github.wysohn.triggerreactor.core.bridge.ILocation;
 import io.github.wysohn.triggerreactor.core.bridge.entity.IPlayer;
 import io.github.wysohn.triggerreactor.core.bridge.event.IEvent;
+import io.github.wysohn.triggerreactor.core.config.source.ConfigFlushService;
+import io.github.wysohn.triggerreactor.core.config.source.BinaryConfigSource;
+import io.github.wysohn.triggerreactor.core.config.source.GsonConfigSource;
+import io.github.wysohn.triggerreactor.core.config.source.WalConfigSource;
 import io.github.wysohn.triggerreactor.core.manager.*;
 import io.github.wysohn.triggerreactor.core.manager.location.Area;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleChunkLocation;
@@ -29,6 +33,7 @@ import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.Trigger;
 import io.github.wysohn.triggerreactor.core.manager.trigger.TriggerInfo;
+import io.github.wysohn.triggerreactor.core.manager.trigger.TriggerExecutionService;
 import io.github.wysohn.triggerreactor.core.manager.trigger.area.AbstractAreaTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.area.AreaTrigger;
 import io.github.wysohn.triggerreactor.core.manager.trigger.command.AbstractCommandTriggerManager;
@@ -46,7 +51,9 @@ import io.github.wysohn.triggerreactor.core.script.interpreter.Interpreter;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Interpreter.ProcessInterrupter;
 import io.github.wysohn.triggerreactor.core.script.interpreter.TaskSupervisor;
 import io.github.wysohn.triggerreactor.core.script.wrapper.SelfReference;
+import io.github.wysohn.triggerreactor.tools.ReflectionUtil;
 import io.github.wysohn.triggerreactor.tools.ScriptEditor.SaveHandler;
+import io.github.wysohn.triggerreactor.tools.SyncTaskQueue;
 import io.github.wysohn.triggerreactor.tools.TimeUtil;
 import io.github.wysohn.triggerreactor.tools.stream.SenderOutputStream;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
@@ -55,11 +62,13 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.*;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * The main abstract class of TriggerReactor. Interacting with any platform should extends this class to
@@ -74,6 +83,8 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
     private PluginConfigManager pluginConfigManager;
     private GlobalVariableManager globalVariableManager;
     private boolean debugging = false;
+    private final SyncTaskQueue syncTasks = new SyncTaskQueue();
+    private long syncBudgetNanos = TimeUnit.MILLISECONDS.toNanos(10L);
     protected TriggerReactorCore() {
         instance = this;
     }
@@ -123,12 +134,124 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
     }
 
     public void onCoreEnable() {
+        configDefault("Config.FlushDelayMillis", GsonConfigSource.DEFAULT_FLUSH_DELAY_MILLIS);
+        configDefault("Config.PrettyPrinting", false);
+        configDefault("Config.LazySections", new ArrayList<String>());
+        configDefault("GlobalVariable.Storage", GlobalVariableManager.DEFAULT_STORAGE);
+        configDefault("GlobalVariable.Wal.Durability", WalConfigSource.Durability.INTERVAL.name());
+        configDefault("GlobalVariable.Wal.BatchSize", WalConfigSource.DEFAULT_BATCH_SIZE);
+        configDefault("GlobalVariable.Wal.IntervalMillis", WalConfigSource.DEFAULT_INTERVAL_MILLIS);
+        configDefault("Async.Parallelism", 0);
+        configDefault("Async.QueueSize", TriggerExecutionService.DEFAULT_QUEUE_SIZE);
+        configDefault("Async.Overflow", TriggerExecutionService.Overflow.DROP.name());
+        configDefault("Async.VirtualThreads", false);
+        configDefault("Sync.TickBudgetMillis", 10);
+        configDefault("JavaScript.EvaluateOnce", false);
+        configDefault("JavaScript.Precompile", true);
+        saveConfig();
+
+        Integer flushDelay = getConfig("Config.FlushDelayMillis", GsonConfigSource.DEFAULT_FLUSH_DELAY_MILLIS);
+        Boolean prettyPrinting = getConfig("Config.PrettyPrinting", false);
+        GsonConfigSource.configure(flushDelay == null ? GsonConfigSource.DEFAULT_FLUSH_DELAY_MILLIS : flushDelay,
+                prettyPrinting != null && prettyPrinting);
+        List<?> lazySections = getConfig("Config.LazySections", new ArrayList<String>());
+
+        String storage = getConfig("GlobalVariable.Storage", GlobalVariableManager.DEFAULT_STORAGE);
+        configureWal();
+
         pluginConfigManager = new PluginConfigManager(this);
-        globalVariableManager = new GlobalVariableManager(this);
+        globalVariableManager = new GlobalVariableManager(this, storage, lazySections == null
+                ? Collections.emptyList()
+                : lazySections.stream().map(String::valueOf).collect(Collectors.toList()));
+
+        initExecutionService();
+
+        Integer budget = getConfig("Sync.TickBudgetMillis", 10);
+        if (budget != null && budget >= 0)
+            syncBudgetNanos = TimeUnit.MILLISECONDS.toNanos(budget);
+    }
+
+    /**
+     * Set the 'value' to the 'key' unless it's set already. Call {@link #saveConfig()} once all the defaults are set.
+     *
+     * @param key   the key
+     * @param value the default value
+     */
+    private void configDefault(String key, Object value) {
+        if (!isConfigSet(key))
+            setConfig(key, value);
+    }
+
+    private void configureWal() {
+        WalConfigSource.Durability durability = WalConfigSource.Durability.INTERVAL;
+        String durabilityName = getConfig("GlobalVariable.Wal.Durability", durability.name());
+        if (durabilityName != null) {
+            try {
+                durability = WalConfigSource.Durability.valueOf(durabilityName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                getLogger().warning("GlobalVariable.Wal.Durability must be one of " + Arrays.toString(
+                        WalConfigSource.Durability.values()) + " but was " + durabilityName + ". Using "
+                        + durability + " instead.");
+            }
+        }
+
+        Integer batchSize = getConfig("GlobalVariable.Wal.BatchSize", WalConfigSource.DEFAULT_BATCH_SIZE);
+        Integer interval = getConfig("GlobalVariable.Wal.IntervalMillis", WalConfigSource.DEFAULT_INTERVAL_MILLIS);
+        WalConfigSource.configure(durability,
+                batchSize == null ? WalConfigSource.DEFAULT_BATCH_SIZE : batchSize,
+                interval == null ? WalConfigSource.DEFAULT_INTERVAL_MILLIS : interval);
+    }
+
+    /**
+     * Create the {@link TriggerExecutionService} as set in the config.
+     */
+    private void initExecutionService() {
+        Integer parallelism = getConfig("Async.Parallelism", 0);
+        if (parallelism == null || parallelism < 1)
+            parallelism = TriggerExecutionService.DEFAULT_PARALLELISM;
+
+        Integer queueSize = getConfig("Async.QueueSize", TriggerExecutionService.DEFAULT_QUEUE_SIZE);
+        if (queueSize == null || queueSize < 1)
+            queueSize = TriggerExecutionService.DEFAULT_QUEUE_SIZE;
+
+        TriggerExecutionService.Overflow overflow = TriggerExecutionService.Overflow.DROP;
+        String overflowName = getConfig("Async.Overflow", overflow.name());
+        if (overflowName != null) {
+            try {
+                overflow = TriggerExecutionService.Overflow.valueOf(overflowName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                getLogger().warning("Async.Overflow must be one of " + Arrays.toString(
+                        TriggerExecutionService.Overflow.values()) + " but was " + overflowName + ". Using "
+                        + overflow + " instead.");
+            }
+        }
+
+        Boolean virtualThreads = getConfig("Async.VirtualThreads", false);
+
+        TriggerExecutionService service = TriggerExecutionService.configure(parallelism, queueSize, overflow,
+                virtualThreads != null && virtualThreads);
+        if (virtualThreads != null && virtualThreads && !service.isVirtual())
+            getLogger().warning("Async.VirtualThreads requires Java 21 or later. Using platform threads instead.");
     }
 
     public void onCoreDisable() {
         Manager.getManagers().forEach(Manager::disable);
+
+        syncTasks.close();
+        ConfigFlushService.getInstance().shutdown();
+        ReflectionUtil.clearCache();
+    }
+
+    /**
+     * Create the task which runs the tasks queued by {@link #submitSync(Callable)}. The platform must run it in
+     * the server thread once per tick; until it does, {@link #submitSync(Callable)} falls back to
+     * {@link #callSyncMethod(Callable)}.
+     *
+     * @return the task to be repeated every tick
+     */
+    protected Runnable createSyncDrainTask() {
+        syncTasks.open();
+        return () -> syncTasks.drain(syncBudgetNanos);
     }
 
     protected abstract boolean removeLore(IItemStack iS, int index);
@@ -484,6 +607,13 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
                 }
 
             };
+        } else if (syncTasks.isOpen()) {
+            try {
+                return syncTasks.submit(call);
+            } catch (RejectedExecutionException e) {
+                //closed meanwhile
+                return callSyncMethod(call);
+            }
         } else {
             return callSyncMethod(call);
         }
@@ -491,7 +621,7 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
 
     @Override
     public void submitAsync(Runnable run) {
-        new Thread(run).start();
+        TriggerExecutionService.getInstance().lane("ASYNC").execute(run);
     }
 
     /**
@@ -1650,6 +1780,13 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
 
                         try {
                             Timings.printAll(os);
+                            os.write(("Async " + TriggerExecutionService.getInstance().getMetrics() + "\n")
+                                    .getBytes(StandardCharsets.UTF_8));
+                            os.write(("Sync " + syncTasks + "\n").getBytes(StandardCharsets.UTF_8));
+                            os.write(("Config " + GsonConfigSource.getMetrics() + ", "
+                                    + ConfigFlushService.getInstance() + "\n").getBytes(StandardCharsets.UTF_8));
+                            for (String pending : ConfigFlushService.getInstance().getPendingReport(10))
+                                os.write(("  " + pending + "\n").getBytes(StandardCharsets.UTF_8));
                         } catch (IOException ex) {
                             ex.printStackTrace();
                         }
@@ -1660,6 +1797,52 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
                         sendCommandDesc(sender, "/triggerreactor[trg] timings print xx", "Save analysis to file named xx.timings");
                     }
                     return true;
+                } else if (args.length == 3 && args[0].equalsIgnoreCase("convert")
+                        && (args[1].equalsIgnoreCase("vars") || args[1].equalsIgnoreCase("variables"))) {
+                    if (!args[2].equalsIgnoreCase("binary") && !args[2].equalsIgnoreCase("json")) {
+                        sender.sendMessage("&c" + args[2] + " must be either binary or json.");
+                        return true;
+                    }
+
+                    boolean binary = args[2].equalsIgnoreCase("binary");
+                    String target = binary ? "binary" : GlobalVariableManager.DEFAULT_STORAGE;
+                    String storage = getVariableManager().getStorageType();
+                    // var.json is also the snapshot of wal, and the file of the storage not known
+                    boolean live = binary ? "binary".equals(storage)
+                            : storage == null || "gson".equals(storage) || "wal".equals(storage);
+                    if (live) {
+                        sender.sendMessage("&c" + (binary ? "var.bin" : "var.json") + " is in use by the storage "
+                                + storage + ", so it can't be overwritten.");
+                        return true;
+                    }
+
+                    sender.sendMessage("&7Converting the global variables...");
+                    try {
+                        submitAsync(() -> {
+                            try {
+                                // the values in memory, which may not be in any file yet
+                                Map<String, Object> values = getVariableManager().snapshot();
+                                if (binary)
+                                    BinaryConfigSource.toBinary(values, getDataFolder(), "var");
+                                else
+                                    BinaryConfigSource.toJson(values, getDataFolder(), "var");
+
+                                submitSync(() -> {
+                                    sender.sendMessage("&aConverted! Set GlobalVariable.Storage to " + target
+                                            + " and restart to use it.");
+                                    return null;
+                                });
+                            } catch (IOException | RuntimeException e) {
+                                submitSync(() -> {
+                                    handleException(sender, e);
+                                    return null;
+                                });
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        sender.sendMessage("&cToo many tasks are waiting. Try again later.");
+                    }
+                    return true;
                 } else if (args[0].equalsIgnoreCase("saveall")) {
                     for (Manager manager : Manager.getManagers())
                         manager.saveAll();
@@ -1717,17 +1900,6 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
         void sendParagraph(ICommandSender sender);
     }
 
-    /**
-     * Cached Pool for thread execution.
-     */
-    protected static final ExecutorService CACHED_THREAD_POOL = Executors.newCachedThreadPool(new ThreadFactory() {
-        @Override
-        public Thread newThread(Runnable r) {
-            return new Thread() {{
-                this.setPriority(MIN_PRIORITY);
-            }};
-        }
-    });
     @SuppressWarnings("serial")
     private static final List<Paragraph> HELP_PAGES = new ArrayList<Paragraph>() {{
         add((sender) -> {
@@ -1811,6 +1983,9 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
 
             sender.sendMessage("&b/triggerreactor[trg] saveall &8- &7Save all scripts, variables, and settings.");
 
+            sender.sendMessage("&b/triggerreactor[trg] convert vars <binary|json> &8- &7Export the global variables into var.bin or var.json.");
+            sender.sendMessage("  &7The binary file opens much faster when there are a lot of variables.");
+
             sender.sendMessage("&b/triggerreactor[trg] reload &8- &7Reload all scripts, variables, and settings.");
         }));
         add((sender -> {
@@ -1862,7 +2037,7 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
 
         switch (args.length) {
             case 1:
-                return filter(Arrays.asList("area", "click", "cmd", "command", "custom", "del", "delete", "help", "inventory", "item", "list",
+                return filter(Arrays.asList("area", "click", "cmd", "command", "convert", "custom", "del", "delete", "help", "inventory", "item", "list",
                         "reload", "repeat", "run", "call", "saveall", "search", "sudo", "synccustom", "timings", "variables", "version", "walk"), args[0]);
             case 2:
                 switch (args[0].toLowerCase()) {
@@ -1878,6 +2053,8 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
                     case "custom":
                         //event list
                         return filter(new ArrayList<String>(getInstance().getCustomManager().getAbbreviations()), args[1]);
+                    case "convert":
+                        return filter(Arrays.asList("vars", "variables"), args[1]);
                     case "delete":
                     case "del":
                         return filter(Arrays.asList("cmd", "command", "custom", "vars", "variables"), args[1]);
@@ -1909,6 +2086,8 @@ public abstract class TriggerReactorCore implements TaskSupervisor {
                     case "command":
                     case "cmd":
                         return filter(Arrays.asList("aliases", "permission", "sync", "settab"), args[2]);
+                    case "convert":
+                        return filter(Arrays.asList("binary", "json"), args[2]);
                     case "custom":
                         return filter(triggerNames(getInstance().getCustomManager()), args[2]);
                     case "delete":
@@ -21,6 +21,7 @@ import io.github.wysohn.triggerreactor.core.script.interpreter.Executor;
 import io.github.wysohn.triggerreactor.core.script.validation.ValidationException;
 import io.github.wysohn.triggerreactor.core.script.validation.ValidationResult;
 import io.github.wysohn.triggerreactor.core.script.validation.Validator;
+import io.github.wysohn.triggerreactor.tools.SnapshotMap;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
 import jdk.nashorn.api.scripting.JSObject;
 
@@ -31,7 +32,7 @@ import java.util.Map.Entry;
 import java.util.concurrent.*;
 
 public abstract class AbstractExecutorManager extends AbstractJavascriptBasedManager implements KeyValueManager<Executor> {
-    protected Map<String, Executor> jsExecutors = new HashMap<>();
+    protected SnapshotMap<Executor> jsExecutors = new SnapshotMap<>();
 
     public AbstractExecutorManager(TriggerReactorCore plugin) throws ScriptException {
         super(plugin);
@@ -70,8 +71,9 @@ public abstract class AbstractExecutorManager extends AbstractJavascriptBasedMan
             if (jsExecutors.containsKey(builder.toString())) {
                 plugin.getLogger().warning(builder.toString() + " already registered! Duplicating executors?");
             } else {
-                JSExecutor exec = new JSExecutor(fileName, IScriptEngineInitializer.getNashornEngine(sem), file);
+                JSExecutor exec = new JSExecutor(fileName, getSharedEngine(), file, isEvaluateOnce());
                 jsExecutors.put(builder.toString(), exec);
+                precompile("executor " + builder.toString(), exec::precompile);
             }
         }
     }
@@ -112,20 +114,40 @@ public abstract class AbstractExecutorManager extends AbstractJavascriptBasedMan
         return this.jsExecutors;
     }
 
+    @Override
+    public Map<String, Executor> getSnapshot() {
+        return jsExecutors.snapshot();
+    }
+
     public static class JSExecutor extends Executor {
         private final String executorName;
         private final String sourceCode;
 
         private ScriptEngine engine = null;
-        private CompiledScript compiled = null;
+        private final LazyCompiledScript compiled;
         private boolean firstRun = true;
         private Validator validator = null;
 
+        //not null if the file is evaluated only once
+        private final EvaluatedScript evaluated;
+
         public JSExecutor(String executorName, ScriptEngine engine, File file) throws ScriptException, IOException {
             this(executorName, engine, new FileInputStream(file));
         }
 
+        public JSExecutor(String executorName, ScriptEngine engine, File file, boolean evaluateOnce) throws ScriptException, IOException {
+            this(executorName, engine, new FileInputStream(file), evaluateOnce);
+        }
+
         public JSExecutor(String executorName, ScriptEngine engine, InputStream file) throws ScriptException, IOException {
+            this(executorName, engine, file, false);
+        }
+
+        /**
+         * @param evaluateOnce true to evaluate the file only once and call only the function afterward. The top
+         *                     level of the file will not see the variables, nor will it be run again on each call.
+         */
+        public JSExecutor(String executorName, ScriptEngine engine, InputStream file, boolean evaluateOnce) throws ScriptException, IOException {
             this.executorName = executorName;
             this.engine = engine;
 
@@ -137,8 +159,9 @@ public abstract class AbstractExecutorManager extends AbstractJavascriptBasedMan
             reader.close();
             sourceCode = builder.toString();
 
-            Compilable compiler = (Compilable) engine;
-            compiled = compiler.compile(sourceCode);
+            compiled = new LazyCompiledScript((Compilable) engine, sourceCode);
+
+            evaluated = evaluateOnce ? new EvaluatedScript(executorName, engine, compiled) : null;
         }
 
         private void registerValidationInfo(ScriptContext context) {
@@ -156,13 +179,111 @@ public abstract class AbstractExecutorManager extends AbstractJavascriptBasedMan
             return validator.validate(args);
         }
 
+        /**
+         * Compile the file in the given pool. Without this, the file is compiled when the executor is used for
+         * the first time.
+         *
+         * @param pool the pool where the compilation will run
+         * @return the future which completes when the compilation is done. Completes exceptionally with
+         * ScriptException if the file has syntax error.
+         */
+        public CompletableFuture<?> precompile(ExecutorService pool) {
+            return compiled.compileAsync(pool);
+        }
+
         @Override
         public Integer execute(Timings.Timing timing, boolean sync, Map<String, Object> variables, Object e,
                                Object... args) throws Exception {
             Timings.Timing time = timing.getTiming("Executors").getTiming(executorName);
             time.setDisplayName("#" + executorName);
 
+            Callable<Integer> call = evaluated != null
+                    ? evaluatedCall(time, variables, e, args)
+                    : evaluatingCall(time, variables, e, args);
+
+            if (TriggerReactorCore.getInstance().isServerThread()) {
+                Integer result = null;
+
+                try {
+                    result = call.call();
+                } catch (Exception e1) {
+                    e1.printStackTrace();
+                    throw new Exception("#" + executorName + " encountered error.", e1);
+                }
+                return result;
+            } else {
+                Future<Integer> future = runSyncTaskForFuture(call);
+                if (future == null) {
+                    //probably server is shutting down
+                    if (!TriggerReactorCore.getInstance().isEnabled()) {
+                        return call.call();
+                    } else {
+                        throw new Exception("#" + executorName + " couldn't be finished. The server returned null Future.");
+                    }
+                } else {
+                    Integer result = null;
+                    try {
+                        result = future.get(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException | ExecutionException e1) {
+                        throw new Exception("#" + executorName + " encountered error.", e1);
+                    } catch (TimeoutException e1) {
+                        throw new Exception("#" + executorName + " was stopped. It took longer than 5 seconds to process. Is the server lagging?", e1);
+                    }
+                    return result;
+                }
+            }
+        }
+
+        /**
+         * Call only the function of the file, which is evaluated once on the first call.
+         */
+        private Callable<Integer> evaluatedCall(Timings.Timing time, Map<String, Object> variables, Object e,
+                                                Object[] args) throws Exception {
+            evaluated.evaluate();
+
+            if (firstRun) {
+                validator = evaluated.getValidator();
+                firstRun = false;
+            }
+
+            Integer overload = null;
+            if (validator != null) {
+                ValidationResult result = validator.validate(args);
+                overload = result.getOverload();
+                if (overload == -1) {
+                    throw new ValidationException(result.getError());
+                }
+            }
+
+            if (evaluated.getFunction() == null)
+                throw new Exception(executorName + ".js does not have 'function " + executorName + "()'.");
+
+            final Integer finalOverload = overload;
+            return new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    Object result = null;
+
+                    Timings.Timing t = time.begin(true);
+                    try {
+                        result = evaluated.call(e, variables, finalOverload, args);
+                    } finally {
+                        t.close();
+                    }
 
+                    if (result instanceof Integer)
+                        return (Integer) result;
+
+                    return null;
+                }
+            };
+        }
+
+        /**
+         * Evaluate the whole file with the variables, then call the function.
+         */
+        private Callable<Integer> evaluatingCall(Timings.Timing time, Map<String, Object> variables, Object e,
+                                                 Object[] args) throws Exception {
             final Bindings bindings = engine.createBindings();
 
             bindings.put("event", e);
@@ -172,10 +293,11 @@ public abstract class AbstractExecutorManager extends AbstractJavascriptBasedMan
                 bindings.put(key, value);
             }
 
+            CompiledScript compiledScript = compiled.get();
             ScriptContext scriptContext = new SimpleScriptContext();
             try {
                 scriptContext.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
-                compiled.eval(scriptContext);
+                compiledScript.eval(scriptContext);
             } catch (ScriptException e2) {
                 e2.printStackTrace();
             }
@@ -198,14 +320,17 @@ public abstract class AbstractExecutorManager extends AbstractJavascriptBasedMan
             if (jsObject == null)
                 throw new Exception(executorName + ".js does not have 'function " + executorName + "()'.");
 
-            Callable<Integer> call = new Callable<Integer>() {
+            return new Callable<Integer>() {
                 @Override
                 public Integer call() throws Exception {
                     Object argObj = args;
                     Object result = null;
 
-                    try (Timings.Timing t = time.begin(true)) {
+                    Timings.Timing t = time.begin(true);
+                    try {
                         result = jsObject.call(null, argObj);
+                    } finally {
+                        t.close();
                     }
 
                     if (result instanceof Integer)
@@ -214,38 +339,6 @@ public abstract class AbstractExecutorManager extends AbstractJavascriptBasedMan
                     return null;
                 }
             };
-
-            if (TriggerReactorCore.getInstance().isServerThread()) {
-                Integer result = null;
-
-                try {
-                    result = call.call();
-                } catch (Exception e1) {
-                    e1.printStackTrace();
-                    throw new Exception("#" + executorName + " encountered error.", e1);
-                }
-                return result;
-            } else {
-                Future<Integer> future = runSyncTaskForFuture(call);
-                if (future == null) {
-                    //probably server is shutting down
-                    if (!TriggerReactorCore.getInstance().isEnabled()) {
-                        return call.call();
-                    } else {
-                        throw new Exception("#" + executorName + " couldn't be finished. The server returned null Future.");
-                    }
-                } else {
-                    Integer result = null;
-                    try {
-                        result = future.get(5, TimeUnit.SECONDS);
-                    } catch (InterruptedException | ExecutionException e1) {
-                        throw new Exception("#" + executorName + " encountered error.", e1);
-                    } catch (TimeoutException e1) {
-                        throw new Exception("#" + executorName + " was stopped. It took longer than 5 seconds to process. Is the server lagging?", e1);
-                    }
-                    return result;
-                }
-            }
         }
     }
 
@@ -19,9 +19,12 @@ package io.github.wysohn.triggerreactor.core.manager;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.trigger.share.api.AbstractAPISupport;
 
+import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -30,6 +33,8 @@ public abstract class AbstractJavascriptBasedManager extends Manager implements
     protected static final ScriptEngineManager sem = new ScriptEngineManager(null);
     public static AbstractJavascriptBasedManager instance;
 
+    private static ScriptEngine sharedEngine = null;
+
     @Override
     public void initScriptEngine(ScriptEngineManager sem) throws ScriptException {
         IScriptEngineInitializer.super.initScriptEngine(sem);
@@ -82,4 +87,58 @@ public abstract class AbstractJavascriptBasedManager extends Manager implements
         initScriptEngine(sem);
     }
 
+    /**
+     * Get the engine shared by all the javascript files. Every file is still evaluated in its own bindings, so
+     * the files can't see each other; sharing only avoids creating a new engine for each file.
+     *
+     * @return the shared engine
+     */
+    protected static synchronized ScriptEngine getSharedEngine() {
+        if (sharedEngine == null)
+            sharedEngine = IScriptEngineInitializer.getNashornEngine(sem);
+        return sharedEngine;
+    }
+
+    /**
+     * Check if the javascript files should be evaluated only once when loaded, so only the functions are called
+     * afterward. This is much faster, yet the top level of the files will not see the variables of the triggers.
+     *
+     * @return true if evaluate only once; false if evaluate the whole file on every call.
+     */
+    protected boolean isEvaluateOnce() {
+        Boolean evaluateOnce = plugin.getConfig("JavaScript.EvaluateOnce", false);
+        return evaluateOnce != null && evaluateOnce;
+    }
+
+    /**
+     * Check if the javascript files should be compiled in parallel in the background right after they are loaded.
+     * Otherwise, each file is compiled when it's used for the first time.
+     *
+     * @return true if compile in the background; false if compile on first use.
+     */
+    protected boolean isPrecompile() {
+        Boolean precompile = plugin.getConfig("JavaScript.Precompile", true);
+        return precompile == null || precompile;
+    }
+
+    /**
+     * Compile the file in the background if {@link #isPrecompile()} is true. Failure of the compilation is
+     * reported as a warning.
+     *
+     * @param name     name of the file to be shown in the warning
+     * @param compiler function which starts the compilation in the given pool
+     */
+    protected void precompile(String name, Function<ForkJoinPool, CompletableFuture<?>> compiler) {
+        if (!isPrecompile())
+            return;
+
+        compiler.apply(ForkJoinPool.commonPool()).whenComplete((result, throwable) -> {
+            if (throwable == null)
+                return;
+
+            Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+            plugin.getLogger().warning("Could not compile " + name + ": " + cause.getMessage());
+        });
+    }
+
 }
\ No newline at end of file
@@ -21,6 +21,7 @@ import io.github.wysohn.triggerreactor.core.script.interpreter.Placeholder;
 import io.github.wysohn.triggerreactor.core.script.validation.ValidationException;
 import io.github.wysohn.triggerreactor.core.script.validation.ValidationResult;
 import io.github.wysohn.triggerreactor.core.script.validation.Validator;
+import io.github.wysohn.triggerreactor.tools.SnapshotMap;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
 import jdk.nashorn.api.scripting.JSObject;
 
@@ -31,7 +32,7 @@ import java.util.Map.Entry;
 import java.util.concurrent.*;
 
 public abstract class AbstractPlaceholderManager extends AbstractJavascriptBasedManager implements KeyValueManager<Placeholder> {
-    protected Map<String, Placeholder> jsPlaceholders = new HashMap<>();
+    protected SnapshotMap<Placeholder> jsPlaceholders = new SnapshotMap<>();
 
     public AbstractPlaceholderManager(TriggerReactorCore plugin) throws ScriptException {
         super(plugin);
@@ -44,8 +45,9 @@ public abstract class AbstractPlaceholderManager extends AbstractJavascriptBased
         if (jsPlaceholders.containsKey(fileName)) {
             plugin.getLogger().warning(fileName + " already registered! Duplicating placerholders?");
         } else {
-            JSPlaceholder placeholder = new JSPlaceholder(fileName, IScriptEngineInitializer.getNashornEngine(sem), file);
+            JSPlaceholder placeholder = new JSPlaceholder(fileName, getSharedEngine(), file, isEvaluateOnce());
             jsPlaceholders.put(fileName, placeholder);
+            precompile("placeholder " + fileName, placeholder::precompile);
         }
     }
 
@@ -73,19 +75,31 @@ public abstract class AbstractPlaceholderManager extends AbstractJavascriptBased
         return jsPlaceholders;
     }
 
+    @Override
+    public Map<String, Placeholder> getSnapshot() {
+        return jsPlaceholders.snapshot();
+    }
+
     public static class JSPlaceholder extends Placeholder {
         private final String placeholderName;
         private final String sourceCode;
 
         private ScriptEngine engine = null;
-        private CompiledScript compiled = null;
+        private final LazyCompiledScript compiled;
         private boolean firstRun = true;
         private Validator validator = null;
 
+        //not null if the file is evaluated only once
+        private final EvaluatedScript evaluated;
+
         public JSPlaceholder(String placeholderName, ScriptEngine engine, File file) throws ScriptException, IOException {
             this(placeholderName, engine, new FileInputStream(file));
         }
 
+        public JSPlaceholder(String placeholderName, ScriptEngine engine, File file, boolean evaluateOnce) throws ScriptException, IOException {
+            this(placeholderName, engine, new FileInputStream(file), evaluateOnce);
+        }
+
         private void registerValidationInfo(ScriptContext context) {
             JSObject validation = (JSObject) context.getAttribute("validation");
             if (validation == null) {
@@ -95,6 +109,14 @@ public abstract class AbstractPlaceholderManager extends AbstractJavascriptBased
         }
 
         public JSPlaceholder(String placeholderName, ScriptEngine engine, InputStream file) throws ScriptException, IOException {
+            this(placeholderName, engine, file, false);
+        }
+
+        /**
+         * @param evaluateOnce true to evaluate the file only once and call only the function afterward. The top
+         *                     level of the file will not see the variables, nor will it be run again on each call.
+         */
+        public JSPlaceholder(String placeholderName, ScriptEngine engine, InputStream file, boolean evaluateOnce) throws ScriptException, IOException {
             this.placeholderName = placeholderName;
             this.engine = engine;
 
@@ -106,8 +128,9 @@ public abstract class AbstractPlaceholderManager extends AbstractJavascriptBased
             reader.close();
             sourceCode = builder.toString();
 
-            Compilable compiler = (Compilable) engine;
-            compiled = compiler.compile(sourceCode);
+            compiled = new LazyCompiledScript((Compilable) engine, sourceCode);
+
+            evaluated = evaluateOnce ? new EvaluatedScript(placeholderName, engine, compiled) : null;
         }
 
         public ValidationResult validate(Object... args) {
@@ -117,12 +140,108 @@ public abstract class AbstractPlaceholderManager extends AbstractJavascriptBased
             return validator.validate(args);
         }
 
+        /**
+         * Compile the file in the given pool. Without this, the file is compiled when the placeholder is used for
+         * the first time.
+         *
+         * @param pool the pool where the compilation will run
+         * @return the future which completes when the compilation is done. Completes exceptionally with
+         * ScriptException if the file has syntax error.
+         */
+        public CompletableFuture<?> precompile(ExecutorService pool) {
+            return compiled.compileAsync(pool);
+        }
+
         @Override
         public Object parse(Timings.Timing timing, Object context, Map<String, Object> variables,
                             Object... args) throws Exception {
             Timings.Timing time = timing.getTiming("Executors").getTiming(placeholderName);
             time.setDisplayName("$" + placeholderName);
 
+            Callable<Object> call = evaluated != null
+                    ? evaluatedCall(time, context, variables, args)
+                    : evaluatingCall(time, context, variables, args);
+
+            if (TriggerReactorCore.getInstance().isServerThread()) {
+                Object result = null;
+                try {
+                    result = call.call();
+                } catch (Exception e1) {
+                    e1.printStackTrace();
+                    throw new Exception("$" + placeholderName + " encountered error.", e1);
+                }
+                return result;
+            } else {
+                Future<Object> future = runSyncTaskForFuture(call);
+
+                if (future == null) {
+                    //probably server is shutting down
+                    if (!TriggerReactorCore.getInstance().isEnabled()) {
+                        return call.call();
+                    } else {
+                        throw new Exception("$" + placeholderName + " couldn't be finished. The server returned null Future.");
+                    }
+                } else {
+                    Object result = null;
+                    try {
+                        result = future.get(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException | ExecutionException e1) {
+                        throw new Exception("$" + placeholderName + " encountered error.", e1);
+                    } catch (TimeoutException e1) {
+                        throw new Exception("$" + placeholderName + " was stopped. It took longer than 5 seconds to process. Is the server lagging?", e1);
+                    }
+                    return result;
+                }
+            }
+        }
+
+        /**
+         * Call only the function of the file, which is evaluated once on the first call.
+         */
+        private Callable<Object> evaluatedCall(Timings.Timing time, Object context, Map<String, Object> variables,
+                                               Object[] args) throws Exception {
+            evaluated.evaluate();
+
+            if (firstRun) {
+                validator = evaluated.getValidator();
+                firstRun = false;
+            }
+
+            Integer overload = null;
+            if (validator != null) {
+                ValidationResult result = validator.validate(args);
+                overload = result.getOverload();
+                if (overload == -1) {
+                    throw new ValidationException(result.getError());
+                }
+            }
+
+            if (evaluated.getFunction() == null)
+                throw new Exception(placeholderName + ".js does not have 'function " + placeholderName + "()'.");
+
+            final Integer finalOverload = overload;
+            return new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    Object result = null;
+
+                    Timings.Timing t = time.begin(true);
+                    try {
+                        result = evaluated.call(context, variables, finalOverload, args);
+                    } finally {
+                        t.close();
+                    }
+
+                    return result;
+                }
+            };
+        }
+
+        /**
+         * Evaluate the whole file with the variables, then call the function.
+         */
+        private Callable<Object> evaluatingCall(Timings.Timing time, Object context, Map<String, Object> variables,
+                                                Object[] args) throws Exception {
             final Bindings bindings = engine.createBindings();
 
             bindings.put("event", context);
@@ -132,10 +251,11 @@ public abstract class AbstractPlaceholderManager extends AbstractJavascriptBased
                 bindings.put(key, value);
             }
 
+            CompiledScript compiledScript = compiled.get();
             ScriptContext scriptContext = new SimpleScriptContext();
             try {
                 scriptContext.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
-                compiled.eval(scriptContext);
+                compiledScript.eval(scriptContext);
             } catch (ScriptException e2) {
                 e2.printStackTrace();
             }
@@ -158,51 +278,22 @@ public abstract class AbstractPlaceholderManager extends AbstractJavascriptBased
             if (jsObject == null)
                 throw new Exception(placeholderName + ".js does not have 'function " + placeholderName + "()'.");
 
-            Callable<Object> call = new Callable<Object>() {
+            return new Callable<Object>() {
                 @Override
                 public Object call() throws Exception {
                     Object argObj = args;
                     Object result = null;
 
-                    try (Timings.Timing t = time.begin(true)) {
+                    Timings.Timing t = time.begin(true);
+                    try {
                         result = jsObject.call(null, argObj);
+                    } finally {
+                        t.close();
                     }
 
                     return result;
                 }
             };
-
-            if (TriggerReactorCore.getInstance().isServerThread()) {
-                Object result = null;
-                try {
-                    result = call.call();
-                } catch (Exception e1) {
-                    e1.printStackTrace();
-                    throw new Exception("$" + placeholderName + " encountered error.", e1);
-                }
-                return result;
-            } else {
-                Future<Object> future = runSyncTaskForFuture(call);
-
-                if (future == null) {
-                    //probably server is shutting down
-                    if (!TriggerReactorCore.getInstance().isEnabled()) {
-                        return call.call();
-                    } else {
-                        throw new Exception("$" + placeholderName + " couldn't be finished. The server returned null Future.");
-                    }
-                } else {
-                    Object result = null;
-                    try {
-                        result = future.get(5, TimeUnit.SECONDS);
-                    } catch (InterruptedException | ExecutionException e1) {
-                        throw new Exception("$" + placeholderName + " encountered error.", e1);
-                    } catch (TimeoutException e1) {
-                        throw new Exception("$" + placeholderName + " was stopped. It took longer than 5 seconds to process. Is the server lagging?", e1);
-                    }
-                    return result;
-                }
-            }
         }
     }
 }
@@ -19,13 +19,15 @@ package io.github.wysohn.triggerreactor.core.manager;
 import io.github.wysohn.triggerreactor.core.bridge.event.IPlayerBlockLocationEvent;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
+import io.github.wysohn.triggerreactor.core.manager.trigger.area.AbstractAreaTriggerManager;
+import io.github.wysohn.triggerreactor.core.manager.trigger.location.AbstractLocationBasedTriggerManager;
 
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractPlayerLocationManager extends Manager {
-    private transient Map<UUID, SimpleLocation> locations = new ConcurrentHashMap<>();
+    private transient Map<UUID, BlockPosition> locations = new ConcurrentHashMap<>();
 
     public AbstractPlayerLocationManager(TriggerReactorCore plugin) {
         super(plugin);
@@ -51,6 +53,52 @@ public abstract class AbstractPlayerLocationManager extends Manager {
         }
     }
 
+    /**
+     * Check the movement of the player before anything is created for the event. Most of the movements stay in
+     * the same block, and most of the blocks are in the chunks without any Walk Trigger or Area Trigger, so
+     * these movements are handled here without the event.
+     * <p>
+     * This doesn't allocate anything unless the event has to be fired.
+     *
+     * @param uuid       the player's uuid
+     * @param world      the world name of the new location
+     * @param x          the block x of the new location
+     * @param y          the block y of the new location
+     * @param z          the block z of the new location
+     * @param alwaysFire true if someone else may listen to the event, so it has to be fired for every block
+     *                   change regardless of the triggers.
+     * @return the previous block location if the player moved to another block, and the event has to be fired.
+     * null if the movement is already handled here.
+     */
+    protected SimpleLocation filterMove(UUID uuid, String world, int x, int y, int z, boolean alwaysFire) {
+        BlockPosition position = locations.get(uuid);
+        if (position == null) {
+            locations.put(uuid, new BlockPosition(world, x, y, z));
+            return null;
+        }
+
+        if (position.isAt(world, x, y, z))
+            return null;
+
+        if (alwaysFire
+                || hasTriggerInChunk(position.world, position.x >> 4, position.z >> 4)
+                || hasTriggerInChunk(world, x >> 4, z >> 4))
+            return position.toSimpleLocation();
+
+        position.set(world, x, y, z);
+        return null;
+    }
+
+    private boolean hasTriggerInChunk(String world, int i, int j) {
+        //not ready yet, so assume there is one
+        AbstractLocationBasedTriggerManager<?> walkManager = plugin.getWalkManager();
+        AbstractAreaTriggerManager areaManager = plugin.getAreaManager();
+        if (walkManager == null || areaManager == null)
+            return true;
+
+        return walkManager.hasTriggerInChunk(world, i, j) || areaManager.hasAreaInChunk(world, i, j);
+    }
+
     /**
      * get location of player
      *
@@ -58,7 +106,8 @@ public abstract class AbstractPlayerLocationManager extends Manager {
      * @return the location. If the player just logged in, it might be null.
      */
     public SimpleLocation getCurrentBlockLocation(UUID uuid) {
-        return locations.get(uuid);
+        BlockPosition position = locations.get(uuid);
+        return position == null ? null : position.toSimpleLocation();
     }
 
     /**
@@ -68,7 +117,7 @@ public abstract class AbstractPlayerLocationManager extends Manager {
      * @param sloc the location where player is at
      */
     protected void setCurrentBlockLocation(UUID uuid, SimpleLocation sloc) {
-        locations.put(uuid, sloc);
+        locations.put(uuid, new BlockPosition(sloc));
     }
 
     /**
@@ -79,4 +128,47 @@ public abstract class AbstractPlayerLocationManager extends Manager {
     protected void removeCurrentBlockLocation(UUID uuid) {
         locations.remove(uuid);
     }
-}
\ No newline at end of file
+
+    /**
+     * Block position of a player, which is updated in place while the player walks around the blocks without
+     * any trigger. The SimpleLocation is made only when someone asks for it, and is kept until the player moves
+     * again, since the one given to the event may still be used by the triggers.
+     * <p>
+     * Only the server thread changes the position, so it reads the fields without the lock, but the other threads,
+     * such as the async triggers, only see the SimpleLocation made while holding the lock.
+     */
+    private static final class BlockPosition {
+        private String world;
+        private int x, y, z;
+        private SimpleLocation location;
+
+        private BlockPosition(String world, int x, int y, int z) {
+            set(world, x, y, z);
+        }
+
+        private BlockPosition(SimpleLocation sloc) {
+            set(sloc.getWorld(), sloc.getX(), sloc.getY(), sloc.getZ());
+            this.location = sloc;
+        }
+
+        private boolean isAt(String world, int x, int y, int z) {
+            return this.x == x && this.y == y && this.z == z
+                    && (this.world == null ? world == null : this.world.equals(world));
+        }
+
+        private synchronized void set(String world, int x, int y, int z) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.location = null;
+        }
+
+        private synchronized SimpleLocation toSimpleLocation() {
+            SimpleLocation location = this.location;
+            if (location == null)
+                this.location = location = new SimpleLocation(world, x, y, z);
+            return location;
+        }
+    }
+}
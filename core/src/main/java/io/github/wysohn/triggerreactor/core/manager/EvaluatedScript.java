@@ -0,0 +1,156 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.manager;
+
+import io.github.wysohn.triggerreactor.core.script.validation.Validator;
+import jdk.nashorn.api.scripting.JSObject;
+
+import javax.script.*;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A javascript file which is evaluated only once. After the evaluation, the function which has the same name as the
+ * file is kept and called directly, so the whole file doesn't have to be evaluated again for every call.
+ * <p>
+ * Because the top level of the file is evaluated only once, the variables of the trigger are not visible there.
+ * Instead, the names not defined in the file are looked up in the variables of the call in progress in the current
+ * thread, so 'event', the variables, and 'overload' are seen by the function without changing the global scope of
+ * the file. The names defined at the top level of the file hide the variables of the same name, and the names not
+ * found anywhere are undefined.
+ */
+class EvaluatedScript {
+    //redirects the names not found in the global scope of the file to the variables of the current call
+    private static final String LOOKUP_INSTALLER = "(function(global, lookup, missing) {"
+            + "    var fallback = global.__noSuchProperty__;"
+            + "    Object.defineProperty(global, '__noSuchProperty__', {value: function(name) {"
+            + "        var value = lookup(name);"
+            + "        return value === missing ? fallback.call(this, name) : value;"
+            + "    }});"
+            + "})";
+    //returned by the lookup if the name is not a variable of the call
+    private static final Object MISSING = new Object();
+
+    private final String functionName;
+    private final ScriptEngine engine;
+    private final LazyCompiledScript compiled;
+    private final ThreadLocal<Call> currentCall = new ThreadLocal<>();
+
+    private volatile ScriptContext scriptContext = null;
+    private volatile JSObject function = null;
+    private volatile Validator validator = null;
+
+    EvaluatedScript(String functionName, ScriptEngine engine, LazyCompiledScript compiled) {
+        this.functionName = functionName;
+        this.engine = engine;
+        this.compiled = compiled;
+    }
+
+    /**
+     * Evaluate the file if it wasn't evaluated yet. Does nothing otherwise. The file is compiled first if it
+     * wasn't compiled yet.
+     *
+     * @throws ScriptException if the file couldn't be compiled or evaluated.
+     */
+    synchronized void evaluate() throws ScriptException {
+        if (scriptContext != null)
+            return;
+
+        Bindings bindings = engine.createBindings();
+        ScriptContext scriptContext = new SimpleScriptContext();
+        scriptContext.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        compiled.get().eval(scriptContext);
+
+        JSObject installer = (JSObject) engine.eval(LOOKUP_INSTALLER, scriptContext);
+        installer.call(null, bindings, (Function<String, Object>) this::lookup, MISSING);
+
+        JSObject validation = (JSObject) scriptContext.getAttribute("validation");
+        if (validation != null)
+            this.validator = Validator.from(validation);
+        this.function = (JSObject) scriptContext.getAttribute(functionName);
+
+        this.scriptContext = scriptContext;
+    }
+
+    /**
+     * @return the validator defined in the file, or null if the file has no 'validation' or is not evaluated yet.
+     */
+    Validator getValidator() {
+        return validator;
+    }
+
+    /**
+     * @return the function of the same name as the file, or null if there is no such function or the file is not
+     * evaluated yet.
+     */
+    JSObject getFunction() {
+        return function;
+    }
+
+    /**
+     * Call the cached function. {@link #evaluate()} must be called before. The calls in the different threads
+     * don't wait for each other.
+     *
+     * @param event     the value of 'event'
+     * @param variables the variables of the trigger
+     * @param overload  the value of 'overload'. null if the file has no validation.
+     * @param args      the arguments passed to the function
+     * @return the value returned by the function
+     */
+    Object call(Object event, Map<String, Object> variables, Integer overload, Object[] args) {
+        Call previous = currentCall.get();
+        currentCall.set(new Call(event, variables, overload));
+        try {
+            Object argObj = args;
+            return function.call(null, argObj);
+        } finally {
+            if (previous == null)
+                currentCall.remove();
+            else
+                currentCall.set(previous);
+        }
+    }
+
+    private Object lookup(String name) {
+        Call call = currentCall.get();
+        return call == null ? MISSING : call.get(name);
+    }
+
+    private static final class Call {
+        private final Object event;
+        private final Map<String, Object> variables;
+        private final Integer overload;
+
+        private Call(Object event, Map<String, Object> variables, Integer overload) {
+            this.event = event;
+            this.variables = variables;
+            this.overload = overload;
+        }
+
+        private Object get(String name) {
+            if ("event".equals(name))
+                return event;
+            if (overload != null && "overload".equals(name))
+                return overload;
+
+            Object value = variables.get(name);
+            if (value != null || variables.containsKey(name))
+                return value;
+            return MISSING;
+        }
+    }
+}
@@ -20,25 +20,120 @@ import io.github.wysohn.triggerreactor.core.config.IMigratable;
 import io.github.wysohn.triggerreactor.core.config.IMigrationHelper;
 import io.github.wysohn.triggerreactor.core.config.source.ConfigSourceFactory;
 import io.github.wysohn.triggerreactor.core.config.source.DelegatedConfigSource;
+import io.github.wysohn.triggerreactor.core.config.source.GsonConfigSource;
 import io.github.wysohn.triggerreactor.core.config.source.IConfigSource;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.script.interpreter.TemporaryGlobalVariableKey;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 public final class GlobalVariableManager extends Manager implements IMigratable {
+    public static final String DEFAULT_STORAGE = "gson";
+
     private final IConfigSource configSource;
+    //null if not known
+    private final String storageType;
 
     public GlobalVariableManager(TriggerReactorCore plugin) {
-        this(plugin, ConfigSourceFactory.instance().create(plugin.getDataFolder(), "var"));
+        this(plugin, ConfigSourceFactory.instance().create(plugin.getDataFolder(), "var"), DEFAULT_STORAGE);
+    }
+
+    /**
+     * @param storageType the type of the config source registered in {@link ConfigSourceFactory}, such as 'gson'
+     *                    or 'sharded'. If the storage is empty, the variables in var.json are copied into it.
+     */
+    public GlobalVariableManager(TriggerReactorCore plugin, String storageType) {
+        this(plugin, storageType, Collections.emptyList());
+    }
+
+    /**
+     * @param storageType  the type of the config source registered in {@link ConfigSourceFactory}, such as 'gson'
+     *                     or 'sharded'. If the storage is empty, the variables in var.json are copied into it.
+     * @param lazySections paths of the sections decoded only when they are used, like 'player.*'. Only 'gson'
+     *                     storage supports it. See {@link GsonConfigSource#setLazySections(Collection)}
+     */
+    public GlobalVariableManager(TriggerReactorCore plugin, String storageType, Collection<String> lazySections) {
+        super(plugin);
+
+        IConfigSource configSource = null;
+        if (storageType != null && !DEFAULT_STORAGE.equals(storageType)) {
+            try {
+                configSource = ConfigSourceFactory.instance().create(storageType, plugin.getDataFolder(), "var");
+                copyFromJson(plugin, configSource, storageType);
+            } catch (RuntimeException ex) {
+                plugin.getLogger().warning(storageType + " cannot be used for the global variables. Using "
+                        + DEFAULT_STORAGE + " instead. (" + ex.getMessage() + ")");
+                configSource = null;
+            }
+        }
+
+        if (configSource == null) {
+            configSource = ConfigSourceFactory.instance().create(plugin.getDataFolder(), "var");
+            storageType = DEFAULT_STORAGE;
+        }
+        if (configSource instanceof GsonConfigSource)
+            ((GsonConfigSource) configSource).setLazySections(lazySections);
+        this.configSource = configSource;
+        this.storageType = storageType;
     }
 
     public GlobalVariableManager(TriggerReactorCore plugin, IConfigSource configSource) {
+        this(plugin, configSource, null);
+    }
+
+    private GlobalVariableManager(TriggerReactorCore plugin, IConfigSource configSource, String storageType) {
         super(plugin);
         this.configSource = configSource;
+        this.storageType = storageType;
+    }
+
+    private static void copyFromJson(TriggerReactorCore plugin, IConfigSource configSource, String storageType) {
+        if (!configSource.fileExists() && new File(plugin.getDataFolder(), "var.json").exists()) {
+            plugin.getLogger().info("Copying global variables from var.json into " + storageType + "...");
+            IConfigSource previous = ConfigSourceFactory.instance().create(plugin.getDataFolder(), "var");
+            previous.reload();
+            for (String key : previous.keys()) {
+                copyValue(configSource, key, previous.get(key).orElse(null));
+            }
+            configSource.saveAll();
+        }
+    }
+
+    private static void copyValue(IConfigSource target, String key, Object value) {
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copyValue(target, key + "." + entry.getKey(), entry.getValue());
+            }
+        } else {
+            target.put(key, value);
+        }
+    }
+
+    /**
+     * @return the type of the config source in use, such as 'gson' or 'binary'. null if it's not known.
+     */
+    public String getStorageType() {
+        return storageType;
+    }
+
+    /**
+     * Read all the variables from the config source in use, including the ones not written to the file yet.
+     * The shards not loaded yet, if any, are read from their files, so call it off the server thread.
+     *
+     * @return the variables. The sections are the maps.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> values = new HashMap<>();
+        for (String key : configSource.keys()) {
+            configSource.get(key).ifPresent(value -> values.put(key, value));
+        }
+        return values;
     }
 
     @Override
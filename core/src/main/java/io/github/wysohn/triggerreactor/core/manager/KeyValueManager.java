@@ -35,4 +35,12 @@ public interface KeyValueManager<V> {
      */
     Map<String, V> getBackedMap();
 
+    /**
+     * Get read only, case insensitive copy of the map associated with this manager. The same instance is
+     * returned until the next modification, so it can be shared by every Interpreter without copying.
+     *
+     * @return
+     */
+    Map<String, V> getSnapshot();
+
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.manager;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+import java.util.concurrent.*;
+
+/**
+ * Source code of a javascript file which is compiled only when it's needed for the first time, or in the background
+ * by {@link #compileAsync(Executor)}. If the compilation is already in progress by another thread, the caller waits
+ * for it instead of compiling it again.
+ */
+class LazyCompiledScript {
+    private final FutureTask<CompiledScript> task;
+
+    LazyCompiledScript(Compilable compiler, String sourceCode) {
+        this.task = new FutureTask<>(() -> compiler.compile(sourceCode));
+    }
+
+    /**
+     * @return true if compilation is finished, whether it was successful or not.
+     */
+    boolean isDone() {
+        return task.isDone();
+    }
+
+    /**
+     * Get the compiled script. The source code is compiled in the current thread if it wasn't compiled yet.
+     *
+     * @return the compiled script
+     * @throws ScriptException if the source code couldn't be compiled
+     */
+    CompiledScript get() throws ScriptException {
+        //does nothing if already compiled or being compiled by other thread
+        task.run();
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScriptException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ScriptException)
+                throw (ScriptException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Compile the source code using the given pool.
+     *
+     * @param pool the pool where the compilation will run
+     * @return the future which completes when the compilation is done, or completes exceptionally with the
+     * ScriptException if the source code couldn't be compiled.
+     */
+    CompletableFuture<CompiledScript> compileAsync(Executor pool) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return get();
+            } catch (ScriptException e) {
+                throw new CompletionException(e);
+            }
+        }, pool);
+    }
+}
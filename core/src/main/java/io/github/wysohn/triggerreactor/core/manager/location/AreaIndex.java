@@ -0,0 +1,360 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.manager.location;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Spatial index of the Areas. Each world has its own R-trees, one for each size class of the areas, which are
+ * packed with the Sort-Tile-Recursive algorithm from all the areas of the world. Lookups take logarithmic time and
+ * don't allocate, and adding or removing an area costs the same no matter how many chunks it covers.
+ * <p>
+ * The trees are immutable and replaced as a whole when the areas of the world change, so the lookups can be done
+ * from any thread without lock. The changes are expected to be rare compared to the lookups.
+ *
+ * @param <V> the value associated with each area
+ */
+public class AreaIndex<V> {
+    //maximum number of children of a node
+    static final int NODE_CAPACITY = 16;
+
+    //the source of the trees. Modified only while holding the lock of this index.
+    private final Map<String, Map<Area, V>> areasByWorld = new HashMap<>();
+    private volatile Map<String, Tree<V>> trees = Collections.emptyMap();
+
+    /**
+     * Add the area, or replace the value if the same area exists.
+     *
+     * @return the previous value of the area, or null if there wasn't.
+     */
+    public synchronized V put(Area area, V value) {
+        String world = area.getSmallest().getWorld();
+        V previous = areasByWorld.computeIfAbsent(world, key -> new LinkedHashMap<>()).put(area, value);
+        rebuild(world);
+        return previous;
+    }
+
+    /**
+     * @return the value of the removed area, or null if the area didn't exist.
+     */
+    public synchronized V remove(Area area) {
+        String world = area.getSmallest().getWorld();
+        Map<Area, V> areas = areasByWorld.get(world);
+        if (areas == null || !areas.containsKey(area))
+            return null;
+
+        V previous = areas.remove(area);
+        if (areas.isEmpty())
+            areasByWorld.remove(world);
+        rebuild(world);
+        return previous;
+    }
+
+    /**
+     * Replace all the areas at once. This builds each tree only once, unlike calling {@link #put(Area, Object)}
+     * for each area.
+     */
+    public synchronized void reset(Map<Area, V> areas) {
+        areasByWorld.clear();
+        areas.forEach((area, value) -> areasByWorld
+                .computeIfAbsent(area.getSmallest().getWorld(), key -> new LinkedHashMap<>())
+                .put(area, value));
+
+        Map<String, Tree<V>> rebuilt = new HashMap<>();
+        areasByWorld.forEach((world, worldAreas) -> rebuilt.put(world, new Tree<>(worldAreas)));
+        trees = rebuilt;
+    }
+
+    public synchronized void clear() {
+        areasByWorld.clear();
+        trees = Collections.emptyMap();
+    }
+
+    private void rebuild(String world) {
+        Map<String, Tree<V>> rebuilt = new HashMap<>(trees);
+        Map<Area, V> areas = areasByWorld.get(world);
+        if (areas == null)
+            rebuilt.remove(world);
+        else
+            rebuilt.put(world, new Tree<>(areas));
+        trees = rebuilt;
+    }
+
+    /**
+     * @return number of the areas in every world.
+     */
+    public int size() {
+        int size = 0;
+        for (Tree<V> tree : trees.values())
+            size += tree.areas.length;
+        return size;
+    }
+
+    /**
+     * Visit every area containing the location.
+     *
+     * @param sloc     the location
+     * @param consumer called with each area and its value
+     */
+    public void forEachAt(SimpleLocation sloc, BiConsumer<Area, V> consumer) {
+        Tree<V> tree = trees.get(sloc.getWorld());
+        if (tree != null)
+            tree.forEachAt(sloc.getX(), sloc.getY(), sloc.getZ(), consumer);
+    }
+
+    /**
+     * Visit every area overlapping the given area, including the area itself if it's in this index.
+     *
+     * @param area     the area
+     * @param consumer called with each area and its value
+     */
+    public void forEachOverlapping(Area area, BiConsumer<Area, V> consumer) {
+        Tree<V> tree = trees.get(area.getSmallest().getWorld());
+        if (tree != null)
+            tree.forEachOverlapping(bounds(area), consumer);
+    }
+
+    /**
+     * @return the list of the areas containing the location. Empty if none.
+     */
+    public List<Map.Entry<Area, V>> getAreasAt(SimpleLocation sloc) {
+        List<Map.Entry<Area, V>> list = new ArrayList<>();
+        forEachAt(sloc, (area, value) -> list.add(new AbstractMap.SimpleImmutableEntry<>(area, value)));
+        return list;
+    }
+
+    private static int[] bounds(Area area) {
+        SimpleLocation smallest = area.getSmallest();
+        SimpleLocation largest = area.getLargest();
+        return new int[]{
+                Math.min(smallest.getX(), largest.getX()),
+                Math.min(smallest.getY(), largest.getY()),
+                Math.min(smallest.getZ(), largest.getZ()),
+                Math.max(smallest.getX(), largest.getX()),
+                Math.max(smallest.getY(), largest.getY()),
+                Math.max(smallest.getZ(), largest.getZ())};
+    }
+
+    private static final int MIN_X = 0, MIN_Y = 1, MIN_Z = 2, MAX_X = 3, MAX_Y = 4, MAX_Z = 5;
+
+    private static boolean contains(int[] b, int x, int y, int z) {
+        return b[MIN_X] <= x && x <= b[MAX_X]
+                && b[MIN_Y] <= y && y <= b[MAX_Y]
+                && b[MIN_Z] <= z && z <= b[MAX_Z];
+    }
+
+    private static boolean overlaps(int[] a, int[] b) {
+        return a[MIN_X] <= b[MAX_X] && b[MIN_X] <= a[MAX_X]
+                && a[MIN_Y] <= b[MAX_Y] && b[MIN_Y] <= a[MAX_Y]
+                && a[MIN_Z] <= b[MAX_Z] && b[MIN_Z] <= a[MAX_Z];
+    }
+
+    private static final class Tree<V> {
+        //in the order of the leaves, so each leaf covers a range of them
+        private final Area[] areas;
+        private final V[] values;
+        private final int[][] bounds;
+        //one tree for each size class
+        private final Node[] roots;
+
+        @SuppressWarnings("unchecked")
+        private Tree(Map<Area, V> source) {
+            int size = source.size();
+            Area[] sourceAreas = new Area[size];
+            Object[] sourceValues = new Object[size];
+            int[][] sourceBounds = new int[size][];
+
+            // a few huge areas packed with the small ones would make every node huge, so the areas of
+            // similar size are packed into their own tree.
+            Map<Integer, List<Integer>> classes = new TreeMap<>();
+            int i = 0;
+            for (Map.Entry<Area, V> entry : source.entrySet()) {
+                sourceAreas[i] = entry.getKey();
+                sourceValues[i] = entry.getValue();
+                sourceBounds[i] = bounds(entry.getKey());
+                classes.computeIfAbsent(sizeClass(sourceBounds[i]), key -> new ArrayList<>()).add(i);
+                i++;
+            }
+
+            this.areas = new Area[size];
+            this.values = (V[]) new Object[size];
+            this.bounds = new int[size][];
+            this.roots = new Node[classes.size()];
+
+            int offset = 0;
+            int r = 0;
+            for (List<Integer> members : classes.values()) {
+                Integer[] order = members.toArray(new Integer[0]);
+                roots[r++] = pack(order, offset, sourceBounds);
+
+                for (int j = 0; j < order.length; j++) {
+                    areas[offset + j] = sourceAreas[order[j]];
+                    values[offset + j] = (V) sourceValues[order[j]];
+                    bounds[offset + j] = sourceBounds[order[j]];
+                }
+                offset += order.length;
+            }
+        }
+
+        /**
+         * @return log4 of the longest side, so each class is 4 times larger than the previous one.
+         */
+        private static int sizeClass(int[] bounds) {
+            int longest = Math.max(bounds[MAX_X] - bounds[MIN_X],
+                    Math.max(bounds[MAX_Y] - bounds[MIN_Y], bounds[MAX_Z] - bounds[MIN_Z]));
+            return (32 - Integer.numberOfLeadingZeros(longest)) / 2;
+        }
+
+        /**
+         * Pack the areas into the leaves, and then the nodes into the parents until only one is left.
+         *
+         * @param order  the indexes of the areas. Sorted into the order of the leaves.
+         * @param offset where the areas will be placed in the arrays of this tree
+         * @return the root
+         */
+        private static Node pack(Integer[] order, int offset, int[][] sourceBounds) {
+            List<Node> level = new ArrayList<>();
+            for (int[] range : tile(order, index -> sourceBounds[index]))
+                level.add(Node.leaf(range[0], range[1], offset, sourceBounds, order));
+
+            while (level.size() > 1) {
+                List<Node> nodes = level;
+                Integer[] nodeOrder = new Integer[nodes.size()];
+                for (int j = 0; j < nodeOrder.length; j++)
+                    nodeOrder[j] = j;
+
+                List<Node> parents = new ArrayList<>();
+                for (int[] range : tile(nodeOrder, index -> nodes.get(index).bounds)) {
+                    Node[] children = new Node[range[1] - range[0]];
+                    for (int j = 0; j < children.length; j++)
+                        children[j] = nodes.get(nodeOrder[range[0] + j]);
+                    parents.add(Node.branch(children));
+                }
+                level = parents;
+            }
+            return level.get(0);
+        }
+
+        /**
+         * Sort the items in place into the Sort-Tile-Recursive order, so every NODE_CAPACITY items in a row are
+         * close to each other.
+         *
+         * @return [start, end) of each group of the items
+         */
+        private static List<int[]> tile(Integer[] items, java.util.function.IntFunction<int[]> boundsOf) {
+            int count = items.length;
+            int groups = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            int slices = (int) Math.ceil(Math.sqrt(groups));
+            int sliceSize = slices * NODE_CAPACITY;
+
+            Arrays.sort(items, Comparator.comparingLong(index -> centerTwice(boundsOf.apply(index), MIN_X, MAX_X)));
+            List<int[]> ranges = new ArrayList<>();
+            for (int start = 0; start < count; start += sliceSize) {
+                int end = Math.min(start + sliceSize, count);
+                Arrays.sort(items, start, end,
+                        Comparator.comparingLong(index -> centerTwice(boundsOf.apply(index), MIN_Z, MAX_Z)));
+
+                for (int groupStart = start; groupStart < end; groupStart += NODE_CAPACITY)
+                    ranges.add(new int[]{groupStart, Math.min(groupStart + NODE_CAPACITY, end)});
+            }
+            return ranges;
+        }
+
+        private static long centerTwice(int[] bounds, int min, int max) {
+            return (long) bounds[min] + bounds[max];
+        }
+
+        private void forEachAt(int x, int y, int z, BiConsumer<Area, V> consumer) {
+            for (Node root : roots)
+                root.forEachAt(this, x, y, z, consumer);
+        }
+
+        private void forEachOverlapping(int[] query, BiConsumer<Area, V> consumer) {
+            for (Node root : roots)
+                root.forEachOverlapping(this, query, consumer);
+        }
+    }
+
+    private static final class Node {
+        private final int[] bounds;
+        //null if leaf
+        private final Node[] children;
+        //range of the areas if leaf
+        private final int start, end;
+
+        private Node(int[] bounds, Node[] children, int start, int end) {
+            this.bounds = bounds;
+            this.children = children;
+            this.start = start;
+            this.end = end;
+        }
+
+        private static Node leaf(int start, int end, int offset, int[][] sourceBounds, Integer[] order) {
+            int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                    Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            for (int i = start; i < end; i++)
+                include(bounds, sourceBounds[order[i]]);
+            return new Node(bounds, null, offset + start, offset + end);
+        }
+
+        private static Node branch(Node[] children) {
+            int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                    Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            for (Node child : children)
+                include(bounds, child.bounds);
+            return new Node(bounds, children, 0, 0);
+        }
+
+        private static void include(int[] bounds, int[] other) {
+            for (int i = MIN_X; i <= MIN_Z; i++)
+                bounds[i] = Math.min(bounds[i], other[i]);
+            for (int i = MAX_X; i <= MAX_Z; i++)
+                bounds[i] = Math.max(bounds[i], other[i]);
+        }
+
+        private <V> void forEachAt(Tree<V> tree, int x, int y, int z, BiConsumer<Area, V> consumer) {
+            if (!contains(bounds, x, y, z))
+                return;
+
+            if (children == null) {
+                for (int i = start; i < end; i++) {
+                    if (contains(tree.bounds[i], x, y, z))
+                        consumer.accept(tree.areas[i], tree.values[i]);
+                }
+            } else {
+                for (Node child : children)
+                    child.forEachAt(tree, x, y, z, consumer);
+            }
+        }
+
+        private <V> void forEachOverlapping(Tree<V> tree, int[] query, BiConsumer<Area, V> consumer) {
+            if (!overlaps(bounds, query))
+                return;
+
+            if (children == null) {
+                for (int i = start; i < end; i++) {
+                    if (overlaps(tree.bounds[i], query))
+                        consumer.accept(tree.areas[i], tree.values[i]);
+                }
+            } else {
+                for (Node child : children)
+                    child.forEachOverlapping(tree, query, consumer);
+            }
+        }
+    }
+}
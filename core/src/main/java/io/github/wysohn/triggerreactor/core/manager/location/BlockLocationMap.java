@@ -0,0 +1,140 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.manager.location;
+
+import io.github.wysohn.triggerreactor.tools.LongKeyMap;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Map of the block locations. Each world has its own {@link LongKeyMap}, keyed by the packed coordinates from
+ * {@link LocationKeys}, so looking up a location doesn't allocate anything nor compare the world names.
+ * <p>
+ * The maps are copied on write and never modified once published, so reading doesn't need any lock. Writes
+ * are expected to be rare, such as when a trigger is created or removed.
+ *
+ * @param <T>
+ */
+public class BlockLocationMap<T> {
+    //index is the world id
+    private volatile LongKeyMap<T>[] worlds = newArray(0);
+
+    private static <T> LongKeyMap<T>[] newArray(int length) {
+        // generic arrays can't be created, but the array never leaves this class
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        LongKeyMap<T>[] array = new LongKeyMap[length];
+        return array;
+    }
+
+    private LongKeyMap<T> mapOf(String world) {
+        LongKeyMap<T>[] worlds = this.worlds;
+        int id = LocationKeys.worldId(world);
+        return id < worlds.length ? worlds[id] : null;
+    }
+
+    public T get(SimpleLocation sloc) {
+        return get(sloc.getWorld(), sloc.getX(), sloc.getY(), sloc.getZ());
+    }
+
+    public T get(String world, int x, int y, int z) {
+        LongKeyMap<T> map = mapOf(world);
+        return map == null ? null : map.get(LocationKeys.block(x, y, z));
+    }
+
+    public boolean containsKey(SimpleLocation sloc) {
+        return get(sloc) != null;
+    }
+
+    /**
+     * @param value the value. Can't be null.
+     * @return the previous value, or null if there was none.
+     */
+    public synchronized T put(SimpleLocation sloc, T value) {
+        LongKeyMap<T> previous = mapOf(sloc.getWorld());
+        LongKeyMap<T> map = previous == null ? new LongKeyMap<>() : new LongKeyMap<>(previous);
+        T result = map.put(LocationKeys.block(sloc), value);
+        publish(sloc.getWorld(), map);
+        return result;
+    }
+
+    public synchronized T remove(SimpleLocation sloc) {
+        LongKeyMap<T> previous = mapOf(sloc.getWorld());
+        if (previous == null || !previous.containsKey(LocationKeys.block(sloc)))
+            return null;
+
+        LongKeyMap<T> map = new LongKeyMap<>(previous);
+        T result = map.remove(LocationKeys.block(sloc));
+        publish(sloc.getWorld(), map.isEmpty() ? null : map);
+        return result;
+    }
+
+    private void publish(String world, LongKeyMap<T> map) {
+        int id = LocationKeys.worldId(world);
+        LongKeyMap<T>[] worlds = Arrays.copyOf(this.worlds, Math.max(this.worlds.length, id + 1));
+        worlds[id] = map;
+        this.worlds = worlds;
+    }
+
+    /**
+     * Replace all the entries at once.
+     *
+     * @param source the new entries
+     */
+    public synchronized void reset(Map<SimpleLocation, ? extends T> source) {
+        LongKeyMap<T>[] worlds = newArray(0);
+        for (Map.Entry<SimpleLocation, ? extends T> entry : source.entrySet()) {
+            int id = LocationKeys.worldId(entry.getKey().getWorld());
+            if (id >= worlds.length)
+                worlds = Arrays.copyOf(worlds, id + 1);
+            if (worlds[id] == null)
+                worlds[id] = new LongKeyMap<>();
+
+            worlds[id].put(LocationKeys.block(entry.getKey()), entry.getValue());
+        }
+        this.worlds = worlds;
+    }
+
+    public synchronized void clear() {
+        this.worlds = newArray(0);
+    }
+
+    public int size() {
+        int size = 0;
+        for (LongKeyMap<T> map : worlds) {
+            if (map != null)
+                size += map.size();
+        }
+        return size;
+    }
+
+    /**
+     * Visit all the entries. A new SimpleLocation is created for each entry.
+     */
+    public void forEach(BiConsumer<SimpleLocation, ? super T> consumer) {
+        LongKeyMap<T>[] worlds = this.worlds;
+        for (int id = 0; id < worlds.length; id++) {
+            if (worlds[id] == null)
+                continue;
+
+            String world = LocationKeys.worldName(id);
+            worlds[id].forEach((key, value) -> consumer.accept(new SimpleLocation(world,
+                    LocationKeys.blockX(key), LocationKeys.blockY(key), LocationKeys.blockZ(key)), value));
+        }
+    }
+}
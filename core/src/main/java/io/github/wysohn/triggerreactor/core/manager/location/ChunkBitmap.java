@@ -0,0 +1,170 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.manager.location;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Set of chunks for each world, kept as bits. The chunks are grouped into regions of 64x64 chunks, and each
+ * region is an array of 64 longs, so even a huge area costs only a few bits for each chunk.
+ * <p>
+ * This is immutable, and testing a chunk doesn't allocate anything, so it can be used on every movement of the
+ * players. Use {@link Builder} to make one.
+ */
+public final class ChunkBitmap {
+    public static final ChunkBitmap EMPTY = new Builder().build();
+
+    private static final int REGION_SHIFT = 6;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final int WORDS = (1 << (REGION_SHIFT * 2)) / Long.SIZE;
+
+    private final Map<String, Regions> worlds;
+
+    private ChunkBitmap(Map<String, Regions> worlds) {
+        this.worlds = worlds;
+    }
+
+    /**
+     * @param world the world name
+     * @param i     x axis chunk coordinate
+     * @param j     z axis chunk coordinate
+     * @return true if the chunk is in this set
+     */
+    public boolean contains(String world, int i, int j) {
+        Regions regions = worlds.get(world);
+        return regions != null && regions.contains(i, j);
+    }
+
+    public boolean isEmpty() {
+        return worlds.isEmpty();
+    }
+
+    private static int bit(int i, int j) {
+        return ((i & REGION_MASK) << REGION_SHIFT) | (j & REGION_MASK);
+    }
+
+    private static int hash(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Open addressing table of the regions of a world.
+     */
+    private static final class Regions {
+        private final long[] keys;
+        private final long[][] bits;
+        private final int mask;
+
+        private Regions(Map<Long, long[]> source) {
+            int capacity = Integer.highestOneBit(Math.max(1, source.size()) * 2 - 1) << 1;
+            this.keys = new long[capacity];
+            this.bits = new long[capacity][];
+            this.mask = capacity - 1;
+
+            for (Map.Entry<Long, long[]> entry : source.entrySet()) {
+                int slot = hash(entry.getKey()) & mask;
+                while (bits[slot] != null)
+                    slot = (slot + 1) & mask;
+
+                keys[slot] = entry.getKey();
+                bits[slot] = entry.getValue();
+            }
+        }
+
+        private boolean contains(int i, int j) {
+            long key = LocationKeys.chunk(i >> REGION_SHIFT, j >> REGION_SHIFT);
+            for (int slot = hash(key) & mask; bits[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    int bit = bit(i, j);
+                    return (bits[slot][bit >>> 6] & (1L << bit)) != 0;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static final class Builder {
+        private final Map<String, Map<Long, long[]>> worlds = new HashMap<>();
+
+        /**
+         * Add the chunk.
+         *
+         * @param world the world name
+         * @param i     x axis chunk coordinate
+         * @param j     z axis chunk coordinate
+         * @return this
+         */
+        public Builder add(String world, int i, int j) {
+            return add(world, i, j, i, j);
+        }
+
+        /**
+         * Add the chunk where the location is in.
+         */
+        public Builder add(SimpleLocation sloc) {
+            return add(sloc.getWorld(), sloc.getX() >> 4, sloc.getZ() >> 4);
+        }
+
+        /**
+         * Add all the chunks that the area covers.
+         */
+        public Builder add(Area area) {
+            SimpleLocation smallest = area.getSmallest();
+            SimpleLocation largest = area.getLargest();
+            return add(smallest.getWorld(),
+                    Math.min(smallest.getX(), largest.getX()) >> 4,
+                    Math.min(smallest.getZ(), largest.getZ()) >> 4,
+                    Math.max(smallest.getX(), largest.getX()) >> 4,
+                    Math.max(smallest.getZ(), largest.getZ()) >> 4);
+        }
+
+        /**
+         * Add all the chunks in the rectangle. Both corners are inclusive.
+         */
+        public Builder add(String world, int minI, int minJ, int maxI, int maxJ) {
+            Map<Long, long[]> regions = worlds.computeIfAbsent(world, key -> new HashMap<>());
+
+            //fill region by region so each region is looked up only once
+            for (int regionI = minI >> REGION_SHIFT; regionI <= maxI >> REGION_SHIFT; regionI++) {
+                int fromI = Math.max(minI, regionI << REGION_SHIFT);
+                int toI = Math.min(maxI, (regionI << REGION_SHIFT) | REGION_MASK);
+
+                for (int regionJ = minJ >> REGION_SHIFT; regionJ <= maxJ >> REGION_SHIFT; regionJ++) {
+                    int fromJ = Math.max(minJ, regionJ << REGION_SHIFT);
+                    int toJ = Math.min(maxJ, (regionJ << REGION_SHIFT) | REGION_MASK);
+
+                    long[] bits = regions.computeIfAbsent(LocationKeys.chunk(regionI, regionJ), key -> new long[WORDS]);
+                    for (int i = fromI; i <= toI; i++) {
+                        for (int j = fromJ; j <= toJ; j++) {
+                            int bit = bit(i, j);
+                            bits[bit >>> 6] |= 1L << bit;
+                        }
+                    }
+                }
+            }
+            return this;
+        }
+
+        public ChunkBitmap build() {
+            Map<String, Regions> built = new HashMap<>();
+            worlds.forEach((world, regions) -> built.put(world, new Regions(regions)));
+            return new ChunkBitmap(built);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.manager.location;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Primitive forms of the locations, so they can be used as keys without allocating any object.
+ * <p>
+ * The world names are interned into small integer ids, which never change while the server is running. The
+ * block coordinates are packed into a long with 26 bits for x and z, and 12 bits for y, which covers every
+ * block inside the world border.
+ */
+public final class LocationKeys {
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    private static final int X_SHIFT = XZ_BITS + Y_BITS;
+    private static final int Z_SHIFT = Y_BITS;
+
+    private static final Map<String, Integer> worldIds = new ConcurrentHashMap<>();
+    //index is the id. The names are usually the same instances the server gives, so == finds them most of the time.
+    private static volatile String[] worldNames = new String[0];
+
+    private LocationKeys() {
+    }
+
+    /**
+     * Get the id of the world, assigning a new one if the world is seen for the first time.
+     *
+     * @param world the world name
+     * @return the id, starting from 0.
+     */
+    public static int worldId(String world) {
+        String[] names = worldNames;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == world)
+                return i;
+        }
+
+        Integer id = worldIds.get(world);
+        if (id != null)
+            return id;
+
+        synchronized (worldIds) {
+            id = worldIds.get(world);
+            if (id == null) {
+                id = worldNames.length;
+                worldIds.put(world, id);
+                String[] grown = Arrays.copyOf(worldNames, id + 1);
+                grown[id] = world;
+                worldNames = grown;
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @param id the id given by {@link #worldId(String)}
+     * @return the world name
+     */
+    public static String worldName(int id) {
+        return worldNames[id];
+    }
+
+    public static long block(int x, int y, int z) {
+        return ((x & XZ_MASK) << X_SHIFT) | ((z & XZ_MASK) << Z_SHIFT) | (y & Y_MASK);
+    }
+
+    public static long block(SimpleLocation sloc) {
+        return block(sloc.getX(), sloc.getY(), sloc.getZ());
+    }
+
+    public static int blockX(long key) {
+        return (int) (key >> X_SHIFT);
+    }
+
+    public static int blockY(long key) {
+        return (int) (key << (Long.SIZE - Y_BITS) >> (Long.SIZE - Y_BITS));
+    }
+
+    public static int blockZ(long key) {
+        return (int) (key << (Long.SIZE - X_SHIFT) >> (Long.SIZE - XZ_BITS));
+    }
+
+    public static long chunk(int i, int j) {
+        return ((long) i << 32) | (j & 0xFFFFFFFFL);
+    }
+
+    public static int chunkI(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int chunkJ(long key) {
+        return (int) key;
+    }
+}
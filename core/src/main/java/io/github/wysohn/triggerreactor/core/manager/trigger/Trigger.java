@@ -2,10 +2,14 @@ package io.github.wysohn.triggerreactor.core.manager.trigger;
 
 import io.github.wysohn.triggerreactor.core.bridge.entity.IPlayer;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
+import io.github.wysohn.triggerreactor.core.manager.KeyValueManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager.TriggerInitFailedException;
+import io.github.wysohn.triggerreactor.core.script.compiler.CompiledScript;
+import io.github.wysohn.triggerreactor.core.script.compiler.Compiler;
+import io.github.wysohn.triggerreactor.core.script.interpreter.CompiledInterpreter;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Executor;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Interpreter;
-import io.github.wysohn.triggerreactor.core.script.interpreter.InterpreterException;
+import io.github.wysohn.triggerreactor.core.script.interpreter.LocalVariables;
 import io.github.wysohn.triggerreactor.core.script.interpreter.Placeholder;
 import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
 import io.github.wysohn.triggerreactor.core.script.lexer.LexerException;
@@ -22,6 +26,9 @@ import io.github.wysohn.triggerreactor.tools.timings.Timings;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -35,8 +42,9 @@ public abstract class Trigger implements Cloneable, IObservable {
 
     protected String script;
     protected Node root;
-    protected Map<String, Executor> executorMap;
-    protected Map<String, Placeholder> placeholderMap;
+    protected CompiledScript compiledScript;
+    protected KeyValueManager<Executor> executorManager;
+    protected KeyValueManager<Placeholder> placeholderManager;
     protected Map<Object, Object> gvarMap;
 
     private boolean sync = false;
@@ -97,11 +105,14 @@ public abstract class Trigger implements Cloneable, IObservable {
             Parser parser = new Parser(lexer);
 
             root = parser.parse(true);
-            List<Warning> warnings = parser.getWarnings();
+            Compiler compiler = new Compiler(root);
+            compiledScript = compiler.compile();
+            List<Warning> warnings = new ArrayList<>(parser.getWarnings());
+            warnings.addAll(compiler.getWarnings());
 
             AbstractTriggerManager.reportWarnings(warnings, this);
-            executorMap = TriggerReactorCore.getInstance().getExecutorManager().getBackedMap();
-            placeholderMap = TriggerReactorCore.getInstance().getPlaceholderManager().getBackedMap();
+            executorManager = TriggerReactorCore.getInstance().getExecutorManager();
+            placeholderManager = TriggerReactorCore.getInstance().getPlaceholderManager();
             gvarMap = TriggerReactorCore.getInstance().getVariableManager().getGlobalVariableAdapter();
         } catch (Exception ex) {
             throw new TriggerInitFailedException("Failed to initialize Trigger [" + this.getClass().getSimpleName()
@@ -162,12 +173,14 @@ public abstract class Trigger implements Cloneable, IObservable {
         }
 
         scriptVars.put("event", e);
-        scriptVars.putAll(TriggerReactorCore.getInstance().getSharedVars());
+        // shared and custom variables are read through instead of being copied into scriptVars
         Map<String, Object> customVars = TriggerReactorCore.getInstance().getCustomVarsForTrigger(e);
-        if (customVars != null)
-            scriptVars.putAll(customVars);
+        Map<String, ?> sharedVars = TriggerReactorCore.getInstance().getSharedVars();
+        LocalVariables localVars = new LocalVariables(compiledScript, scriptVars, customVars == null
+                ? Collections.singletonList(sharedVars)
+                : Arrays.asList(customVars, sharedVars));
 
-        Interpreter interpreter = initInterpreter(scriptVars);
+        Interpreter interpreter = initInterpreter(localVars);
 
         startInterpretation(e, scriptVars, interpreter, isSync());
         return true;
@@ -194,14 +207,16 @@ public abstract class Trigger implements Cloneable, IObservable {
     /**
      * Create interpreter with appropriate options and variables.
      *
-     * @param scriptVars
+     * @param scriptVars the local variables. Usually {@link LocalVariables} on top of the variables given to
+     *                   {@link #activate(Object, Map)}.
      * @return
      */
     protected Interpreter initInterpreter(Map<String, Object> scriptVars) {
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = compiledScript != null ? new CompiledInterpreter(compiledScript) : new Interpreter(root);
         interpreter.setTaskSupervisor(TriggerReactorCore.getInstance());
-        interpreter.setExecutorMap(executorMap);
-        interpreter.setPlaceholderMap(placeholderMap);
+        // snapshots are shared until the next reload, so nothing is copied here
+        interpreter.setExecutorMap(executorManager.getSnapshot());
+        interpreter.setPlaceholderMap(placeholderManager.getSnapshot());
         interpreter.setGvars(gvarMap);
         interpreter.setVars(scriptVars);
         interpreter.setSelfReference(TriggerReactorCore.getInstance().getSelfReference());
@@ -244,7 +259,7 @@ public abstract class Trigger implements Cloneable, IObservable {
 
                 }
             } else {
-                Future<Void> future = TriggerReactorCore.getInstance().callSyncMethod(call);
+                Future<Void> future = TriggerReactorCore.getInstance().submitSync(call);
                 try {
                     future.get(3, TimeUnit.SECONDS);
                 } catch (InterruptedException | ExecutionException e1) {
@@ -256,7 +271,17 @@ public abstract class Trigger implements Cloneable, IObservable {
                 }
             }
         } else {
-            ASYNC_POOL.submit(call);
+            try {
+                getLane().execute(() -> {
+                    try {
+                        call.call();
+                    } catch (Exception ignored) {
+                        //already handled in call()
+                    }
+                });
+            } catch (RejectedExecutionException ignored) {
+                //counted and logged by TriggerExecutionService
+            }
         }
     }
 
@@ -271,14 +296,34 @@ public abstract class Trigger implements Cloneable, IObservable {
      */
     protected void start(Timings.Timing timing, Object e, Map<String, Object> scriptVars, Interpreter interpreter,
                          boolean sync) {
-        try {
-            interpreter.startWithContextAndInterrupter(e,
-                    TriggerReactorCore.getInstance().createInterrupter(e, interpreter, cooldowns),
-                    timing);
-        } catch (InterpreterException ex) {
-            TriggerReactorCore.getInstance().handleException(e,
-                    new Exception("Could not finish interpretation for [" + info + "]!", ex));
-        }
+        interpret(timing, e, interpreter,
+                TriggerReactorCore.getInstance().createInterrupter(e, interpreter, cooldowns), sync)
+                .whenComplete((nothing, ex) -> {
+                    if (ex != null)
+                        TriggerReactorCore.getInstance().handleException(e,
+                                new Exception("Could not finish interpretation for [" + info + "]!", ex));
+                });
+    }
+
+    /**
+     * Run the interpreter. Async Triggers give the thread back to the pool while #WAIT is pending, so the
+     * returned future may complete after this method returns.
+     *
+     * @param timing      the timing of this Trigger
+     * @param e           the Event associated with this Trigger
+     * @param interpreter the Interpreter
+     * @param interrupter the interrupter to be used
+     * @param sync        true to block the current thread on #WAIT
+     * @return the future which completes when the interpretation is over
+     */
+    protected CompletableFuture<Void> interpret(Timings.Timing timing, Object e, Interpreter interpreter,
+                                                Interpreter.ProcessInterrupter interrupter, boolean sync) {
+        return interpreter.startSuspendable(e, interrupter, timing, sync ? null : getLane().admitted())
+                .whenComplete((nothing, ex) -> {
+                    // the caller may read the variables after the Trigger (ex. #CALL or repeating trigger)
+                    if (interpreter.getVars() instanceof LocalVariables)
+                        ((LocalVariables) interpreter.getVars()).writeBack();
+                });
     }
 
     /**
@@ -301,5 +346,10 @@ public abstract class Trigger implements Cloneable, IObservable {
         return "[" + getClass().getSimpleName() + "=" + info + " sync=" + sync + "]";
     }
 
-    private static final ExecutorService ASYNC_POOL = Executors.newCachedThreadPool();
+    /**
+     * @return the queue where this Trigger runs if async. Each type of Trigger has its own queue.
+     */
+    protected TriggerExecutionService.Lane getLane() {
+        return TriggerExecutionService.getInstance().lane(getClass().getSimpleName());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,560 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.manager.trigger;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * The threads where the async Triggers and the ASYNC blocks run. There is a fixed number of worker threads, and
+ * each kind of work (usually the type of the Trigger) has its own bounded queue, called lane. The workers take
+ * the tasks from the lanes in turn, so a burst of one kind of Trigger can't starve the others.
+ * <p>
+ * When a lane is full, what happens to the new task depends on the {@link Overflow} policy. While a worker is
+ * blocked, for example by #WAIT of the interpreters which can't suspend, a spare worker takes its place.
+ */
+public class TriggerExecutionService {
+    public static final int DEFAULT_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    //number of latencies remembered to calculate the percentiles
+    private static final int LATENCY_SAMPLES = 1024;
+    //the spare workers which can run at the same time, while the workers are blocked
+    public static final int MAX_SPARE_WORKERS = 256;
+
+    //how often each lane may warn about the discarded tasks
+    private static final long WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10L);
+
+    private static final Logger LOGGER = Logger.getLogger(TriggerExecutionService.class.getName());
+    private static final ThreadLocal<TriggerExecutionService> WORKER_OF = new ThreadLocal<>();
+
+    private static TriggerExecutionService instance;
+
+    /**
+     * Get the service used by the Triggers. The service with the default settings is created if
+     * {@link #configure(int, int, Overflow, boolean)} was never called.
+     *
+     * @return the service
+     */
+    public static synchronized TriggerExecutionService getInstance() {
+        if (instance == null)
+            instance = new TriggerExecutionService(DEFAULT_PARALLELISM, DEFAULT_QUEUE_SIZE, Overflow.DROP, false);
+        return instance;
+    }
+
+    /**
+     * Replace the service used by the Triggers. The previous service finishes the tasks already queued.
+     *
+     * @param parallelism    number of the worker threads
+     * @param queueSize      capacity of each lane
+     * @param overflow       what to do when a lane is full
+     * @param virtualThreads true to use virtual threads as workers. Ignored if the JVM doesn't support them.
+     * @return the new service
+     */
+    public static synchronized TriggerExecutionService configure(int parallelism, int queueSize, Overflow overflow,
+                                                                 boolean virtualThreads) {
+        TriggerExecutionService previous = instance;
+        instance = new TriggerExecutionService(parallelism, queueSize, overflow, virtualThreads);
+        if (previous != null)
+            previous.shutdown();
+        return instance;
+    }
+
+    public enum Overflow {
+        /**
+         * Discard the new task.
+         */
+        DROP,
+        /**
+         * Run the new task in the thread which submitted it. This slows down the producer instead of losing the
+         * task.
+         */
+        CALLER_RUNS,
+        /**
+         * Discard the oldest new task waiting in the lane, so a burst collapses into its latest tasks. The tasks
+         * continuing the work already accepted, like the interpretations resumed after #WAIT, are kept.
+         */
+        COALESCE
+    }
+
+    private final int parallelism;
+    private final int queueSize;
+    private final Overflow overflow;
+    private final boolean virtual;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    //lanes with waiting tasks. A lane is in here at most once.
+    private final BlockingQueue<Lane> ready = new LinkedBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final ThreadFactory factory;
+    private final AtomicInteger spares = new AtomicInteger();
+    private volatile boolean shutdown = false;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private final AtomicLong latencyCount = new AtomicLong();
+
+    public TriggerExecutionService(int parallelism, int queueSize, Overflow overflow, boolean virtualThreads) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be at least 1 but was " + parallelism);
+        if (queueSize < 1)
+            throw new IllegalArgumentException("Queue size must be at least 1 but was " + queueSize);
+
+        this.parallelism = parallelism;
+        this.queueSize = queueSize;
+        this.overflow = overflow;
+
+        ThreadFactory factory = virtualThreads ? virtualThreadFactory() : null;
+        this.virtual = factory != null;
+        if (factory == null) {
+            AtomicInteger count = new AtomicInteger();
+            factory = runnable -> {
+                Thread thread = new Thread(runnable, "TriggerReactor Worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            };
+        }
+
+        this.factory = factory;
+
+        for (int i = 0; i < parallelism; i++) {
+            Thread worker = factory.newThread(() -> work(new AtomicBoolean()));
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Thread.ofVirtual() is available only on Java 21 or later, so it's called reflectively.
+     *
+     * @return the factory, or null if not supported.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "TriggerReactor Worker-", 1L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the executor which queues the tasks in the lane of given name. The lane is created on first use.
+     *
+     * @param name name of the lane. Usually the type of the Trigger.
+     * @return the lane
+     */
+    public Lane lane(String name) {
+        return lanes.computeIfAbsent(name, Lane::new);
+    }
+
+    /**
+     * Call before blocking the current thread, such as waiting for #WAIT or a SYNC block. If the current thread is
+     * a worker, a spare worker takes the tasks of the lanes until the returned task is run, so the blocked
+     * workers can't stall the lanes. At most {@link #MAX_SPARE_WORKERS} spare workers run at the same time; once
+     * there are that many, the worker is just blocked.
+     *
+     * @return the task to run when the current thread is no longer blocked.
+     */
+    public static Runnable beginBlocking() {
+        TriggerExecutionService service = WORKER_OF.get();
+        if (service == null || service.shutdown)
+            return () -> {
+            };
+
+        int current;
+        do {
+            current = service.spares.get();
+            if (current >= MAX_SPARE_WORKERS)
+                return () -> {
+                };
+        } while (!service.spares.compareAndSet(current, current + 1));
+
+        AtomicBoolean released = new AtomicBoolean();
+        Thread spare = service.factory.newThread(() -> {
+            try {
+                service.work(released);
+            } finally {
+                service.spares.decrementAndGet();
+            }
+        });
+        spare.start();
+        return () -> released.set(true);
+    }
+
+    /**
+     * @param released the worker stops once it's set
+     */
+    private void work(AtomicBoolean released) {
+        WORKER_OF.set(this);
+        while (!released.get() && (!shutdown || !ready.isEmpty())) {
+            Lane lane;
+            try {
+                lane = ready.poll(100L, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            if (lane == null)
+                continue;
+
+            Task task = lane.take();
+            lane.reschedule();
+            if (task == null)
+                continue;
+
+            run(task);
+        }
+    }
+
+    private void run(Task task) {
+        active.incrementAndGet();
+        try {
+            task.runnable.run();
+        } catch (Throwable throwable) {
+            throwable.printStackTrace();
+        } finally {
+            active.decrementAndGet();
+            completed.increment();
+            recordLatency(System.nanoTime() - task.submitted);
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        long index = latencyCount.getAndIncrement();
+        synchronized (latencies) {
+            latencies[(int) (index % LATENCY_SAMPLES)] = nanos;
+        }
+    }
+
+    /**
+     * Stop accepting new tasks. The workers finish the tasks already queued and then stop.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /**
+     * Wait until the workers stop after {@link #shutdown()}.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    unit of the timeout
+     * @return true if all the workers stopped; false if timed out.
+     * @throws InterruptedException
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            long left = deadline - System.nanoTime();
+            if (left > 0)
+                TimeUnit.NANOSECONDS.timedJoin(worker, left);
+            if (worker.isAlive())
+                return false;
+        }
+        return true;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * @return the current state of this service.
+     */
+    public Metrics getMetrics() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        lanes.values().stream()
+                .sorted((a, b) -> a.name.compareTo(b.name))
+                .forEach(lane -> depths.put(lane.name, lane.getQueueDepth()));
+
+        long[] samples;
+        synchronized (latencies) {
+            samples = Arrays.copyOf(latencies, (int) Math.min(latencyCount.get(), LATENCY_SAMPLES));
+        }
+        Arrays.sort(samples);
+
+        return new Metrics(Collections.unmodifiableMap(depths), active.get(), completed.sum(), rejected.sum(),
+                percentile(samples, 0.5), percentile(samples, 0.99));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0L;
+        return sorted[(int) Math.ceil(p * sorted.length) - 1];
+    }
+
+    public class Lane implements Executor {
+        private final String name;
+        private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+        //number of the tasks in the queue, limited by the queueSize
+        private final AtomicInteger size = new AtomicInteger();
+        //the tasks queued by admitted(), which are never discarded nor counted in the capacity
+        private final Queue<Task> admittedQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger admittedSize = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        //discarded tasks not reported in the log yet
+        private final LongAdder unreported = new LongAdder();
+        private final AtomicLong lastWarning = new AtomicLong(System.nanoTime() - WARNING_INTERVAL_NANOS);
+
+        private Lane(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Queue the task. If the lane is full, the task is handled according to the {@link Overflow} policy.
+         *
+         * @throws RejectedExecutionException if the task is discarded, or the service is shut down.
+         */
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                reject("TriggerReactor is shutting down.");
+                throw new RejectedExecutionException("TriggerReactor is shutting down.");
+            }
+
+            Task task = new Task(command);
+            int current;
+            do {
+                current = size.get();
+                if (current >= queueSize) {
+                    overflow(task);
+                    return;
+                }
+            } while (!size.compareAndSet(current, current + 1));
+
+            enqueue(task);
+        }
+
+        /**
+         * Queue the task regardless of the capacity. This is for the work which is already accepted once, such
+         * as continuing an interpretation after #WAIT, so it must not be discarded. These tasks are taken before
+         * the new tasks of the lane, and {@link Overflow#COALESCE} never discards them.
+         *
+         * @return the executor
+         */
+        public Executor admitted() {
+            return command -> {
+                admittedSize.incrementAndGet();
+                admittedQueue.offer(new Task(command));
+                schedule();
+            };
+        }
+
+        /**
+         * @return the next task to run, or null if there is none.
+         */
+        private Task take() {
+            Task task = admittedQueue.poll();
+            if (task != null) {
+                admittedSize.decrementAndGet();
+                return task;
+            }
+
+            task = queue.poll();
+            if (task != null)
+                size.decrementAndGet();
+            return task;
+        }
+
+        private boolean isEmpty() {
+            return admittedQueue.isEmpty() && queue.isEmpty();
+        }
+
+        private void overflow(Task task) {
+            switch (overflow) {
+                case CALLER_RUNS:
+                    run(task);
+                    break;
+                case COALESCE:
+                    Task oldest = queue.poll();
+                    if (oldest == null) {
+                        //the workers took the tasks meanwhile
+                        size.incrementAndGet();
+                    } else {
+                        reject("The queue is full, so the oldest ones made room for the new ones.");
+                    }
+                    enqueue(task);
+                    break;
+                case DROP:
+                default:
+                    reject("The queue is full.");
+                    throw new RejectedExecutionException("Queue of " + name + " is full.");
+            }
+        }
+
+        /**
+         * Count the discarded task, and warn about the tasks discarded so far at most once per
+         * {@link #WARNING_INTERVAL_NANOS}.
+         */
+        private void reject(String reason) {
+            rejected.increment();
+            unreported.increment();
+
+            long now = System.nanoTime();
+            long last = lastWarning.get();
+            if (now - last >= WARNING_INTERVAL_NANOS && lastWarning.compareAndSet(last, now))
+                LOGGER.warning(unreported.sumThenReset() + " task(s) of the lane " + name + " were discarded. "
+                        + reason);
+        }
+
+        private void enqueue(Task task) {
+            queue.offer(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true))
+                ready.offer(this);
+        }
+
+        /**
+         * Called by the worker after taking a task, so the other workers can take the rest of the tasks.
+         */
+        private void reschedule() {
+            if (!isEmpty()) {
+                ready.offer(this);
+                return;
+            }
+
+            scheduled.set(false);
+            //a task may have been added before the flag is cleared
+            if (!isEmpty() && scheduled.compareAndSet(false, true))
+                ready.offer(this);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQueueDepth() {
+            return size.get() + admittedSize.get();
+        }
+    }
+
+    private static class Task {
+        private final Runnable runnable;
+        private final long submitted = System.nanoTime();
+
+        private Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+
+    public static class Metrics {
+        private final Map<String, Integer> queueDepths;
+        private final int activeWorkers;
+        private final long completedTasks;
+        private final long rejectedTasks;
+        private final long p50Nanos;
+        private final long p99Nanos;
+
+        private Metrics(Map<String, Integer> queueDepths, int activeWorkers, long completedTasks,
+                        long rejectedTasks, long p50Nanos, long p99Nanos) {
+            this.queueDepths = queueDepths;
+            this.activeWorkers = activeWorkers;
+            this.completedTasks = completedTasks;
+            this.rejectedTasks = rejectedTasks;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        /**
+         * @return number of the tasks waiting in each lane.
+         */
+        public Map<String, Integer> getQueueDepths() {
+            return queueDepths;
+        }
+
+        public int getQueueDepth() {
+            return queueDepths.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        public int getActiveWorkers() {
+            return activeWorkers;
+        }
+
+        public long getCompletedTasks() {
+            return completedTasks;
+        }
+
+        /**
+         * @return number of the tasks discarded by {@link Overflow#DROP} or {@link Overflow#COALESCE}, or because the
+         * service was shut down.
+         */
+        public long getRejectedTasks() {
+            return rejectedTasks;
+        }
+
+        /**
+         * @return median of the time from the submission to the end of the task, in nanoseconds.
+         */
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        /**
+         * @return 99th percentile of the time from the submission to the end of the task, in nanoseconds.
+         */
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "queued=" + getQueueDepth() + " " + queueDepths
+                    + " active=" + activeWorkers
+                    + " completed=" + completedTasks
+                    + " rejected=" + rejectedTasks
+                    + " p50=" + TimeUnit.NANOSECONDS.toMillis(p50Nanos) + "ms"
+                    + " p99=" + TimeUnit.NANOSECONDS.toMillis(p99Nanos) + "ms";
+        }
+    }
+}
@@ -22,7 +22,8 @@ import io.github.wysohn.triggerreactor.core.config.source.ConfigSourceFactory;
 import io.github.wysohn.triggerreactor.core.config.source.IConfigSource;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 import io.github.wysohn.triggerreactor.core.manager.location.Area;
-import io.github.wysohn.triggerreactor.core.manager.location.SimpleChunkLocation;
+import io.github.wysohn.triggerreactor.core.manager.location.AreaIndex;
+import io.github.wysohn.triggerreactor.core.manager.location.ChunkBitmap;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTaggedTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.ITriggerLoader;
@@ -36,14 +37,15 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerManager<AreaTrigger> {
     protected static final String SMALLEST = "Smallest";
     protected static final String LARGEST = "Largest";
     protected static final String SYNC = "Sync";
 
-    protected Map<SimpleChunkLocation, Map<Area, AreaTrigger>> areaTriggersByLocation = new ConcurrentHashMap<>();
+    protected final AreaIndex<AreaTrigger> areaIndex = new AreaIndex<>();
+    //chunks covered by the areas, rebuilt whenever an area is added or removed
+    private volatile ChunkBitmap areaChunks = ChunkBitmap.EMPTY;
 
     /**
      * The child class should update this map with its own way. Though, the entity which garbage-corrected will
@@ -205,11 +207,75 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
 
         super.reload();
 
-        areaTriggersByLocation.clear();
+        Map<Area, AreaTrigger> areas = new HashMap<>();
+        for (AreaTrigger trigger : getAllTriggers()) {
+            areas.put(trigger.area, trigger);
+        }
+        areaIndex.reset(areas);
+        updateAreaChunks();
+    }
 
+    //synchronized, so a bitmap built from the older areas can't replace the newer one
+    private synchronized void updateAreaChunks() {
+        ChunkBitmap.Builder builder = new ChunkBitmap.Builder();
         for (AreaTrigger trigger : getAllTriggers()) {
-            this.setupArea(trigger);
+            builder.add(trigger.area);
         }
+        areaChunks = builder.build();
+    }
+
+    /**
+     * Check if there can be an Area Trigger in the chunk. This doesn't allocate anything, so it's cheap enough to
+     * be called on every movement of the players.
+     *
+     * @param world the world name
+     * @param i     x axis chunk coordinate
+     * @param j     z axis chunk coordinate
+     * @return true if at least one area covers the chunk
+     */
+    public boolean hasAreaInChunk(String world, int i, int j) {
+        return areaChunks.contains(world, i, j);
+    }
+
+    /**
+     * Move the tracked entities to the positions in the snapshot, and update the entities of the Area Triggers
+     * accordingly. Only the entities already in {@link #entityLocationMap} are considered. The changes are
+     * collected first and then applied to each Area Trigger at once.
+     * <p>
+     * This doesn't touch the entities themselves, so it can be called from any thread.
+     *
+     * @param snapshot the positions of the entities
+     */
+    protected synchronized void onEntitySnapshot(EntitySnapshot snapshot) {
+        Map<AreaTrigger, List<UUID>> exits = new HashMap<>();
+        Map<AreaTrigger, List<IEntity>> enters = new HashMap<>();
+
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (!snapshot.isValid(i))
+                continue;
+
+            UUID uuid = snapshot.getUniqueId(i);
+            SimpleLocation previous = entityLocationMap.get(uuid);
+            if (previous == null || snapshot.isAt(i, previous))
+                continue;
+
+            SimpleLocation current = snapshot.getLocation(i);
+            entityLocationMap.put(uuid, current);
+
+            areaIndex.forEachAt(previous, (area, trigger) ->
+                    exits.computeIfAbsent(trigger, key -> new ArrayList<>()).add(uuid));
+
+            WeakReference<IEntity> ref = entityTrackMap.get(uuid);
+            IEntity entity = ref == null ? null : ref.get();
+            if (entity == null)
+                continue;
+
+            areaIndex.forEachAt(current, (area, trigger) ->
+                    enters.computeIfAbsent(trigger, key -> new ArrayList<>()).add(entity));
+        }
+
+        exits.forEach((trigger, uuids) -> uuids.forEach(trigger::removeEntity));
+        enters.forEach((trigger, entities) -> entities.forEach(trigger::addEntity));
     }
 
     /**
@@ -222,20 +288,12 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
         if (sloc == null)
             return new ArrayList<>();
 
-        SimpleChunkLocation scloc = new SimpleChunkLocation(sloc);
-        if (!areaTriggersByLocation.containsKey(scloc))
-            return new ArrayList<>();
-
-        List<Map.Entry<Area, AreaTrigger>> list = areaTriggersByLocation.get(scloc).entrySet().stream()
-                .filter(entry -> entry.getKey().isInThisArea(sloc))
-                .collect(Collectors.toList());
-
-        return list;
+        return areaIndex.getAreasAt(sloc);
     }
 
     /**
      * get all the area that is conflicting with given area. This does not include the area itself.
-     * It's quite a CPU intensive work; use it wisely
+     * Only the areas overlapping the given area are tested with the filter.
      *
      * @param area
      * @param filter decide what it means by 'conflict' between the given area and other areas
@@ -244,19 +302,10 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
     public Set<Area> getConflictingAreas(Area area, Predicate<Area> filter) {
         Set<Area> conflicts = new HashSet<>();
 
-        Set<SimpleChunkLocation> sclocs = Area.getAllChunkLocations(area);
-        for (SimpleChunkLocation scloc : sclocs) {
-            Map<Area, AreaTrigger> map = areaTriggersByLocation.get(scloc);
-            if (map == null)
-                continue;
-
-            for (Entry<Area, AreaTrigger> mapentry : map.entrySet()) {
-                Area areaOther = mapentry.getKey();
-
-                if (filter.test(areaOther))
-                    conflicts.add(areaOther);
-            }
-        }
+        areaIndex.forEachOverlapping(area, (areaOther, trigger) -> {
+            if (filter.test(areaOther))
+                conflicts.add(areaOther);
+        });
 
         return conflicts;
     }
@@ -292,18 +341,8 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
      * @param trigger
      */
     protected void setupArea(AreaTrigger trigger) {
-        Area area = trigger.area;
-
-        Set<SimpleChunkLocation> sclocs = Area.getAllChunkLocations(area);
-        for (SimpleChunkLocation scloc : sclocs) {
-            Map<Area, AreaTrigger> map = areaTriggersByLocation.get(scloc);
-            if (map == null) {
-                map = new ConcurrentHashMap<>();
-                areaTriggersByLocation.put(scloc, map);
-            }
-
-            map.put(area, trigger);
-        }
+        areaIndex.put(trigger.area, trigger);
+        updateAreaChunks();
     }
 
     @Override
@@ -311,10 +350,8 @@ public abstract class AbstractAreaTriggerManager extends AbstractTaggedTriggerMa
         AreaTrigger remove = super.remove(name);
 
         Optional.ofNullable(remove).ifPresent(areaTrigger -> {
-            for (SimpleChunkLocation scloc : Area.getAllChunkLocations(areaTrigger.area)) {
-                Map<Area, AreaTrigger> map = areaTriggersByLocation.get(scloc);
-                map.remove(areaTrigger.area);
-            }
+            areaIndex.remove(areaTrigger.area);
+            updateAreaChunks();
         });
 
         return remove;
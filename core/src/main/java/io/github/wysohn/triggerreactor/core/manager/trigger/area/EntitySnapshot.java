@@ -0,0 +1,155 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.manager.trigger.area;
+
+import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Block positions of all the entities at one moment. It's taken in the server thread in a single pass, and then
+ * compared with the previous positions in another thread, so the server thread doesn't have to be asked about
+ * each entity separately.
+ * <p>
+ * The positions are kept in primitive arrays, and the world names are shared by index, so taking a snapshot
+ * creates only a few objects regardless of the number of entities.
+ */
+public final class EntitySnapshot {
+    private final String[] worlds;
+    private final UUID[] uuids;
+    private final int[] worldIndexes;
+    private final int[] xs;
+    private final int[] ys;
+    private final int[] zs;
+    private final boolean[] valid;
+    private final int size;
+
+    private EntitySnapshot(Builder builder) {
+        this.worlds = builder.worlds.toArray(new String[0]);
+        this.uuids = builder.uuids;
+        this.worldIndexes = builder.worldIndexes;
+        this.xs = builder.xs;
+        this.ys = builder.ys;
+        this.zs = builder.zs;
+        this.valid = builder.valid;
+        this.size = builder.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public UUID getUniqueId(int i) {
+        return uuids[i];
+    }
+
+    /**
+     * @return false if the entity was dead or no longer valid when the snapshot was taken.
+     */
+    public boolean isValid(int i) {
+        return valid[i];
+    }
+
+    /**
+     * Check if the entity was at the given block without creating a new SimpleLocation.
+     */
+    public boolean isAt(int i, SimpleLocation location) {
+        return xs[i] == location.getX()
+                && ys[i] == location.getY()
+                && zs[i] == location.getZ()
+                && worlds[worldIndexes[i]].equals(location.getWorld());
+    }
+
+    public SimpleLocation getLocation(int i) {
+        return new SimpleLocation(worlds[worldIndexes[i]], xs[i], ys[i], zs[i]);
+    }
+
+    public static class Builder {
+        private final List<String> worlds = new ArrayList<>();
+        private final Map<String, Integer> worldIndex = new HashMap<>();
+
+        private UUID[] uuids;
+        private int[] worldIndexes;
+        private int[] xs;
+        private int[] ys;
+        private int[] zs;
+        private boolean[] valid;
+        private int size = 0;
+
+        /**
+         * @param expectedSize number of the entities expected. Usually the size of the previous snapshot.
+         */
+        public Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            uuids = new UUID[capacity];
+            worldIndexes = new int[capacity];
+            xs = new int[capacity];
+            ys = new int[capacity];
+            zs = new int[capacity];
+            valid = new boolean[capacity];
+        }
+
+        /**
+         * Register the world, so the entities in it can be added.
+         *
+         * @param name name of the world
+         * @return the index of the world to be used in {@link #add(UUID, int, int, int, int, boolean)}
+         */
+        public int world(String name) {
+            return worldIndex.computeIfAbsent(name, key -> {
+                worlds.add(key);
+                return worlds.size() - 1;
+            });
+        }
+
+        public Builder add(UUID uuid, int world, int x, int y, int z, boolean valid) {
+            if (world < 0 || world >= worlds.size())
+                throw new IndexOutOfBoundsException("Unknown world index " + world);
+
+            if (size == uuids.length)
+                grow();
+
+            this.uuids[size] = uuid;
+            this.worldIndexes[size] = world;
+            this.xs[size] = x;
+            this.ys[size] = y;
+            this.zs[size] = z;
+            this.valid[size] = valid;
+            size++;
+            return this;
+        }
+
+        private void grow() {
+            int capacity = uuids.length * 2;
+            uuids = Arrays.copyOf(uuids, capacity);
+            worldIndexes = Arrays.copyOf(worldIndexes, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            zs = Arrays.copyOf(zs, capacity);
+            valid = Arrays.copyOf(valid, capacity);
+        }
+
+        public EntitySnapshot build() {
+            return new EntitySnapshot(this);
+        }
+    }
+}
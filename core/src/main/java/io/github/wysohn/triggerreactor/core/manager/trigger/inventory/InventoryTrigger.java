@@ -42,14 +42,14 @@ public class InventoryTrigger extends Trigger {
     @Override
     protected void start(Timings.Timing timing, Object e, Map<String, Object> scriptVars, Interpreter interpreter,
                          boolean sync) {
-        try {
-            interpreter.startWithContextAndInterrupter(e,
-                    TriggerReactorCore.getInstance().createInterrupterForInv(e, interpreter, cooldowns, AbstractInventoryTriggerManager.inventoryMap),
-                    timing);
-        } catch (Exception ex) {
-            TriggerReactorCore.getInstance().handleException(e,
-                    new Exception("Error occurred while processing Trigger [" + getInfo() + "]!", ex));
-        }
+        interpret(timing, e, interpreter,
+                TriggerReactorCore.getInstance().createInterrupterForInv(e, interpreter, cooldowns, AbstractInventoryTriggerManager.inventoryMap),
+                sync)
+                .whenComplete((nothing, ex) -> {
+                    if (ex != null)
+                        TriggerReactorCore.getInstance().handleException(e,
+                                new Exception("Error occurred while processing Trigger [" + getInfo() + "]!", ex));
+                });
     }
 
     @Override
@@ -19,6 +19,8 @@ package io.github.wysohn.triggerreactor.core.manager.trigger.location;
 import io.github.wysohn.triggerreactor.core.bridge.ICommandSender;
 import io.github.wysohn.triggerreactor.core.bridge.entity.IPlayer;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
+import io.github.wysohn.triggerreactor.core.manager.location.BlockLocationMap;
+import io.github.wysohn.triggerreactor.core.manager.location.ChunkBitmap;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleChunkLocation;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTaggedTriggerManager;
@@ -29,11 +31,11 @@ import io.github.wysohn.triggerreactor.core.manager.trigger.TriggerInfo;
 import java.io.File;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.*;
-import java.util.Map.Entry;
-import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractLocationBasedTriggerManager<T extends Trigger> extends AbstractTaggedTriggerManager<T> {
-    protected final Map<SimpleChunkLocation, Map<SimpleLocation, T>> chunkMap = new ConcurrentHashMap<>();
+    protected final BlockLocationMap<T> locationMap = new BlockLocationMap<>();
+    //chunks in locationMap, rebuilt whenever a trigger is added or removed
+    private volatile ChunkBitmap triggerChunks = ChunkBitmap.EMPTY;
     private final Map<UUID, String> settingLocation = new HashMap<>();
 
     private final Map<UUID, ClipBoard> clipboard = new HashMap<>();
@@ -46,8 +48,7 @@ public abstract class AbstractLocationBasedTriggerManager<T extends Trigger> ext
     public void reload() {
         super.reload();
 
-        chunkMap.clear();
-
+        Map<SimpleLocation, T> locations = new HashMap<>();
         for (T trigger : getAllTriggers()) {
             SimpleLocation sloc = null;
             try {
@@ -57,65 +58,69 @@ public abstract class AbstractLocationBasedTriggerManager<T extends Trigger> ext
                 continue;
             }
 
-            SimpleChunkLocation scloc = new SimpleChunkLocation(sloc);
-
-            Map<SimpleLocation, T> locationMap = chunkMap.get(scloc);
-            if (!chunkMap.containsKey(scloc)) {
-                locationMap = new ConcurrentHashMap<>();
-                chunkMap.put(scloc, locationMap);
-            }
-
-            if (locationMap.containsKey(sloc)) {
-                Trigger previous = locationMap.get(sloc);
+            if (locations.containsKey(sloc)) {
+                Trigger previous = locations.get(sloc);
                 plugin.getLogger().warning("Found a duplicating " + trigger.getClass().getSimpleName());
                 plugin.getLogger().warning("Existing: " + previous.getInfo().getSourceCodeFile().getAbsolutePath());
                 plugin.getLogger().warning("Skipped: " + trigger.getInfo().getSourceCodeFile().getAbsolutePath());
             } else {
-                locationMap.put(sloc, trigger);
+                locations.put(sloc, trigger);
             }
         }
-    }
 
-    protected abstract String getTriggerTypeName();
+        locationMap.reset(locations);
+        updateTriggerChunks();
+    }
 
-    protected T getTriggerForLocation(SimpleLocation sloc) {
-        SimpleChunkLocation scloc = new SimpleChunkLocation(sloc);
+    //synchronized, so a bitmap built from the older triggers can't replace the newer one
+    private synchronized void updateTriggerChunks() {
+        ChunkBitmap.Builder builder = new ChunkBitmap.Builder();
+        locationMap.forEach((sloc, trigger) -> builder.add(sloc));
+        triggerChunks = builder.build();
+    }
 
-        if (!chunkMap.containsKey(scloc))
-            return null;
+    /**
+     * Check if there can be a trigger in the chunk. This doesn't allocate anything, so it's cheap enough to be
+     * called on every movement of the players.
+     *
+     * @param world the world name
+     * @param i     x axis chunk coordinate
+     * @param j     z axis chunk coordinate
+     * @return true if there is at least one trigger in the chunk
+     */
+    public boolean hasTriggerInChunk(String world, int i, int j) {
+        return triggerChunks.contains(world, i, j);
+    }
 
-        Map<SimpleLocation, T> locationMap = chunkMap.get(scloc);
-        if (!locationMap.containsKey(sloc))
-            return null;
+    protected abstract String getTriggerTypeName();
 
+    protected T getTriggerForLocation(SimpleLocation sloc) {
         return locationMap.get(sloc);
     }
 
-    protected void setLocationCache(SimpleLocation sloc, T trigger) {
-        SimpleChunkLocation scloc = new SimpleChunkLocation(sloc);
-
-        Map<SimpleLocation, T> locationMap = chunkMap.get(scloc);
-        if (!chunkMap.containsKey(scloc)) {
-            locationMap = new ConcurrentHashMap<>();
-            chunkMap.put(scloc, locationMap);
-        }
+    /**
+     * Same as {@link #getTriggerForLocation(SimpleLocation)}, but without creating the SimpleLocation.
+     */
+    protected T getTriggerForLocation(String world, int x, int y, int z) {
+        return locationMap.get(world, x, y, z);
+    }
 
+    protected void setLocationCache(SimpleLocation sloc, T trigger) {
         locationMap.put(sloc, trigger);
         put(sloc.toString(), trigger);
+        updateTriggerChunks();
 
         plugin.saveAsynchronously(this);
     }
 
     protected T removeLocationCache(SimpleLocation sloc) {
-        SimpleChunkLocation scloc = new SimpleChunkLocation(sloc);
-
-        Map<SimpleLocation, T> locationMap = chunkMap.get(scloc);
-        if (!chunkMap.containsKey(scloc)) {
+        T result = locationMap.remove(sloc);
+        if (result == null) {
             return null;
         }
 
-        T result = locationMap.remove(sloc);
         remove(sloc.toString());
+        updateTriggerChunks();
 
         plugin.saveAsynchronously(this);
         return result;
@@ -230,14 +235,14 @@ public abstract class AbstractLocationBasedTriggerManager<T extends Trigger> ext
 
     public Set<Map.Entry<SimpleLocation, Trigger>> getTriggersInChunk(SimpleChunkLocation scloc) {
         Set<Map.Entry<SimpleLocation, Trigger>> triggers = new HashSet<>();
-        if (!chunkMap.containsKey(scloc))
+        if (!hasTriggerInChunk(scloc.getWorld(), scloc.getI(), scloc.getJ()))
             return triggers;
 
-        for (Entry<SimpleChunkLocation, Map<SimpleLocation, T>> entry : chunkMap.entrySet()) {
-            for (Entry<SimpleLocation, T> entryIn : entry.getValue().entrySet()) {
-                triggers.add(new SimpleEntry<SimpleLocation, Trigger>(entryIn.getKey(), entryIn.getValue()));
-            }
-        }
+        locationMap.forEach((sloc, trigger) -> {
+            if (sloc.getWorld().equals(scloc.getWorld())
+                    && sloc.getX() >> 4 == scloc.getI() && sloc.getZ() >> 4 == scloc.getJ())
+                triggers.add(new SimpleEntry<SimpleLocation, Trigger>(sloc, trigger));
+        });
 
         return triggers;
     }
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.compiler;
+
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+
+import java.util.Map;
+
+/**
+ * The flat instruction array produced by the {@link Compiler}. It is immutable once created, so a single
+ * instance can be shared by every interpreter running the same Trigger, even concurrently.
+ */
+public class CompiledScript {
+    /**
+     * Number of ints used by each instruction: opcode, operand A, operand B, and operand C.
+     */
+    public static final int STRIDE = 4;
+
+    private final Node root;
+    private final int[] code;
+    private final Node[] origins;
+    private final Object[] constants;
+    private final int[] breakTargets;
+    private final int[] continueTargets;
+    private final Map<String, Class<?>> imports;
+    private final String[] localNames;
+    private final Map<String, Integer> localSlots;
+
+    CompiledScript(Node root, int[] code, Node[] origins, Object[] constants, int[] breakTargets,
+                   int[] continueTargets, Map<String, Class<?>> imports, Map<String, Integer> localSlots) {
+        this.root = root;
+        this.code = code;
+        this.origins = origins;
+        this.constants = constants;
+        this.breakTargets = breakTargets;
+        this.continueTargets = continueTargets;
+        this.imports = imports;
+        this.localSlots = localSlots;
+
+        this.localNames = new String[localSlots.size()];
+        for (Map.Entry<String, Integer> entry : localSlots.entrySet()) {
+            localNames[entry.getValue()] = entry.getKey();
+        }
+    }
+
+    /**
+     * @return the root of the tree this script was compiled from.
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the code array. Do not modify.
+     */
+    public int[] getCode() {
+        return code;
+    }
+
+    /**
+     * @return the node each instruction was compiled from, indexed by instruction. Do not modify.
+     */
+    public Node[] getOrigins() {
+        return origins;
+    }
+
+    /**
+     * @return the constant pool. Do not modify.
+     */
+    public Object[] getConstants() {
+        return constants;
+    }
+
+    /**
+     * @return the classes imported by the IMPORT statements, by their simple names. Unmodifiable.
+     */
+    public Map<String, Class<?>> getImports() {
+        return imports;
+    }
+
+    /**
+     * @return the names of the local variables used in the script, indexed by their slots. Do not modify.
+     */
+    public String[] getLocalNames() {
+        return localNames;
+    }
+
+    /**
+     * @param name name of the local variable
+     * @return the slot of the variable, or -1 if the script never uses the variable.
+     */
+    public int getLocalSlot(String name) {
+        Integer slot = localSlots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @return number of instructions.
+     */
+    public int size() {
+        return origins.length;
+    }
+
+    /**
+     * @return number of loops (WHILE and FOR) in the script.
+     */
+    public int getLoopCount() {
+        return breakTargets.length;
+    }
+
+    /**
+     * @param loopId id of the loop
+     * @return the instruction where #BREAK of the loop jumps to.
+     */
+    public int getBreakTarget(int loopId) {
+        return breakTargets[loopId];
+    }
+
+    /**
+     * @param loopId id of the loop
+     * @return the instruction where #CONTINUE of the loop jumps to.
+     */
+    public int getContinueTarget(int loopId) {
+        return continueTargets[loopId];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < size(); i++) {
+            int base = i * STRIDE;
+            int opcode = code[base];
+            builder.append(i).append(": ").append(Opcode.nameOf(opcode))
+                    .append(' ').append(code[base + 1])
+                    .append(' ').append(code[base + 2])
+                    .append(' ').append(code[base + 3]);
+            if (Opcode.hasConstantOperand(opcode)) {
+                builder.append(" ; ").append(constants[code[base + 1]]);
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,477 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.compiler;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.Token.Type;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+import io.github.wysohn.triggerreactor.core.script.warning.UnresolvedImportWarning;
+import io.github.wysohn.triggerreactor.core.script.warning.Warning;
+
+import java.util.*;
+
+/**
+ * Compiles the tree produced by the Parser into a {@link CompiledScript}.
+ * <p>
+ * The instructions are emitted in the same post-order the tree-walking Interpreter visits the nodes, so the
+ * operand stack looks exactly the same for both of them. The difference is that keywords and operators are
+ * resolved to opcodes, literals are parsed only once, and the control flow statements are turned into jumps.
+ */
+public class Compiler {
+    private final Node root;
+
+    private int[] code = new int[64 * CompiledScript.STRIDE];
+    private final List<Node> origins = new ArrayList<>();
+    private final List<Object> constants = new ArrayList<>();
+
+    private final Deque<Integer> loops = new ArrayDeque<>();
+    private int[] breakTargets = new int[4];
+    private int[] continueTargets = new int[4];
+    private int loopCount = 0;
+
+    private final Map<String, Class<?>> imports = new HashMap<>();
+    private final Map<String, Integer> localSlots = new HashMap<>();
+    private final List<Warning> warnings = new ArrayList<>();
+
+    public Compiler(Node root) {
+        this.root = root;
+    }
+
+    public CompiledScript compile() throws CompilerException {
+        for (Node statement : root.getChildren()) {
+            compileStatement(statement);
+        }
+
+        return new CompiledScript(root,
+                Arrays.copyOf(code, origins.size() * CompiledScript.STRIDE),
+                origins.toArray(new Node[0]),
+                constants.toArray(),
+                Arrays.copyOf(breakTargets, loopCount),
+                Arrays.copyOf(continueTargets, loopCount),
+                Collections.unmodifiableMap(new HashMap<>(imports)),
+                Collections.unmodifiableMap(new HashMap<>(localSlots)));
+    }
+
+    /**
+     * @return the warnings found during the last {@link #compile()}, such as the IMPORTs of classes which
+     * couldn't be found.
+     */
+    public List<Warning> getWarnings() {
+        return warnings;
+    }
+
+    private void compileStatement(Node node) throws CompilerException {
+        compileNode(node);
+
+        // expression statements (ex. player.sendMessage("hi")) leave their result on the stack
+        if (leavesValue(node))
+            emit(Opcode.POP, node);
+    }
+
+    private void compileBody(Node body) throws CompilerException {
+        for (Node statement : body.getChildren()) {
+            compileStatement(statement);
+        }
+    }
+
+    private void compileNode(Node node) throws CompilerException {
+        Token token = node.getToken();
+
+        if (isKeyword(token, "IF") || isKeyword(token, "ELSEIF")) {
+            compileIf(node);
+        } else if (isKeyword(token, "WHILE")) {
+            compileWhile(node);
+        } else if (isKeyword(token, "FOR")) {
+            compileFor(node);
+        } else if (token.type == Type.SYNC) {
+            compileBlock(node, Opcode.SYNC);
+        } else if (token.type == Type.ASYNC) {
+            compileBlock(node, Opcode.ASYNC);
+        } else if (token.type == Type.BODY) {
+            compileBody(node);
+        } else if (token.type == Type.OPERATOR_L && "&&".equals(token.value)) {
+            compileShortCircuit(node, Opcode.AND_TEST, Opcode.AND);
+        } else if (token.type == Type.OPERATOR_L && "||".equals(token.value)) {
+            compileShortCircuit(node, Opcode.OR_TEST, Opcode.OR);
+        } else if (token.type == Type.OPERATOR && ".".equals(token.value)) {
+            compileAccess(node);
+        } else {
+            for (Node child : node.getChildren()) {
+                compileNode(child);
+            }
+
+            compileOperation(node);
+        }
+    }
+
+    //IF children -- [0] : condition , [1] : true body , [2] : false body(may not exist)
+    private void compileIf(Node node) throws CompilerException {
+        if (node.getChildren().size() < 2)
+            throw new CompilerException("Unexpected " + node.getToken().value + " without body! " + node.getToken());
+
+        compileNode(node.getChildren().get(0));
+        int jumpFalse = emit(Opcode.IF_FALSE, node);
+
+        compileNode(node.getChildren().get(1));
+        if (node.getChildren().size() > 2) {
+            int jumpEnd = emit(Opcode.JUMP, node);
+            patch(jumpFalse, here());
+            compileNode(node.getChildren().get(2));
+            patch(jumpEnd, here());
+        } else {
+            patch(jumpFalse, here());
+        }
+    }
+
+    //WHILE children -- [0] : condition , [1] : body
+    private void compileWhile(Node node) throws CompilerException {
+        if (node.getChildren().size() < 2)
+            throw new CompilerException("Unexpected WHILE without body! " + node.getToken());
+
+        int loopId = newLoop();
+        emit(Opcode.WHILE_ENTER, node, loopId);
+
+        int head = here();
+        compileNode(node.getChildren().get(0));
+        int jumpFalse = emit(Opcode.WHILE_FALSE, node);
+
+        loops.push(loopId);
+        compileNode(node.getChildren().get(1));
+        loops.pop();
+
+        continueTargets[loopId] = here();
+        emit(Opcode.WHILE_NEXT, node, loopId, head);
+
+        breakTargets[loopId] = here();
+        patch(jumpFalse, here());
+    }
+
+    //FOR children -- [0] : iteration variable , [1] : <ITERATOR> , [2] : body
+    private void compileFor(Node node) throws CompilerException {
+        if (node.getChildren().size() < 3)
+            throw new CompilerException("Unexpected FOR without body! " + node.getToken());
+
+        Node iterNode = node.getChildren().get(1);
+        if (iterNode.getToken().type != Type.ITERATOR)
+            throw new CompilerException("Expected <ITERATOR> but found " + iterNode.getToken());
+
+        int loopId = newLoop();
+        compileNode(node.getChildren().get(0));
+
+        int next;
+        if (iterNode.getChildren().size() == 1) {
+            compileNode(iterNode.getChildren().get(0));
+            emit(Opcode.FOR_EACH_INIT, iterNode, loopId);
+            next = Opcode.FOR_EACH_NEXT;
+        } else if (iterNode.getChildren().size() == 2) {
+            compileNode(iterNode.getChildren().get(0));
+            compileNode(iterNode.getChildren().get(1));
+            emit(Opcode.FOR_RANGE_INIT, iterNode, loopId);
+            next = Opcode.FOR_RANGE_NEXT;
+        } else {
+            throw new CompilerException("Number of <ITERATOR> must be 1 or 2!");
+        }
+
+        int head = emit(next, iterNode, loopId);
+
+        loops.push(loopId);
+        compileNode(node.getChildren().get(2));
+        loops.pop();
+
+        emit(Opcode.JUMP, node, head);
+
+        continueTargets[loopId] = head;
+        breakTargets[loopId] = here();
+        patch(head, 2, here());
+    }
+
+    private void compileBlock(Node node, int opcode) throws CompilerException {
+        int block = emit(opcode, node);
+        for (Node statement : node.getChildren()) {
+            compileStatement(statement);
+        }
+        patch(block, here());
+    }
+
+    private void compileShortCircuit(Node node, int test, int opcode) throws CompilerException {
+        if (node.getChildren().size() != 2)
+            throw new CompilerException("Operator " + node.getToken() + " requires boolean on the left and right of it.");
+
+        compileNode(node.getChildren().get(0));
+        int jump = emit(test, node);
+        compileNode(node.getChildren().get(1));
+        emit(opcode, node);
+        patch(jump, here());
+    }
+
+    private void compileAccess(Node node) throws CompilerException {
+        Node left = node.getChildren().get(0);
+        Node right = node.getChildren().get(1);
+
+        compileNode(left);
+        if (right.getToken().type == Type.CALL) {
+            for (Node argument : right.getChildren()) {
+                compileNode(argument);
+            }
+            emit(Opcode.INVOKE, node, constant(right.getToken()), right.getChildren().size());
+        } else if (right.getToken().type == Type.ID && left.getToken().type == Type.THIS) {
+            emit(Opcode.GET_LOCAL, node, constant(right.getToken()), localSlot(right.getToken().value.toString()));
+        } else if (right.getToken().type == Type.ID) {
+            emit(Opcode.GET_FIELD, node, constant(right.getToken()));
+        } else {
+            compileNode(right);
+            emit(Opcode.GET_FIELD_DYNAMIC, node);
+        }
+    }
+
+    private void compileOperation(Node node) throws CompilerException {
+        Token token = node.getToken();
+
+        if (isKeyword(token, "IS")) {
+            emit(Opcode.IS, node);
+            return;
+        }
+
+        switch (token.type) {
+            case EXECUTOR:
+                emit(Opcode.EXECUTE, node, constant(token.value), node.getChildren().size(),
+                        loops.isEmpty() ? -1 : loops.peek());
+                break;
+            case PLACEHOLDER:
+                emit(Opcode.PLACEHOLDER, node, constant(token.value), node.getChildren().size());
+                break;
+            case OPERATOR_A:
+                emit(arithmeticOpcode(token), node);
+                break;
+            case UNARYMINUS:
+                emit(Opcode.NEG, node);
+                break;
+            case OPERATOR_L:
+                emit(logicalOpcode(token), node);
+                break;
+            case OPERATOR:
+                // other operators are only used by the Parser
+                if ("=".equals(token.value))
+                    emit(Opcode.ASSIGN, node);
+                break;
+            case ARRAYACCESS:
+                emit(Opcode.ARRAY_ACCESS, node);
+                break;
+            case THIS:
+            case ID:
+                emit(Opcode.PUSH, node, constant(token));
+                break;
+            case GID:
+                emit(Opcode.GLOBAL, node);
+                break;
+            case GID_TEMP:
+                emit(Opcode.GLOBAL_TEMP, node);
+                break;
+            case CALL:
+                emit(Opcode.PUSH_CALL, node, constant(token), node.getChildren().size());
+                break;
+            case STRING:
+            case EPS:
+                emit(Opcode.PUSH, node, constant(new Token(token.type, token.value, token)));
+                break;
+            case INTEGER:
+                try {
+                    emit(Opcode.PUSH, node, constant(new Token(token.type,
+                            Integer.parseInt((String) token.value), token)));
+                } catch (NumberFormatException e) {
+                    throw new CompilerException("Invalid integer " + token, e);
+                }
+                break;
+            case DECIMAL:
+                try {
+                    emit(Opcode.PUSH, node, constant(new Token(token.type,
+                            Double.parseDouble((String) token.value), token)));
+                } catch (NumberFormatException e) {
+                    throw new CompilerException("Invalid decimal " + token, e);
+                }
+                break;
+            case BOOLEAN:
+                emit(Opcode.PUSH, node, constant(new Token(token.type,
+                        Boolean.parseBoolean((String) token.value), token)));
+                break;
+            case NULLVALUE:
+                emit(Opcode.PUSH, node, constant(new Token(token.type, null, token)));
+                break;
+            case IMPORT:
+                resolveImport(token);
+                break;
+            default:
+                throw new CompilerException("Cannot compile the unknown node " + token.type.name());
+        }
+    }
+
+    /**
+     * Imports are resolved only once here, so the interpreters don't have to look up the class every time the
+     * script runs. The classes which can't be found are reported as warnings and ignored.
+     */
+    private void resolveImport(Token token) {
+        String className = (String) token.value;
+        try {
+            Class<?> clazz = Class.forName(className);
+            imports.put(clazz.getSimpleName(), clazz);
+        } catch (ClassNotFoundException | LinkageError e) {
+            warnings.add(new UnresolvedImportWarning(token.row, className));
+        }
+    }
+
+    private int arithmeticOpcode(Token token) throws CompilerException {
+        switch ((String) token.value) {
+            case "+":
+                return Opcode.ADD;
+            case "-":
+                return Opcode.SUB;
+            case "*":
+                return Opcode.MUL;
+            case "/":
+                return Opcode.DIV;
+            case "%":
+                return Opcode.MOD;
+            case "&":
+                return Opcode.BIT_AND;
+            case "^":
+                return Opcode.BIT_XOR;
+            case "|":
+                return Opcode.BIT_OR;
+            case "~":
+                return Opcode.BIT_NOT;
+            case "<<":
+                return Opcode.SHL;
+            case ">>":
+                return Opcode.SHR;
+            case ">>>":
+                return Opcode.USHR;
+            default:
+                throw new CompilerException("Cannot compile the unknown operator " + token);
+        }
+    }
+
+    private int logicalOpcode(Token token) throws CompilerException {
+        switch ((String) token.value) {
+            case "!":
+                return Opcode.NOT;
+            case "<":
+                return Opcode.LT;
+            case ">":
+                return Opcode.GT;
+            case "<=":
+                return Opcode.LE;
+            case ">=":
+                return Opcode.GE;
+            case "==":
+                return Opcode.EQ;
+            case "!=":
+                return Opcode.NE;
+            default:
+                throw new CompilerException("Cannot compile the unknown operator " + token);
+        }
+    }
+
+    /**
+     * Keywords are lexed as plain ids, so a String literal with the same text must not be mistaken for one.
+     */
+    private static boolean isKeyword(Token token, String keyword) {
+        return token.type != Type.STRING && keyword.equals(token.value);
+    }
+
+    private static boolean leavesValue(Node node) {
+        Token token = node.getToken();
+        switch (token.type) {
+            case IMPORT:
+            case EXECUTOR:
+            case SYNC:
+            case ASYNC:
+            case BODY:
+                return false;
+            case OPERATOR:
+                return !"=".equals(token.value);
+            default:
+                return !isKeyword(token, "IF")
+                        && !isKeyword(token, "ELSEIF")
+                        && !isKeyword(token, "WHILE")
+                        && !isKeyword(token, "FOR");
+        }
+    }
+
+    private int newLoop() {
+        if (loopCount == breakTargets.length) {
+            breakTargets = Arrays.copyOf(breakTargets, loopCount * 2);
+            continueTargets = Arrays.copyOf(continueTargets, loopCount * 2);
+        }
+        return loopCount++;
+    }
+
+    /**
+     * Every distinct name of the local variables gets a slot, so the interpreter can keep the variables in an
+     * array instead of looking them up by name.
+     */
+    private int localSlot(String name) {
+        Integer slot = localSlots.get(name);
+        if (slot == null) {
+            slot = localSlots.size();
+            localSlots.put(name, slot);
+        }
+        return slot;
+    }
+
+    private int constant(Object value) {
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    private int here() {
+        return origins.size();
+    }
+
+    private int emit(int opcode, Node origin) {
+        return emit(opcode, origin, 0, 0, 0);
+    }
+
+    private int emit(int opcode, Node origin, int a) {
+        return emit(opcode, origin, a, 0, 0);
+    }
+
+    private int emit(int opcode, Node origin, int a, int b) {
+        return emit(opcode, origin, a, b, 0);
+    }
+
+    private int emit(int opcode, Node origin, int a, int b, int c) {
+        int index = origins.size();
+        int base = index * CompiledScript.STRIDE;
+        if (base + CompiledScript.STRIDE > code.length)
+            code = Arrays.copyOf(code, code.length * 2);
+
+        code[base] = opcode;
+        code[base + 1] = a;
+        code[base + 2] = b;
+        code[base + 3] = c;
+        origins.add(origin);
+        return index;
+    }
+
+    private void patch(int instruction, int target) {
+        patch(instruction, 1, target);
+    }
+
+    private void patch(int instruction, int operand, int target) {
+        code[instruction * CompiledScript.STRIDE + operand] = target;
+    }
+}
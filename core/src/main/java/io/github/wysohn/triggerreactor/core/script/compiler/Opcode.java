@@ -0,0 +1,234 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.compiler;
+
+/**
+ * Instruction set of the {@link CompiledScript}. Each instruction occupies {@link CompiledScript#STRIDE} ints
+ * in the code array: the opcode followed by the operands A, B, and C. Unused operands are left as 0.
+ * <p>
+ * Opcodes below {@link #FIRST_NODE_OP} only move the program counter around and never report to the
+ * ProcessInterrupter. Opcodes starting from {@link #FIRST_NODE_OP} correspond to a single node of the
+ * original tree and behave exactly like the tree-walking Interpreter would for that node.
+ */
+public final class Opcode {
+    /**
+     * A: jump target
+     */
+    public static final int JUMP = 0;
+    /**
+     * Pop the condition of IF/ELSEIF. A: jump target if the condition is false or null.
+     */
+    public static final int IF_FALSE = 1;
+    /**
+     * Pop the condition of WHILE. A: jump target if the condition is false.
+     */
+    public static final int WHILE_FALSE = 2;
+    /**
+     * Mark the beginning of the WHILE loop. A: loop id
+     */
+    public static final int WHILE_ENTER = 3;
+    /**
+     * End of an iteration of the WHILE loop. A: loop id, B: jump target(head of the loop)
+     */
+    public static final int WHILE_NEXT = 4;
+    /**
+     * Pop the iterable value and the iteration variable. A: loop id
+     */
+    public static final int FOR_EACH_INIT = 5;
+    /**
+     * Assign the next element to the iteration variable. A: loop id, B: jump target if no elements left
+     */
+    public static final int FOR_EACH_NEXT = 6;
+    /**
+     * Pop the limit, the initial value, and the iteration variable. A: loop id
+     */
+    public static final int FOR_RANGE_INIT = 7;
+    /**
+     * Assign the next number to the iteration variable. A: loop id, B: jump target if the limit is reached
+     */
+    public static final int FOR_RANGE_NEXT = 8;
+    /**
+     * Left side of &amp;&amp;. A: jump target if the left side is false
+     */
+    public static final int AND_TEST = 9;
+    /**
+     * Left side of ||. A: jump target if the left side is true
+     */
+    public static final int OR_TEST = 10;
+    /**
+     * Run the block in server thread. A: end of the block
+     */
+    public static final int SYNC = 11;
+    /**
+     * Run the block in separate thread. A: end of the block
+     */
+    public static final int ASYNC = 12;
+
+    public static final int FIRST_NODE_OP = 16;
+
+    /**
+     * A: constant index of the Token to push
+     */
+    public static final int PUSH = 16;
+    /**
+     * Discard the value left by an expression statement.
+     */
+    public static final int POP = 17;
+    /**
+     * A: constant index of the executor name, B: number of arguments, C: loop id for #BREAK/#CONTINUE (-1 if none)
+     */
+    public static final int EXECUTE = 18;
+    /**
+     * A: constant index of the placeholder name, B: number of arguments
+     */
+    public static final int PLACEHOLDER = 19;
+    /**
+     * A: constant index of the CALL token, B: number of arguments
+     */
+    public static final int INVOKE = 20;
+    /**
+     * A: constant index of the CALL token, B: number of arguments
+     */
+    public static final int PUSH_CALL = 21;
+    /**
+     * A: constant index of the ID token of the field
+     */
+    public static final int GET_FIELD = 22;
+    /**
+     * Field access with the right side already evaluated on the stack.
+     */
+    public static final int GET_FIELD_DYNAMIC = 23;
+    public static final int ASSIGN = 24;
+    public static final int ARRAY_ACCESS = 25;
+    public static final int GLOBAL = 26;
+    public static final int GLOBAL_TEMP = 27;
+    public static final int IS = 28;
+
+    public static final int ADD = 29;
+    public static final int SUB = 30;
+    public static final int MUL = 31;
+    public static final int DIV = 32;
+    public static final int MOD = 33;
+    public static final int BIT_AND = 34;
+    public static final int BIT_XOR = 35;
+    public static final int BIT_OR = 36;
+    public static final int BIT_NOT = 37;
+    public static final int SHL = 38;
+    public static final int SHR = 39;
+    public static final int USHR = 40;
+    public static final int NEG = 41;
+
+    public static final int NOT = 42;
+    public static final int LT = 43;
+    public static final int GT = 44;
+    public static final int LE = 45;
+    public static final int GE = 46;
+    public static final int EQ = 47;
+    public static final int NE = 48;
+    public static final int AND = 49;
+    public static final int OR = 50;
+
+    /**
+     * Access to a local variable, which is THIS.name in the tree. Replace THIS on the stack with the ID token of
+     * the variable. A: constant index of the ID token, B: slot of the variable in
+     * {@link CompiledScript#getLocalNames()}
+     */
+    public static final int GET_LOCAL = 51;
+
+    private static final String[] NAMES = new String[52];
+
+    static {
+        NAMES[JUMP] = "JUMP";
+        NAMES[IF_FALSE] = "IF_FALSE";
+        NAMES[WHILE_FALSE] = "WHILE_FALSE";
+        NAMES[WHILE_ENTER] = "WHILE_ENTER";
+        NAMES[WHILE_NEXT] = "WHILE_NEXT";
+        NAMES[FOR_EACH_INIT] = "FOR_EACH_INIT";
+        NAMES[FOR_EACH_NEXT] = "FOR_EACH_NEXT";
+        NAMES[FOR_RANGE_INIT] = "FOR_RANGE_INIT";
+        NAMES[FOR_RANGE_NEXT] = "FOR_RANGE_NEXT";
+        NAMES[AND_TEST] = "AND_TEST";
+        NAMES[OR_TEST] = "OR_TEST";
+        NAMES[SYNC] = "SYNC";
+        NAMES[ASYNC] = "ASYNC";
+        NAMES[PUSH] = "PUSH";
+        NAMES[POP] = "POP";
+        NAMES[EXECUTE] = "EXECUTE";
+        NAMES[PLACEHOLDER] = "PLACEHOLDER";
+        NAMES[INVOKE] = "INVOKE";
+        NAMES[PUSH_CALL] = "PUSH_CALL";
+        NAMES[GET_FIELD] = "GET_FIELD";
+        NAMES[GET_FIELD_DYNAMIC] = "GET_FIELD_DYNAMIC";
+        NAMES[ASSIGN] = "ASSIGN";
+        NAMES[ARRAY_ACCESS] = "ARRAY_ACCESS";
+        NAMES[GLOBAL] = "GLOBAL";
+        NAMES[GLOBAL_TEMP] = "GLOBAL_TEMP";
+        NAMES[IS] = "IS";
+        NAMES[ADD] = "ADD";
+        NAMES[SUB] = "SUB";
+        NAMES[MUL] = "MUL";
+        NAMES[DIV] = "DIV";
+        NAMES[MOD] = "MOD";
+        NAMES[BIT_AND] = "BIT_AND";
+        NAMES[BIT_XOR] = "BIT_XOR";
+        NAMES[BIT_OR] = "BIT_OR";
+        NAMES[BIT_NOT] = "BIT_NOT";
+        NAMES[SHL] = "SHL";
+        NAMES[SHR] = "SHR";
+        NAMES[USHR] = "USHR";
+        NAMES[NEG] = "NEG";
+        NAMES[NOT] = "NOT";
+        NAMES[LT] = "LT";
+        NAMES[GT] = "GT";
+        NAMES[LE] = "LE";
+        NAMES[GE] = "GE";
+        NAMES[EQ] = "EQ";
+        NAMES[NE] = "NE";
+        NAMES[AND] = "AND";
+        NAMES[OR] = "OR";
+        NAMES[GET_LOCAL] = "GET_LOCAL";
+    }
+
+    private Opcode() {
+    }
+
+    /**
+     * @param opcode the opcode
+     * @return true if operand A of the opcode is an index of the constant pool.
+     */
+    public static boolean hasConstantOperand(int opcode) {
+        switch (opcode) {
+            case PUSH:
+            case GET_LOCAL:
+            case EXECUTE:
+            case PLACEHOLDER:
+            case INVOKE:
+            case PUSH_CALL:
+            case GET_FIELD:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static String nameOf(int opcode) {
+        if (opcode < 0 || opcode >= NAMES.length || NAMES[opcode] == null)
+            return "UNKNOWN(" + opcode + ")";
+
+        return NAMES[opcode];
+    }
+}
@@ -0,0 +1,986 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
+import io.github.wysohn.triggerreactor.core.manager.trigger.TriggerExecutionService;
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.Token.Type;
+import io.github.wysohn.triggerreactor.core.script.compiler.CompiledScript;
+import io.github.wysohn.triggerreactor.core.script.compiler.Opcode;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+import io.github.wysohn.triggerreactor.tools.VarMap;
+import io.github.wysohn.triggerreactor.tools.timings.Timings;
+
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a {@link CompiledScript} in a single loop instead of walking the tree recursively. The observable
+ * behavior (variables, executors, placeholders, error messages, and the calls to the ProcessInterrupter) is
+ * the same as {@link Interpreter}, which remains as the reference implementation.
+ * <p>
+ * Just like Interpreter, an instance is meant to be used for one execution only. The CompiledScript itself can
+ * be shared by any number of instances.
+ */
+public class CompiledInterpreter extends Interpreter {
+    private final CompiledScript script;
+    private final int[] code;
+    private final Node[] origins;
+    private final Object[] constants;
+
+    private final OperandStack stack = new OperandStack();
+
+    //not null if vars has the slots of the local variables of this script
+    private LocalVariables frame;
+
+    private final Token[] loopVariables;
+    private final int[] loopVariableSlots;
+    private final Token[] loopSourceTokens;
+    private final Object[] loopSources;
+    private final int[] loopCounters;
+    private final int[] loopLimits;
+    private final long[] loopStarts;
+
+    //returned by control() when the interpretation is suspended
+    private static final int SUSPENDED = -1;
+
+    private int callArgsSize = 0;
+    private int syncExit = 0;
+    //number of SYNC blocks being run
+    private int nestedRuns = 0;
+
+    //not null if started by startSuspendable()
+    private java.util.concurrent.Executor resumer;
+    private CompletableFuture<Void> completion;
+    //set by #WAIT if the top level run() should return instead of blocking the thread
+    private boolean suspendAtWait = false;
+    private boolean suspended = false;
+    //set if suspended at a SYNC block. resumeAt is then set by the block when it's done.
+    private boolean suspendedInSync = false;
+    private Exception syncError;
+    private int resumeAt;
+    //the interpretation resumes when both run() has returned and the time is over, whichever comes last
+    private final AtomicInteger resumeReady = new AtomicInteger();
+
+    public CompiledInterpreter(CompiledScript script) {
+        // imports are resolved once by the Compiler and shared by all the interpreters of the script
+        super(script.getRoot(), script.getImports());
+        this.script = script;
+        this.code = script.getCode();
+        this.origins = script.getOrigins();
+        this.constants = script.getConstants();
+
+        int loops = script.getLoopCount();
+        this.loopVariables = new Token[loops];
+        this.loopVariableSlots = new int[loops];
+        this.loopSourceTokens = new Token[loops];
+        this.loopSources = new Object[loops];
+        this.loopCounters = new int[loops];
+        this.loopLimits = new int[loops];
+        this.loopStarts = new long[loops];
+
+        setVars(new LocalVariables(script, new VarMap()));
+    }
+
+    /**
+     * Set the local variables. If the map is a {@link LocalVariables} created for the same script, the
+     * variables are accessed by their slots; otherwise, by their names.
+     */
+    @Override
+    public void setVars(Map<String, Object> vars) {
+        super.setVars(vars);
+        this.frame = vars instanceof LocalVariables && ((LocalVariables) vars).hasSlotsOf(script)
+                ? (LocalVariables) vars : null;
+    }
+
+    public CompiledScript getScript() {
+        return script;
+    }
+
+    @Override
+    public void startWithContextAndInterrupter(Object context, ProcessInterrupter interrupter,
+                                               Timings.Timing timing) throws InterpreterException {
+        startRange(context, interrupter, timing, 0, script.size());
+    }
+
+    /**
+     * Unlike {@link Interpreter}, this can return the thread at #WAIT and while a SYNC block runs in the server
+     * thread. The operand stack and the loop counters are fields already, so only the next instruction has to be
+     * remembered to continue later. #WAIT inside a SYNC block still blocks the thread.
+     */
+    @Override
+    public CompletableFuture<Void> startSuspendable(Object context, ProcessInterrupter interrupter,
+                                                    Timings.Timing timing, java.util.concurrent.Executor resumer) {
+        this.context = context;
+        this.interrupter = interrupter;
+        this.timing = timing;
+        this.resumer = resumer;
+        this.completion = new CompletableFuture<>();
+
+        continueFrom(0);
+        return completion;
+    }
+
+    private void continueFrom(int pc) {
+        try {
+            Timings.Timing t = this.timing.getTiming("Code Interpretation").begin(sync);
+            try {
+                pc = run(pc, 0, script.size());
+            } finally {
+                t.close();
+            }
+        } catch (Exception e) {
+            completion.completeExceptionally(e);
+            return;
+        }
+
+        if (suspended) {
+            if (!suspendedInSync)
+                resumeAt = pc;
+            if (resumeReady.incrementAndGet() == 2)
+                resume();
+        } else {
+            completion.complete(null);
+        }
+    }
+
+    private void onWaitOver() {
+        if (resumeReady.incrementAndGet() == 2)
+            resume();
+    }
+
+    private void resume() {
+        resumeReady.set(0);
+        suspended = false;
+        suspendedInSync = false;
+        if (syncError != null) {
+            completion.completeExceptionally(new InterpreterException("Synchronous task error.", syncError));
+            return;
+        }
+
+        try {
+            resumer.execute(() -> continueFrom(resumeAt));
+        } catch (RejectedExecutionException e) {
+            completion.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    Runnable beginWait() {
+        if (resumer == null || nestedRuns > 0)
+            return super.beginWait();
+
+        suspendAtWait = true;
+        return this::onWaitOver;
+    }
+
+    /**
+     * Run the SYNC block in the server thread, and continue after the block once it's done, without blocking the
+     * current thread meanwhile.
+     */
+    private void suspendAtSync(int blockStart, int blockEnd) throws InterpreterException {
+        suspended = true;
+        suspendedInSync = true;
+        try {
+            task.submitSync(() -> {
+                nestedRuns++;
+                try {
+                    resumeAt = run(blockStart, blockEnd);
+                } catch (Exception e) {
+                    syncError = e;
+                } finally {
+                    nestedRuns--;
+                    onWaitOver();
+                }
+                return null;
+            });
+        } catch (RuntimeException ex) {
+            suspended = false;
+            suspendedInSync = false;
+            throw new InterpreterException("Synchronous task error.", ex);
+        }
+    }
+
+    private void startRange(Object context, ProcessInterrupter interrupter, Timings.Timing timing,
+                            int from, int to) throws InterpreterException {
+        this.context = context;
+        this.interrupter = interrupter;
+        this.timing = timing;
+
+        Timings.Timing t = this.timing.getTiming("Code Interpretation").begin(sync);
+        try {
+            run(from, to);
+        } finally {
+            t.close();
+        }
+    }
+
+    /**
+     * Run the instructions in [from, to).
+     *
+     * @return the instruction where the execution left the range. It can be outside of the range if #BREAK or
+     * #CONTINUE jumped out of it.
+     */
+    private int run(int from, int to) throws InterpreterException {
+        return run(from, from, to);
+    }
+
+    /**
+     * Run the instructions in [from, to), starting at pc.
+     */
+    private int run(int pc, int from, int to) throws InterpreterException {
+        while (!stopFlag && pc >= from && pc < to) {
+            int base = pc * CompiledScript.STRIDE;
+            int opcode = code[base];
+            int a = code[base + 1];
+
+            if (opcode < Opcode.FIRST_NODE_OP) {
+                pc = control(pc, opcode, a, code[base + 2]);
+                if (pc == SUSPENDED)
+                    return pc;
+                continue;
+            }
+
+            Node origin = origins[pc];
+            Integer result;
+            try {
+                if (interrupter != null && interrupter.onNodeProcess(origin)) {
+                    stopFlag = true;
+                    break;
+                }
+
+                result = operate(opcode, a, code[base + 2], origin);
+            } catch (Exception e) {
+                throw new InterpreterException("Error " + origin.getToken().toStringRowColOnly(), e);
+            }
+
+            pc++;
+            if (result != null) {
+                switch (result) {
+                    case Executor.STOP:
+                        stopFlag = true;
+                        break;
+                    case Executor.WAIT:
+                        if (suspendAtWait) {
+                            suspendAtWait = false;
+                            suspended = true;
+                            return pc;
+                        }
+                        awaitWaitFlag();
+                        break;
+                    case Executor.BREAK:
+                        // nothing to break out of if not inside a loop
+                        if (code[base + 3] >= 0)
+                            pc = script.getBreakTarget(code[base + 3]);
+                        break;
+                    case Executor.CONTINUE:
+                        if (code[base + 3] >= 0)
+                            pc = script.getContinueTarget(code[base + 3]);
+                        break;
+                    default:
+                        throw new InterpreterException(result + " is not a valid return code!");
+                }
+            }
+        }
+        return pc;
+    }
+
+    /**
+     * @return the next instruction
+     */
+    private int control(int pc, int opcode, int a, int b) throws InterpreterException {
+        switch (opcode) {
+            case Opcode.JUMP:
+                return a;
+            case Opcode.IF_FALSE:
+                unwrap(0);
+                return isTrue() ? pc + 1 : a;
+            case Opcode.WHILE_ENTER:
+                loopStarts[a] = System.currentTimeMillis();
+                return pc + 1;
+            case Opcode.WHILE_FALSE: {
+                if (stack.isEmpty())
+                    throw new InterpreterException("Could not find condition for WHILE statement!");
+
+                unwrap(0);
+                if (stack.tag(0) == OperandStack.BOOLEAN) {
+                    boolean condition = stack.booleanAt(0);
+                    stack.discard(1);
+                    return condition ? pc + 1 : a;
+                }
+
+                Token resultToken = stack.pop();
+                if (!(resultToken.value instanceof Boolean))
+                    throw new InterpreterException("Unexpected token for WHILE statement! -- " + resultToken);
+
+                return (boolean) resultToken.value ? pc + 1 : a;
+            }
+            case Opcode.WHILE_NEXT:
+                if (sync) {
+                    long timeTook = System.currentTimeMillis() - loopStarts[a];
+                    if (timeTook > 3000L)
+                        throw new InterpreterException("WHILE loop took more than 3 seconds in Server Thread. This is usually "
+                                + "considered as 'too long' and can crash the server.");
+                }
+                return b;
+            case Opcode.FOR_EACH_INIT: {
+                Token valueToken = popUnwrapped();
+                loopVariableSlots[a] = stack.localSlot(0);
+                loopVariables[a] = stack.pop();
+
+                if (!valueToken.isIterable())
+                    throw new InterpreterException(valueToken + " is not iterable!");
+
+                loopSourceTokens[a] = valueToken;
+                if (valueToken.isArray()) {
+                    loopSources[a] = valueToken.value;
+                    loopCounters[a] = 0;
+                    loopLimits[a] = Array.getLength(valueToken.value);
+                } else {
+                    loopSources[a] = ((Iterable<?>) valueToken.value).iterator();
+                }
+                return pc + 1;
+            }
+            case Opcode.FOR_EACH_NEXT: {
+                Object source = loopSources[a];
+                Object obj;
+                if (source instanceof Iterator) {
+                    Iterator<?> iterator = (Iterator<?>) source;
+                    if (!iterator.hasNext())
+                        return b;
+                    obj = iterator.next();
+                } else {
+                    int i = loopCounters[a];
+                    if (i >= loopLimits[a])
+                        return b;
+                    obj = Array.get(source, i);
+                    loopCounters[a] = i + 1;
+                }
+
+                Token variable = loopVariables[a];
+                Token value = parseValue(obj, loopSourceTokens[a]);
+                if (variable.type == Type.ID) {
+                    assignLocal(variable, loopVariableSlots[a], value.value);
+                } else {
+                    assignValue(variable, value);
+                }
+                return pc + 1;
+            }
+            case Opcode.FOR_RANGE_INIT: {
+                unwrap(0);
+                unwrap(1);
+                if (stack.tag(1) == OperandStack.INTEGER && stack.tag(0) == OperandStack.INTEGER) {
+                    loopCounters[a] = stack.integerAt(1);
+                    loopLimits[a] = stack.integerAt(0);
+                    stack.discard(2);
+                } else {
+                    Token limitToken = stack.pop();
+                    Token initToken = stack.pop();
+
+                    if (!initToken.isInteger())
+                        throw new InterpreterException("Init value must be an Integer value! -- " + initToken);
+
+                    if (!limitToken.isInteger())
+                        throw new InterpreterException("Limit value must be an Integer value! -- " + limitToken);
+
+                    loopCounters[a] = initToken.toInteger();
+                    loopLimits[a] = limitToken.toInteger();
+                }
+                loopVariableSlots[a] = stack.localSlot(0);
+                loopVariables[a] = stack.pop();
+                return pc + 1;
+            }
+            case Opcode.FOR_RANGE_NEXT: {
+                int i = loopCounters[a];
+                if (i >= loopLimits[a])
+                    return b;
+
+                Token variable = loopVariables[a];
+                if (variable.type == Type.ID) {
+                    assignLocal(variable, loopVariableSlots[a], i);
+                } else {
+                    assignValue(variable, new Token(Type.INTEGER, i, origins[pc].getToken()));
+                }
+                loopCounters[a] = i + 1;
+                return pc + 1;
+            }
+            case Opcode.AND_TEST:
+                unwrap(0);
+                if (stack.tag(0) != OperandStack.BOOLEAN)
+                    throw new InterpreterException("Left of && operator should be Boolean but was " + stack.pop());
+
+                return stack.booleanAt(0) ? pc + 1 : a;
+            case Opcode.OR_TEST:
+                unwrap(0);
+                if (stack.tag(0) != OperandStack.BOOLEAN)
+                    throw new InterpreterException("Left of || operator should be Boolean but was " + stack.pop());
+
+                return stack.booleanAt(0) ? a : pc + 1;
+            case Opcode.SYNC: {
+                int blockStart = pc + 1;
+                if (resumer != null && nestedRuns == 0) {
+                    suspendAtSync(blockStart, a);
+                    return SUSPENDED;
+                }
+
+                syncExit = a;
+                Runnable unblocked = TriggerExecutionService.beginBlocking();
+                try {
+                    task.submitSync(() -> {
+                        nestedRuns++;
+                        try {
+                            syncExit = run(blockStart, a);
+                        } finally {
+                            nestedRuns--;
+                        }
+                        return null;
+                    }).get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    throw new InterpreterException("Synchronous task error.", ex);
+                } finally {
+                    unblocked.run();
+                }
+                return syncExit;
+            }
+            case Opcode.ASYNC: {
+                int blockStart = pc + 1;
+                try {
+                    task.submitAsync(() -> {
+                        CompiledInterpreter copy = new CompiledInterpreter(script);
+                        // ignore whatever returns as it's impossible
+                        // to handle it from the caller
+                        copy.setExecutorMap(executorMap);
+                        copy.setPlaceholderMap(placeholderMap);
+                        copy.setGvars(gvars);
+                        copy.setVars(vars);
+                        copy.setSelfReference(selfReference);
+                        copy.setTaskSupervisor(task);
+                        copy.setSync(false);
+
+                        try {
+                            copy.startRange(context, interrupter, timing, blockStart, a);
+                        } catch (InterpreterException e) {
+                            TriggerReactorCore.getInstance().handleException(context, e);
+                        } finally {
+                            // the script may have written back the variables already
+                            if (vars instanceof LocalVariables)
+                                ((LocalVariables) vars).writeBack();
+                        }
+                    });
+                } catch (RejectedExecutionException ignored) {
+                    //counted and logged by TriggerExecutionService
+                }
+                return a;
+            }
+            default:
+                throw new InterpreterException("Unknown instruction " + Opcode.nameOf(opcode) + " at " + pc);
+        }
+    }
+
+    /**
+     * @return return codes in Executor. null if execution continues.
+     */
+    private Integer operate(int opcode, int a, int b, Node originNode) throws Exception {
+        Token origin = originNode.getToken();
+        Token right, left;
+        switch (opcode) {
+            case Opcode.PUSH:
+                push((Token) constants[a]);
+                break;
+            case Opcode.POP:
+                stack.discard(1);
+                break;
+            case Opcode.EXECUTE:
+                return executeCommand((String) constants[a], popArguments(b));
+            case Opcode.PLACEHOLDER: {
+                Object[] args = popArguments(b);
+                push(parsePlaceholder((String) constants[a], args, origin));
+                break;
+            }
+            case Opcode.INVOKE: {
+                Object[] args = popArguments(b);
+                left = stack.pop();
+                push(invokeMethod(left, (Token) constants[a], args, origin, originNode.getInlineCache()));
+                break;
+            }
+            case Opcode.PUSH_CALL:
+                push((Token) constants[a]);
+                callArgsSize = b;
+                break;
+            case Opcode.GET_FIELD:
+                left = stack.pop();
+                push(accessField(left, (Token) constants[a], origin, originNode.getInlineCache()));
+                break;
+            case Opcode.GET_LOCAL:
+                // same as accessField() with THIS on the left
+                stack.discard(1);
+                stack.pushLocal((Token) constants[a], b);
+                break;
+            case Opcode.GET_FIELD_DYNAMIC:
+                right = stack.pop();
+                if (right.type == Type.CALL) {
+                    Object[] args = popArguments(callArgsSize);
+                    callArgsSize = 0;
+                    left = stack.pop();
+                    push(invokeMethod(left, right, args, origin, originNode.getInlineCache()));
+                } else {
+                    left = stack.pop();
+                    push(accessField(left, right, origin, originNode.getInlineCache()));
+                }
+                break;
+            case Opcode.ASSIGN:
+                if (stack.tag(1) == OperandStack.REF && stack.ref(1).type == Type.ID) {
+                    unwrap(0);
+                    Object value = stack.popValue();
+                    int slot = stack.localSlot(0);
+                    assignLocal(stack.pop(), slot, value);
+                } else {
+                    right = stack.pop();
+                    left = stack.pop();
+                    assignValue(left, right);
+                }
+                break;
+            case Opcode.ARRAY_ACCESS:
+                right = stack.pop();
+                left = stack.pop();
+                push(accessArray(left, right, origin));
+                break;
+            case Opcode.GLOBAL:
+            case Opcode.GLOBAL_TEMP:
+                push(globalVariable(stack.pop(), origin));
+                break;
+            case Opcode.IS:
+                right = stack.pop();
+                left = stack.pop();
+                push(instanceOf(left, right, origin));
+                break;
+            case Opcode.ADD:
+            case Opcode.SUB:
+            case Opcode.MUL:
+            case Opcode.DIV:
+            case Opcode.MOD:
+                unwrap(0);
+                unwrap(1);
+                if (stack.tag(0) == OperandStack.INTEGER && stack.tag(1) == OperandStack.INTEGER) {
+                    int result = arithmetic(opcode, stack.integerAt(1), stack.integerAt(0));
+                    stack.discard(1);
+                    stack.replaceInteger(0, result, origin);
+                } else if (stack.isNumeric(0) && stack.isNumeric(1)) {
+                    double result = arithmetic(opcode, stack.decimalAt(1), stack.decimalAt(0));
+                    stack.discard(1);
+                    stack.replaceDecimal(0, result, origin);
+                } else {
+                    right = stack.pop();
+                    left = stack.pop();
+                    push(arithmetic(opcode, left, right, origin));
+                }
+                break;
+            case Opcode.BIT_AND:
+            case Opcode.BIT_XOR:
+            case Opcode.BIT_OR:
+                unwrap(0);
+                unwrap(1);
+                if (stack.tag(0) == OperandStack.INTEGER && stack.tag(1) == OperandStack.INTEGER) {
+                    int result = bitwise(opcode, stack.integerAt(1), stack.integerAt(0));
+                    stack.discard(1);
+                    stack.replaceInteger(0, result, origin);
+                } else {
+                    right = stack.pop();
+                    left = stack.pop();
+                    push(bitwise(opcode, left, right, origin));
+                }
+                break;
+            case Opcode.BIT_NOT:
+            case Opcode.SHL:
+            case Opcode.SHR:
+            case Opcode.USHR: {
+                int operands = opcode == Opcode.BIT_NOT ? 1 : 2;
+                for (int depth = 0; depth < operands; depth++)
+                    unwrap(depth);
+
+                if (stack.tag(0) == OperandStack.INTEGER && stack.tag(operands - 1) == OperandStack.INTEGER) {
+                    int result = shift(opcode, stack.integerAt(operands - 1), stack.integerAt(0));
+                    stack.discard(operands - 1);
+                    stack.replaceInteger(0, result, origin);
+                } else {
+                    right = opcode == Opcode.BIT_NOT ? null : stack.pop();
+                    left = stack.pop();
+                    push(shift(opcode, left, right, origin));
+                }
+                break;
+            }
+            case Opcode.NEG: {
+                unwrap(0);
+                if (stack.tag(0) == OperandStack.INTEGER) {
+                    stack.replaceInteger(0, -stack.integerAt(0), stack.ref(0));
+                    break;
+                } else if (stack.tag(0) == OperandStack.DECIMAL) {
+                    stack.replaceDecimal(0, -stack.decimalAt(0), stack.ref(0));
+                    break;
+                }
+
+                Token value = stack.pop();
+
+                if (!value.isNumeric())
+                    throw new InterpreterException("Cannot do unary minus operation for non-numeric value " + value);
+
+                push(value.isInteger() ? new Token(Type.INTEGER, -value.toInteger(), value.row, value.col)
+                        : new Token(Type.DECIMAL, -value.toDecimal(), value.row, value.col));
+                break;
+            }
+            case Opcode.NOT: {
+                unwrap(0);
+                switch (stack.tag(0)) {
+                    case OperandStack.BOOLEAN:
+                        stack.replaceBoolean(0, !stack.booleanAt(0), origin);
+                        break;
+                    case OperandStack.DECIMAL:
+                        stack.replaceBoolean(0, stack.decimalAt(0) == 0.0, origin);
+                        break;
+                    case OperandStack.INTEGER:
+                        stack.replaceBoolean(0, stack.integerAt(0) == 0, origin);
+                        break;
+                    default:
+                        Token boolval = stack.pop();
+
+                        if (boolval.type == Type.NULLVALUE) {// treat null as false
+                            push(new Token(Type.BOOLEAN, true, origin));
+                        } else if (boolval.isInteger()) {
+                            push(new Token(Type.BOOLEAN, boolval.toInteger() == 0, origin));
+                        } else if (boolval.isDecimal()) {
+                            push(new Token(Type.BOOLEAN, boolval.toDecimal() == 0.0, origin));
+                        } else {
+                            throw new InterpreterException("Cannot negate non-boolean value " + boolval);
+                        }
+                        break;
+                }
+                break;
+            }
+            case Opcode.LT:
+            case Opcode.GT:
+            case Opcode.LE:
+            case Opcode.GE:
+                unwrap(0);
+                unwrap(1);
+                if (stack.tag(0) == OperandStack.INTEGER && stack.tag(1) == OperandStack.INTEGER) {
+                    boolean result = compare(opcode, stack.integerAt(1), stack.integerAt(0));
+                    stack.discard(1);
+                    stack.replaceBoolean(0, result, origin);
+                } else if (stack.isNumeric(0) && stack.isNumeric(1)) {
+                    boolean result = compare(opcode, stack.decimalAt(1), stack.decimalAt(0));
+                    stack.discard(1);
+                    stack.replaceBoolean(0, result, origin);
+                } else {
+                    right = stack.pop();
+                    left = stack.pop();
+                    push(compare(opcode, left, right, origin));
+                }
+                break;
+            case Opcode.EQ:
+            case Opcode.NE: {
+                unwrap(0);
+                unwrap(1);
+                boolean equal;
+                if (stack.tag(0) != OperandStack.REF && stack.tag(1) != OperandStack.REF) {
+                    equal = stack.valueEquals(1, 0);
+                    stack.discard(2);
+                } else {
+                    right = stack.pop();
+                    left = stack.pop();
+                    equal = isEqual(left, right);
+                }
+                stack.pushBoolean(equal == (opcode == Opcode.EQ), origin);
+                break;
+            }
+            case Opcode.AND:
+            case Opcode.OR: {
+                unwrap(0);
+                unwrap(1);
+                boolean result;
+                if (stack.tag(0) == OperandStack.BOOLEAN && stack.tag(1) == OperandStack.BOOLEAN) {
+                    boolean r = stack.booleanAt(0);
+                    boolean l = stack.booleanAt(1);
+                    result = opcode == Opcode.AND ? l && r : l || r;
+                    stack.discard(2);
+                } else {
+                    right = stack.pop();
+                    left = stack.pop();
+                    result = opcode == Opcode.AND ? left.toBoolean() && right.toBoolean()
+                            : left.toBoolean() || right.toBoolean();
+                }
+                stack.pushBoolean(result, origin);
+                break;
+            }
+            default:
+                throw new InterpreterException("Unknown instruction " + Opcode.nameOf(opcode));
+        }
+
+        return null;
+    }
+
+    private Token arithmetic(int opcode, Token left, Token right, Token origin) throws InterpreterException {
+        if (opcode == Opcode.ADD && (left.type == Type.STRING || right.type == Type.STRING))
+            return new Token(Type.STRING, String.valueOf(left.value) + right.value, origin);
+
+        if (!left.isNumeric())
+            throw new InterpreterException("Cannot execute arithmetic operation on non-numeric value [" + left + "]!");
+
+        if (!right.isNumeric())
+            throw new InterpreterException("Cannot execute arithmetic operation on non-numeric value [" + right + "]!");
+
+        if (left.isDecimal() || right.isDecimal()) {
+            double result = arithmetic(opcode, left.toDecimal(), right.toDecimal());
+            return new Token(Type.DECIMAL, result, origin.row, origin.col);
+        } else {
+            int result = arithmetic(opcode, left.toInteger(), right.toInteger());
+            return new Token(Type.INTEGER, result, origin.row, origin.col);
+        }
+    }
+
+    private static double arithmetic(int opcode, double l, double r) {
+        switch (opcode) {
+            case Opcode.ADD:
+                return l + r;
+            case Opcode.SUB:
+                return l - r;
+            case Opcode.MUL:
+                return l * r;
+            case Opcode.DIV:
+                return l / r;
+            default: //case Opcode.MOD
+                return l % r;
+        }
+    }
+
+    private static int arithmetic(int opcode, int l, int r) {
+        switch (opcode) {
+            case Opcode.ADD:
+                return l + r;
+            case Opcode.SUB:
+                return l - r;
+            case Opcode.MUL:
+                return l * r;
+            case Opcode.DIV:
+                return l / r;
+            default: //case Opcode.MOD
+                return l % r;
+        }
+    }
+
+    private Token bitwise(int opcode, Token left, Token right, Token origin) throws InterpreterException {
+        if (left.type == Type.BOOLEAN && right.type == Type.BOOLEAN) {
+            boolean result;
+            switch (opcode) {
+                case Opcode.BIT_AND:
+                    result = left.toBoolean() & right.toBoolean();
+                    break;
+                case Opcode.BIT_XOR:
+                    result = left.toBoolean() ^ right.toBoolean();
+                    break;
+                default: //case Opcode.BIT_OR
+                    result = left.toBoolean() | right.toBoolean();
+            }
+
+            return new Token(Type.BOOLEAN, result, origin.row, origin.col);
+        } else {
+            if (!left.isNumeric() || left.isDecimal() || !right.isNumeric() || right.isDecimal())
+                throw new InterpreterException("Cannot execute bitwise operation on value [" + left + "] and [" + right + "]! Operands should both be boolean or integer.");
+
+            int result = bitwise(opcode, left.toInteger(), right.toInteger());
+            return new Token(Type.INTEGER, result, origin.row, origin.col);
+        }
+    }
+
+    private static int bitwise(int opcode, int l, int r) {
+        switch (opcode) {
+            case Opcode.BIT_AND:
+                return l & r;
+            case Opcode.BIT_XOR:
+                return l ^ r;
+            default: //case Opcode.BIT_OR
+                return l | r;
+        }
+    }
+
+    private Token shift(int opcode, Token left, Token right, Token origin) throws InterpreterException {
+        if (!left.isNumeric() || left.isDecimal())
+            throw new InterpreterException("Cannot execute bit shift operation on non-integer value [" + left + "]!");
+
+        if (right != null && (!right.isNumeric() || right.isDecimal()))
+            throw new InterpreterException("Cannot execute bit shift operation on non-integer value [" + right + "]!");
+
+        int result = shift(opcode, left.toInteger(), right == null ? 0 : right.toInteger());
+        return new Token(Type.INTEGER, result, origin.row, origin.col);
+    }
+
+    /**
+     * @param r ignored for BIT_NOT
+     */
+    private static int shift(int opcode, int l, int r) {
+        switch (opcode) {
+            case Opcode.BIT_NOT:
+                return ~l;
+            case Opcode.SHL:
+                return l << r;
+            case Opcode.SHR:
+                return l >> r;
+            default: //case Opcode.USHR
+                return l >>> r;
+        }
+    }
+
+    private Token compare(int opcode, Token left, Token right, Token origin) throws InterpreterException {
+        if (!left.isNumeric() || !right.isNumeric())
+            throw new InterpreterException("Only numeric values can be compared!");
+
+        boolean result;
+        if (left.isInteger() && right.isInteger()) {
+            result = compare(opcode, left.toInteger(), right.toInteger());
+        } else {
+            result = compare(opcode, left.toDecimal(), right.toDecimal());
+        }
+        return new Token(Type.BOOLEAN, result, origin);
+    }
+
+    private static boolean compare(int opcode, int l, int r) {
+        switch (opcode) {
+            case Opcode.LT:
+                return l < r;
+            case Opcode.GT:
+                return l > r;
+            case Opcode.LE:
+                return l <= r;
+            default: //case Opcode.GE
+                return l >= r;
+        }
+    }
+
+    private static boolean compare(int opcode, double l, double r) {
+        switch (opcode) {
+            case Opcode.LT:
+                return l < r;
+            case Opcode.GT:
+                return l > r;
+            case Opcode.LE:
+                return l <= r;
+            default: //case Opcode.GE
+                return l >= r;
+        }
+    }
+
+    private static boolean isEqual(Token left, Token right) {
+        if (left.type == Type.NULLVALUE || right.type == Type.NULLVALUE)
+            return left.value == null && right.value == null;
+
+        return left.value.equals(right.value);
+    }
+
+    /**
+     * Pop the condition of IF statement.
+     */
+    private boolean isTrue() throws InterpreterException {
+        boolean result;
+        switch (stack.tag(0)) {
+            case OperandStack.BOOLEAN:
+                result = stack.booleanAt(0);
+                break;
+            case OperandStack.INTEGER:
+                result = stack.integerAt(0) != 0;
+                break;
+            case OperandStack.DECIMAL:
+                result = stack.decimalAt(0) != 0.0;
+                break;
+            default:
+                Token resultToken = stack.pop();
+                if (resultToken.type == Type.NULLVALUE) { // null check failed
+                    return false;
+                } else if (resultToken.isInteger()) {
+                    return resultToken.toInteger() != 0;
+                } else if (resultToken.isDecimal()) {
+                    return resultToken.toDecimal() != 0.0;
+                } else if (resultToken.value != null) {//always true if not null
+                    return true;
+                } else {
+                    throw new InterpreterException("Unexpected token for IF statement! -- " + resultToken);
+                }
+        }
+        stack.discard(1);
+        return result;
+    }
+
+    private Object[] popArguments(int size) throws InterpreterException {
+        Object[] args = new Object[size];
+        for (int i = args.length - 1; i >= 0; i--) {
+            unwrap(0);
+            args[i] = stack.popValue();
+        }
+        return args;
+    }
+
+    /**
+     * Replace the variable at the given depth of the stack with its value. Numbers and booleans in the local
+     * variables are loaded into the primitive slots directly, without creating a Token.
+     */
+    private void unwrap(int depth) throws InterpreterException {
+        if (stack.tag(depth) != OperandStack.REF)
+            return;
+
+        Token token = stack.ref(depth);
+        if (!isVariable(token))
+            return;
+
+        if (token.type == Type.ID && !importMap.containsKey(token.value)) {
+            int slot = stack.localSlot(depth);
+            Object value = slot >= 0 && frame != null ? frame.getLocal(slot, (String) token.value)
+                    : vars.get(token.value);
+            if (value instanceof Integer) {
+                stack.replaceInteger(depth, (Integer) value, token);
+            } else if (value instanceof Double) {
+                stack.replaceDecimal(depth, (Double) value, token);
+            } else if (value instanceof Boolean) {
+                stack.replaceBoolean(depth, (Boolean) value, token);
+            } else {
+                stack.replace(depth, parseValue(value, token));
+            }
+        } else {
+            stack.replace(depth, unwrapVariable(token));
+        }
+    }
+
+    private void assignLocal(Token id, int slot, Object value) {
+        if (slot >= 0 && frame != null) {
+            frame.setLocal(slot, value);
+        } else {
+            vars.put(id.value.toString(), value);
+        }
+    }
+
+    private Token popUnwrapped() throws InterpreterException {
+        unwrap(0);
+        return stack.pop();
+    }
+
+    private void push(Token token) {
+        stack.pushLiteral(token);
+    }
+}
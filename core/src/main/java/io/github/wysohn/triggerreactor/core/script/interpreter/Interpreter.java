@@ -17,6 +17,7 @@
 package io.github.wysohn.triggerreactor.core.script.interpreter;
 
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
+import io.github.wysohn.triggerreactor.core.manager.trigger.TriggerExecutionService;
 import io.github.wysohn.triggerreactor.core.script.Token;
 import io.github.wysohn.triggerreactor.core.script.Token.Type;
 import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
@@ -26,7 +27,8 @@ import io.github.wysohn.triggerreactor.core.script.wrapper.Accessor;
 import io.github.wysohn.triggerreactor.core.script.wrapper.IScriptObject;
 import io.github.wysohn.triggerreactor.core.script.wrapper.SelfReference;
 import io.github.wysohn.triggerreactor.tools.CaseInsensitiveStringMap;
-import io.github.wysohn.triggerreactor.tools.ReflectionUtil;
+import io.github.wysohn.triggerreactor.tools.ImmutableCaseInsensitiveMap;
+import io.github.wysohn.triggerreactor.tools.InlineCache;
 import io.github.wysohn.triggerreactor.tools.VarMap;
 import io.github.wysohn.triggerreactor.tools.timings.Timings;
 
@@ -34,37 +36,42 @@ import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.Stack;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 public class Interpreter {
     private final Node root;
-    private final Map<String, Class<?>> importMap = new ConcurrentHashMap<>();
-
-    private TaskSupervisor task;
-
-    private final Map<String, Executor> executorMap = new CaseInsensitiveStringMap<>();
-    private Map<String, Placeholder> placeholderMap = new CaseInsensitiveStringMap<>();
-    private Map<Object, Object> gvars = new ConcurrentHashMap<>();
-    private Map<String, Object> vars = new VarMap();
-    private SelfReference selfReference = new SelfReference() {
+    final Map<String, Class<?>> importMap;
+
+    TaskSupervisor task;
+
+    //built-in executors/placeholders bound to this Interpreter. These take precedence over the shared ones.
+    private final CaseInsensitiveStringMap<Executor> defaultExecutors = new CaseInsensitiveStringMap<>();
+    private final CaseInsensitiveStringMap<Placeholder> defaultPlaceholders = new CaseInsensitiveStringMap<>();
+    //shared by reference. Never modify.
+    Map<String, Executor> executorMap = ImmutableCaseInsensitiveMap.empty();
+    Map<String, Placeholder> placeholderMap = ImmutableCaseInsensitiveMap.empty();
+    Map<Object, Object> gvars = new ConcurrentHashMap<>();
+    Map<String, Object> vars = new VarMap();
+    SelfReference selfReference = new SelfReference() {
     };
 
-    private final Stack<Token> stack = new Stack<>();
+    private final OperandStack stack = new OperandStack();
 
-    private Object context = null;
-    private ProcessInterrupter interrupter = null;
-    private Timings.Timing timing = null;
-    private boolean sync = false;
+    Object context = null;
+    ProcessInterrupter interrupter = null;
+    Timings.Timing timing = null;
+    boolean sync = false;
 
-    private boolean stopFlag = false;
-    private boolean waitFlag = false;
+    boolean stopFlag = false;
+    boolean waitFlag = false;
     private boolean breakFlag = false;
     private boolean continueFlag = false;
 
@@ -84,7 +91,16 @@ public class Interpreter {
         }
     */
     public Interpreter(Node root) {
+        this(root, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param importMap the classes imported so far. The IMPORT statements will be added here as they are
+     *                  interpreted.
+     */
+    Interpreter(Node root, Map<String, Class<?>> importMap) {
         this.root = root;
+        this.importMap = importMap;
 
         initDefaultExecutors();
         initDefaultPlaceholders();
@@ -94,22 +110,47 @@ public class Interpreter {
         this.task = taskSupervisor;
     }
 
+    /**
+     * @return copy of all the executors available to this Interpreter, including the built-in ones.
+     */
     public Map<String, Executor> getExecutorMap() {
-        return executorMap;
+        Map<String, Executor> merged = new CaseInsensitiveStringMap<>();
+        merged.putAll(executorMap);
+        merged.putAll(defaultExecutors);
+        return Collections.unmodifiableMap(merged);
     }
 
+    /**
+     * Set the executors to be used. If the map is an {@link ImmutableCaseInsensitiveMap}, like the one
+     * from {@link io.github.wysohn.triggerreactor.core.manager.KeyValueManager#getSnapshot()}, it will be shared
+     * as is; otherwise, it will be copied.
+     * <p>
+     * The built-in executors (STOP, WAIT, BREAK, CONTINUE) always take precedence over the executors in the map.
+     *
+     * @param executorMap the executors
+     */
     public void setExecutorMap(Map<String, Executor> executorMap) {
-        for (Entry<String, Executor> entry : executorMap.entrySet())
-            this.executorMap.put(entry.getKey(), entry.getValue());
+        this.executorMap = ImmutableCaseInsensitiveMap.copyOf(executorMap);
     }
 
+    /**
+     * @return copy of all the placeholders available to this Interpreter, including the built-in ones.
+     */
     public Map<String, Placeholder> getPlaceholderMap() {
-        return placeholderMap;
+        Map<String, Placeholder> merged = new CaseInsensitiveStringMap<>();
+        merged.putAll(placeholderMap);
+        merged.putAll(defaultPlaceholders);
+        return Collections.unmodifiableMap(merged);
     }
 
+    /**
+     * Set the placeholders to be used. Same as {@link #setExecutorMap(Map)}, the map will be shared as is
+     * if it's an {@link ImmutableCaseInsensitiveMap}.
+     *
+     * @param placeholderMap the placeholders
+     */
     public void setPlaceholderMap(Map<String, Placeholder> placeholderMap) {
-        for (Entry<String, Placeholder> entry : placeholderMap.entrySet())
-            this.placeholderMap.put(entry.getKey(), entry.getValue());
+        this.placeholderMap = ImmutableCaseInsensitiveMap.copyOf(placeholderMap);
     }
 
     public Map<Object, Object> getGvars() {
@@ -133,10 +174,10 @@ public class Interpreter {
     }
 
     private void initDefaultExecutors() {
-        executorMap.put("STOP", EXECUTOR_STOP);
-        executorMap.put("WAIT", EXECUTOR_WAIT);
-        executorMap.put("BREAK", EXECUTOR_BREAK);
-        executorMap.put("CONTINUE", EXECUTOR_CONTINUE);
+        defaultExecutors.put("STOP", EXECUTOR_STOP);
+        defaultExecutors.put("WAIT", EXECUTOR_WAIT);
+        defaultExecutors.put("BREAK", EXECUTOR_BREAK);
+        defaultExecutors.put("CONTINUE", EXECUTOR_CONTINUE);
     }
 
     private void initDefaultPlaceholders() {
@@ -201,6 +242,32 @@ public class Interpreter {
         }
     }
 
+    /**
+     * Start interpretation, but let the interpreter return the thread at #WAIT instead of blocking it, if the
+     * implementation supports it. The interpretation then continues in the resumer once the time is over.
+     * <p>
+     * This implementation doesn't support it, so it's same as
+     * {@link #startWithContextAndInterrupter(Object, ProcessInterrupter, Timings.Timing)}, and the returned
+     * future is already completed.
+     *
+     * @param context     The context that can be used by Executors. This is usually Event object for Bukkit plugin.
+     * @param interrupter gives the caller to interrupt the execution
+     * @param resumer     where the interpretation continues after #WAIT. null to block the thread at #WAIT.
+     * @return the future which completes when the interpretation is done, or completes exceptionally with the
+     * InterpreterException.
+     */
+    public CompletableFuture<Void> startSuspendable(Object context, ProcessInterrupter interrupter,
+                                                    Timings.Timing timing, java.util.concurrent.Executor resumer) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            startWithContextAndInterrupter(context, interrupter, timing);
+            future.complete(null);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     //Check if stopFlag is on before pop Token from stack.
     private void start(Node node) throws InterpreterException {
         if (stopFlag)
@@ -392,6 +459,7 @@ public class Interpreter {
             }
 
         } else if (node.getToken().getType() == Type.SYNC) {
+            Runnable unblocked = TriggerExecutionService.beginBlocking();
             try {
                 task.submitSync(new Callable<Void>() {
 
@@ -409,33 +477,39 @@ public class Interpreter {
                 return;
             } catch (InterruptedException | ExecutionException ex) {
                 throw new InterpreterException("Synchronous task error.", ex);
+            } finally {
+                unblocked.run();
             }
         } else if (node.getToken().getType() == Type.ASYNC) {
-            task.submitAsync(() -> {
-                Node rootCopy = new Node(new Token(Type.ROOT, "<ROOT>", -1, -1));
-                rootCopy.getChildren().addAll(node.getChildren());
-
-                Interpreter copy = new Interpreter(rootCopy);
-                // ignore whatever returns as it's impossible
-                // to handle it from the caller
-                copy.setExecutorMap(executorMap);
-                copy.setPlaceholderMap(placeholderMap);
-                
-                //prevents default executors/placeholders from being overwritten by setting the maps
-                copy.initDefaultPlaceholders();
-                copy.initDefaultExecutors();
-                copy.setGvars(gvars);
-                copy.setVars(vars);
-                copy.setSelfReference(selfReference);
-                copy.setTaskSupervisor(task);
-                copy.setSync(false);
-
-                try {
-                    copy.startWithContextAndInterrupter(context, interrupter, timing);
-                } catch (InterpreterException e) {
-                    TriggerReactorCore.getInstance().handleException(context, e);
-                }
-            });
+            try {
+                task.submitAsync(() -> {
+                    Node rootCopy = new Node(new Token(Type.ROOT, "<ROOT>", -1, -1));
+                    rootCopy.getChildren().addAll(node.getChildren());
+
+                    Interpreter copy = new Interpreter(rootCopy);
+                    // ignore whatever returns as it's impossible
+                    // to handle it from the caller
+                    copy.setExecutorMap(executorMap);
+                    copy.setPlaceholderMap(placeholderMap);
+                    copy.setGvars(gvars);
+                    copy.setVars(vars);
+                    copy.setSelfReference(selfReference);
+                    copy.setTaskSupervisor(task);
+                    copy.setSync(false);
+
+                    try {
+                        copy.startWithContextAndInterrupter(context, interrupter, timing);
+                    } catch (InterpreterException e) {
+                        TriggerReactorCore.getInstance().handleException(context, e);
+                    } finally {
+                        // the script may have written back the variables already
+                        if (vars instanceof LocalVariables)
+                            ((LocalVariables) vars).writeBack();
+                    }
+                });
+            } catch (RejectedExecutionException ignored) {
+                //counted and logged by TriggerExecutionService
+            }
             return;
         } else {
             for (int i = 0; i < node.getChildren().size(); i++) {
@@ -492,16 +566,7 @@ public class Interpreter {
                     stopFlag = true;
                     return;
                 case Executor.WAIT:
-                    waitFlag = true;
-                    synchronized (this) {
-                        while (waitFlag) {
-                            try {
-                                this.wait();
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    }
+                    awaitWaitFlag();
                     break;
                 case Executor.BREAK:
                     breakFlag = true;
@@ -515,6 +580,48 @@ public class Interpreter {
         }
     }
 
+    /**
+     * Called by {@link #EXECUTOR_WAIT} before scheduling the task. The waitFlag is set here, not after the
+     * executor returns, so the task can't clear it before it's even set.
+     *
+     * @return the task to run when the time is over.
+     */
+    Runnable beginWait() {
+        synchronized (this) {
+            waitFlag = true;
+        }
+
+        return new Runnable() {
+            @Override
+            public void run() {
+                synchronized (Interpreter.this) {
+                    Interpreter.this.waitFlag = false;
+                    Interpreter.this.notify();
+                }
+            }
+        };
+    }
+
+    /**
+     * Block the current thread until the waitFlag is cleared by the task scheduled by {@link #EXECUTOR_WAIT}.
+     */
+    void awaitWaitFlag() {
+        Runnable unblocked = TriggerExecutionService.beginBlocking();
+        try {
+            synchronized (this) {
+                while (waitFlag) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        } finally {
+            unblocked.run();
+        }
+    }
+
     /**
      * @param node
      * @return return codes in Executor. null if execution continues.
@@ -535,80 +642,19 @@ public class Interpreter {
                 Token right = stack.pop();
                 Token left = stack.pop();
 
-                if (isVariable(right)) {
-                    right = unwrapVariable(right);
-                }
-
-                if (!(right.value instanceof Class))
-                    throw new RuntimeException(right + " is not a Class!");
-
-                if (isVariable(left)) {
-                    left = unwrapVariable(left);
-                }
-
-                Class<?> clazz = (Class<?>) right.value;
-                stack.push(new Token(Type.BOOLEAN, clazz.isInstance(left.value), node.getToken()));
+                stack.push(instanceOf(left, right, node.getToken()));
             } else if (node.getToken().type == Type.EXECUTOR) {
                 String command = (String) node.getToken().value;
 
-                Object[] args = new Object[node.getChildren().size()];
-                for (int i = args.length - 1; i >= 0; i--) {
-                    Token argument = stack.pop();
-
-                    if (isVariable(argument)) {
-                        argument = unwrapVariable(argument);
-                    }
-
-                    args[i] = argument.value;
-                }
-
-                if (interrupter != null && interrupter.onCommand(context, command, args)) {
-                    return null;
-                } else {
-                    if (!executorMap.containsKey(command))
-                        throw new InterpreterException("No executor named #" + command + " found!");
+                Object[] args = popArguments(node.getChildren().size());
 
-                    return executorMap.get(command).execute(timing, sync, vars, context, args);
-                }
+                return executeCommand(command, args);
             } else if (node.getToken().type == Type.PLACEHOLDER) {
                 String placeholderName = (String) node.getToken().value;
 
-                Object[] args = new Object[node.getChildren().size()];
-                for (int i = args.length - 1; i >= 0; i--) {
-                    Token argument = stack.pop();
-
-                    if (isVariable(argument)) {
-                        argument = unwrapVariable(argument);
-                    }
-
-                    args[i] = argument.value;
-                }
-
-                Object replaced = null;
-                if (interrupter != null) {
-                    replaced = interrupter.onPlaceholder(context, placeholderName, args);
-                }
-
-                if (replaced == null && !placeholderMap.containsKey(placeholderName))
-                    throw new InterpreterException("No placeholder named $" + placeholderName + " found!");
-
-                if (replaced == null) {
-                    replaced = placeholderMap.get(placeholderName).parse(timing, context, vars, args);
-                }
+                Object[] args = popArguments(node.getChildren().size());
 
-                if (replaced instanceof Number) {
-                    double d = ((Number) replaced).doubleValue();
-                    if (d % 1 == 0) {
-                        // whole number
-                        stack.push(new Token(Type.INTEGER, (int) d, node.getToken()));
-                    } else {
-                        stack.push(new Token(Type.DECIMAL, d, node.getToken()));
-                    }
-                } else if (replaced == null) {
-                    stack.push(new Token(Type.NULLVALUE, null, node.getToken()));
-                } else {
-                    stack.push(new Token(Type.EPS, replaced, node.getToken()));
-                }
+                stack.push(parsePlaceholder(placeholderName, args, node.getToken()));
             } else if (node.getToken().type == Type.OPERATOR_A) {
                 String tokenValue = (String) node.getToken().value;
 
@@ -851,91 +897,18 @@ public class Interpreter {
                         right = stack.pop();
                         //function call
                         if (right.type == Type.CALL) {
-                            Object[] args = new Object[callArgsSize];
-                            for (int i = callArgsSize - 1; i >= 0; i--) {
-                                Token argument = stack.pop();
-
-                                if (isVariable(argument)) {
-                                    argument = unwrapVariable(argument);
-                                }
-
-                                args[i] = argument.value;
-                            }
+                            Object[] args = popArguments(callArgsSize);
                             callArgsSize = 0;
 
                             left = stack.pop();
 
-                            if (left.type == Type.THIS) {
-                                callFunction(new Token(Type.OBJECT, right.value, node.getToken()),
-                                        new Token(Type.OBJECT, selfReference, node.getToken()), args);
-                            } else {
-                                Token temp = left;
-
-                                if (isVariable(left)) {
-                                    left = unwrapVariable(left);
-                                }
-
-                                if (left.getType() == Type.NULLVALUE) {
-                                    throw new InterpreterException("Cannot access " + right + "! " + temp.value + " is null.");
-                                }
-
-                                if (left.isObject()) { // method call for target object
-                                    callFunction(right, left, args);
-                                } else if (left.isBoxedPrimitive()) { // special case: numeric class access
-                                    callFunction(right, left, args);
-                                } else if (left.value instanceof Accessor) {
-                                    Accessor accessor = (Accessor) left.value;
-
-                                    Object var;
-                                    try {
-                                        var = accessor.evaluateTarget();
-                                    } catch (NoSuchFieldException e) {
-                                        throw new InterpreterException("Unknown field " + accessor, e);
-                                    } catch (Exception e) {
-                                        throw new InterpreterException("Unknown error " + e.getMessage(), e);
-                                    }
-
-                                    callFunction(right, new Token(Type.EPS, var, node.getToken()), args);
-                                } else {
-                                    throw new InterpreterException("Unexpected value " + left + " for target of " + right
-                                            + ". " + "Is " + left + "." + right + " what you were trying to do?");
-                                }
-                            }
+                            stack.push(invokeMethod(left, right, args, node.getToken(), node.getInlineCache()));
                         }
                         //field access
                         else {
                             left = stack.pop();
 
-                            if (left.type == Type.THIS) {
-                                stack.push(right);
-                            } else {
-                                Token temp = left;
-
-                                if (isVariable(left)) {
-                                    left = unwrapVariable(left);
-                                }
-
-                                if (left.getType() == Type.NULLVALUE) {
-                                    throw new InterpreterException("Cannot access " + right + "! " + temp.value + " is null.");
-                                }
-
-                                if (left.isObject() || left.isArray()) {
-                                    stack.push(new Token(Type.ACCESS, new Accessor(left.value, (String) right.value), node.getToken()));
-                                } else {
-                                    Accessor accessor = (Accessor) left.value;
-
-                                    Object var;
-                                    try {
-                                        var = accessor.evaluateTarget();
-                                    } catch (NoSuchFieldException e) {
-                                        throw new InterpreterException("Unknown field " + accessor, e);
-                                    } catch (Exception e) {
-                                        throw new InterpreterException("Unknown error " + e.getMessage(), e);
-                                    }
-
-                                    stack.push(new Token(Type.ACCESS, new Accessor(var, (String) right.value), node.getToken()));
-                                }
-                            }
+                            stack.push(accessField(left, right, node.getToken(), node.getInlineCache()));
                         }
                         break;
                 }
@@ -943,21 +916,7 @@ public class Interpreter {
                 Token right = stack.pop();
                 Token left = stack.pop();
 
-                if (isVariable(left)) {
-                    left = unwrapVariable(left);
-                }
-
-                if (isVariable(right)) {
-                    right = unwrapVariable(right);
-                }
-
-                if (!left.isArray())
-                    throw new InterpreterException(left + " is not an array!");
-
-                if (!right.isInteger())
-                    throw new InterpreterException(right + " is not a valid index for array!");
-
-                stack.push(new Token(Type.ACCESS, new Accessor(left.value, right.toInteger()), node.getToken()));
+                stack.push(accessArray(left, right, node.getToken()));
             } else if (node.getToken().type == Type.THIS) {
                 stack.push(node.getToken());
             } else if (node.getToken().type == Type.ID) {
@@ -965,15 +924,7 @@ public class Interpreter {
             } else if (node.getToken().type == Type.GID || node.getToken().type == Type.GID_TEMP) {
                 Token keyToken = stack.pop();
 
-                if (isVariable(keyToken)) {
-                    keyToken = unwrapVariable(keyToken);
-                }
-
-                if (keyToken.getType() != Type.STRING) {
-                    throw new InterpreterException(keyToken + " is not a valid global variable id.");
-                }
-
-                stack.push(new Token(node.getToken().type, keyToken.value, node.getToken()));
+                stack.push(globalVariable(keyToken, node.getToken()));
             } else if (node.getToken().type == Type.CALL) {
                 stack.push(node.getToken());
                 callArgsSize = node.getChildren().size();
@@ -990,8 +941,7 @@ public class Interpreter {
             } else if (node.getToken().type == Type.NULLVALUE) {
                 stack.push(new Token(node.getToken().type, null, node.getToken()));
             } else if (node.getToken().type == Type.IMPORT) {
-                Class<?> clazz = Class.forName((String) node.getToken().getValue());
-                importMap.put(clazz.getSimpleName(), clazz);
+                importClass((String) node.getToken().getValue());
             } else {
                 throw new InterpreterException("Cannot interpret the unknown node " + node.getToken().type.name());
             }
@@ -1002,7 +952,214 @@ public class Interpreter {
         return null;
     }
 
-    private void assignValue(Token id, Token value) throws InterpreterException {
+    private Object[] popArguments(int size) throws InterpreterException {
+        Object[] args = new Object[size];
+        for (int i = args.length - 1; i >= 0; i--) {
+            Token argument = stack.pop();
+
+            if (isVariable(argument)) {
+                argument = unwrapVariable(argument);
+            }
+
+            args[i] = argument.value;
+        }
+        return args;
+    }
+
+    private void importClass(String className) throws ClassNotFoundException {
+        Class<?> clazz = Class.forName(className);
+        importMap.put(clazz.getSimpleName(), clazz);
+    }
+
+    /**
+     * @param command name of the executor
+     * @param args    unwrapped arguments
+     * @return return codes in Executor. null if execution continues.
+     * @throws Exception
+     */
+    Integer executeCommand(String command, Object[] args) throws Exception {
+        if (interrupter != null && interrupter.onCommand(context, command, args)) {
+            return null;
+        } else {
+            Executor executor = defaultExecutors.getIgnoreCase(command);
+            if (executor == null)
+                executor = executorMap.get(command);
+
+            if (executor == null)
+                throw new InterpreterException("No executor named #" + command + " found!");
+
+            return executor.execute(timing, sync, vars, context, args);
+        }
+    }
+
+    Token parsePlaceholder(String placeholderName, Object[] args, Token origin) throws Exception {
+        Object replaced = null;
+        if (interrupter != null) {
+            replaced = interrupter.onPlaceholder(context, placeholderName, args);
+        }
+
+        if (replaced == null) {
+            Placeholder placeholder = defaultPlaceholders.getIgnoreCase(placeholderName);
+            if (placeholder == null)
+                placeholder = placeholderMap.get(placeholderName);
+
+            if (placeholder == null)
+                throw new InterpreterException("No placeholder named $" + placeholderName + " found!");
+
+            replaced = placeholder.parse(timing, context, vars, args);
+        }
+
+        if (replaced instanceof Number) {
+            double d = ((Number) replaced).doubleValue();
+            if (d % 1 == 0) {
+                // whole number
+                return new Token(Type.INTEGER, (int) d, origin);
+            } else {
+                return new Token(Type.DECIMAL, d, origin);
+            }
+        } else if (replaced == null) {
+            return new Token(Type.NULLVALUE, null, origin);
+        } else {
+            return new Token(Type.EPS, replaced, origin);
+        }
+    }
+
+    Token instanceOf(Token left, Token right, Token origin) throws InterpreterException {
+        if (isVariable(right)) {
+            right = unwrapVariable(right);
+        }
+
+        if (!(right.value instanceof Class))
+            throw new RuntimeException(right + " is not a Class!");
+
+        if (isVariable(left)) {
+            left = unwrapVariable(left);
+        }
+
+        Class<?> clazz = (Class<?>) right.value;
+        return new Token(Type.BOOLEAN, clazz.isInstance(left.value), origin);
+    }
+
+    /**
+     * left.right(args)
+     *
+     * @param cache the cache of the node
+     */
+    Token invokeMethod(Token left, Token right, Object[] args, Token origin, InlineCache cache) throws InterpreterException {
+        if (left.type == Type.THIS) {
+            return callFunction(new Token(Type.OBJECT, right.value, origin),
+                    new Token(Type.OBJECT, selfReference, origin), args, cache);
+        }
+
+        Token temp = left;
+
+        if (isVariable(left)) {
+            left = unwrapVariable(left);
+        }
+
+        if (left.getType() == Type.NULLVALUE) {
+            throw new InterpreterException("Cannot access " + right + "! " + temp.value + " is null.");
+        }
+
+        if (left.isObject()) { // method call for target object
+            return callFunction(right, left, args, cache);
+        } else if (left.isBoxedPrimitive()) { // special case: numeric class access
+            return callFunction(right, left, args, cache);
+        } else if (left.value instanceof Accessor) {
+            Accessor accessor = (Accessor) left.value;
+
+            Object var;
+            try {
+                var = accessor.evaluateTarget();
+            } catch (NoSuchFieldException e) {
+                throw new InterpreterException("Unknown field " + accessor, e);
+            } catch (Exception e) {
+                throw new InterpreterException("Unknown error " + e.getMessage(), e);
+            }
+
+            return callFunction(right, new Token(Type.EPS, var, origin), args, cache);
+        } else {
+            throw new InterpreterException("Unexpected value " + left + " for target of " + right
+                    + ". " + "Is " + left + "." + right + " what you were trying to do?");
+        }
+    }
+
+    /**
+     * left.right
+     *
+     * @param cache the cache of the node
+     */
+    Token accessField(Token left, Token right, Token origin, InlineCache cache) throws InterpreterException {
+        if (left.type == Type.THIS) {
+            return right;
+        }
+
+        Token temp = left;
+
+        if (isVariable(left)) {
+            left = unwrapVariable(left);
+        }
+
+        if (left.getType() == Type.NULLVALUE) {
+            throw new InterpreterException("Cannot access " + right + "! " + temp.value + " is null.");
+        }
+
+        if (left.isObject() || left.isArray()) {
+            return new Token(Type.ACCESS, new Accessor(left.value, (String) right.value, cache), origin);
+        } else {
+            Accessor accessor = (Accessor) left.value;
+
+            Object var;
+            try {
+                var = accessor.evaluateTarget();
+            } catch (NoSuchFieldException e) {
+                throw new InterpreterException("Unknown field " + accessor, e);
+            } catch (Exception e) {
+                throw new InterpreterException("Unknown error " + e.getMessage(), e);
+            }
+
+            return new Token(Type.ACCESS, new Accessor(var, (String) right.value, cache), origin);
+        }
+    }
+
+    /**
+     * left[right]
+     */
+    Token accessArray(Token left, Token right, Token origin) throws InterpreterException {
+        if (isVariable(left)) {
+            left = unwrapVariable(left);
+        }
+
+        if (isVariable(right)) {
+            right = unwrapVariable(right);
+        }
+
+        if (!left.isArray())
+            throw new InterpreterException(left + " is not an array!");
+
+        if (!right.isInteger())
+            throw new InterpreterException(right + " is not a valid index for array!");
+
+        return new Token(Type.ACCESS, new Accessor(left.value, right.toInteger()), origin);
+    }
+
+    /**
+     * @param keyToken the key of the global variable
+     * @param origin   the GID or GID_TEMP token
+     */
+    Token globalVariable(Token keyToken, Token origin) throws InterpreterException {
+        if (isVariable(keyToken)) {
+            keyToken = unwrapVariable(keyToken);
+        }
+
+        if (keyToken.getType() != Type.STRING) {
+            throw new InterpreterException(keyToken + " is not a valid global variable id.");
+        }
+
+        return new Token(origin.type, keyToken.value, origin);
+    }
+
+    void assignValue(Token id, Token value) throws InterpreterException {
         if (id.type == Type.ACCESS) {
             Accessor accessor = (Accessor) id.value;
             try {
@@ -1041,14 +1198,14 @@ public class Interpreter {
         }
     }
 
-    private void callFunction(Token right, Token left, Object[] args) throws InterpreterException {
+    Token callFunction(Token right, Token left, Object[] args, InlineCache cache) throws InterpreterException {
         Object result;
 
         if (importMap.containsKey(right.value)) {
             Class<?> clazz = importMap.get(right.value);
 
             try {
-                result = ReflectionUtil.constructNew(clazz, args);
+                result = cache.constructNew(clazz, args);
             } catch (Exception e) {
                 throw new InterpreterException("Cannot create new instance with " + right + " of " + clazz.getSimpleName(), e);
             }
@@ -1056,7 +1213,7 @@ public class Interpreter {
             Class<?> clazz = (Class<?>) left.value;
 
             try {
-                result = ReflectionUtil.invokeMethod(clazz, null, (String) right.value, args);
+                result = cache.invokeMethod(clazz, null, (String) right.value, args);
             } catch (IllegalAccessException e) {
                 throw new InterpreterException("Function " + right + " is not visible.", e);
             } catch (NoSuchMethodException e) {
@@ -1068,7 +1225,7 @@ public class Interpreter {
             }
         } else {
             try {
-                result = ReflectionUtil.invokeMethod(left.value, (String) right.value, args);
+                result = cache.invokeMethod(left.value, (String) right.value, args);
             } catch (IllegalAccessException e) {
                 throw new InterpreterException("Function " + right + " is not visible.", e);
             } catch (NoSuchMethodException e) {
@@ -1082,12 +1239,12 @@ public class Interpreter {
 
         if (result != null) {
             if (isPrimitive(result)) {
-                stack.push(new Token(Type.EPS, result, right));
+                return new Token(Type.EPS, result, right);
             } else {
-                stack.push(new Token(Type.OBJECT, result, right));
+                return new Token(Type.OBJECT, result, right);
             }
         } else {
-            stack.push(new Token(Type.NULLVALUE, null, right));
+            return new Token(Type.NULLVALUE, null, right);
         }
     }
 
@@ -1098,14 +1255,14 @@ public class Interpreter {
                 || obj.getClass() == String.class;
     }
 
-    private boolean isVariable(Token token) {
+    boolean isVariable(Token token) {
         return token.type == Type.ID
                 || token.type == Type.GID
                 || token.type == Type.GID_TEMP
                 || token.type == Type.ACCESS;
     }
 
-    private Token unwrapVariable(Token varToken) throws InterpreterException {
+    Token unwrapVariable(Token varToken) throws InterpreterException {
         if (varToken.type == Type.ID) {
             if (importMap.containsKey(varToken.value)) {
                 Class<?> clazz = importMap.get(varToken.value);
@@ -1136,7 +1293,7 @@ public class Interpreter {
         }
     }
 
-    private Token parseValue(Object var, Token origin) {
+    Token parseValue(Object var, Token origin) {
         if (var == null) {
             return new Token(Type.NULLVALUE, null, origin);
         } else if (var.getClass() == Integer.class) {
@@ -1189,15 +1346,7 @@ public class Interpreter {
 
             double secs = ((Number) args[0]).doubleValue();
             long later = (long) (secs * 1000);
-            Executor.runTaskLater(new Runnable() {
-                @Override
-                public void run() {
-                    synchronized (Interpreter.this) {
-                        Interpreter.this.waitFlag = false;
-                        Interpreter.this.notify();
-                    }
-                }
-            }, later);
+            Executor.scheduleTask(beginWait(), later);
             return WAIT;
         }
     };
@@ -0,0 +1,275 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.compiler.CompiledScript;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Local variables of a single run of a script.
+ * <p>
+ * The variables used in the {@link CompiledScript} are kept in the slots given by the Compiler, so
+ * {@link CompiledInterpreter} can read and write them by index instead of hashing the name each time. Variables
+ * without a slot, like the ones put by the Executors, are kept separately by name.
+ * <p>
+ * The variables which were not assigned yet are looked up in the layers, in the given order, and then in the
+ * base map. The layers are only read, so the shared variables and such don't have to be copied for every run.
+ * The base map is not modified either until {@link #writeBack()} is called.
+ * <p>
+ * This is also a Map, so it can be passed to the Executors. Iterating over the Map merges all the layers, so it's
+ * expensive compared to {@link #get(Object)} and {@link #put(String, Object)}. The merged variables are kept until
+ * a variable is assigned or removed, so the Executors called in a row share them. The changes made to the layers
+ * or the base map in the meantime may not be seen in the iteration, though {@link #get(Object)} sees them.
+ */
+public class LocalVariables extends AbstractMap<String, Object> {
+    //assigned null, which hides the variable of the same name in the layers
+    private static final Object NULL = new Object();
+    //removed, which also hides the variable of the same name in the layers
+    private static final Object REMOVED = new Object();
+
+    private final CompiledScript script;
+    private final String[] names;
+    //null if not assigned yet
+    private final AtomicReferenceArray<Object> slots;
+    //variables without slot
+    private final Map<String, Object> others = new ConcurrentHashMap<>();
+
+    private final Map<String, Object> base;
+    private final List<Map<String, ?>> layers;
+
+    //number of the variables assigned or removed so far
+    private final AtomicLong writes = new AtomicLong();
+    //all the variables merged, which is up to date while its writes is the same as the current one
+    private volatile Merged merged;
+
+    /**
+     * @param script the script which will use the variables. Can be null, and then every variable is kept
+     *               by its name.
+     * @param base   the variables to start with. The assigned variables will be put here on {@link #writeBack()}.
+     */
+    public LocalVariables(CompiledScript script, Map<String, Object> base) {
+        this(script, base, Collections.emptyList());
+    }
+
+    /**
+     * @param script the script which will use the variables. Can be null, and then every variable is kept
+     *               by its name.
+     * @param base   the variables to start with. The assigned variables will be put here on {@link #writeBack()}.
+     * @param layers the variables which take precedence over the base. The first one has the highest priority.
+     */
+    public LocalVariables(CompiledScript script, Map<String, Object> base, List<Map<String, ?>> layers) {
+        this.script = script;
+        this.names = script == null ? new String[0] : script.getLocalNames();
+        this.slots = new AtomicReferenceArray<>(names.length);
+        this.base = base;
+        this.layers = layers;
+    }
+
+    /**
+     * @return true if the slots of this instance are the ones given to the script.
+     */
+    boolean hasSlotsOf(CompiledScript script) {
+        return script != null && this.script == script;
+    }
+
+    /**
+     * Same as {@link #get(Object)}, but using the slot.
+     */
+    Object getLocal(int slot, String name) {
+        Object value = slots.get(slot);
+        return value == null ? inherited(name) : unmask(value);
+    }
+
+    /**
+     * Same as {@link #put(String, Object)}, but using the slot.
+     */
+    void setLocal(int slot, Object value) {
+        slots.set(slot, value == null ? NULL : value);
+        writes.incrementAndGet();
+    }
+
+    /**
+     * Put all the variables assigned or removed so far to the base map, so the caller can see them as if the
+     * base map was used directly. It can be called again later, such as when an ASYNC block which shares the
+     * variables is over after the script itself.
+     */
+    public void writeBack() {
+        synchronized (base) {
+            for (int i = 0; i < names.length; i++) {
+                writeBack(names[i], slots.get(i));
+            }
+            for (Entry<String, Object> entry : others.entrySet()) {
+                writeBack(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void writeBack(String name, Object value) {
+        if (value == null) {
+            return;
+        }
+
+        if (value == REMOVED) {
+            base.remove(name);
+        } else {
+            base.put(name, unmask(value));
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (!(key instanceof String))
+            return null;
+
+        String name = (String) key;
+        Object value = assigned(name);
+        return value == null ? inherited(name) : unmask(value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (!(key instanceof String))
+            return false;
+
+        String name = (String) key;
+        Object value = assigned(name);
+        if (value != null)
+            return value != REMOVED;
+
+        for (Map<String, ?> layer : layers) {
+            if (layer.containsKey(name))
+                return true;
+        }
+        return base.containsKey(name);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Object previous = get(key);
+        assign(key, value == null ? NULL : value);
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (!(key instanceof String))
+            return null;
+
+        Object previous = get(key);
+        assign((String) key, REMOVED);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        for (String name : merge().keySet()) {
+            assign(name, REMOVED);
+        }
+    }
+
+    /**
+     * @return snapshot of all the variables. Unmodifiable.
+     */
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return merge().entrySet();
+    }
+
+    private Map<String, Object> merge() {
+        // read before merging, so a variable assigned meanwhile makes it outdated
+        long writes = this.writes.get();
+        Merged merged = this.merged;
+        if (merged == null || merged.writes != writes) {
+            merged = new Merged(writes, Collections.unmodifiableMap(mergeAll()));
+            this.merged = merged;
+        }
+        return merged.variables;
+    }
+
+    private Map<String, Object> mergeAll() {
+        Map<String, Object> merged = new HashMap<>(base);
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            merged.putAll(layers.get(i));
+        }
+
+        for (Entry<String, Object> entry : others.entrySet()) {
+            merge(merged, entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < names.length; i++) {
+            merge(merged, names[i], slots.get(i));
+        }
+        return merged;
+    }
+
+    private static void merge(Map<String, Object> merged, String name, Object value) {
+        if (value == null) {
+            return;
+        }
+
+        if (value == REMOVED) {
+            merged.remove(name);
+        } else {
+            merged.put(name, unmask(value));
+        }
+    }
+
+    private int slotOf(String name) {
+        return script == null ? -1 : script.getLocalSlot(name);
+    }
+
+    private Object assigned(String name) {
+        int slot = slotOf(name);
+        return slot < 0 ? others.get(name) : slots.get(slot);
+    }
+
+    private void assign(String name, Object value) {
+        int slot = slotOf(name);
+        if (slot < 0) {
+            others.put(name, value);
+        } else {
+            slots.set(slot, value);
+        }
+        writes.incrementAndGet();
+    }
+
+    private Object inherited(String name) {
+        for (Map<String, ?> layer : layers) {
+            Object value = layer.get(name);
+            if (value != null || layer.containsKey(name))
+                return value;
+        }
+        return base.get(name);
+    }
+
+    private static Object unmask(Object value) {
+        return value == NULL || value == REMOVED ? null : value;
+    }
+
+    private static final class Merged {
+        private final long writes;
+        private final Map<String, Object> variables;
+
+        private Merged(long writes, Map<String, Object> variables) {
+            this.writes = writes;
+            this.variables = variables;
+        }
+    }
+}
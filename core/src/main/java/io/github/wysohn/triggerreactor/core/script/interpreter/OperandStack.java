@@ -0,0 +1,273 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.Token.Type;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+/**
+ * Operand stack of the interpreters. Unlike java.util.Stack, it is not synchronized, and integers, decimals, and
+ * booleans are kept in primitive slots, so the arithmetic doesn't have to box the values and create a new Token
+ * for every intermediate result. A Token is created only when a primitive slot is popped with {@link #pop()}.
+ * <p>
+ * Each slot consists of a tag, a primitive payload, and a Token. For the {@link #REF} slots, the Token is the
+ * operand itself, and the payload is the slot of the local variable if any; for the primitive slots, the Token
+ * is where the value came from, which is used for its row and column.
+ * <p>
+ * The depth used by the methods is counted from the top of the stack, so 0 is the top.
+ */
+final class OperandStack {
+    static final byte REF = 0;
+    static final byte INTEGER = 1;
+    static final byte DECIMAL = 2;
+    static final byte BOOLEAN = 3;
+
+    private byte[] tags;
+    private long[] values;
+    private Token[] refs;
+    private int size = 0;
+
+    OperandStack() {
+        this(16);
+    }
+
+    OperandStack(int capacity) {
+        tags = new byte[capacity];
+        values = new long[capacity];
+        refs = new Token[capacity];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void push(Token token) {
+        ensureCapacity();
+        set(size++, REF, 0L, token);
+    }
+
+    /**
+     * Push the ID token of a local variable along with its slot.
+     *
+     * @see #localSlot(int)
+     */
+    void pushLocal(Token token, int slot) {
+        ensureCapacity();
+        set(size++, REF, slot + 1L, token);
+    }
+
+    /**
+     * Push the Token. If the value is Integer, Double, or Boolean, it's stored in the primitive slot, and the
+     * Token popped later will be of the type INTEGER, DECIMAL, or BOOLEAN respectively.
+     */
+    void pushLiteral(Token token) {
+        ensureCapacity();
+        setLiteral(size++, token);
+    }
+
+    void pushInteger(int value, Token origin) {
+        ensureCapacity();
+        set(size++, INTEGER, value, origin);
+    }
+
+    void pushDecimal(double value, Token origin) {
+        ensureCapacity();
+        set(size++, DECIMAL, Double.doubleToRawLongBits(value), origin);
+    }
+
+    void pushBoolean(boolean value, Token origin) {
+        ensureCapacity();
+        set(size++, BOOLEAN, value ? 1L : 0L, origin);
+    }
+
+    /**
+     * Pop the top of the stack as a Token. New Token is created if the slot is primitive.
+     */
+    Token pop() {
+        Token token = toToken(checkedIndex(0));
+        discard(1);
+        return token;
+    }
+
+    /**
+     * Pop the value of the top of the stack. The primitive slots are boxed.
+     */
+    Object popValue() {
+        int index = checkedIndex(0);
+        Object value;
+        switch (tags[index]) {
+            case INTEGER:
+                value = (int) values[index];
+                break;
+            case DECIMAL:
+                value = Double.longBitsToDouble(values[index]);
+                break;
+            case BOOLEAN:
+                value = values[index] != 0L;
+                break;
+            default:
+                value = refs[index].value;
+                break;
+        }
+        discard(1);
+        return value;
+    }
+
+    /**
+     * Remove the given number of slots from the top.
+     */
+    void discard(int count) {
+        if (count > size)
+            throw new EmptyStackException();
+
+        for (int i = 0; i < count; i++)
+            refs[--size] = null;
+    }
+
+    byte tag(int depth) {
+        return tags[checkedIndex(depth)];
+    }
+
+    boolean isNumeric(int depth) {
+        byte tag = tag(depth);
+        return tag == INTEGER || tag == DECIMAL;
+    }
+
+    /**
+     * Compare the values of two primitive slots. Same as equals() of the boxed values, so an integer is never
+     * equal to a decimal.
+     */
+    boolean valueEquals(int depth1, int depth2) {
+        int index1 = checkedIndex(depth1), index2 = checkedIndex(depth2);
+        if (tags[index1] != tags[index2])
+            return false;
+
+        if (tags[index1] == DECIMAL)
+            return Double.doubleToLongBits(Double.longBitsToDouble(values[index1]))
+                    == Double.doubleToLongBits(Double.longBitsToDouble(values[index2]));
+
+        return values[index1] == values[index2];
+    }
+
+    /**
+     * @return the slot of the local variable pushed by {@link #pushLocal(Token, int)}, or -1 if it's not a local
+     * variable.
+     */
+    int localSlot(int depth) {
+        int index = checkedIndex(depth);
+        return tags[index] == REF ? (int) values[index] - 1 : -1;
+    }
+
+    /**
+     * @return the Token of the slot; the operand itself if {@link #REF}, or the origin of the value otherwise.
+     */
+    Token ref(int depth) {
+        return refs[checkedIndex(depth)];
+    }
+
+    int integerAt(int depth) {
+        return (int) values[checkedIndex(depth)];
+    }
+
+    /**
+     * @return the value of the slot as double. Works for both {@link #INTEGER} and {@link #DECIMAL} slots.
+     */
+    double decimalAt(int depth) {
+        int index = checkedIndex(depth);
+        return tags[index] == INTEGER ? (int) values[index] : Double.longBitsToDouble(values[index]);
+    }
+
+    boolean booleanAt(int depth) {
+        return values[checkedIndex(depth)] != 0L;
+    }
+
+    /**
+     * Same as {@link #pop()} followed by {@link #pushLiteral(Token)}, but in place.
+     */
+    void replace(int depth, Token token) {
+        setLiteral(checkedIndex(depth), token);
+    }
+
+    void replaceInteger(int depth, int value, Token origin) {
+        set(checkedIndex(depth), INTEGER, value, origin);
+    }
+
+    void replaceDecimal(int depth, double value, Token origin) {
+        set(checkedIndex(depth), DECIMAL, Double.doubleToRawLongBits(value), origin);
+    }
+
+    void replaceBoolean(int depth, boolean value, Token origin) {
+        set(checkedIndex(depth), BOOLEAN, value ? 1L : 0L, origin);
+    }
+
+    private Token toToken(int index) {
+        Token origin = refs[index];
+        switch (tags[index]) {
+            case INTEGER:
+                return new Token(Type.INTEGER, (int) values[index], origin.row, origin.col);
+            case DECIMAL:
+                return new Token(Type.DECIMAL, Double.longBitsToDouble(values[index]), origin.row, origin.col);
+            case BOOLEAN:
+                return new Token(Type.BOOLEAN, values[index] != 0L, origin.row, origin.col);
+            default:
+                return origin;
+        }
+    }
+
+    private void setLiteral(int index, Token token) {
+        Object value = token.value;
+        if (value instanceof Integer) {
+            set(index, INTEGER, (Integer) value, token);
+        } else if (value instanceof Double) {
+            set(index, DECIMAL, Double.doubleToRawLongBits((Double) value), token);
+        } else if (value instanceof Boolean) {
+            set(index, BOOLEAN, (Boolean) value ? 1L : 0L, token);
+        } else {
+            set(index, REF, 0L, token);
+        }
+    }
+
+    private void set(int index, byte tag, long value, Token token) {
+        tags[index] = tag;
+        values[index] = value;
+        refs[index] = token;
+    }
+
+    private int checkedIndex(int depth) {
+        int index = size - 1 - depth;
+        if (index < 0)
+            throw new EmptyStackException();
+        return index;
+    }
+
+    private void ensureCapacity() {
+        if (size < tags.length)
+            return;
+
+        int capacity = Math.max(tags.length * 2, 16);
+        tags = Arrays.copyOf(tags, capacity);
+        values = Arrays.copyOf(values, capacity);
+        refs = Arrays.copyOf(refs, capacity);
+    }
+}
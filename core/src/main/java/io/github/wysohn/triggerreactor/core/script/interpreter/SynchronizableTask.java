@@ -19,9 +19,17 @@ package io.github.wysohn.triggerreactor.core.script.interpreter;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public abstract class SynchronizableTask {
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TriggerReactor Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * This will run in separate thread.
@@ -56,7 +64,18 @@ public abstract class SynchronizableTask {
         runTaskLater(task, 0L);
     }
 
+    /**
+     * Run the task later in the shared scheduler thread. Unlike {@link #runTaskLater(Runnable, long)}, no thread
+     * is created, so the task must be short, like waking up or handing over the work to another thread.
+     *
+     * @param task  the task
+     * @param mills delay in milliseconds
+     */
+    public static void scheduleTask(Runnable task, long mills) {
+        SCHEDULER.schedule(task, Math.max(mills, 0L), TimeUnit.MILLISECONDS);
+    }
+
     public static <T> Future<T> runSyncTaskForFuture(Callable<T> call) {
-        return TriggerReactorCore.getInstance().callSyncMethod(call);
+        return TriggerReactorCore.getInstance().submitSync(call);
     }
 }
@@ -20,6 +20,8 @@ public interface TaskSupervisor {
      * always spawn a new thread that will run concurrently.
      *
      * @param run the task to be done on separate thread
+     * @throws java.util.concurrent.RejectedExecutionException if the task is discarded, as there are too many
+     *                                                         tasks waiting already.
      */
     void submitAsync(Runnable run);
 }
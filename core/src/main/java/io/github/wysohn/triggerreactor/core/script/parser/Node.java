@@ -17,6 +17,7 @@
 package io.github.wysohn.triggerreactor.core.script.parser;
 
 import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.tools.InlineCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -25,6 +26,9 @@ public class Node {
     private final Token token;
     private final List<Node> children = new ArrayList<>();
 
+    //reflective lookups done by the interpreter for this node. Not part of the tree itself.
+    private volatile InlineCache inlineCache = null;
+
     public Node(Token token) {
         super();
         this.token = token;
@@ -38,6 +42,21 @@ public class Node {
         return children;
     }
 
+    /**
+     * Get the cache where the interpreter can keep the Field or Method it found while interpreting this node, so
+     * it doesn't have to find it again next time this node is interpreted.
+     *
+     * @return the cache of this node
+     */
+    public InlineCache getInlineCache() {
+        InlineCache cache = inlineCache;
+        if (cache == null) {
+            // it's fine even if two threads create it at the same time. One of them will just be discarded.
+            inlineCache = cache = new InlineCache();
+        }
+        return cache;
+    }
+
     @Override
     public String toString() {
         String str = token.toString();
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.warning;
+
+public class UnresolvedImportWarning extends Warning {
+
+    private final int row;
+    private final String className;
+
+    /**
+     * @param row       the row of the IMPORT statement
+     * @param className the fully qualified name of the class which couldn't be found
+     */
+    public UnresolvedImportWarning(int row, String className) {
+        this.row = row;
+        this.className = className;
+    }
+
+    @Override
+    public String[] getMessageLines() {
+        return new String[]{"Unresolved IMPORT at line " + row + ": ",
+                className,
+                "the class could not be found, so the IMPORT statement will be ignored"};
+    }
+}
@@ -16,6 +16,7 @@
  *******************************************************************************/
 package io.github.wysohn.triggerreactor.core.script.wrapper;
 
+import io.github.wysohn.triggerreactor.tools.InlineCache;
 import io.github.wysohn.triggerreactor.tools.ReflectionUtil;
 
 import java.lang.reflect.Array;
@@ -24,14 +25,25 @@ public class Accessor {
     public final Object targetParent;
     public final Object target;
 
+    private final InlineCache cache;
+
     public Accessor(Object targetParent, String targetName) {
+        this(targetParent, targetName, null);
+    }
+
+    /**
+     * @param cache the cache used to find the field. null to find it every time.
+     */
+    public Accessor(Object targetParent, String targetName, InlineCache cache) {
         this.targetParent = targetParent;
         this.target = targetName;
+        this.cache = cache;
     }
 
     public Accessor(Object array, Integer index) {
         this.targetParent = array;
         this.target = index;
+        this.cache = null;
     }
 
     public Object getTargetParent() {
@@ -52,8 +64,12 @@ public class Accessor {
                 throw new IllegalArgumentException(target.getClass() + " is not a valid type for array operation.");
             }
         } else if (targetParent instanceof Class) {
+            if (cache != null)
+                return cache.getField((Class<?>) targetParent, (Object) null, (String) target);
             return ReflectionUtil.getField((Class<?>) targetParent, (Object) null, (String) target);
         } else {
+            if (cache != null)
+                return cache.getField(targetParent, (String) target);
             return ReflectionUtil.getField(targetParent, (String) target);
         }
     }
@@ -61,6 +77,8 @@ public class Accessor {
     public void setTargetValue(Object value) throws NoSuchFieldException, IllegalArgumentException {
         if (targetParent.getClass().isArray()) {
             Array.set(targetParent, (Integer) target, value);
+        } else if (cache != null) {
+            cache.setField(targetParent, (String) target, value);
         } else {
             ReflectionUtil.setField(targetParent, (String) target, value);
         }
@@ -1,20 +1,74 @@
 package io.github.wysohn.triggerreactor.tools;
 
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
-public class CaseInsensitiveStringMap<T> extends HashMap<String, T> {
+/**
+ * Map with String keys which are compared case insensitively. Internally, the keys are normalized into
+ * a single case and used as the key of a HashMap, so every operation takes constant time regardless of the
+ * number of entries. The key is kept as it was first put for the iteration.
+ *
+ * @param <T>
+ */
+public class CaseInsensitiveStringMap<T> extends AbstractMap<String, T> implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
-    //if a version of key exists in the Map with similar case, return that, else return null
-    private String caseInsensitiveMatch(String key) {
-        for (String s : keySet()) {
-            if (s.equalsIgnoreCase(key)) {
-                return s;
-            }
-        }
+    //normalized key -> entry with the key as it was first put
+    private final Map<String, SimpleEntry<String, T>> index = new HashMap<>();
+
+    private transient Set<Entry<String, T>> entrySet;
+
+    public CaseInsensitiveStringMap() {
+    }
+
+    public CaseInsensitiveStringMap(Map<String, ? extends T> map) {
+        putAll(map);
+    }
+
+    /**
+     * Convert the key into the form used for the lookup. Two keys are equal ignoring case if, and only if,
+     * their normalized forms are equal.
+     *
+     * @param key the key. Can be null.
+     * @return the normalized key. The key itself is returned if it's already normalized.
+     */
+    static String normalize(String key) {
+        if (key == null)
+            return null;
+
+        int length = key.length();
+        int i = 0;
+        while (i < length && normalize(key.charAt(i)) == key.charAt(i))
+            i++;
 
-        return null;
+        if (i == length)
+            return key;
+
+        char[] chars = key.toCharArray();
+        for (; i < length; i++)
+            chars[i] = normalize(chars[i]);
+        return new String(chars);
+    }
+
+    private static char normalize(char c) {
+        return Character.toUpperCase(Character.toLowerCase(c));
+    }
+
+    /**
+     * Same as {@link #get(Object)} but without the type check.
+     *
+     * @param key the key in any case
+     * @return the value, or null if not found.
+     */
+    public T getIgnoreCase(String key) {
+        SimpleEntry<String, T> entry = index.get(normalize(key));
+        return entry == null ? null : entry.getValue();
     }
 
     /**
@@ -22,26 +76,87 @@ public class CaseInsensitiveStringMap<T> extends HashMap<String, T> {
      */
     @Override
     public boolean containsKey(Object key) {
-        if (!(key instanceof String)) {
-            return super.containsKey(key);
-        }
+        if (key != null && !(key instanceof String))
+            return false;
 
-        return caseInsensitiveMatch((String) key) != null;
+        return index.containsKey(normalize((String) key));
     }
 
     @Override
     public T get(Object key) {
-        if (!(key instanceof String)) {
-            return super.get(key);
-        }
+        if (key != null && !(key instanceof String))
+            return null;
 
-        String match = caseInsensitiveMatch((String) key);
-        return match == null ? null : super.get(match);
+        return getIgnoreCase((String) key);
     }
 
     @Override
     public T put(String key, T value) {
-        String match = caseInsensitiveMatch(key);
-        return super.put(match == null ? key : match, value);
+        String normalized = normalize(key);
+        SimpleEntry<String, T> entry = index.get(normalized);
+        if (entry == null) {
+            index.put(normalized, new SimpleEntry<>(key, value));
+            return null;
+        }
+
+        return entry.setValue(value);
+    }
+
+    @Override
+    public T remove(Object key) {
+        if (key != null && !(key instanceof String))
+            return null;
+
+        SimpleEntry<String, T> entry = index.remove(normalize((String) key));
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+    }
+
+    @Override
+    public Set<Entry<String, T>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, T>>() {
+                @Override
+                public Iterator<Entry<String, T>> iterator() {
+                    Iterator<SimpleEntry<String, T>> iterator = index.values().iterator();
+                    return new Iterator<Entry<String, T>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, T> next() {
+                            return iterator.next();
+                        }
+
+                        @Override
+                        public void remove() {
+                            iterator.remove();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return index.size();
+                }
+
+                @Override
+                public void clear() {
+                    index.clear();
+                }
+            };
+        }
+        return entrySet;
     }
 }
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.tools;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read only snapshot of a String keyed map where the keys are compared case insensitively.
+ * The keys are normalized only once when the snapshot is created, so get() and containsKey() are a single hash
+ * lookup regardless of the number of entries. Since it never changes, the same instance can be shared
+ * by any number of threads.
+ *
+ * @param <V>
+ */
+public final class ImmutableCaseInsensitiveMap<V> extends AbstractMap<String, V> {
+    private static final ImmutableCaseInsensitiveMap<Object> EMPTY = new ImmutableCaseInsensitiveMap<>(new HashMap<>());
+
+    //normalized key -> entry with the original key
+    private final Map<String, Entry<String, V>> index;
+    private final Set<Entry<String, V>> entries;
+
+    private ImmutableCaseInsensitiveMap(Map<String, ? extends V> map) {
+        Map<String, Entry<String, V>> index = new HashMap<>();
+        for (Entry<String, ? extends V> entry : map.entrySet()) {
+            index.put(CaseInsensitiveStringMap.normalize(entry.getKey()),
+                    new SimpleImmutableEntry<String, V>(entry.getKey(), entry.getValue()));
+        }
+
+        this.index = index;
+        this.entries = Collections.unmodifiableSet(new LinkedHashSet<>(index.values()));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> ImmutableCaseInsensitiveMap<V> empty() {
+        return (ImmutableCaseInsensitiveMap<V>) EMPTY;
+    }
+
+    /**
+     * Create a snapshot of the map. If the map is already a snapshot, the same instance is returned.
+     *
+     * @param map the map to copy
+     * @return the snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> ImmutableCaseInsensitiveMap<V> copyOf(Map<String, ? extends V> map) {
+        if (map instanceof ImmutableCaseInsensitiveMap)
+            return (ImmutableCaseInsensitiveMap<V>) map;
+
+        return new ImmutableCaseInsensitiveMap<>(map);
+    }
+
+    @Override
+    public V get(Object key) {
+        if (!(key instanceof String))
+            return null;
+
+        Entry<String, V> entry = index.get(CaseInsensitiveStringMap.normalize((String) key));
+        return entry == null ? null : entry.getValue();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && index.containsKey(CaseInsensitiveStringMap.normalize((String) key));
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return entries;
+    }
+}
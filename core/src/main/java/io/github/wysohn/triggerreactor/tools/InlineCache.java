@@ -0,0 +1,226 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.tools;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the reflective lookups done at one place in the script, such as a field access or a method call. It
+ * remembers the few receiver classes (and argument types for calls) it has seen along with the Field or the Method
+ * found for them, so the lookup has to be done again only when a different class shows up.
+ * <p>
+ * Up to {@link #MAX_ENTRIES} classes are remembered. If more classes are seen, the call site is considered
+ * megamorphic and the lookups are done through {@link ReflectionUtil} without being remembered here.
+ * <p>
+ * The methods behave exactly like the methods of the same name in {@link ReflectionUtil}.
+ */
+public class InlineCache {
+    public static final int MAX_ENTRIES = 4;
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    //copied on write, so it can be read by any thread without lock
+    private volatile Entry[] entries = EMPTY;
+
+    /**
+     * @return total number of lookups found in the caches so far.
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return total number of lookups not found in the caches so far.
+     */
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static void resetCounters() {
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * @return number of the receiver classes remembered in this cache.
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    public Object getField(Class<?> clazz, Object obj, String fieldName) throws NoSuchFieldException, IllegalArgumentException {
+        Field field = findField(clazz, fieldName);
+
+        try {
+            return field.get(obj);
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public Object getField(Object obj, String fieldName) throws NoSuchFieldException, IllegalArgumentException {
+        return getField(obj.getClass(), obj, fieldName);
+    }
+
+    public void setField(Object obj, String fieldName, Object value) throws NoSuchFieldException, IllegalArgumentException {
+        Field field = findField(obj.getClass(), fieldName);
+
+        try {
+            field.set(obj, value);
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public Object invokeMethod(Class<?> clazz, Object obj, String methodName, Object... args)
+            throws NoSuchMethodException, IllegalArgumentException, InvocationTargetException, IllegalAccessException {
+        try {
+            return findMethod(clazz, methodName, args).invoke(obj, args);
+        } catch (NullPointerException e) {
+            throw new NullPointerException(ReflectionUtil.buildFailMessage(clazz, methodName, args));
+        }
+    }
+
+    public Object invokeMethod(Object obj, String methodName, Object... args)
+            throws NoSuchMethodException, IllegalArgumentException, InvocationTargetException, IllegalAccessException {
+        return invokeMethod(obj.getClass(), obj, methodName, args);
+    }
+
+    public Object constructNew(Class<?> clazz, Object... args) throws NoSuchMethodException, InstantiationException,
+            IllegalArgumentException, IllegalAccessException {
+        if (args.length < 1) {
+            return clazz.newInstance();
+        } else {
+            try {
+                return findConstructor(clazz, args).newInstance(args);
+            } catch (InvocationTargetException e) {
+                e.printStackTrace();
+            }
+
+            return null;
+        }
+    }
+
+    private Field findField(Class<?> clazz, String fieldName) throws NoSuchFieldException {
+        for (Entry entry : entries) {
+            if (entry.kind == Kind.FIELD && entry.receiver == clazz && entry.name.equals(fieldName)) {
+                hits.increment();
+                return (Field) entry.target;
+            }
+        }
+
+        misses.increment();
+        Field field = clazz.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        add(new Entry(Kind.FIELD, clazz, fieldName, null, field));
+        return field;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReflectionUtil.Resolved<Method> findMethod(Class<?> clazz, String methodName, Object[] args)
+            throws NoSuchMethodException {
+        for (Entry entry : entries) {
+            if (entry.kind == Kind.METHOD && entry.receiver == clazz && entry.name.equals(methodName)
+                    && entry.matches(args)) {
+                hits.increment();
+                return (ReflectionUtil.Resolved<Method>) entry.target;
+            }
+        }
+
+        misses.increment();
+        ReflectionUtil.Resolved<Method> resolved = ReflectionUtil.resolveMethod(clazz, methodName, args);
+        add(new Entry(Kind.METHOD, clazz, methodName, Entry.typesOf(args), resolved));
+        return resolved;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReflectionUtil.Resolved<Constructor<?>> findConstructor(Class<?> clazz, Object[] args)
+            throws NoSuchMethodException {
+        for (Entry entry : entries) {
+            if (entry.kind == Kind.CONSTRUCTOR && entry.receiver == clazz && entry.matches(args)) {
+                hits.increment();
+                return (ReflectionUtil.Resolved<Constructor<?>>) entry.target;
+            }
+        }
+
+        misses.increment();
+        ReflectionUtil.Resolved<Constructor<?>> resolved = ReflectionUtil.resolveConstructor(clazz, args);
+        add(new Entry(Kind.CONSTRUCTOR, clazz, null, Entry.typesOf(args), resolved));
+        return resolved;
+    }
+
+    private synchronized void add(Entry entry) {
+        Entry[] entries = this.entries;
+        if (entries.length >= MAX_ENTRIES)
+            return;
+
+        Entry[] newEntries = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, newEntries, 0, entries.length);
+        newEntries[entries.length] = entry;
+        this.entries = newEntries;
+    }
+
+    private enum Kind {
+        FIELD, METHOD, CONSTRUCTOR
+    }
+
+    private static final class Entry {
+        private final Kind kind;
+        private final Class<?> receiver;
+        private final String name;
+        // types of the arguments. null for fields
+        private final Class<?>[] argTypes;
+        private final Object target;
+
+        private Entry(Kind kind, Class<?> receiver, String name, Class<?>[] argTypes, Object target) {
+            this.kind = kind;
+            this.receiver = receiver;
+            this.name = name;
+            this.argTypes = argTypes;
+            this.target = target;
+        }
+
+        private static Class<?>[] typesOf(Object[] args) {
+            Class<?>[] types = new Class<?>[args.length];
+            for (int i = 0; i < args.length; i++)
+                types[i] = args[i] == null ? null : args[i].getClass();
+            return types;
+        }
+
+        private boolean matches(Object[] args) {
+            if (argTypes.length != args.length)
+                return false;
+
+            for (int i = 0; i < args.length; i++) {
+                Class<?> type = args[i] == null ? null : args[i].getClass();
+                if (type != argTypes[i])
+                    return false;
+            }
+
+            return true;
+        }
+    }
+}
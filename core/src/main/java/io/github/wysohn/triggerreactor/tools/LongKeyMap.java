@@ -0,0 +1,175 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.tools;
+
+import java.util.Arrays;
+
+/**
+ * Map with primitive long keys, using open addressing with linear probing. Unlike HashMap&lt;Long, V&gt;, the keys
+ * are never boxed, so {@link #get(long)} doesn't allocate anything.
+ * <p>
+ * Null values are not allowed, as null marks the empty slots. This is not thread safe.
+ *
+ * @param <V>
+ */
+public class LongKeyMap<V> {
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    public LongKeyMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize number of entries this map can hold without resizing
+     */
+    public LongKeyMap(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+    }
+
+    /**
+     * Copy constructor.
+     */
+    public LongKeyMap(LongKeyMap<? extends V> other) {
+        this.keys = Arrays.copyOf(other.keys, other.keys.length);
+        this.values = Arrays.copyOf(other.values, other.values.length);
+        this.size = other.size;
+    }
+
+    //at most half full
+    private static int capacityFor(int size) {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1);
+    }
+
+    private static int hash(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the slot of the key, or the empty slot where the key would be placed.
+     */
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[slotOf(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return values[slotOf(key)] != null;
+    }
+
+    /**
+     * @param key   the key
+     * @param value the value. Can't be null.
+     * @return the previous value, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null)
+            throw new NullPointerException("value");
+
+        int slot = slotOf(key);
+        V previous = (V) values[slot];
+        keys[slot] = key;
+        values[slot] = value;
+
+        if (previous == null && ++size * 2 > keys.length)
+            resize(keys.length * 2);
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = slotOf(key);
+        V previous = (V) values[slot];
+        if (previous == null)
+            return null;
+
+        values[slot] = null;
+        size--;
+
+        //move the following entries back so the probing doesn't stop at the hole
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            int home = hash(keys[i]) & mask;
+            //can the entry at i be moved to the hole without skipping its home slot?
+            if (hole <= i ? (home <= hole || home > i) : (home <= hole && home > i)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                values[i] = null;
+                hole = i;
+            }
+        }
+        return previous;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null)
+                continue;
+
+            int slot = slotOf(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null)
+                consumer.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+}
@@ -0,0 +1,528 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.tools;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable map which can make a modified copy of itself cheaply. It's a hash array mapped trie, so
+ * {@link #plus(Object, Object)} and {@link #minus(Object)} copy only the nodes on the path to the key, and the
+ * rest of the nodes are shared with this map.
+ * <p>
+ * Because nothing is modified once created, it can be read from any number of threads without locking. Null keys
+ * and null values are not allowed.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    //a key and a value for each entry, or null and the child node
+    private static final Object[] NO_ENTRIES = new Object[0];
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private transient Set<Entry<K, V>> entrySet;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * @param map the entries. The entries with null key or null value are skipped.
+     * @return the PersistentMap with the same entries. The map itself if it's already a PersistentMap.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap)
+            return (PersistentMap<K, V>) map;
+
+        Builder<K, V> builder = new Builder<>(map.size());
+        for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null)
+                builder.put(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Collects the entries and then builds the whole map at once, which is much cheaper than adding the entries one
+     * by one with {@link #plus(Object, Object)}, as nothing is copied.
+     *
+     * @param <K>
+     * @param <V>
+     */
+    public static final class Builder<K, V> {
+        private Object[] keys;
+        private Object[] values;
+        private int[] hashes;
+        private int count;
+
+        public Builder() {
+            this(8);
+        }
+
+        public Builder(int expectedSize) {
+            int capacity = Math.max(1, expectedSize);
+            keys = new Object[capacity];
+            values = new Object[capacity];
+            hashes = new int[capacity];
+        }
+
+        /**
+         * The later one is used if the same key is put more than once.
+         */
+        public Builder<K, V> put(K key, V value) {
+            if (key == null || value == null)
+                throw new NullPointerException();
+
+            if (count == keys.length) {
+                int capacity = count + (count >> 1) + 1;
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+                hashes = Arrays.copyOf(hashes, capacity);
+            }
+            keys[count] = key;
+            values[count] = value;
+            hashes[count] = hash(key);
+            count++;
+            return this;
+        }
+
+        /**
+         * @return the map of the entries put so far. The builder can't be used after this.
+         */
+        public PersistentMap<K, V> build() {
+            if (count == 0)
+                return empty();
+
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++)
+                order[i] = i;
+
+            int[] size = new int[1];
+            Node root = build(0, order, 0, count, new int[count], size);
+            keys = values = null;
+            hashes = null;
+            return new PersistentMap<>(root, size[0]);
+        }
+
+        /**
+         * Build the node of the entries order[from, to), which are all in the same slot of the parent.
+         */
+        private BitmapNode build(int shift, int[] order, int from, int to, int[] temp, int[] size) {
+            //sort by the slot, keeping the order of the same keys so the later one is used
+            int[] starts = new int[MASK + 2];
+            for (int i = from; i < to; i++)
+                starts[((hashes[order[i]] >>> shift) & MASK) + 1]++;
+            for (int slot = 0; slot <= MASK; slot++)
+                starts[slot + 1] += starts[slot];
+
+            int[] next = starts.clone();
+            for (int i = from; i < to; i++)
+                temp[from + next[(hashes[order[i]] >>> shift) & MASK]++] = order[i];
+            System.arraycopy(temp, from, order, from, to - from);
+
+            int bitmap = 0;
+            Object[] array = new Object[to - from > MASK ? (MASK + 1) * 2 : (to - from) * 2];
+            int length = 0;
+            for (int slot = 0; slot <= MASK; slot++) {
+                int start = from + starts[slot];
+                int end = from + starts[slot + 1];
+                if (start == end)
+                    continue;
+
+                bitmap |= 1 << slot;
+                if (end - start == 1) {
+                    array[length++] = keys[order[start]];
+                    array[length++] = values[order[start]];
+                    size[0]++;
+                } else if (sameHash(order, start, end)) {
+                    Object[] pairs = distinct(order, start, end);
+                    size[0] += pairs.length / 2;
+                    if (pairs.length == 2) {
+                        array[length++] = pairs[0];
+                        array[length++] = pairs[1];
+                    } else {
+                        array[length++] = null;
+                        array[length++] = new CollisionNode(hashes[order[start]], pairs);
+                    }
+                } else {
+                    array[length++] = null;
+                    array[length++] = build(shift + BITS, order, start, end, temp, size);
+                }
+            }
+
+            return new BitmapNode(bitmap, length == array.length ? array : Arrays.copyOf(array, length));
+        }
+
+        private boolean sameHash(int[] order, int from, int to) {
+            int hash = hashes[order[from]];
+            for (int i = from + 1; i < to; i++) {
+                if (hashes[order[i]] != hash)
+                    return false;
+            }
+            return true;
+        }
+
+        private Object[] distinct(int[] order, int from, int to) {
+            Object[] pairs = new Object[(to - from) * 2];
+            int length = 0;
+            outer:
+            for (int i = from; i < to; i++) {
+                Object key = keys[order[i]];
+                for (int j = 0; j < length; j += 2) {
+                    if (key.equals(pairs[j])) {
+                        pairs[j + 1] = values[order[i]];
+                        continue outer;
+                    }
+                }
+                pairs[length++] = key;
+                pairs[length++] = values[order[i]];
+            }
+            return length == pairs.length ? pairs : Arrays.copyOf(pairs, length);
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null)
+            return null;
+
+        return (V) root.find(0, hash(key), key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the map with the key mapped to the value. This map itself if the same value is already mapped.
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+
+        boolean[] added = new boolean[1];
+        Node node = root == null ? new BitmapNode(0, NO_ENTRIES) : root;
+        Node newRoot = node.plus(0, hash(key), key, value, added);
+        if (newRoot == root)
+            return this;
+
+        return new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @return the map without the key. This map itself if the key is not in it.
+     */
+    public PersistentMap<K, V> minus(Object key) {
+        if (root == null || key == null)
+            return this;
+
+        Node newRoot = root.minus(0, hash(key), key);
+        if (newRoot == root)
+            return this;
+
+        return newRoot == null ? empty() : new PersistentMap<>(newRoot, size - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private static Object[] insertPair(Object[] array, int index, Object key, Object value) {
+        Object[] copy = new Object[array.length + 2];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = key;
+        copy[index + 1] = value;
+        System.arraycopy(array, index, copy, index + 2, array.length - index);
+        return copy;
+    }
+
+    private static Object[] removePair(Object[] array, int index) {
+        Object[] copy = new Object[array.length - 2];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 2, copy, index, array.length - index - 2);
+        return copy;
+    }
+
+    private static Object[] replace(Object[] array, int index, Object value) {
+        Object[] copy = array.clone();
+        copy[index] = value;
+        return copy;
+    }
+
+    private abstract static class Node {
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node plus(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * @return the node without the key, this if the key is not found, or null if nothing is left.
+         */
+        abstract Node minus(int shift, int hash, Object key);
+    }
+
+    /**
+     * Node with up to 32 slots, of which only the used ones are in the array.
+     */
+    private static final class BitmapNode extends Node {
+        private final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1)) * 2;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0)
+                return null;
+
+            int index = index(bit);
+            Object k = array[index];
+            Object v = array[index + 1];
+            if (k == null)
+                return ((Node) v).find(shift + BITS, hash, key);
+            return key.equals(k) ? v : null;
+        }
+
+        @Override
+        Node plus(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, insertPair(array, index, key, value));
+            }
+
+            Object k = array[index];
+            Object v = array[index + 1];
+            if (k == null) {
+                Node child = ((Node) v).plus(shift + BITS, hash, key, value, added);
+                return child == v ? this : new BitmapNode(bitmap, replace(array, index + 1, child));
+            }
+
+            if (key.equals(k))
+                return v == value ? this : new BitmapNode(bitmap, replace(array, index + 1, value));
+
+            added[0] = true;
+            Node child = createNode(shift + BITS, k, v, hash, key, value);
+            Object[] copy = replace(array, index, null);
+            copy[index + 1] = child;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        Node minus(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0)
+                return this;
+
+            int index = index(bit);
+            Object k = array[index];
+            Object v = array[index + 1];
+            if (k == null) {
+                Node child = ((Node) v).minus(shift + BITS, hash, key);
+                if (child == v)
+                    return this;
+                if (child != null)
+                    return new BitmapNode(bitmap, replace(array, index + 1, child));
+            } else if (!key.equals(k)) {
+                return this;
+            }
+
+            if (bitmap == bit)
+                return null;
+            return new BitmapNode(bitmap & ~bit, removePair(array, index));
+        }
+
+        private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2,
+                                       Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2)
+                return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+
+            boolean[] added = new boolean[1];
+            return new BitmapNode(0, NO_ENTRIES)
+                    .plus(shift, hash1, key1, value1, added)
+                    .plus(shift, hash2, key2, value2, added);
+        }
+    }
+
+    /**
+     * Node for the keys with the same hash.
+     */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i]))
+                    return i;
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            return index < 0 ? null : array[index + 1];
+        }
+
+        @Override
+        Node plus(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                //push this down to where the hashes differ
+                Node parent = new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[]{null, this});
+                return parent.plus(shift, hash, key, value, added);
+            }
+
+            int index = indexOf(key);
+            if (index < 0) {
+                added[0] = true;
+                return new CollisionNode(hash, insertPair(array, array.length, key, value));
+            }
+            return array[index + 1] == value ? this : new CollisionNode(hash, replace(array, index + 1, value));
+        }
+
+        @Override
+        Node minus(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            if (index < 0)
+                return this;
+            if (array.length == 2)
+                return null;
+            return new CollisionNode(hash, removePair(array, index));
+        }
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        //7 levels of BitmapNode and a CollisionNode at most
+        private final Object[][] arrays = new Object[9][];
+        private final int[] positions = new int[9];
+        private int depth = -1;
+
+        private Entry<K, V> next;
+
+        private EntryIterator(Node root) {
+            if (root != null)
+                push(root);
+            advance();
+        }
+
+        private void push(Node node) {
+            depth++;
+            arrays[depth] = node.array;
+            positions[depth] = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int position = positions[depth];
+                if (position >= array.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+
+                positions[depth] = position + 2;
+                if (array[position] == null) {
+                    push((Node) array[position + 1]);
+                    continue;
+                }
+
+                next = new SimpleImmutableEntry<>((K) array[position], (V) array[position + 1]);
+                return;
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+
+            Entry<K, V> result = next;
+            advance();
+            return result;
+        }
+    }
+}
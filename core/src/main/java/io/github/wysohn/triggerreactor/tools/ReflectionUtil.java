@@ -24,6 +24,7 @@ import java.lang.reflect.*;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -32,6 +33,27 @@ import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
 public class ReflectionUtil {
+    /**
+     * Cached call sites for each class loaded by the class loader of this class or by its children. As the cache
+     * belongs to the class, it's collected along with the class when its class loader is unloaded.
+     */
+    private static final ClassValue<Map<CallSite, Resolved<?>>> RESOLVED_CACHE =
+            new ClassValue<Map<CallSite, Resolved<?>>>() {
+                @Override
+                protected Map<CallSite, Resolved<?>> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+    /**
+     * Cached call sites for each class loaded by the parents of the class loader of this class, such as the
+     * classes of the JDK or the server. The cache can't be stored in those classes, since they would keep the class
+     * loader of this class after the plugin is unloaded. They are never unloaded before this class, so weak keys
+     * are not needed; the cache is just cleared by {@link #clearCache()} when the plugin is disabled.
+     */
+    private static final Map<Class<?>, Map<CallSite, Resolved<?>>> PARENT_RESOLVED_CACHE = new ConcurrentHashMap<>();
+
+    private static final int MAX_CACHED_CALL_SITES_PER_CLASS = 256;
+
     public static void setField(Object obj, String fieldName, Object value) throws NoSuchFieldException, IllegalArgumentException {
         Class<?> clazz = obj.getClass();
 
@@ -192,9 +214,9 @@ public class ReflectionUtil {
         T apply(Class<?> clazz, String name, Class<?>[] parameters) throws NoSuchMethodException;
     }
 
-    private static <T extends Executable> T findBestFit(Class<?> clazz, String name, List<T> validMethods,
-                                                        Object[] args,
-                                                        ExtractExecutable<T> extractFn) {
+    private static <T extends Executable> Resolved<T> findBestFit(Class<?> clazz, String name, List<T> validMethods,
+                                                                  Class<?>[] argTypes,
+                                                                  ExtractExecutable<T> extractFn) {
         // we found all methods that may can be used with the input arguments
         // yet we still have to find the best fit.
         // For example, method(1, 1) would be more suitable with method(int, int) than method(double, double)
@@ -233,64 +255,238 @@ public class ReflectionUtil {
                 executable = targetExecutable;
             }
 
-            executable.setAccessible(true);
+            // the types of arguments after the conversions are applied
+            Class<?>[] types = argTypes.clone();
+            Class<?>[] enumConversions = null;
 
-            for (int i = 0; i < args.length; i++) {
+            for (int i = 0; i < types.length; i++) {
                 Class<?>[] parameterTypes = executable.getParameterTypes();
 
-                if (args[i] instanceof String && i < parameterTypes.length && parameterTypes[i].isEnum()) {
+                if (types[i] == String.class && i < parameterTypes.length && parameterTypes[i].isEnum()) {
                     // Some methods already provide overloaded method to handle String instead of Enum
                     // So check it first before converting String to Enum manually
-                    Class<?>[] types = new Class<?>[args.length];
-                    for (int k = 0; k < args.length; k++)
-                        types[k] = args[k].getClass();
-
                     try {
-                        executable = extractFn.apply(clazz, name, types);
+                        executable = extractFn.apply(clazz, name, types.clone());
                     } catch (NoSuchMethodException ex2) {
-                        try {
-                            args[i] = Enum.valueOf((Class<? extends Enum>) parameterTypes[i], (String) args[i]);
-                        } catch (IllegalArgumentException ex1) {
-                            throw new RuntimeException("Tried to convert value [" + args[i]
-                                    + "] to Enum [" + parameterTypes[i]
-                                    + "] or find appropriate method but found nothing. Make sure"
-                                    + " that the value [" + args[i]
-                                    + "] matches exactly with one of the Enums in [" + parameterTypes[i]
-                                    + "] or the method you are looking exists.");
-                        }
+                        if (enumConversions == null)
+                            enumConversions = new Class<?>[types.length];
+                        enumConversions[i] = parameterTypes[i];
+                        types[i] = parameterTypes[i];
                     }
                 }
             }
 
-            return executable;
+            executable.setAccessible(true);
+
+            return new Resolved<>(executable, enumConversions);
         } else {
             return null;
         }
     }
 
-    @SuppressWarnings({"unchecked"})
-    public static Object invokeMethod(Class<?> clazz, Object obj, String methodName, Object... args)
-            throws NoSuchMethodException, IllegalArgumentException, InvocationTargetException, IllegalAccessException {
-        try {
-            List<Method> validMethods = getValidExecutables(clazz, methodName, args, Class::getMethods);
-            if (validMethods.isEmpty())
-                throw new NoSuchMethodException(buildFailMessage(clazz, methodName, args));
-
-            // we found all methods that may can be used with the input arguments
-            // yet we still have to find the best fit.
-            // For example, method(1, 1) would be more suitable with method(int, int) than method(double, double)
-            // while both of them can accept the arguments without problem.
-            // pick one method
-            Method method = findBestFit(clazz, methodName, validMethods, args, Class::getMethod);
-            if (method == null)
-                throw new NoSuchMethodException(buildFailMessage(clazz, methodName, args));
+    /**
+     * Find the method or constructor which fits the best with the given arguments. The result is cached for the
+     * combination of the class, the name, and the types of the arguments, so the search is done only once for
+     * each call site.
+     *
+     * @return the executable, or null if nothing fits.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Executable> Resolved<T> resolve(Class<?> clazz, String name, Object[] args,
+                                                             Function<Class<?>, T[]> candidatesFn,
+                                                             ExtractExecutable<T> extractFn) {
+        Class<?>[] argTypes = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++)
+            argTypes[i] = args[i] == null ? null : args[i].getClass();
+
+        CallSite callSite = new CallSite(name, argTypes);
+        Map<CallSite, Resolved<?>> cache = cacheOf(clazz);
+        Resolved<T> resolved = cache == null ? null : (Resolved<T>) cache.get(callSite);
+        if (resolved != null)
+            return resolved;
+
+        List<T> validMethods = getValidExecutables(clazz, name, args, candidatesFn);
+        resolved = findBestFit(clazz, name, validMethods, argTypes, extractFn);
+        if (resolved == null || cache == null || !isCacheable(clazz, argTypes))
+            return resolved;
+
+        if (cache.size() >= MAX_CACHED_CALL_SITES_PER_CLASS)
+            cache.clear();
+        cache.put(callSite, resolved);
+        return resolved;
+    }
+
+    /**
+     * @return the cache of the class, or null if the class is loaded by neither the parents nor the children of
+     * the class loader of this class, such as the classes of the other plugins, which may be unloaded at any time.
+     */
+    private static Map<CallSite, Resolved<?>> cacheOf(Class<?> clazz) {
+        ClassLoader own = ReflectionUtil.class.getClassLoader();
+        if (isSameOrParent(own, clazz.getClassLoader()))
+            return RESOLVED_CACHE.get(clazz);
+        if (isSameOrParent(clazz.getClassLoader(), own))
+            return PARENT_RESOLVED_CACHE.computeIfAbsent(clazz, k -> new ConcurrentHashMap<>());
+        return null;
+    }
+
+    /**
+     * Forget the cached call sites of the classes which outlive this plugin. Called when the plugin is disabled.
+     */
+    public static void clearCache() {
+        PARENT_RESOLVED_CACHE.clear();
+    }
+
+    /**
+     * The cache of a class must not keep the classes which could be unloaded before the class itself; otherwise,
+     * the class loader of them can never be garbage collected. It's safe only if the argument types are loaded by
+     * the same class loader or by one of its parents.
+     */
+    private static boolean isCacheable(Class<?> clazz, Class<?>[] argTypes) {
+        for (Class<?> argType : argTypes) {
+            if (argType != null && !isSameOrParent(argType.getClassLoader(), clazz.getClassLoader()))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if the parent is the loader itself or one of its parents. The bootstrap class loader, which is
+     * null, is the parent of all.
+     */
+    private static boolean isSameOrParent(ClassLoader parent, ClassLoader loader) {
+        if (parent == null)
+            return true;
+
+        for (; loader != null; loader = loader.getParent()) {
+            if (loader == parent)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Name of the method (or null for constructors) and the types of arguments used to call it.
+     */
+    private static final class CallSite {
+        private final String name;
+        private final Class<?>[] argTypes;
+        private final int hash;
+
+        private CallSite(String name, Class<?>[] argTypes) {
+            this.name = name;
+            this.argTypes = argTypes;
+            this.hash = 31 * Objects.hashCode(name) + Arrays.hashCode(argTypes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CallSite)) return false;
+            CallSite callSite = (CallSite) o;
+            return hash == callSite.hash
+                    && Objects.equals(name, callSite.name)
+                    && Arrays.equals(argTypes, callSite.argTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The method or constructor found for a call site, and how the arguments have to be converted to call it.
+     */
+    static final class Resolved<T extends Executable> {
+        private final T executable;
+        private final Class<?>[] parameterTypes;
+        // Enum type for each argument which has to be converted from String. null if no conversion is needed.
+        private final Class<?>[] enumConversions;
+
+        private Resolved(T executable, Class<?>[] enumConversions) {
+            this.executable = executable;
+            this.parameterTypes = executable.getParameterTypes();
+            this.enumConversions = enumConversions;
+        }
+
+        T getExecutable() {
+            return executable;
+        }
+
+        Object invoke(Object obj, Object[] args) throws IllegalAccessException, InvocationTargetException {
+            return ((Method) executable).invoke(obj, convertArgs(args));
+        }
+
+        Object newInstance(Object[] args) throws InstantiationException, IllegalAccessException,
+                InvocationTargetException {
+            return ((Constructor<?>) executable).newInstance(convertArgs(args));
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object[] convertArgs(Object[] args) {
+            if (enumConversions != null) {
+                for (int i = 0; i < enumConversions.length; i++) {
+                    if (enumConversions[i] == null)
+                        continue;
+
+                    try {
+                        args[i] = Enum.valueOf((Class<? extends Enum>) enumConversions[i], (String) args[i]);
+                    } catch (IllegalArgumentException ex1) {
+                        throw new RuntimeException("Tried to convert value [" + args[i]
+                                + "] to Enum [" + enumConversions[i]
+                                + "] or find appropriate method but found nothing. Make sure"
+                                + " that the value [" + args[i]
+                                + "] matches exactly with one of the Enums in [" + enumConversions[i]
+                                + "] or the method you are looking exists.");
+                    }
+                }
+            }
 
             // we need to convert the last part of input arguments as Array
-            if (method.isVarArgs()) {
-                args = mergeVarargs(args, method.getParameterTypes());
+            if (executable.isVarArgs()) {
+                args = mergeVarargs(args, parameterTypes);
             }
 
-            return method.invoke(obj, args);
+            return args;
+        }
+    }
+
+    /**
+     * Find the method which fits the best with the given arguments.
+     *
+     * @throws NoSuchMethodException if nothing fits
+     */
+    static Resolved<Method> resolveMethod(Class<?> clazz, String methodName, Object[] args)
+            throws NoSuchMethodException {
+        // we found all methods that may can be used with the input arguments
+        // yet we still have to find the best fit.
+        // For example, method(1, 1) would be more suitable with method(int, int) than method(double, double)
+        // while both of them can accept the arguments without problem.
+        // pick one method
+        Resolved<Method> resolved = resolve(clazz, methodName, args, Class::getMethods, Class::getMethod);
+        if (resolved == null)
+            throw new NoSuchMethodException(buildFailMessage(clazz, methodName, args));
+        return resolved;
+    }
+
+    /**
+     * Find the constructor which fits the best with the given arguments.
+     *
+     * @throws NoSuchMethodException if nothing fits
+     */
+    static Resolved<Constructor<?>> resolveConstructor(Class<?> clazz, Object[] args) throws NoSuchMethodException {
+        Resolved<Constructor<?>> resolved = resolve(clazz, null, args, Class::getConstructors, (c, name, params) ->
+                c.getConstructor(params));
+        if (resolved == null)
+            throw new NoSuchMethodException(buildFailMessage(clazz, "<init>", args));
+        return resolved;
+    }
+
+    public static Object invokeMethod(Class<?> clazz, Object obj, String methodName, Object... args)
+            throws NoSuchMethodException, IllegalArgumentException, InvocationTargetException, IllegalAccessException {
+        try {
+            return resolveMethod(clazz, methodName, args).invoke(obj, args);
         } catch (NullPointerException e) {
             throw new NullPointerException(buildFailMessage(clazz, methodName, args));
         }
@@ -313,7 +509,7 @@ public class ReflectionUtil {
         return newArgs;
     }
 
-    private static String buildFailMessage(Class<?> clazz, String methodName, Object[] args) {
+    static String buildFailMessage(Class<?> clazz, String methodName, Object[] args) {
         StringBuilder builder = new StringBuilder(args.length > 0 ? String.valueOf(args[0]) : "");
         for (int i = 1; i < args.length; i++)
             builder.append(",").append(args[i]);
@@ -483,22 +679,8 @@ public class ReflectionUtil {
         if (args.length < 1) {
             return clazz.newInstance();
         } else {
-            List<Constructor<?>> validConstructors = getValidExecutables(clazz, null, args, Class::getConstructors);
-
-            if (validConstructors.isEmpty())
-                throw new NoSuchMethodException(buildFailMessage(clazz, "<init>", args));
-
-            Constructor<?> target = findBestFit(clazz, null, validConstructors, args, (c, name, params) ->
-                    c.getConstructor(params));
-            if (target == null)
-                throw new NoSuchMethodException(buildFailMessage(clazz, "<init>", args));
-
-            if (target.isVarArgs()) {
-                args = mergeVarargs(args, target.getParameterTypes());
-            }
-
             try {
-                return target.newInstance(args);
+                return resolveConstructor(clazz, args).newInstance(args);
             } catch (InvocationTargetException e) {
                 e.printStackTrace();
             }
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.tools;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A String keyed map which keeps an {@link ImmutableCaseInsensitiveMap} copy of itself. The copy is created
+ * lazily on the first {@link #snapshot()} after a modification, so reloading many entries at once costs
+ * only one copy, and every reader in between shares the same instance.
+ * <p>
+ * The views returned by {@link #entrySet()}, {@link #keySet()}, and {@link #values()} are read only, so
+ * put(), remove(), and clear() are the only way to modify this map.
+ *
+ * @param <V>
+ */
+public class SnapshotMap<V> extends AbstractMap<String, V> {
+    private final Map<String, V> map = new HashMap<>();
+
+    private volatile ImmutableCaseInsensitiveMap<V> snapshot = null;
+
+    /**
+     * Get the read only copy of the current state of this map.
+     *
+     * @return the snapshot. Never null.
+     */
+    public ImmutableCaseInsensitiveMap<V> snapshot() {
+        ImmutableCaseInsensitiveMap<V> snapshot = this.snapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = this.snapshot;
+                if (snapshot == null) {
+                    snapshot = ImmutableCaseInsensitiveMap.copyOf(map);
+                    this.snapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public synchronized V put(String key, V value) {
+        snapshot = null;
+        return map.put(key, value);
+    }
+
+    @Override
+    public synchronized V remove(Object key) {
+        snapshot = null;
+        return map.remove(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        snapshot = null;
+        map.clear();
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return Collections.unmodifiableMap(map).entrySet();
+    }
+}
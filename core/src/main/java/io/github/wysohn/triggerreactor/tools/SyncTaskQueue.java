@@ -0,0 +1,162 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.tools;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tasks which have to run in the server thread. Any thread can add the tasks without lock, and the server thread
+ * runs them all at once by calling {@link #drain(long)} once per tick, so only one task has to be scheduled in
+ * the server no matter how many tasks are added.
+ * <p>
+ * The tasks are accepted only while the queue is open, which is while something is draining it.
+ */
+public class SyncTaskQueue {
+    private final Queue<FutureTask<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean open = false;
+
+    private final LongAdder executed = new LongAdder();
+    //written only by the draining thread
+    private volatile long drains;
+    private volatile long lastDrainNanos;
+    private volatile long maxDrainNanos;
+    private volatile int lastDrainCount;
+
+    /**
+     * Start accepting the tasks. Call this when the task calling {@link #drain(long)} is scheduled.
+     */
+    public void open() {
+        open = true;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Add the task, which will run in the next {@link #drain(long)}.
+     *
+     * @param call the task
+     * @return the future which completes after the task runs.
+     * @throws RejectedExecutionException if the queue is not open.
+     */
+    public <T> Future<T> submit(Callable<T> call) {
+        if (!open)
+            throw new RejectedExecutionException("Not draining.");
+
+        FutureTask<T> task = new FutureTask<>(call);
+        size.incrementAndGet();
+        queue.offer(task);
+
+        // close() may have finished before the task is added
+        if (!open && queue.remove(task)) {
+            size.decrementAndGet();
+            throw new RejectedExecutionException("Not draining.");
+        }
+
+        return task;
+    }
+
+    /**
+     * Run the tasks in the queue until the queue is empty or the budget is used up. At least one task runs
+     * even if the budget is 0, so the queue always makes progress.
+     *
+     * @param budgetNanos maximum time to spend, in nanoseconds. The last task may exceed it.
+     * @return number of the tasks run
+     */
+    public int drain(long budgetNanos) {
+        long start = System.nanoTime();
+        int count = 0;
+
+        FutureTask<?> task;
+        while ((task = queue.poll()) != null) {
+            size.decrementAndGet();
+            task.run();
+            count++;
+
+            if (System.nanoTime() - start >= budgetNanos)
+                break;
+        }
+
+        if (count > 0) {
+            long elapsed = System.nanoTime() - start;
+            executed.add(count);
+            drains++;
+            lastDrainNanos = elapsed;
+            lastDrainCount = count;
+            if (elapsed > maxDrainNanos)
+                maxDrainNanos = elapsed;
+        }
+        return count;
+    }
+
+    /**
+     * Stop accepting the tasks, and run all the tasks left in the queue.
+     */
+    public void close() {
+        open = false;
+        drain(Long.MAX_VALUE);
+    }
+
+    /**
+     * @return number of the tasks waiting.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * @return number of the {@link #drain(long)} which ran at least one task.
+     */
+    public long getDrains() {
+        return drains;
+    }
+
+    public long getLastDrainNanos() {
+        return lastDrainNanos;
+    }
+
+    public long getMaxDrainNanos() {
+        return maxDrainNanos;
+    }
+
+    public int getLastDrainCount() {
+        return lastDrainCount;
+    }
+
+    @Override
+    public String toString() {
+        return "queued=" + size()
+                + " executed=" + getExecuted()
+                + " drains=" + drains
+                + " last=" + lastDrainCount + " tasks in " + TimeUnit.NANOSECONDS.toMicros(lastDrainNanos) + "us"
+                + " max=" + TimeUnit.NANOSECONDS.toMicros(maxDrainNanos) + "us";
+    }
+}
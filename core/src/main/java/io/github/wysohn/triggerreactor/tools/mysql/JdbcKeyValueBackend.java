@@ -0,0 +1,195 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.tools.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link KeyValueStore.Backend} on a table of (dbkey CHAR(128) PRIMARY KEY, dbval MEDIUMBLOB).
+ * <p>
+ * Each thread borrows a session, which is a connection from the pool kept open with its statements already
+ * prepared, so the statements are prepared only once per connection. The reads use 'SELECT ... WHERE dbkey IN
+ * (?, ...)' of a power of two parameters, where the last key is repeated to fill the rest, so only a few of them
+ * are prepared for all the batch sizes. The writes are a batch of REPLACE, which the driver can send as a single
+ * statement with rewriteBatchedStatements.
+ */
+public class JdbcKeyValueBackend implements KeyValueStore.Backend {
+    private static final String KEY = "dbkey";
+    private static final String VALUE = "dbval";
+
+    private final MiniConnectionPoolManager pool;
+    private final String tablename;
+    private final BlockingQueue<Session> sessions;
+
+    /**
+     * @param pool      the pool
+     * @param sessions  number of the sessions, which is at most the size of the pool.
+     * @param tablename the table, which is created if not exists.
+     */
+    public JdbcKeyValueBackend(MiniConnectionPoolManager pool, int sessions, String tablename) throws SQLException {
+        this.pool = pool;
+        this.tablename = tablename;
+        this.sessions = new ArrayBlockingQueue<>(Math.max(1, sessions));
+        for (int i = 0; i < Math.max(1, sessions); i++)
+            this.sessions.add(new Session());
+
+        try (Connection conn = pool.getValidConnection();
+             PreparedStatement pstmt = conn.prepareStatement("CREATE TABLE IF NOT EXISTS " + tablename + " ("
+                     + KEY + " CHAR(128) PRIMARY KEY," + VALUE + " MEDIUMBLOB)")) {
+            pstmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public Map<String, byte[]> read(Collection<String> keys) throws Exception {
+        if (keys.isEmpty())
+            return new HashMap<>();
+
+        int size = Integer.highestOneBit(keys.size());
+        int parameters = size < keys.size() ? size << 1 : size;
+        return withSession(session -> {
+            PreparedStatement pstmt = session.select(parameters);
+            int index = 1;
+            String last = null;
+            for (String key : keys) {
+                pstmt.setString(index++, key);
+                last = key;
+            }
+            while (index <= parameters)
+                pstmt.setString(index++, last);
+
+            Map<String, byte[]> values = new HashMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next())
+                    values.put(rs.getString(KEY), rs.getBytes(VALUE));
+            }
+            return values;
+        });
+    }
+
+    @Override
+    public void write(Map<String, byte[]> values) throws Exception {
+        if (values.isEmpty())
+            return;
+
+        withSession(session -> {
+            PreparedStatement pstmt = session.replace();
+            for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+                pstmt.setString(1, entry.getKey());
+                pstmt.setBytes(2, entry.getValue());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            return null;
+        });
+    }
+
+    /**
+     * Run the work with a session. The connection of the session may have been closed by the server while it was
+     * idle, so the work is tried once more on a new connection if it fails. Both the reads and the writes can be
+     * repeated, as the writes are REPLACE.
+     */
+    private <T> T withSession(SessionWork<T> work) throws SQLException, InterruptedException {
+        Session session = sessions.take();
+        try {
+            try {
+                return work.run(session);
+            } catch (SQLException e) {
+                session.close();
+            }
+            return work.run(session);
+        } catch (SQLException e) {
+            session.close();
+            throw e;
+        } finally {
+            sessions.add(session);
+        }
+    }
+
+    private interface SessionWork<T> {
+        T run(Session session) throws SQLException;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        Session session;
+        while ((session = sessions.poll()) != null)
+            session.close();
+        pool.dispose();
+    }
+
+    /**
+     * A connection and its statements. Opened when used for the first time, and opened again after an error.
+     */
+    private class Session {
+        private Connection conn;
+        //by the number of the parameters
+        private final Map<Integer, PreparedStatement> selects = new HashMap<>();
+        private PreparedStatement replace;
+
+        private Connection connection() {
+            if (conn == null)
+                conn = pool.getValidConnection();
+            return conn;
+        }
+
+        private PreparedStatement select(int parameters) throws SQLException {
+            PreparedStatement pstmt = selects.get(parameters);
+            if (pstmt == null) {
+                StringBuilder sql = new StringBuilder("SELECT " + KEY + ", " + VALUE + " FROM " + tablename
+                        + " WHERE " + KEY + " IN (?");
+                for (int i = 1; i < parameters; i++)
+                    sql.append(", ?");
+                pstmt = connection().prepareStatement(sql.append(')').toString());
+                selects.put(parameters, pstmt);
+            }
+            return pstmt;
+        }
+
+        private PreparedStatement replace() throws SQLException {
+            if (replace == null)
+                replace = connection().prepareStatement("REPLACE INTO " + tablename + " VALUES (?, ?)");
+            return replace;
+        }
+
+        private void close() {
+            for (PreparedStatement pstmt : selects.values())
+                closeQuietly(pstmt);
+            selects.clear();
+            closeQuietly(replace);
+            replace = null;
+            closeQuietly(conn);
+            conn = null;
+        }
+
+        private void closeQuietly(AutoCloseable closeable) {
+            if (closeable == null)
+                return;
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                // already broken
+            }
+        }
+    }
+}
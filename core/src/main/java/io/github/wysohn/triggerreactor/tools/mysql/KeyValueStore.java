@@ -0,0 +1,452 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.tools.mysql;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Key-value store in front of a {@link Backend}, which never blocks the caller on the database.
+ * <ul>
+ * <li>{@link #set(String, Object)} is saved in memory and returns right away. The changes are written
+ * together by the pool threads every flush interval, and only the last value is written if a key is set
+ * more than once in the meantime.</li>
+ * <li>{@link #getAsync(String)} of the keys not in memory are queued, and up to the batch size of them
+ * are read with a single query by each pool thread, so the reads of many scripts run at once share
+ * the queries.</li>
+ * <li>The values read, and the values written, are kept in the near cache for the ttl, which holds up to the
+ * cache size of them.</li>
+ * </ul>
+ * The values are saved in the form of {@link KeyValueCodec}.
+ */
+public class KeyValueStore implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(KeyValueStore.class.getName());
+    //cached for the keys which don't exist
+    private static final byte[] ABSENT = new byte[0];
+
+    /**
+     * The storage. The methods are called by the pool threads only.
+     */
+    public interface Backend extends AutoCloseable {
+        /**
+         * @param keys the keys, up to the batch size of them
+         * @return the values of the keys found
+         */
+        Map<String, byte[]> read(Collection<String> keys) throws Exception;
+
+        /**
+         * @param values the values to be replaced, up to the batch size of them
+         */
+        void write(Map<String, byte[]> values) throws Exception;
+
+        @Override
+        void close() throws SQLException;
+    }
+
+    private final Backend backend;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final int cacheSize;
+    private final long cacheTtlMillis;
+    private final LongSupplier clock;
+
+    private final ScheduledExecutorService executor;
+    private final int threads;
+
+    //the values set but not written yet
+    private final Map<String, byte[]> pendingWrites = new ConcurrentHashMap<>();
+    //one flush at a time. set() never takes it, as it's held while writing.
+    private final Object flushLock = new Object();
+    private volatile CompletableFuture<Void> nextFlush = new CompletableFuture<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    //increased for each set(), so the reads started before the set() don't cache the old value
+    private final AtomicLong writeVersion = new AtomicLong();
+
+    //the keys to read, each of which appears once while its future is in pendingReads
+    private final Queue<String> readQueue = new ConcurrentLinkedQueue<>();
+    private final Map<String, CompletableFuture<Object>> pendingReads = new ConcurrentHashMap<>();
+    private final AtomicInteger activeReaders = new AtomicInteger();
+
+    private final Map<String, CacheEntry> cache;
+
+    private volatile boolean closed = false;
+
+    private KeyValueStore(Builder builder) {
+        this.backend = builder.backend;
+        this.threads = builder.threads;
+        this.batchSize = builder.batchSize;
+        this.flushIntervalMillis = builder.flushIntervalMillis;
+        this.cacheSize = builder.cacheSize;
+        this.cacheTtlMillis = builder.cacheTtlMillis;
+        this.clock = builder.clock;
+
+        AtomicInteger count = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, runnable -> {
+            Thread thread = new Thread(runnable, "TriggerReactor KeyValueStore " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // close() flushes by itself
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = executor;
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @param key the key
+     * @return the value, which is completed right away if it's in memory.
+     */
+    public CompletableFuture<Object> getAsync(String key) {
+        Objects.requireNonNull(key);
+
+        byte[] bytes = pendingWrites.get(key);
+        if (bytes == null)
+            bytes = getCached(key);
+        if (bytes != null) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            try {
+                future.complete(bytes == ABSENT ? null : KeyValueCodec.decode(bytes));
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        ensureOpen();
+        CompletableFuture<Object> future = pendingReads.computeIfAbsent(key, k -> {
+            readQueue.add(k);
+            return new CompletableFuture<>();
+        });
+        scheduleRead();
+        return future;
+    }
+
+    /**
+     * @param keys the keys
+     * @return the values of the keys, where the keys which don't exist are mapped to null.
+     */
+    public CompletableFuture<Map<String, Object>> getAllAsync(Collection<String> keys) {
+        Map<String, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+        for (String key : keys)
+            futures.put(key, getAsync(key));
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            futures.forEach((key, future) -> values.put(key, future.join()));
+            return values;
+        });
+    }
+
+    /**
+     * Blocks until the value is read, if it's not in memory.
+     *
+     * @param key the key
+     * @return the value, or null if not found.
+     * @throws CompletionException if failed to read
+     */
+    public Object get(String key) {
+        return getAsync(key).join();
+    }
+
+    /**
+     * Save the value. It's written in the next flush.
+     *
+     * @param key   the key
+     * @param value the value, or null to save null.
+     * @return completed when the value is written.
+     * @throws IOException if the value can't be encoded. See {@link KeyValueCodec#encode(Object)}
+     */
+    public CompletableFuture<Void> set(String key, Object value) throws IOException {
+        Objects.requireNonNull(key);
+        ensureOpen();
+
+        byte[] bytes = KeyValueCodec.encode(value);
+        writeVersion.incrementAndGet();
+        pendingWrites.put(key, bytes);
+        putCached(key, bytes);
+        // taken after put, so it's never the flush which started before the value is there
+        CompletableFuture<Void> flush = nextFlush;
+        scheduleFlush();
+        return flush;
+    }
+
+    /**
+     * Write the values set so far now, and wait until done.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            // cleared before the swap, so the set() which gets the new future also schedules the next flush
+            flushScheduled.set(false);
+            CompletableFuture<Void> flush = nextFlush;
+            nextFlush = new CompletableFuture<>();
+
+            Map<String, byte[]> batch = new HashMap<>();
+            Exception failure = null;
+            for (Map.Entry<String, byte[]> entry : pendingWrites.entrySet()) {
+                batch.put(entry.getKey(), entry.getValue());
+                if (batch.size() >= batchSize) {
+                    failure = write(batch, failure);
+                    batch = new HashMap<>();
+                }
+            }
+            if (!batch.isEmpty())
+                failure = write(batch, failure);
+
+            if (failure == null) {
+                flush.complete(null);
+            } else {
+                flush.completeExceptionally(failure);
+                LOGGER.log(Level.WARNING, "Failed to write the values. Will retry later.", failure);
+                // kept in pendingWrites, so retry them in the next flush
+                if (!closed)
+                    scheduleFlush();
+            }
+        }
+    }
+
+    private Exception write(Map<String, byte[]> batch, Exception failure) {
+        try {
+            backend.write(batch);
+            // remove only if not changed while writing
+            batch.forEach(pendingWrites::remove);
+            return failure;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    private void scheduleFlush() {
+        if (closed || !flushScheduled.compareAndSet(false, true))
+            return;
+
+        try {
+            executor.schedule(this::flush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed meanwhile, and close() flushes by itself
+            flushScheduled.set(false);
+        }
+    }
+
+    private void scheduleRead() {
+        while (true) {
+            int active = activeReaders.get();
+            if (active >= threads || readQueue.isEmpty())
+                return;
+            if (activeReaders.compareAndSet(active, active + 1)) {
+                executor.execute(this::readQueued);
+                return;
+            }
+        }
+    }
+
+    private void readQueued() {
+        try {
+            List<String> keys = new ArrayList<>();
+            String key;
+            while (keys.size() < batchSize && (key = readQueue.poll()) != null)
+                keys.add(key);
+            if (keys.isEmpty())
+                return;
+
+            long version = writeVersion.get();
+            Map<String, byte[]> values;
+            try {
+                values = backend.read(keys);
+            } catch (Exception e) {
+                for (String failed : keys) {
+                    CompletableFuture<Object> future = pendingReads.remove(failed);
+                    if (future != null)
+                        future.completeExceptionally(e);
+                }
+                return;
+            }
+
+            for (String read : keys) {
+                byte[] bytes = values.get(read);
+                if (bytes == null)
+                    bytes = ABSENT;
+
+                byte[] written = pendingWrites.get(read);
+                if (written != null) {
+                    bytes = written;
+                } else if (writeVersion.get() == version) {
+                    putCached(read, bytes);
+                }
+
+                CompletableFuture<Object> future = pendingReads.remove(read);
+                if (future == null)
+                    continue;
+                try {
+                    future.complete(bytes == ABSENT ? null : KeyValueCodec.decode(bytes));
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        } finally {
+            activeReaders.decrementAndGet();
+            scheduleRead();
+        }
+    }
+
+    private byte[] getCached(String key) {
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (entry == null)
+                return null;
+            if (entry.expires - clock.getAsLong() <= 0) {
+                cache.remove(key);
+                return null;
+            }
+            return entry.bytes;
+        }
+    }
+
+    private void putCached(String key, byte[] bytes) {
+        if (cacheSize <= 0)
+            return;
+
+        synchronized (cache) {
+            cache.put(key, new CacheEntry(bytes, clock.getAsLong() + cacheTtlMillis));
+        }
+    }
+
+    /**
+     * Remove the cached values, so they are read from the backend next time.
+     */
+    public void invalidate() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return number of the values set but not written yet.
+     */
+    public int getPendingWrites() {
+        return pendingWrites.size();
+    }
+
+    private void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("Already closed.");
+    }
+
+    /**
+     * Write the values set so far, and then close the backend.
+     */
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+        flush();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        backend.close();
+    }
+
+    private static final class CacheEntry {
+        private final byte[] bytes;
+        private final long expires;
+
+        private CacheEntry(byte[] bytes, long expires) {
+            this.bytes = bytes;
+            this.expires = expires;
+        }
+    }
+
+    public static class Builder {
+        public static final int DEFAULT_THREADS = 4;
+        public static final int DEFAULT_BATCH_SIZE = 64;
+        public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 50L;
+        public static final int DEFAULT_CACHE_SIZE = 1000;
+        public static final long DEFAULT_CACHE_TTL_MILLIS = 5000L;
+
+        private final Backend backend;
+        private int threads = DEFAULT_THREADS;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+        private int cacheSize = DEFAULT_CACHE_SIZE;
+        private long cacheTtlMillis = DEFAULT_CACHE_TTL_MILLIS;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        public Builder(Backend backend) {
+            this.backend = Objects.requireNonNull(backend);
+        }
+
+        /**
+         * @param threads number of the queries run at once. Usually same as the size of the connection pool.
+         */
+        public Builder threads(int threads) {
+            this.threads = Math.max(1, threads);
+            return this;
+        }
+
+        /**
+         * @param batchSize maximum number of the keys read or written by a query.
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = Math.max(1, batchSize);
+            return this;
+        }
+
+        public Builder flushIntervalMillis(long flushIntervalMillis) {
+            this.flushIntervalMillis = Math.max(0L, flushIntervalMillis);
+            return this;
+        }
+
+        /**
+         * @param cacheSize maximum number of the values in the near cache. 0 to not cache.
+         */
+        public Builder cacheSize(int cacheSize) {
+            this.cacheSize = Math.max(0, cacheSize);
+            return this;
+        }
+
+        public Builder cacheTtlMillis(long cacheTtlMillis) {
+            this.cacheTtlMillis = Math.max(0L, cacheTtlMillis);
+            return this;
+        }
+
+        Builder clock(LongSupplier clock) {
+            this.clock = Objects.requireNonNull(clock);
+            return this;
+        }
+
+        public KeyValueStore build() {
+            return new KeyValueStore(this);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class BinaryConfigSourceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void init() throws Exception {
+        GsonConfigSource.configure(60000L, false);
+        dir = folder.newFolder();
+    }
+
+    @After
+    public void tearDown() {
+        GsonConfigSource.configure(GsonConfigSource.DEFAULT_FLUSH_DELAY_MILLIS, false);
+    }
+
+    private BinaryConfigSource open() {
+        BinaryConfigSource source = new BinaryConfigSource(dir, "var");
+        source.reload();
+        return source;
+    }
+
+    @Test
+    public void testPutReload() {
+        UUID uuid = UUID.randomUUID();
+
+        BinaryConfigSource source = open();
+        assertFalse(source.fileExists());
+        source.put("player.a.coins", 1);
+        source.put("player.a.big", Long.MAX_VALUE);
+        source.put("player.a.balance", 1.5);
+        source.put("player.a.name", "steve");
+        source.put("player.a.online", false);
+        source.put("player.a.uuid", uuid);
+        source.put("list", new String[]{"x", "y"});
+        source.saveAll();
+
+        BinaryConfigSource loaded = open();
+        assertTrue(loaded.fileExists());
+        assertEquals(Integer.valueOf(1), loaded.get("player.a.coins", Integer.class).get());
+        assertEquals(Long.valueOf(Long.MAX_VALUE), loaded.get("player.a.big", Long.class).get());
+        assertEquals(Double.valueOf(1.5), loaded.get("player.a.balance", Double.class).get());
+        assertEquals("steve", loaded.get("player.a.name").get());
+        assertEquals(false, loaded.get("player.a.online").get());
+        assertEquals(uuid, loaded.get("player.a.uuid").get());
+        assertEquals(Arrays.asList("x", "y"), loaded.get("list").get());
+        assertTrue(loaded.isSection("player.a"));
+        assertTrue(loaded.keys().contains("player"));
+    }
+
+    @Test
+    public void testUntouchedSectionsCopied() {
+        BinaryConfigSource source = open();
+        for (int i = 0; i < 1000; i++)
+            source.put("player." + i + ".coins", i);
+        source.saveAll();
+
+        // only player.0 is decoded and changed; the others are written as they were read
+        BinaryConfigSource loaded = open();
+        loaded.put("player.0.coins", -1);
+        loaded.put("player.0.level", 5);
+        loaded.saveAll();
+
+        BinaryConfigSource reloaded = open();
+        assertEquals(Integer.valueOf(-1), reloaded.get("player.0.coins", Integer.class).get());
+        assertEquals(Integer.valueOf(5), reloaded.get("player.0.level", Integer.class).get());
+        assertEquals(Integer.valueOf(999), reloaded.get("player.999.coins", Integer.class).get());
+        assertFalse(reloaded.has("player.1000"));
+        assertFalse(reloaded.has("player.0.missing"));
+        assertEquals(1000, reloaded.<Map<String, Object>>get("player").get().size());
+    }
+
+    private static Map<String, Object> snapshot(IConfigSource source) {
+        Map<String, Object> values = new HashMap<>();
+        for (String key : source.keys()) {
+            source.get(key).ifPresent(value -> values.put(key, value));
+        }
+        return values;
+    }
+
+    @Test
+    public void testConvert() throws Exception {
+        IConfigSource json = ConfigSourceFactory.instance().create("gson", dir, "var");
+        json.reload();
+        json.put("player.a.coins", 3);
+        json.put("player.a.uuid", UUID.fromString("968cee8d-ec72-4a2f-a3bc-09a521a06f89"));
+
+        // exported from memory, whether it's written to var.json or not
+        BinaryConfigSource.toBinary(snapshot(json), dir, "var");
+        BinaryConfigSource binary = open();
+        assertEquals(Integer.valueOf(3), binary.get("player.a.coins", Integer.class).get());
+        binary.put("player.b.coins", 4);
+        binary.saveAll();
+
+        BinaryConfigSource.toJson(snapshot(binary), dir, "var");
+
+        IConfigSource back = ConfigSourceFactory.instance().create("gson", dir, "var");
+        back.reload();
+        assertEquals(Integer.valueOf(3), back.get("player.a.coins", Integer.class).get());
+        assertEquals(Integer.valueOf(4), back.get("player.b.coins", Integer.class).get());
+        assertEquals(UUID.fromString("968cee8d-ec72-4a2f-a3bc-09a521a06f89"), back.get("player.a.uuid").get());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotBinary() throws Exception {
+        BinarySnapshot.read(ByteBuffer.wrap("{}".getBytes()), new GsonConfigSource(new File(dir, "var.json")));
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConfigFlushServiceTest {
+    private ConfigFlushService service;
+
+    @Before
+    public void init() {
+        service = new ConfigFlushService(1);
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger count = new AtomicInteger();
+        ConfigFlushService.Flushable target = () -> {
+            count.incrementAndGet();
+            latch.countDown();
+        };
+
+        for (int i = 0; i < 100; i++)
+            service.markDirty(target, 100L);
+        assertEquals(1, service.getPendingCount());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200L);
+        assertEquals(1, count.get());
+        assertEquals(0, service.getPendingCount());
+    }
+
+    @Test
+    public void testDirtyAgainWhileFlushing() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(2);
+        ConfigFlushService.Flushable target = () -> {
+            flushing.countDown();
+            second.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        service.markDirty(target, 0L);
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+        //changed during the flush, so it must be flushed once more
+        service.markDirty(target, 0L);
+        release.countDown();
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        List<String> flushed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(3);
+        ConfigFlushService.Flushable a = () -> {
+            flushed.add("a");
+            latch.countDown();
+        };
+        ConfigFlushService.Flushable b = () -> {
+            flushed.add("b");
+            latch.countDown();
+        };
+        ConfigFlushService.Flushable c = () -> {
+            flushed.add("c");
+            latch.countDown();
+        };
+
+        service.markDirty(a, 50L);
+        Thread.sleep(5L);
+        service.markDirty(b, 50L);
+        Thread.sleep(5L);
+        service.markDirty(c, 50L);
+        //a keeps changing, but still waits for its turn
+        service.markDirty(a, 50L);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a", "b", "c"), flushed);
+    }
+
+    @Test
+    public void testFlushOnShutdown() {
+        AtomicInteger count = new AtomicInteger();
+        service.markDirty(count::incrementAndGet, TimeUnit.HOURS.toMillis(1));
+        service.markDirty(count::incrementAndGet, TimeUnit.HOURS.toMillis(1));
+        assertEquals(1, service.getPendingReport(1).size() - 1);
+
+        service.shutdown();
+        assertEquals(2, count.get());
+        assertEquals(0, service.getPendingCount());
+
+        //flushed right away once shut down
+        service.markDirty(count::incrementAndGet, TimeUnit.HOURS.toMillis(1));
+        assertEquals(3, count.get());
+    }
+
+    @Test
+    public void testFlushNowAndCancel() {
+        AtomicInteger count = new AtomicInteger();
+        ConfigFlushService.Flushable target = count::incrementAndGet;
+
+        assertFalse(service.flushNow(target));
+        service.markDirty(target, TimeUnit.HOURS.toMillis(1));
+        assertTrue(service.flushNow(target));
+        assertEquals(1, count.get());
+
+        service.markDirty(target, TimeUnit.HOURS.toMillis(1));
+        service.cancel(target);
+        assertEquals(0, service.getPendingCount());
+        service.shutdown();
+        assertEquals(1, count.get());
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import io.github.wysohn.gsoncopy.Gson;
+import io.github.wysohn.gsoncopy.stream.JsonReader;
+import io.github.wysohn.triggerreactor.tools.PersistentMap;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class GsonHelperTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        GsonConfigSource.configure(GsonConfigSource.DEFAULT_FLUSH_DELAY_MILLIS, false);
+    }
+
+    private static PersistentMap<String, Object> load(String json, String... lazySections) throws Exception {
+        return GsonHelper.loadJson(new JsonReader(new StringReader(json)), new Gson(), Arrays.asList(lazySections));
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+        Map<String, Object> map = load("{\"int\":1,\"long\":3000000000,\"double\":1.0,\"exp\":1e3,"
+                + "\"huge\":123456789012345678901234567890}");
+
+        assertEquals(1, map.get("int"));
+        assertEquals(3000000000L, map.get("long"));
+        assertEquals(1.0, map.get("double"));
+        assertEquals(1000.0, map.get("exp"));
+        assertEquals(1.2345678901234568E29, map.get("huge"));
+    }
+
+    @Test
+    public void testStructure() throws Exception {
+        Map<String, Object> map = load("{\"a\":{\"name\":\"x\",\"list\":[1,{\"b\":true},null]},"
+                + "\"b\":{\"name\":\"y\"},\"removed\":null}");
+
+        assertTrue(map.get("a") instanceof PersistentMap);
+        assertEquals(Arrays.asList(1, Collections.singletonMap("b", true), null),
+                ((Map<?, ?>) map.get("a")).get("list"));
+        assertFalse(map.containsKey("removed"));
+
+        // the same keys are the same String
+        Object name1 = ((Map<?, ?>) map.get("a")).keySet().stream()
+                .filter("name"::equals).findFirst().get();
+        Object name2 = ((Map<?, ?>) map.get("b")).keySet().iterator().next();
+        assertSame(name1, name2);
+    }
+
+    @Test
+    public void testLazySections() throws Exception {
+        Map<String, Object> map = load("{\"player\":{\"a\":{\"coins\":1},\"b\":{\"coins\":2}},"
+                + "\"other\":{\"c\":{\"coins\":3}}}", "player.*");
+
+        Map<?, ?> player = (Map<?, ?>) map.get("player");
+        assertTrue(player instanceof PersistentMap);
+        LazyJsonSection a = (LazyJsonSection) player.get("a");
+        LazyJsonSection b = (LazyJsonSection) player.get("b");
+        assertFalse(((Map<?, ?>) map.get("other")).get("c") instanceof LazyJsonSection);
+
+        assertFalse(a.isDecoded());
+        assertEquals(1, a.get("coins"));
+        assertTrue(a.isDecoded());
+        assertFalse(b.isDecoded());
+    }
+
+    @Test
+    public void testLazySectionsWrittenBack() throws Exception {
+        GsonConfigSource.configure(60000L, false);
+
+        File file = folder.newFile("var.json");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("{\"player\":{\"a\":{\"coins\":1,\"uuid\":"
+                    + "{\"$serkey\":\"java.util.UUID\",\"$serval\":\"968cee8d-ec72-4a2f-a3bc-09a521a06f89\"}},"
+                    + "\"b\":{\"coins\":2.5}}}");
+        }
+
+        GsonConfigSource source = (GsonConfigSource) ConfigSourceFactory.instance()
+                .create("gson", folder.getRoot(), "var");
+        source.setLazySections(Collections.singletonList("player.*"));
+        source.reload();
+        source.put("player.a.coins", 5);
+        source.saveAll();
+
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertTrue(json.contains("{\"coins\":2.5}"));
+
+        IConfigSource reloaded = ConfigSourceFactory.instance().create("gson", folder.getRoot(), "var");
+        reloaded.reload();
+        assertEquals(Integer.valueOf(5), reloaded.get("player.a.coins", Integer.class).get());
+        assertEquals(UUID.fromString("968cee8d-ec72-4a2f-a3bc-09a521a06f89"), reloaded.get("player.a.uuid").get());
+        assertEquals(Double.valueOf(2.5), reloaded.get("player.b.coins", Double.class).get());
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class IConfigSourceTest {
+    @Test
+    public void toPath() {
+        assertArrayEquals(new String[]{"a"}, IConfigSource.toPath("a"));
+        assertArrayEquals(new String[]{"a", "bc", "d"}, IConfigSource.toPath("a.bc.d"));
+        assertArrayEquals(new String[]{"a", "b"}, IConfigSource.toPath(".a..b."));
+        assertArrayEquals(new String[0], IConfigSource.toPath(""));
+        assertArrayEquals(new String[0], IConfigSource.toPath(".."));
+    }
+}
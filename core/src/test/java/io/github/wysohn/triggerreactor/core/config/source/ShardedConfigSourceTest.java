@@ -0,0 +1,186 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ShardedConfigSourceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(0L);
+    private File dir;
+    private ShardedConfigSource source;
+
+    @Before
+    public void init() throws Exception {
+        // nothing is written unless saveAll() is called
+        GsonConfigSource.configure(60000L, false);
+
+        dir = folder.newFolder();
+        source = new ShardedConfigSource(dir, 16, 2, 1000L, clock::get);
+    }
+
+    @After
+    public void tearDown() {
+        source.reload();
+        GsonConfigSource.configure(GsonConfigSource.DEFAULT_FLUSH_DELAY_MILLIS, false);
+    }
+
+    private int writtenFiles() {
+        int count = 0;
+        for (File file : dir.listFiles()) {
+            if (file.length() > 0)
+                count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testPutGet() {
+        for (int i = 0; i < 100; i++) {
+            source.put("player." + i + ".coins", i);
+            source.put("player." + i + ".name", "p" + i);
+        }
+        source.saveAll();
+
+        ShardedConfigSource loaded = new ShardedConfigSource(dir, 16, 2, 1000L, clock::get);
+        assertTrue(loaded.fileExists());
+        assertEquals(Integer.valueOf(42), loaded.get("player.42.coins", Integer.class).get());
+        assertEquals("p7", loaded.get("player.7.name").get());
+        assertTrue(loaded.has("player.99"));
+        assertFalse(loaded.has("player.100"));
+        assertTrue(writtenFiles() > 1);
+    }
+
+    @Test
+    public void testSpanningKey() {
+        source.put("player.a.coins", 1);
+        source.put("player.b.coins", 2);
+        source.put("count", 3);
+
+        Map<String, Object> players = source.<Map<String, Object>>get("player").get();
+        assertEquals(2, players.size());
+        assertTrue(source.isSection("player"));
+        assertTrue(source.has("player"));
+        assertEquals(Integer.valueOf(3), source.get("count", Integer.class).get());
+        assertTrue(source.keys().contains("player"));
+        assertTrue(source.keys().contains("count"));
+
+        source.put("player", 5);
+        assertFalse(source.has("player.a"));
+        assertFalse(source.has("player.b"));
+        assertFalse(source.isSection("player"));
+        assertEquals(Integer.valueOf(5), source.get("player", Integer.class).get());
+
+        source.put("player", null);
+        assertFalse(source.has("player"));
+    }
+
+    @Test
+    public void testSectionUnderSpanningKey() {
+        Map<String, Object> players = new HashMap<>();
+        players.put("a", Collections.singletonMap("coins", 1));
+        players.put("b", Collections.singletonMap("coins", 2));
+        source.put("player", players);
+
+        assertEquals(Integer.valueOf(1), source.get("player.a.coins", Integer.class).get());
+        assertEquals(Integer.valueOf(2), source.get("player.b.coins", Integer.class).get());
+        assertEquals(2, source.<Map<String, Object>>get("player").get().size());
+
+        source.put("player", Collections.singletonMap("c", Collections.singletonMap("coins", 3)));
+        assertFalse(source.has("player.a"));
+        assertEquals(Integer.valueOf(3), source.get("player.c.coins", Integer.class).get());
+
+        source.put("player.c", Collections.singletonMap("level", 4));
+        assertFalse(source.has("player.c.coins"));
+        assertEquals(Integer.valueOf(4), source.get("player.c.level", Integer.class).get());
+
+        // not a section, even though the key is in the other shard
+        source.put("count", 1);
+        try {
+            source.put("count.a.b", 2);
+            fail("count is not a section");
+        } catch (RuntimeException expected) {
+        }
+    }
+
+    @Test
+    public void testSpanningKeyValueInItsShard() {
+        for (int i = 0; i < 100; i++)
+            source.put("player." + i + ".coins", i);
+        source.put("count", 1);
+        source.saveAll();
+
+        // everything else is evicted
+        clock.addAndGet(5000L);
+        assertEquals(Integer.valueOf(1), source.get("count", Integer.class).get());
+        assertEquals(1, source.getLoadedShardCount());
+
+        source.put("count", 2);
+        assertTrue(source.has("count"));
+        assertFalse(source.isSection("count"));
+        assertEquals(Integer.valueOf(2), source.get("count", Integer.class).get());
+        assertEquals(1, source.getLoadedShardCount());
+    }
+
+    @Test
+    public void testOnlyDirtyWritten() {
+        source.put("player." + UUID.randomUUID() + ".coins", 1);
+        source.saveAll();
+        assertEquals(1, writtenFiles());
+
+        String other = "player." + UUID.randomUUID() + ".coins";
+        source.get(other);
+        source.saveAll();
+        assertEquals(1, writtenFiles());
+    }
+
+    @Test
+    public void testEviction() {
+        source.put("player.a.coins", 1);
+        assertEquals(1, source.getLoadedShardCount());
+
+        // not evicted before its changes are written
+        clock.addAndGet(5000L);
+        source.get("player.b.coins");
+        assertTrue(source.getLoadedShardCount() >= 1);
+        assertTrue(source.has("player.a.coins"));
+
+        source.saveAll();
+        clock.addAndGet(5000L);
+        source.get("player.b.coins");
+        assertEquals(1, source.getLoadedShardCount());
+
+        // loaded again from the file
+        assertEquals(Integer.valueOf(1), source.get("player.a.coins", Integer.class).get());
+    }
+
+    @Test
+    public void testReload() {
+        source.put("player.a.coins", 1);
+        source.saveAll();
+        source.put("player.a.coins", 2);
+
+        source.reload();
+        assertEquals(0, source.getLoadedShardCount());
+        assertEquals(Integer.valueOf(1), source.get("player.a.coins", Integer.class).get());
+    }
+
+    @Test
+    public void testFactory() {
+        IConfigSource created = ConfigSourceFactory.instance().create("sharded", dir, "var");
+        assertTrue(created instanceof ShardedConfigSource);
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.wysohn.triggerreactor.core.config.source;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class WalConfigSourceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void init() throws Exception {
+        dir = folder.newFolder();
+        WalConfigSource.configure(WalConfigSource.Durability.WRITE, WalConfigSource.DEFAULT_BATCH_SIZE, 60000L);
+    }
+
+    @After
+    public void tearDown() {
+        WalConfigSource.configure(WalConfigSource.Durability.INTERVAL, WalConfigSource.DEFAULT_BATCH_SIZE,
+                WalConfigSource.DEFAULT_INTERVAL_MILLIS);
+    }
+
+    private WalConfigSource open() {
+        WalConfigSource source = new WalConfigSource(dir, "var", 1024 * 1024);
+        source.reload();
+        return source;
+    }
+
+    @Test
+    public void testReplay() {
+        UUID uuid = UUID.randomUUID();
+
+        WalConfigSource source = open();
+        source.put("kills.a", 1);
+        source.put("kills.a", 2);
+        source.put("balance.a", 10.5);
+        source.put("big", Long.MAX_VALUE);
+        source.put("name", "steve");
+        source.put("flag", true);
+        source.put("uuid", uuid);
+        source.put("list", new String[]{"x", "y"});
+        source.put("removed", 1);
+        source.put("removed", null);
+        // no disable(), as if the server crashed
+
+        WalConfigSource recovered = open();
+        assertEquals(Integer.valueOf(2), recovered.get("kills.a", Integer.class).get());
+        assertEquals(Double.valueOf(10.5), recovered.get("balance.a", Double.class).get());
+        assertEquals(Long.valueOf(Long.MAX_VALUE), recovered.get("big", Long.class).get());
+        assertEquals("steve", recovered.get("name").get());
+        assertEquals(true, recovered.get("flag").get());
+        assertEquals(uuid, recovered.get("uuid").get());
+        assertEquals(Arrays.asList("x", "y"), recovered.get("list").get());
+        assertFalse(recovered.has("removed"));
+        assertTrue(recovered.fileExists());
+    }
+
+    @Test
+    public void testTornRecord() throws Exception {
+        WalConfigSource source = open();
+        source.put("a", 1);
+        source.put("b", 2);
+
+        File log = new File(dir, "var.0.wal");
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        WalConfigSource recovered = open();
+        assertEquals(Integer.valueOf(1), recovered.get("a", Integer.class).get());
+        assertFalse(recovered.has("b"));
+
+        // appended after the last complete record
+        recovered.put("c", 3);
+        assertEquals(Integer.valueOf(3), open().get("c", Integer.class).get());
+    }
+
+    @Test
+    public void testCompact() {
+        WalConfigSource source = new WalConfigSource(dir, "var", 256);
+        source.reload();
+        for (int i = 0; i < 100; i++)
+            source.put("kills.a", i);
+
+        source.compact();
+        assertEquals(0L, source.getLogBytes());
+        assertFalse(new File(dir, "var.0.wal").exists());
+        assertTrue(new File(dir, "var.json").length() > 0);
+
+        source.put("kills.b", 1);
+        WalConfigSource recovered = open();
+        assertEquals(Integer.valueOf(99), recovered.get("kills.a", Integer.class).get());
+        assertEquals(Integer.valueOf(1), recovered.get("kills.b", Integer.class).get());
+    }
+
+    @Test
+    public void testDisable() {
+        WalConfigSource source = open();
+        source.put("kills.a", 5);
+        source.disable();
+
+        // the json file alone is enough, so it can be read as the gson source
+        IConfigSource gson = ConfigSourceFactory.instance().create("gson", dir, "var");
+        gson.reload();
+        assertEquals(Integer.valueOf(5), gson.get("kills.a", Integer.class).get());
+    }
+
+    @Test
+    public void testBatch() {
+        WalConfigSource.configure(WalConfigSource.Durability.BATCH, 3, 60000L);
+
+        WalConfigSource source = open();
+        source.put("a", 1);
+        source.put("b", 2);
+        assertEquals(Integer.valueOf(2), source.get("b", Integer.class).get());
+        assertFalse(open().has("a"));
+
+        source.put("c", 3);
+        WalConfigSource recovered = open();
+        assertTrue(recovered.has("a"));
+        assertTrue(recovered.has("c"));
+
+        source.put("d", 4);
+        source.saveAll();
+        assertTrue(open().has("d"));
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.wysohn.triggerreactor.core.manager;
+
+import org.junit.Test;
+
+import javax.script.Compilable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class EvaluatedScriptTest {
+    private static EvaluatedScript evaluate(ScriptEngineManager sem, String name, String source) throws Exception {
+        ScriptEngine engine = IScriptEngineInitializer.getNashornEngine(sem);
+        EvaluatedScript script = new EvaluatedScript(name, engine, new LazyCompiledScript((Compilable) engine, source));
+        script.evaluate();
+        return script;
+    }
+
+    @Test
+    public void evaluatedOnlyOnce() throws Exception {
+        EvaluatedScript script = evaluate(new ScriptEngineManager(null), "counter",
+                "var evaluated = 0; evaluated++;" +
+                        "function counter(args){ return evaluated; }");
+        script.evaluate();
+
+        assertEquals(1, ((Number) script.call(null, new HashMap<>(), null, new Object[0])).intValue());
+        assertEquals(1, ((Number) script.call(null, new HashMap<>(), null, new Object[0])).intValue());
+    }
+
+    @Test
+    public void variablesVisibleOnlyDuringCall() throws Exception {
+        EvaluatedScript script = evaluate(new ScriptEngineManager(null), "test",
+                "function test(args){ return event + ':' + name + ':' + overload + ':' + args[0]; }");
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("name", "wysohn");
+        assertEquals("e:wysohn:1:arg", script.call("e", variables, 1, new Object[]{"arg"}));
+
+        variables.put("name", "other");
+        assertEquals("e2:other:0:arg", script.call("e2", variables, 0, new Object[]{"arg"}));
+
+        assertEquals("undefined", script.getFunction().eval("typeof name"));
+        assertEquals("undefined", script.getFunction().eval("typeof event"));
+    }
+
+    @Test
+    public void topLevelNamesFirst() throws Exception {
+        EvaluatedScript script = evaluate(new ScriptEngineManager(null), "test",
+                "var name = 'original';" +
+                        "function test(args){ return name + ':' + other; }");
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("name", "hidden");
+        variables.put("other", "variable");
+        assertEquals("original:variable", script.call(null, variables, null, new Object[0]));
+        assertEquals("original:undefined", script.call(null, new HashMap<>(), null, new Object[0]));
+    }
+
+    @Test(timeout = 10000L)
+    public void callsNotSerialized() throws Exception {
+        EvaluatedScript script = evaluate(new ScriptEngineManager(null), "test",
+                "function test(args){ return (inner ? inner.call() : '') + name; }");
+
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            Map<String, Object> innerVariables = new HashMap<>();
+            innerVariables.put("name", "b");
+            innerVariables.put("inner", null);
+            Callable<Object> inner = () -> other.submit(() -> script.call(null, innerVariables, null, new Object[0]))
+                    .get();
+
+            // the call in the other thread runs while this call is in progress, with its own variables
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("name", "a");
+            variables.put("inner", inner);
+            assertEquals("ba", script.call(null, variables, null, new Object[0]));
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    @Test
+    public void globalScopeVisible() throws Exception {
+        ScriptEngineManager sem = new ScriptEngineManager(null);
+        sem.put("shared", "value");
+
+        EvaluatedScript script = evaluate(sem, "test", "function test(args){ return shared; }");
+
+        assertEquals("value", script.call(null, new HashMap<>(), null, new Object[0]));
+    }
+
+    @Test
+    public void validation() throws Exception {
+        EvaluatedScript script = evaluate(new ScriptEngineManager(null), "test",
+                "var validation = {overloads: [[{type: 'int', name: 'count'}]]};" +
+                        "function test(args){ return overload; }");
+
+        assertNotNull(script.getValidator());
+        assertEquals(0, script.getValidator().validate(1).getOverload());
+        assertEquals(-1, script.getValidator().validate("text").getOverload());
+    }
+
+    @Test
+    public void missingFunction() throws Exception {
+        EvaluatedScript script = evaluate(new ScriptEngineManager(null), "test", "function other(args){}");
+
+        assertNull(script.getFunction());
+        assertNull(script.getValidator());
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.wysohn.triggerreactor.core.manager;
+
+import org.junit.Test;
+
+import javax.script.*;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LazyCompiledScriptTest {
+    private static final ScriptEngine engine = IScriptEngineInitializer.getNashornEngine(new ScriptEngineManager(null));
+
+    @Test
+    public void compiledOnce() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        Compilable compiler = new Compilable() {
+            @Override
+            public CompiledScript compile(String script) throws ScriptException {
+                count.incrementAndGet();
+                return ((Compilable) engine).compile(script);
+            }
+
+            @Override
+            public CompiledScript compile(Reader script) throws ScriptException {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        LazyCompiledScript script = new LazyCompiledScript(compiler, "1 + 1");
+        assertFalse(script.isDone());
+        assertEquals(0, count.get());
+
+        CompiledScript compiled = script.get();
+        assertTrue(script.isDone());
+        assertSame(compiled, script.get());
+        assertSame(compiled, script.compileAsync(Runnable::run).get());
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void syntaxError() throws Exception {
+        LazyCompiledScript script = new LazyCompiledScript((Compilable) engine, "function broken( {");
+
+        try {
+            script.get();
+            fail();
+        } catch (ScriptException ex) {
+            // expected
+        }
+
+        try {
+            script.compileAsync(Runnable::run).get();
+            fail();
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ScriptException);
+        }
+    }
+
+    @Test
+    public void parallelCompileOnSharedEngine() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<LazyCompiledScript> scripts = new ArrayList<>();
+            List<CompletableFuture<CompiledScript>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                LazyCompiledScript script = new LazyCompiledScript((Compilable) engine,
+                        "function test" + i + "(args){ return " + i + "; }");
+                scripts.add(script);
+                futures.add(script.compileAsync(pool));
+            }
+
+            for (int i = 0; i < scripts.size(); i++) {
+                Bindings bindings = engine.createBindings();
+                ScriptContext context = new SimpleScriptContext();
+                context.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+                scripts.get(i).get().eval(context);
+
+                assertSame(futures.get(i).get(), scripts.get(i).get());
+                assertNotNull(bindings.get("test" + i));
+                assertNull(bindings.get("test" + ((i + 1) % scripts.size())));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
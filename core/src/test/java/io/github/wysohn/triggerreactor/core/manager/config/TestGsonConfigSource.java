@@ -5,19 +5,28 @@ import io.github.wysohn.gsoncopy.GsonBuilder;
 import io.github.wysohn.gsoncopy.internal.LinkedTreeMap;
 import io.github.wysohn.gsoncopy.reflect.TypeToken;
 import io.github.wysohn.triggerreactor.core.config.serialize.Serializer;
+import io.github.wysohn.triggerreactor.core.config.source.ConfigSourceFactory;
 import io.github.wysohn.triggerreactor.core.config.source.GsonConfigSource;
+import io.github.wysohn.triggerreactor.core.config.source.IConfigSource;
 import io.github.wysohn.triggerreactor.core.main.TriggerReactorCore;
+import io.github.wysohn.triggerreactor.tools.PersistentMap;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import org.powermock.reflect.Whitebox;
 
 import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class TestGsonConfigSource {
     private final String jsonString = "{\n" +
@@ -56,6 +65,9 @@ public class TestGsonConfigSource {
             "   }\n" +
             "}";
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private TriggerReactorCore mockMain;
     private File mockFile;
     private StringWriter stringWriter;
@@ -110,7 +122,7 @@ public class TestGsonConfigSource {
 
     @Test
     public void testSaveAll() {
-        Map<String, Object> cache = Whitebox.getInternalState(manager, "cache");
+        Map<String, Object> cache = new HashMap<>();
         cache.put("string2", "teststring2");
         cache.put("number2", 123);
         cache.put("number2_2", 123.45);
@@ -141,6 +153,7 @@ public class TestGsonConfigSource {
         myobj2.d = 99.9;
         myobj2.b = false;
         cache.put("myobj2", myobj2);
+        Whitebox.setInternalState(manager, "cache", PersistentMap.copyOf(cache));
 
         manager.saveAll();
 
@@ -182,6 +195,85 @@ public class TestGsonConfigSource {
         assertEquals(myobj2raw, deser.get("myobj2"));
     }
 
+    @After
+    public void tearDown() {
+        GsonConfigSource.configure(GsonConfigSource.DEFAULT_FLUSH_DELAY_MILLIS, false);
+    }
+
+    @Test
+    public void testPutSection() {
+        manager.reload();
+        GsonConfigSource.configure(60000L, false);
+
+        Map<String, Object> before = manager.<Map<String, Object>>get("object").get();
+        manager.put("object.value2", "def");
+        manager.put("object.inner.deep", 1);
+        manager.put("string", null);
+
+        // what was read before stays as it was
+        assertEquals(1, before.size());
+        assertEquals("abc", manager.get("object.value", String.class).get());
+        assertEquals("def", manager.get("object.value2", String.class).get());
+        assertEquals(Integer.valueOf(1), manager.get("object.inner.deep", Integer.class).get());
+        assertTrue(manager.isSection("object.inner"));
+        assertFalse(manager.has("string"));
+        assertFalse(manager.keys().contains("string"));
+        assertTrue(manager.keys().contains("object"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testPutNotSection() {
+        manager.reload();
+        manager.put("string.value", 1);
+    }
+
+    @Test
+    public void testPutCoalesced() throws Exception {
+        AtomicInteger opened = new AtomicInteger();
+        GsonConfigSource source = new GsonConfigSource(mockFile,
+                (f) -> new StringReader(jsonString),
+                (f) -> {
+                    opened.incrementAndGet();
+                    return new StringWriter();
+                });
+        GsonConfigSource.configure(200L, false);
+
+        // like saving an inventory, one slot at a time
+        for (int i = 0; i < 54; i++)
+            source.put("items." + i, "item" + i);
+
+        source.shutdown();
+
+        assertEquals(1, opened.get());
+        assertEquals(1, source.getFlushCount());
+        assertTrue(source.getBytesWritten() > 0);
+    }
+
+    @Test
+    public void testAtomicWrite() throws Exception {
+        File dir = folder.newFolder();
+        IConfigSource source = ConfigSourceFactory.instance().create(dir, "test");
+        source.put("a.b", "value");
+        source.put("number", 3);
+        source.disable();
+
+        File file = new File(dir, "test.json");
+        assertTrue(file.exists());
+        assertFalse(new File(dir, "test.json.tmp").exists());
+
+        try (Reader reader = new FileReader(file)) {
+            Map<String, Object> written = new Gson().fromJson(reader, new TypeToken<Map<String, Object>>() {
+            }.getType());
+            assertEquals(Collections.singletonMap("b", "value"), written.get("a"));
+            assertEquals(3, written.get("number"));
+        }
+
+        IConfigSource reloaded = ConfigSourceFactory.instance().create(dir, "test");
+        reloaded.reload();
+        assertEquals("value", reloaded.get("a.b", String.class).orElse(null));
+        reloaded.disable();
+    }
+
     public interface SomeInterface {
 
     }
@@ -0,0 +1,101 @@
+package io.github.wysohn.triggerreactor.core.manager.location;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class AreaIndexTest {
+    private static Area area(String world, int x1, int y1, int z1, int x2, int y2, int z2) {
+        return new Area(new SimpleLocation(world, x1, y1, z1), new SimpleLocation(world, x2, y2, z2));
+    }
+
+    private static Set<Area> at(AreaIndex<String> index, SimpleLocation sloc) {
+        Set<Area> found = new HashSet<>();
+        index.forEachAt(sloc, (area, value) -> assertTrue(found.add(area)));
+        return found;
+    }
+
+    @Test
+    public void putAndRemove() {
+        AreaIndex<String> index = new AreaIndex<>();
+        Area big = area("world", -1000, 0, -1000, 1000, 255, 1000);
+        Area small = area("world", 0, 60, 0, 10, 70, 10);
+        Area nether = area("nether", 0, 60, 0, 10, 70, 10);
+
+        assertNull(index.put(big, "big"));
+        assertNull(index.put(small, "small"));
+        assertNull(index.put(nether, "nether"));
+        assertEquals("small", index.put(small, "small2"));
+        assertEquals(3, index.size());
+
+        assertEquals(new HashSet<>(Arrays.asList(big, small)), at(index, new SimpleLocation("world", 5, 65, 5)));
+        assertEquals(Collections.singleton(big), at(index, new SimpleLocation("world", 5, 71, 5)));
+        assertEquals(Collections.singleton(nether), at(index, new SimpleLocation("nether", 10, 70, 10)));
+        assertTrue(at(index, new SimpleLocation("end", 5, 65, 5)).isEmpty());
+
+        List<Map.Entry<Area, String>> entries = index.getAreasAt(new SimpleLocation("nether", 0, 60, 0));
+        assertEquals(1, entries.size());
+        assertEquals("nether", entries.get(0).getValue());
+
+        assertEquals("big", index.remove(big));
+        assertNull(index.remove(big));
+        assertEquals(Collections.singleton(small), at(index, new SimpleLocation("world", 5, 65, 5)));
+        assertEquals(2, index.size());
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(at(index, new SimpleLocation("world", 5, 65, 5)).isEmpty());
+    }
+
+    @Test
+    public void sameAsBruteForce() {
+        Random random = new Random(42);
+        Map<Area, String> areas = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(2000) - 1000, y = random.nextInt(200), z = random.nextInt(2000) - 1000;
+            Area area = area("world", x, y, z,
+                    x + random.nextInt(100), y + random.nextInt(50), z + random.nextInt(100));
+            areas.put(area, "area" + i);
+        }
+
+        AreaIndex<String> index = new AreaIndex<>();
+        index.reset(areas);
+        assertEquals(areas.size(), index.size());
+
+        for (int i = 0; i < 2000; i++) {
+            SimpleLocation sloc = new SimpleLocation("world",
+                    random.nextInt(2200) - 1100, random.nextInt(260), random.nextInt(2200) - 1100);
+
+            Set<Area> expected = new HashSet<>();
+            for (Area area : areas.keySet()) {
+                if (area.isInThisArea(sloc))
+                    expected.add(area);
+            }
+            assertEquals(expected, at(index, sloc));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            int x = random.nextInt(2000) - 1000, y = random.nextInt(200), z = random.nextInt(2000) - 1000;
+            Area query = area("world", x, y, z, x + random.nextInt(300), y + random.nextInt(50),
+                    z + random.nextInt(300));
+
+            Set<Area> expected = new HashSet<>();
+            for (Area area : areas.keySet()) {
+                if (overlaps(area, query))
+                    expected.add(area);
+            }
+
+            Set<Area> found = new HashSet<>();
+            index.forEachOverlapping(query, (area, value) -> found.add(area));
+            assertEquals(expected, found);
+        }
+    }
+
+    private static boolean overlaps(Area a, Area b) {
+        return a.getSmallest().getX() <= b.getLargest().getX() && b.getSmallest().getX() <= a.getLargest().getX()
+                && a.getSmallest().getY() <= b.getLargest().getY() && b.getSmallest().getY() <= a.getLargest().getY()
+                && a.getSmallest().getZ() <= b.getLargest().getZ() && b.getSmallest().getZ() <= a.getLargest().getZ();
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.wysohn.triggerreactor.core.manager.location;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BlockLocationMapTest {
+    @Test
+    public void packing() {
+        int[][] coordinates = {
+                {0, 0, 0},
+                {-1, -1, -1},
+                {29999999, 2047, -29999999},
+                {-29999999, -2048, 29999999},
+                {123, 64, -456},
+        };
+
+        for (int[] c : coordinates) {
+            long key = LocationKeys.block(c[0], c[1], c[2]);
+            assertEquals(c[0], LocationKeys.blockX(key));
+            assertEquals(c[1], LocationKeys.blockY(key));
+            assertEquals(c[2], LocationKeys.blockZ(key));
+        }
+
+        long chunk = LocationKeys.chunk(-5, 7);
+        assertEquals(-5, LocationKeys.chunkI(chunk));
+        assertEquals(7, LocationKeys.chunkJ(chunk));
+    }
+
+    @Test
+    public void worldIds() {
+        int world = LocationKeys.worldId("world");
+        //a different instance of the same name
+        assertEquals(world, LocationKeys.worldId(new String("world")));
+        assertNotEquals(world, LocationKeys.worldId("world_nether"));
+        assertEquals("world", LocationKeys.worldName(world));
+    }
+
+    @Test
+    public void putGetRemove() {
+        BlockLocationMap<String> map = new BlockLocationMap<>();
+        SimpleLocation sloc = new SimpleLocation("world", 10, 64, -10);
+
+        assertNull(map.put(sloc, "a"));
+        assertNull(map.put(new SimpleLocation("nether", 10, 64, -10), "b"));
+        assertEquals("a", map.put(new SimpleLocation("world", 10, 64, -10), "a2"));
+        assertEquals(2, map.size());
+
+        assertEquals("a2", map.get(sloc));
+        assertEquals("a2", map.get("world", 10, 64, -10));
+        assertEquals("b", map.get("nether", 10, 64, -10));
+        assertNull(map.get("world", 10, 63, -10));
+        assertNull(map.get("end", 10, 64, -10));
+
+        assertEquals("a2", map.remove(sloc));
+        assertNull(map.remove(sloc));
+        assertFalse(map.containsKey(sloc));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void resetAndForEach() {
+        Map<SimpleLocation, String> source = new HashMap<>();
+        source.put(new SimpleLocation("world", 1, 2, 3), "a");
+        source.put(new SimpleLocation("world", -1, -2, -3), "b");
+        source.put(new SimpleLocation("nether", 0, 0, 0), "c");
+
+        BlockLocationMap<String> map = new BlockLocationMap<>();
+        map.put(new SimpleLocation("world", 5, 5, 5), "old");
+        map.reset(source);
+
+        assertNull(map.get("world", 5, 5, 5));
+        Map<SimpleLocation, String> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(source, visited);
+    }
+}
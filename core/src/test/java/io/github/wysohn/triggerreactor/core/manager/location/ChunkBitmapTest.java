@@ -0,0 +1,76 @@
+package io.github.wysohn.triggerreactor.core.manager.location;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ChunkBitmapTest {
+    @Test
+    public void empty() {
+        assertTrue(ChunkBitmap.EMPTY.isEmpty());
+        assertFalse(ChunkBitmap.EMPTY.contains("world", 0, 0));
+    }
+
+    @Test
+    public void singleChunks() {
+        ChunkBitmap bitmap = new ChunkBitmap.Builder()
+                .add("world", 0, 0)
+                .add("world", -1, -1)
+                .add("world", 63, 64)
+                .add(new SimpleLocation("nether", -17, 60, 33))
+                .build();
+
+        assertTrue(bitmap.contains("world", 0, 0));
+        assertTrue(bitmap.contains("world", -1, -1));
+        assertTrue(bitmap.contains("world", 63, 64));
+        assertTrue(bitmap.contains("nether", -2, 2));
+
+        assertFalse(bitmap.contains("world", 0, -1));
+        assertFalse(bitmap.contains("world", 64, 64));
+        assertFalse(bitmap.contains("world", 63, 63));
+        assertFalse(bitmap.contains("nether", 0, 0));
+        assertFalse(bitmap.contains("end", 0, 0));
+    }
+
+    @Test
+    public void area() {
+        //spans several regions in both directions
+        Area area = new Area(new SimpleLocation("world", -2000, 0, -30), new SimpleLocation("world", 1500, 255, 3000));
+        ChunkBitmap bitmap = new ChunkBitmap.Builder().add(area).build();
+
+        for (int i = -130; i <= 100; i++) {
+            for (int j = -5; j <= 190; j++) {
+                boolean inside = -125 <= i && i <= 93 && -2 <= j && j <= 187;
+                assertEquals(i + "," + j, inside, bitmap.contains("world", i, j));
+            }
+        }
+    }
+
+    @Test
+    public void randomAgainstSet() {
+        Random random = new Random(1234);
+        Set<String> expected = new HashSet<>();
+        ChunkBitmap.Builder builder = new ChunkBitmap.Builder();
+        for (int n = 0; n < 5000; n++) {
+            int i = random.nextInt(20000) - 10000;
+            int j = random.nextInt(20000) - 10000;
+            builder.add("world", i, j);
+            expected.add(i + "," + j);
+        }
+        ChunkBitmap bitmap = builder.build();
+
+        for (String chunk : expected) {
+            String[] split = chunk.split(",");
+            assertTrue(bitmap.contains("world", Integer.parseInt(split[0]), Integer.parseInt(split[1])));
+        }
+        for (int n = 0; n < 100000; n++) {
+            int i = random.nextInt(20000) - 10000;
+            int j = random.nextInt(20000) - 10000;
+            assertEquals(expected.contains(i + "," + j), bitmap.contains("world", i, j));
+        }
+    }
+}
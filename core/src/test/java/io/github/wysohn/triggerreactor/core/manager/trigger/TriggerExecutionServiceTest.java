@@ -0,0 +1,236 @@
+package io.github.wysohn.triggerreactor.core.manager.trigger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TriggerExecutionServiceTest {
+    private TriggerExecutionService service;
+
+    @After
+    public void tearDown() throws Exception {
+        service.shutdown();
+        assertTrue(service.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void parallelismIsBounded() throws Exception {
+        service = new TriggerExecutionService(2, 100, TriggerExecutionService.Overflow.DROP, false);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            service.lane(i % 2 == 0 ? "WalkTrigger" : "ClickTrigger").execute(() -> {
+                int now = running.incrementAndGet();
+                maxRunning.accumulateAndGet(now, Math::max);
+                sleep(5);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 2);
+        assertTrue(service.getMetrics().getP99Nanos() >= service.getMetrics().getP50Nanos());
+    }
+
+    @Test
+    public void dropWhenFull() throws Exception {
+        service = new TriggerExecutionService(1, 2, TriggerExecutionService.Overflow.DROP, false);
+        CountDownLatch release = block(service);
+
+        TriggerExecutionService.Lane lane = service.lane("WalkTrigger");
+        lane.execute(() -> {
+        });
+        lane.execute(() -> {
+        });
+        try {
+            lane.execute(() -> {
+            });
+            fail("Queue should be full");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        // other lanes have their own queue
+        service.lane("ClickTrigger").execute(() -> {
+        });
+
+        TriggerExecutionService.Metrics metrics = service.getMetrics();
+        assertEquals(1, metrics.getRejectedTasks());
+        assertEquals(Integer.valueOf(2), metrics.getQueueDepths().get("WalkTrigger"));
+        assertEquals(3, metrics.getQueueDepth());
+        assertEquals(1, metrics.getActiveWorkers());
+
+        release.countDown();
+    }
+
+    @Test
+    public void callerRunsWhenFull() throws Exception {
+        service = new TriggerExecutionService(1, 1, TriggerExecutionService.Overflow.CALLER_RUNS, false);
+        CountDownLatch release = block(service);
+
+        TriggerExecutionService.Lane lane = service.lane("WalkTrigger");
+        lane.execute(() -> {
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        lane.execute(() -> threads.add(Thread.currentThread()));
+        assertEquals(Collections.singletonList(Thread.currentThread()), threads);
+        assertEquals(0, service.getMetrics().getRejectedTasks());
+
+        release.countDown();
+    }
+
+    @Test
+    public void coalesceKeepsLatest() throws Exception {
+        service = new TriggerExecutionService(1, 2, TriggerExecutionService.Overflow.COALESCE, false);
+        CountDownLatch release = block(service);
+
+        List<Integer> ran = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+        TriggerExecutionService.Lane lane = service.lane("WalkTrigger");
+        for (int i = 0; i < 5; i++) {
+            int value = i;
+            lane.execute(() -> {
+                ran.add(value);
+                done.countDown();
+            });
+        }
+        assertEquals(3, service.getMetrics().getRejectedTasks());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, ran.size());
+        assertTrue(ran.contains(3));
+        assertTrue(ran.contains(4));
+    }
+
+    @Test
+    public void coalesceKeepsAdmitted() throws Exception {
+        service = new TriggerExecutionService(1, 1, TriggerExecutionService.Overflow.COALESCE, false);
+        CountDownLatch release = block(service);
+
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+        TriggerExecutionService.Lane lane = service.lane("WalkTrigger");
+        lane.admitted().execute(() -> {
+            ran.add("resumed");
+            done.countDown();
+        });
+        for (int i = 0; i < 3; i++) {
+            int value = i;
+            lane.execute(() -> {
+                ran.add("new" + value);
+                done.countDown();
+            });
+        }
+        assertEquals(2, service.getMetrics().getRejectedTasks());
+        assertEquals(2, lane.getQueueDepth());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("resumed", "new2"), ran);
+    }
+
+    @Test
+    public void admittedIgnoresCapacity() throws Exception {
+        service = new TriggerExecutionService(1, 1, TriggerExecutionService.Overflow.DROP, false);
+        CountDownLatch release = block(service);
+
+        CountDownLatch done = new CountDownLatch(3);
+        TriggerExecutionService.Lane lane = service.lane("WalkTrigger");
+        for (int i = 0; i < 3; i++)
+            lane.admitted().execute(done::countDown);
+        assertEquals(0, service.getMetrics().getRejectedTasks());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rejectionAfterShutdownCounted() {
+        service = new TriggerExecutionService(1, 1, TriggerExecutionService.Overflow.DROP, false);
+        service.shutdown();
+
+        try {
+            service.lane("ASYNC").execute(() -> {
+            });
+            fail("Service is shut down");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(1, service.getMetrics().getRejectedTasks());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectAfterShutdown() {
+        service = new TriggerExecutionService(1, 1, TriggerExecutionService.Overflow.CALLER_RUNS, false);
+        service.shutdown();
+
+        service.lane("WalkTrigger").execute(() -> {
+        });
+    }
+
+    /**
+     * Occupy the only worker until the returned latch is released.
+     */
+    @Test
+    public void spareWorkerWhileBlocked() throws Exception {
+        service = new TriggerExecutionService(1, 10, TriggerExecutionService.Overflow.DROP, false);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        service.lane("blocker").execute(() -> {
+            Runnable unblocked = TriggerExecutionService.beginBlocking();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                unblocked.run();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // the only worker is blocked, but the spare worker runs the task
+        CountDownLatch done = new CountDownLatch(1);
+        service.lane("WalkTrigger").execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+    }
+
+    private static CountDownLatch block(TriggerExecutionService service) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        service.lane("blocker").execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.wysohn.triggerreactor.core.manager.trigger.area;
+
+import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class EntitySnapshotTest {
+
+    @Test
+    public void positions() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        EntitySnapshot.Builder builder = new EntitySnapshot.Builder(0);
+        int world = builder.world("world");
+        int nether = builder.world("world_nether");
+        assertEquals(world, builder.world("world"));
+
+        EntitySnapshot snapshot = builder
+                .add(first, world, 1, 64, -3, true)
+                .add(second, nether, 10, 20, 30, false)
+                .build();
+
+        assertEquals(2, snapshot.size());
+        assertEquals(first, snapshot.getUniqueId(0));
+        assertTrue(snapshot.isValid(0));
+        assertFalse(snapshot.isValid(1));
+
+        assertTrue(snapshot.isAt(0, new SimpleLocation("world", 1, 64, -3)));
+        assertFalse(snapshot.isAt(0, new SimpleLocation("world_nether", 1, 64, -3)));
+        assertFalse(snapshot.isAt(0, new SimpleLocation("world", 1, 65, -3)));
+        assertEquals(new SimpleLocation("world_nether", 10, 20, 30), snapshot.getLocation(1));
+    }
+
+    @Test
+    public void grows() {
+        EntitySnapshot.Builder builder = new EntitySnapshot.Builder(1);
+        int world = builder.world("world");
+        for (int i = 0; i < 100; i++)
+            builder.add(new UUID(0, i), world, i, i, i, true);
+
+        EntitySnapshot snapshot = builder.build();
+        assertEquals(100, snapshot.size());
+        assertEquals(new UUID(0, 99), snapshot.getUniqueId(99));
+        assertTrue(snapshot.isAt(99, new SimpleLocation("world", 99, 99, 99)));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void unknownWorld() {
+        new EntitySnapshot.Builder(0).add(UUID.randomUUID(), 0, 0, 0, 0, true);
+    }
+}
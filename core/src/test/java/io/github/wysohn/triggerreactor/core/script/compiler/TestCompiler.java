@@ -0,0 +1,221 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.compiler;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.Token.Type;
+import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
+import io.github.wysohn.triggerreactor.core.script.parser.Parser;
+import io.github.wysohn.triggerreactor.core.script.warning.UnresolvedImportWarning;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TestCompiler {
+    private CompiledScript compile(String text) throws Exception {
+        Lexer lexer = new Lexer(text, StandardCharsets.UTF_8);
+        Parser parser = new Parser(lexer);
+
+        return new Compiler(parser.parse()).compile();
+    }
+
+    private int[] opcodes(CompiledScript script) {
+        int[] opcodes = new int[script.size()];
+        for (int i = 0; i < opcodes.length; i++)
+            opcodes[i] = script.getCode()[i * CompiledScript.STRIDE];
+        return opcodes;
+    }
+
+    private int operand(CompiledScript script, int instruction, int operand) {
+        return script.getCode()[instruction * CompiledScript.STRIDE + operand];
+    }
+
+    @Test
+    public void testAssignment() throws Exception {
+        CompiledScript script = compile("x = 1 + 2.5;");
+
+        assertArrayEquals(new int[]{
+                Opcode.PUSH,
+                Opcode.GET_LOCAL,
+                Opcode.PUSH,
+                Opcode.PUSH,
+                Opcode.ADD,
+                Opcode.ASSIGN,
+        }, opcodes(script));
+
+        // literals are parsed only once at compile time
+        Token one = (Token) script.getConstants()[operand(script, 2, 1)];
+        assertEquals(Type.INTEGER, one.type);
+        assertEquals(1, one.value);
+        Token decimal = (Token) script.getConstants()[operand(script, 3, 1)];
+        assertEquals(Type.DECIMAL, decimal.type);
+        assertEquals(2.5, decimal.value);
+    }
+
+    @Test
+    public void testExpressionStatement() throws Exception {
+        CompiledScript script = compile("player.sendMessage(\"hi\");");
+
+        assertArrayEquals(new int[]{
+                Opcode.PUSH,
+                Opcode.GET_LOCAL,
+                Opcode.PUSH,
+                Opcode.INVOKE,
+                Opcode.POP,
+        }, opcodes(script));
+        assertEquals(1, operand(script, 3, 2));
+    }
+
+    @Test
+    public void testIfElse() throws Exception {
+        CompiledScript script = compile("IF true;"
+                + "#TEST 1;"
+                + "ELSE;"
+                + "#TEST 2;"
+                + "ENDIF;");
+
+        assertArrayEquals(new int[]{
+                Opcode.PUSH,
+                Opcode.IF_FALSE,
+                Opcode.PUSH,
+                Opcode.EXECUTE,
+                Opcode.JUMP,
+                Opcode.PUSH,
+                Opcode.EXECUTE,
+        }, opcodes(script));
+        assertEquals(5, operand(script, 1, 1));
+        assertEquals(7, operand(script, 4, 1));
+    }
+
+    @Test
+    public void testWhileBreak() throws Exception {
+        CompiledScript script = compile("WHILE true;"
+                + "#BREAK;"
+                + "ENDWHILE;"
+                + "#TEST;");
+
+        assertArrayEquals(new int[]{
+                Opcode.WHILE_ENTER,
+                Opcode.PUSH,
+                Opcode.WHILE_FALSE,
+                Opcode.EXECUTE,
+                Opcode.WHILE_NEXT,
+                Opcode.EXECUTE,
+        }, opcodes(script));
+
+        assertEquals(1, script.getLoopCount());
+        assertEquals(0, operand(script, 3, 3));
+        assertEquals(5, script.getBreakTarget(0));
+        assertEquals(4, script.getContinueTarget(0));
+        assertEquals(1, operand(script, 4, 2));
+
+        // not inside of a loop
+        assertEquals(-1, operand(script, 5, 3));
+    }
+
+    @Test
+    public void testForRange() throws Exception {
+        CompiledScript script = compile("FOR i = 0:10;"
+                + "#CONTINUE;"
+                + "ENDFOR;");
+
+        assertArrayEquals(new int[]{
+                Opcode.PUSH,
+                Opcode.GET_LOCAL,
+                Opcode.PUSH,
+                Opcode.PUSH,
+                Opcode.FOR_RANGE_INIT,
+                Opcode.FOR_RANGE_NEXT,
+                Opcode.EXECUTE,
+                Opcode.JUMP,
+        }, opcodes(script));
+
+        assertEquals(5, script.getContinueTarget(0));
+        assertEquals(8, script.getBreakTarget(0));
+        assertEquals(8, operand(script, 5, 2));
+        assertEquals(5, operand(script, 7, 1));
+    }
+
+    @Test
+    public void testLocalSlots() throws Exception {
+        CompiledScript script = compile("x = 1;"
+                + "y = x + player.x;"
+                + "x = y;");
+
+        assertArrayEquals(new String[]{"x", "y", "player"}, script.getLocalNames());
+        assertEquals(0, script.getLocalSlot("x"));
+        assertEquals(2, script.getLocalSlot("player"));
+        assertEquals(-1, script.getLocalSlot("z"));
+
+        // x of player.x is a field, not a local variable
+        int[] opcodes = opcodes(script);
+        assertEquals(Opcode.GET_LOCAL, opcodes[9]);
+        assertEquals(2, operand(script, 9, 2));
+        assertEquals(Opcode.GET_FIELD, opcodes[10]);
+    }
+
+    @Test
+    public void testShortCircuit() throws Exception {
+        CompiledScript script = compile("#TEST false && x.y;");
+
+        assertArrayEquals(new int[]{
+                Opcode.PUSH,
+                Opcode.AND_TEST,
+                Opcode.PUSH,
+                Opcode.GET_LOCAL,
+                Opcode.GET_FIELD,
+                Opcode.AND,
+                Opcode.EXECUTE,
+        }, opcodes(script));
+        assertEquals(6, operand(script, 1, 1));
+    }
+
+    @Test
+    public void testSync() throws Exception {
+        CompiledScript script = compile("SYNC;"
+                + "#TEST;"
+                + "ENDSYNC;"
+                + "#TEST;");
+
+        assertArrayEquals(new int[]{
+                Opcode.SYNC,
+                Opcode.EXECUTE,
+                Opcode.EXECUTE,
+        }, opcodes(script));
+        assertEquals(2, operand(script, 0, 1));
+    }
+
+    @Test
+    public void testImport() throws Exception {
+        Lexer lexer = new Lexer("IMPORT java.util.ArrayList;"
+                + "IMPORT not.exist.Clazz;"
+                + "list = ArrayList();", StandardCharsets.UTF_8);
+        Parser parser = new Parser(lexer);
+        Compiler compiler = new Compiler(parser.parse());
+        CompiledScript script = compiler.compile();
+
+        // resolved at compile time, so no instruction is left for the IMPORTs
+        assertEquals(Opcode.PUSH, opcodes(script)[0]);
+        assertEquals(1, script.getImports().size());
+        assertEquals(java.util.ArrayList.class, script.getImports().get("ArrayList"));
+
+        assertEquals(1, compiler.getWarnings().size());
+        assertTrue(compiler.getWarnings().get(0) instanceof UnresolvedImportWarning);
+    }
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.compiler.Compiler;
+import io.github.wysohn.triggerreactor.core.script.compiler.CompilerException;
+import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
+import io.github.wysohn.triggerreactor.core.script.parser.Node;
+import io.github.wysohn.triggerreactor.core.script.parser.Parser;
+import io.github.wysohn.triggerreactor.tools.timings.Timings;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs every test of {@link TestInterpreter} against the {@link CompiledInterpreter}.
+ */
+public class TestCompiledInterpreter extends TestInterpreter {
+    @Override
+    protected Interpreter newInterpreter(Node root) {
+        try {
+            return new CompiledInterpreter(new Compiler(root).compile());
+        } catch (CompilerException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testSuspendAtWait() throws Exception {
+        String text = ""
+                + "sum = 0;"
+                + "FOR i = 0:3\n"
+                + "    sum = sum + i\n"
+                + "    #WAIT 0.05\n"
+                + "ENDFOR;"
+                + "done = true;";
+        Interpreter interpreter = newInterpreter(new Parser(new Lexer(text, StandardCharsets.UTF_8)).parse());
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Void> future = interpreter.startSuspendable(null, null, Timings.LIMBO, pool);
+
+            // the thread is given back at the first #WAIT
+            assertFalse(future.isDone());
+            assertEquals(0, interpreter.getVars().get("sum"));
+
+            future.get(5, TimeUnit.SECONDS);
+            assertEquals(3, interpreter.getVars().get("sum"));
+            assertEquals(true, interpreter.getVars().get("done"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSuspendAtSync() throws Exception {
+        String text = ""
+                + "a = 1;"
+                + "SYNC;"
+                + "a = a + 1;"
+                + "ENDSYNC;"
+                + "done = true;";
+        Interpreter interpreter = newInterpreter(new Parser(new Lexer(text, StandardCharsets.UTF_8)).parse());
+
+        ExecutorService server = Executors.newSingleThreadExecutor();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CountDownLatch tick = new CountDownLatch(1);
+        server.execute(() -> {
+            try {
+                tick.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        interpreter.setTaskSupervisor(new TaskSupervisor() {
+            @Override
+            public <T> Future<T> submitSync(Callable<T> call) {
+                return server.submit(call);
+            }
+
+            @Override
+            public void submitAsync(Runnable run) {
+                pool.execute(run);
+            }
+        });
+
+        try {
+            CompletableFuture<Void> future = interpreter.startSuspendable(null, null, Timings.LIMBO, pool);
+
+            // the thread is given back while the SYNC block waits for the server
+            assertFalse(future.isDone());
+            assertEquals(1, interpreter.getVars().get("a"));
+
+            tick.countDown();
+            future.get(5, TimeUnit.SECONDS);
+            assertEquals(2, interpreter.getVars().get("a"));
+            assertEquals(true, interpreter.getVars().get("done"));
+        } finally {
+            server.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSuspendAtSyncError() throws Exception {
+        String text = ""
+                + "SYNC;"
+                + "a = 1 / null;"
+                + "ENDSYNC;"
+                + "done = true;";
+        Interpreter interpreter = newInterpreter(new Parser(new Lexer(text, StandardCharsets.UTF_8)).parse());
+
+        ExecutorService server = Executors.newSingleThreadExecutor();
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        interpreter.setTaskSupervisor(new TaskSupervisor() {
+            @Override
+            public <T> Future<T> submitSync(Callable<T> call) {
+                return server.submit(call);
+            }
+
+            @Override
+            public void submitAsync(Runnable run) {
+                pool.execute(run);
+            }
+        });
+
+        try {
+            CompletableFuture<Void> future = interpreter.startSuspendable(null, null, Timings.LIMBO, pool);
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("The error of SYNC block should fail the interpretation");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof InterpreterException);
+            }
+            assertNull(interpreter.getVars().get("done"));
+        } finally {
+            server.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSuspendAtWaitNotSuspendable() throws Exception {
+        String text = ""
+                + "#WAIT 0.01;"
+                + "done = true;";
+        Interpreter interpreter = newInterpreter(new Parser(new Lexer(text, StandardCharsets.UTF_8)).parse());
+
+        // without the resumer, #WAIT blocks the thread as before
+        CompletableFuture<Void> future = interpreter.startSuspendable(null, null, Timings.LIMBO, null);
+        assertTrue(future.isDone());
+        assertEquals(true, interpreter.getVars().get("done"));
+    }
+}
@@ -45,6 +45,13 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 public class TestInterpreter {
+    /**
+     * Create the Interpreter to be tested. Override to run the same tests against other implementations.
+     */
+    protected Interpreter newInterpreter(Node root) {
+        return new Interpreter(root);
+    }
+
     @Test
     public void testMethod() throws Exception {
         Charset charset = StandardCharsets.UTF_8;
@@ -77,7 +84,7 @@ public class TestInterpreter {
         };
         executorMap.put("MESSAGE", mockExecutor);
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.getVars().put("common", new CommonFunctions());
@@ -100,7 +107,7 @@ public class TestInterpreter {
         Map<String, Placeholder> placeholderMap = new HashMap<>();
         HashMap<Object, Object> gvars = new HashMap<>();
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setPlaceholderMap(placeholderMap);
         interpreter.setGvars(gvars);
@@ -131,7 +138,7 @@ public class TestInterpreter {
         vars.put("temp", new TheTest());
         vars.put("temp2", new TheTest2());
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setPlaceholderMap(placeholderMap);
         interpreter.setVars(vars);
@@ -182,7 +189,7 @@ public class TestInterpreter {
             }
         });
         TheTest reference = new TheTest();
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.getVars().put("player", reference);
@@ -223,7 +230,7 @@ public class TestInterpreter {
             }
         });
         TheTest reference = new TheTest();
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setSelfReference(new CommonFunctions());
 
@@ -255,7 +262,7 @@ public class TestInterpreter {
             }
         });
         Map<Object, Object> map = new HashMap<>();
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setGvars(map);
 
@@ -300,7 +307,7 @@ public class TestInterpreter {
         });
         TriggerReactorCore triggerReactor = mock(TriggerReactorCore.class);
         GlobalVariableManager avm = new GlobalVariableManager(triggerReactor, mock(IConfigSource.class));
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setGvars(avm.getGlobalVariableAdapter());
 
@@ -344,7 +351,7 @@ public class TestInterpreter {
         });
         Map<String, Placeholder> placeholderMap = new HashMap<>();
         HashMap<Object, Object> gvars = new HashMap<>();
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setPlaceholderMap(placeholderMap);
         interpreter.setGvars(gvars);
@@ -376,7 +383,7 @@ public class TestInterpreter {
                 return null;
             }
         });
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         String[] args = new String[]{"item1", "item2"};
@@ -407,7 +414,7 @@ public class TestInterpreter {
                 return null;
             }
         });
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setSelfReference(new CommonFunctions());
 
@@ -439,7 +446,7 @@ public class TestInterpreter {
             }
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setSelfReference(new CommonFunctions());
 
@@ -473,7 +480,7 @@ public class TestInterpreter {
             }
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -506,7 +513,7 @@ public class TestInterpreter {
             }
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -529,7 +536,7 @@ public class TestInterpreter {
         when(executor.execute(any(), anyBoolean(), anyMap(), any(), anyInt())).thenReturn(null);
         executorMap.put("MESSAGE", executor);
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setSelfReference(new SelfReference() {
             public Collection<String> getPlayers(){
@@ -563,7 +570,7 @@ public class TestInterpreter {
         Node root = parser.parse();
         Map<String, Executor> executorMap = new HashMap<>();
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setSelfReference(new CommonFunctions());
 
@@ -619,7 +626,7 @@ public class TestInterpreter {
             }
         };
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.getVars().put("player", new InTest());
         interpreter.getVars().put("player2", new InTest());
@@ -646,7 +653,7 @@ public class TestInterpreter {
         Node root = parser.parse();
         Map<String, Executor> executorMap = new HashMap<>();
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -667,7 +674,7 @@ public class TestInterpreter {
         Node root = parser.parse();
         Map<String, Executor> executorMap = new HashMap<>();
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setSelfReference(new CommonFunctions());
 
@@ -817,7 +824,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setPlaceholderMap(placeholderMap);
         interpreter.setSelfReference(new CommonFunctions());
@@ -846,7 +853,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setPlaceholderMap(placeholderMap);
         interpreter.startWithContext(null);
         assertEquals(null, interpreter.getVars().get("a"));
@@ -922,7 +929,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setPlaceholderMap(placeholderMap);
         interpreter.setSelfReference(new CommonFunctions());
@@ -1062,7 +1069,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1078,7 +1085,7 @@ public class TestInterpreter {
             Parser parser = new Parser(lexer);
 
             Node root = parser.parse();
-            Interpreter interpreter = new Interpreter(root);
+            Interpreter interpreter = newInterpreter(root);
 
             interpreter.startWithContext(null);
         }
@@ -1094,7 +1101,7 @@ public class TestInterpreter {
             Parser parser = new Parser(lexer);
 
             Node root = parser.parse();
-            Interpreter interpreter = new Interpreter(root);
+            Interpreter interpreter = newInterpreter(root);
 
             interpreter.startWithContext(null);
         }
@@ -1110,7 +1117,7 @@ public class TestInterpreter {
             Parser parser = new Parser(lexer);
 
             Node root = parser.parse();
-            Interpreter interpreter = new Interpreter(root);
+            Interpreter interpreter = newInterpreter(root);
 
             interpreter.startWithContext(null);
         }
@@ -1156,7 +1163,7 @@ public class TestInterpreter {
             }
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1192,7 +1199,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1225,7 +1232,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1258,7 +1265,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1293,7 +1300,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1328,7 +1335,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1372,7 +1379,7 @@ public class TestInterpreter {
             Map<String, Object> localVars = new HashMap<>();
             localVars.put("x", x);
 
-            Interpreter interpreter = new Interpreter(root);
+            Interpreter interpreter = newInterpreter(root);
             interpreter.setExecutorMap(executorMap);
             interpreter.setVars(localVars);
 
@@ -1414,7 +1421,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1456,7 +1463,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1497,7 +1504,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1575,7 +1582,7 @@ public class TestInterpreter {
 
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1615,7 +1622,7 @@ public class TestInterpreter {
         executorMap.put("TEST5", exec);
         executorMap.put("TEST6", exec);
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1635,7 +1642,7 @@ public class TestInterpreter {
         Map<String, Executor> executorMap = new HashMap<>();
         HashMap<Object, Object> gvars = new HashMap<>();
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setGvars(gvars);
 
@@ -1664,7 +1671,7 @@ public class TestInterpreter {
             }
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1689,7 +1696,7 @@ public class TestInterpreter {
             }
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1721,7 +1728,7 @@ public class TestInterpreter {
         HashMap<String, Object> vars = new HashMap<>();
         vars.put("test", new TheTest());
         vars.put("test2", new InTest());
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setVars(vars);
 
@@ -1769,7 +1776,7 @@ public class TestInterpreter {
             }
         });
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1795,7 +1802,7 @@ public class TestInterpreter {
                 Mockito.any(), ArgumentMatchers.any())).thenReturn(null);
         executorMap.put("TEST", mockExecutor);
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1850,7 +1857,7 @@ public class TestInterpreter {
                 return null;
             }
         });
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -1901,7 +1908,7 @@ public class TestInterpreter {
         HashMap<String, Object> vars = new HashMap<>();
         vars.put("arr", new int[]{1, 2, 3, 4, 5});
         vars.put("iter", Arrays.asList(1, 2, 3, 4, 5));
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setVars(vars);
 
@@ -1948,7 +1955,7 @@ public class TestInterpreter {
             }
 
         });
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setTaskSupervisor(new TaskSupervisor() {
 
@@ -2030,7 +2037,7 @@ public class TestInterpreter {
             }
 
         });
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setTaskSupervisor(new TaskSupervisor() {
 
@@ -2068,6 +2075,45 @@ public class TestInterpreter {
         Assert.assertTrue(set.contains("async"));
     }
 
+    @Test
+    public void testAsyncWriteBack() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "x = 1;"
+                + "ASYNC;"
+                + "y = x + 1;"
+                + "ENDASYNC;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+
+        Interpreter interpreter = newInterpreter(root);
+        Map<String, Object> base = new HashMap<>();
+        interpreter.setVars(new LocalVariables(interpreter instanceof CompiledInterpreter
+                ? ((CompiledInterpreter) interpreter).getScript() : null, base));
+        List<Runnable> later = new ArrayList<>();
+        interpreter.setTaskSupervisor(new TaskSupervisor() {
+            @Override
+            public <T> Future<T> submitSync(Callable<T> call) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void submitAsync(Runnable run) {
+                later.add(run);
+            }
+        });
+
+        interpreter.startWithContext(null);
+        ((LocalVariables) interpreter.getVars()).writeBack();
+        assertEquals(1, base.get("x"));
+        Assert.assertFalse(base.containsKey("y"));
+
+        // the ASYNC block is over after the script
+        later.forEach(Runnable::run);
+        assertEquals(2, base.get("y"));
+    }
+
     @Test
     public void testConstructorNoArg() throws Exception {
         Set<String> set = new HashSet<>();
@@ -2102,7 +2148,7 @@ public class TestInterpreter {
             }
 
         });
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -2144,7 +2190,7 @@ public class TestInterpreter {
             }
 
         });
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -2186,7 +2232,7 @@ public class TestInterpreter {
             }
 
         });
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -2228,7 +2274,7 @@ public class TestInterpreter {
             }
 
         });
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         interpreter.startWithContext(null);
@@ -2253,7 +2299,7 @@ public class TestInterpreter {
         Executor mockExecutor = mock(Executor.class);
         executorMap.put("TEST", mockExecutor);
 
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setSelfReference(new SelfReference() {
             public float toFloat(Number number) {
                 return number.floatValue();
@@ -2301,7 +2347,7 @@ public class TestInterpreter {
             }
 
         });
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setSelfReference(new SelfReference() {
             @SuppressWarnings("unused")
@@ -2325,7 +2371,7 @@ public class TestInterpreter {
         Parser parser = new Parser(lexer);
         Node root = parser.parse();
         Map<String, Executor> executorMap = new HashMap<>();
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
         interpreter.setSelfReference(new SelfReference() {
             @SuppressWarnings("unused")
@@ -2348,7 +2394,7 @@ public class TestInterpreter {
         Parser parser = new Parser(lexer);
         Node root = parser.parse();
         Map<String, Executor> executorMap = new HashMap<>();
-        Interpreter interpreter = new Interpreter(root);
+        Interpreter interpreter = newInterpreter(root);
         interpreter.setExecutorMap(executorMap);
 
         Map<Object, Object> globalVar = new HashMap<>();
@@ -2361,6 +2407,42 @@ public class TestInterpreter {
         assertEquals(17, interpreter.getVars().get("result2"));
     }
 
+    @Test
+    public void testNumericOperands() throws Exception {
+        Charset charset = StandardCharsets.UTF_8;
+        String text = ""
+                + "IMPORT java.lang.Long;"
+                + "sum = 0;"
+                + "FOR i = 0:1000\n"
+                + "    sum = sum + i * 2 % 7\n"
+                + "ENDFOR;"
+                + "mixed = 7 / 2 + 0.5;"
+                + "intEqualsDecimal = 1 == 1.0;"
+                + "decimalEquals = 0.5 == 1 / 2.0;"
+                + "notZero = !0;"
+                + "negated = -sum;"
+                + "compared = 3 < 3.5 && !(2 >= 3);"
+                + "big = Long.valueOf(5) + 1;";
+        Lexer lexer = new Lexer(text, charset);
+        Parser parser = new Parser(lexer);
+        Node root = parser.parse();
+        Interpreter interpreter = newInterpreter(root);
+
+        interpreter.startWithContext(null);
+
+        int sum = 0;
+        for (int i = 0; i < 1000; i++)
+            sum = sum + i * 2 % 7;
+        assertEquals(sum, interpreter.getVars().get("sum"));
+        assertEquals(3.5, interpreter.getVars().get("mixed"));
+        assertEquals(false, interpreter.getVars().get("intEqualsDecimal"));
+        assertEquals(true, interpreter.getVars().get("decimalEquals"));
+        assertEquals(true, interpreter.getVars().get("notZero"));
+        assertEquals(-sum, interpreter.getVars().get("negated"));
+        assertEquals(true, interpreter.getVars().get("compared"));
+        assertEquals(6, interpreter.getVars().get("big"));
+    }
+
     public static class TheTest {
         public static String staticField = "staticField";
 
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.compiler.CompiledScript;
+import io.github.wysohn.triggerreactor.core.script.compiler.Compiler;
+import io.github.wysohn.triggerreactor.core.script.lexer.Lexer;
+import io.github.wysohn.triggerreactor.core.script.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestLocalVariables {
+    private CompiledScript script;
+    private Map<String, Object> base;
+    private Map<String, Object> custom;
+    private Map<String, Object> shared;
+
+    @Before
+    public void init() throws Exception {
+        script = new Compiler(new Parser(new Lexer("count = count + 1;"
+                + "name = player;", StandardCharsets.UTF_8)).parse()).compile();
+
+        base = new HashMap<>();
+        base.put("count", 1);
+        base.put("player", "base");
+        custom = new HashMap<>();
+        custom.put("player", "custom");
+        shared = new HashMap<>();
+        shared.put("player", "shared");
+        shared.put("api", "shared");
+    }
+
+    @Test
+    public void testLayers() {
+        LocalVariables vars = new LocalVariables(script, base, Arrays.asList(custom, shared));
+
+        assertEquals(1, vars.get("count"));
+        assertEquals("custom", vars.get("player"));
+        assertEquals("shared", vars.get("api"));
+        assertNull(vars.get("none"));
+        assertTrue(vars.containsKey("api"));
+        assertFalse(vars.containsKey("none"));
+
+        vars.put("player", "assigned");
+        vars.put("other", null);
+        assertEquals("assigned", vars.get("player"));
+        assertTrue(vars.containsKey("other"));
+        assertNull(vars.get("other"));
+
+        vars.remove("api");
+        assertFalse(vars.containsKey("api"));
+        assertNull(vars.get("api"));
+
+        // layers are never modified
+        assertEquals("custom", custom.get("player"));
+        assertEquals("shared", shared.get("api"));
+        assertEquals("base", base.get("player"));
+    }
+
+    @Test
+    public void testEntrySet() {
+        LocalVariables vars = new LocalVariables(script, base, Arrays.asList(custom, shared));
+        vars.put("name", "abc");
+        vars.remove("api");
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("count", 1);
+        expected.put("player", "custom");
+        expected.put("name", "abc");
+        assertEquals(expected, new HashMap<>(vars));
+
+        // merged again only after a variable is assigned
+        assertSame(vars.entrySet(), vars.entrySet());
+        Set<Map.Entry<String, Object>> entries = vars.entrySet();
+        vars.put("count", 2);
+        assertNotSame(entries, vars.entrySet());
+        assertEquals(2, new HashMap<>(vars).get("count"));
+    }
+
+    @Test
+    public void testWriteBack() throws Exception {
+        LocalVariables vars = new LocalVariables(script, base, Arrays.asList(custom, shared));
+
+        Interpreter interpreter = new CompiledInterpreter(script);
+        interpreter.setVars(vars);
+        interpreter.startWithContext(null);
+
+        assertEquals(2, vars.get("count"));
+        assertEquals("custom", vars.get("name"));
+        assertEquals(1, base.get("count"));
+        assertFalse(base.containsKey("name"));
+
+        vars.writeBack();
+
+        assertEquals(2, base.get("count"));
+        assertEquals("custom", base.get("name"));
+        // read only, so not copied
+        assertEquals("base", base.get("player"));
+        assertFalse(base.containsKey("api"));
+    }
+
+    @Test
+    public void testWithoutScript() {
+        LocalVariables vars = new LocalVariables(null, base);
+        vars.put("count", 5);
+        vars.remove("player");
+
+        assertEquals(5, vars.get("count"));
+        assertFalse(vars.containsKey("player"));
+
+        vars.writeBack();
+        assertEquals(5, base.get("count"));
+        assertFalse(base.containsKey("player"));
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ *     Copyright (C) 2018 wysohn
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *******************************************************************************/
+package io.github.wysohn.triggerreactor.core.script.interpreter;
+
+import io.github.wysohn.triggerreactor.core.script.Token;
+import io.github.wysohn.triggerreactor.core.script.Token.Type;
+import org.junit.Test;
+
+import java.util.EmptyStackException;
+
+import static org.junit.Assert.*;
+
+public class TestOperandStack {
+    @Test
+    public void testReferenceIsKept() {
+        OperandStack stack = new OperandStack(1);
+        Token id = new Token(Type.ID, "x", 1, 2);
+        Token str = new Token(Type.STRING, "abc", 3, 4);
+
+        stack.push(id);
+        stack.pushLiteral(str);
+
+        assertEquals(2, stack.size());
+        assertEquals(OperandStack.REF, stack.tag(0));
+        assertSame(str, stack.pop());
+        assertSame(id, stack.pop());
+        assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    public void testPrimitiveSlots() {
+        OperandStack stack = new OperandStack();
+        Token origin = new Token(Type.OPERATOR_A, "+", 5, 6);
+
+        stack.pushLiteral(new Token(Type.INTEGER, 3, 1, 1));
+        stack.pushDecimal(1.5, origin);
+        stack.pushBoolean(true, origin);
+
+        assertEquals(OperandStack.BOOLEAN, stack.tag(0));
+        assertEquals(OperandStack.DECIMAL, stack.tag(1));
+        assertEquals(OperandStack.INTEGER, stack.tag(2));
+        assertTrue(stack.booleanAt(0));
+        assertEquals(1.5, stack.decimalAt(1), 0.0);
+        assertEquals(3.0, stack.decimalAt(2), 0.0);
+        assertEquals(3, stack.integerAt(2));
+
+        Token bool = stack.pop();
+        assertEquals(Type.BOOLEAN, bool.type);
+        assertEquals(true, bool.value);
+        assertEquals(5, bool.row);
+        assertEquals(6, bool.col);
+
+        assertEquals(1.5, stack.popValue());
+        assertEquals(3, stack.popValue());
+    }
+
+    @Test
+    public void testReplace() {
+        OperandStack stack = new OperandStack();
+        Token origin = new Token(Type.OPERATOR_A, "+", 0, 0);
+
+        stack.push(new Token(Type.ID, "x", 0, 0));
+        stack.push(new Token(Type.ID, "y", 0, 0));
+        stack.replaceInteger(1, 7, origin);
+        stack.replace(0, new Token(Type.OBJECT, 2.0, 0, 0));
+
+        assertEquals(OperandStack.DECIMAL, stack.tag(0));
+        assertEquals(OperandStack.INTEGER, stack.tag(1));
+        assertEquals(7, stack.integerAt(1));
+
+        stack.discard(1);
+        assertEquals(1, stack.size());
+        assertEquals(new Token(Type.INTEGER, 7, 0, 0), stack.pop());
+    }
+
+    @Test
+    public void testValueEquals() {
+        OperandStack stack = new OperandStack();
+        Token origin = new Token(Type.OPERATOR_A, "==", 0, 0);
+
+        stack.pushInteger(1, origin);
+        stack.pushDecimal(1.0, origin);
+        assertFalse(stack.valueEquals(1, 0));
+
+        stack.pushDecimal(Double.NaN, origin);
+        stack.pushDecimal(Double.NaN, origin);
+        assertTrue(stack.valueEquals(1, 0));
+
+        stack.pushInteger(1, origin);
+        assertTrue(stack.valueEquals(0, 4));
+    }
+
+    @Test(expected = EmptyStackException.class)
+    public void testPopEmpty() {
+        new OperandStack().pop();
+    }
+}
@@ -3,7 +3,11 @@ package io.github.wysohn.triggerreactor.core.tools;
 import io.github.wysohn.triggerreactor.tools.CaseInsensitiveStringMap;
 import org.junit.Test;
 
-import static org.junit.Assert.assertEquals;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
 
 public class TestCaseInsensitiveStringMap {
     @SuppressWarnings("unlikely-arg-type")
@@ -20,4 +24,36 @@ public class TestCaseInsensitiveStringMap {
         assertEquals(map.get("merp"), new Integer(4));
         assertEquals(map.get("MERP"), new Integer(4));
     }
+
+    @Test
+    public void testGetIgnoreCase() {
+        CaseInsensitiveStringMap<Integer> map = new CaseInsensitiveStringMap<>();
+        map.put("Message", 1);
+
+        assertEquals(new Integer(1), map.getIgnoreCase("MESSAGE"));
+        assertEquals(new Integer(1), map.getIgnoreCase("message"));
+        assertNull(map.getIgnoreCase("messages"));
+        assertNull(map.getIgnoreCase(null));
+    }
+
+    @Test
+    public void testOriginalKeyKept() {
+        CaseInsensitiveStringMap<Integer> map = new CaseInsensitiveStringMap<>();
+        map.put("Message", 1);
+        map.put("MESSAGE", 2);
+        map.put("tp", 3);
+
+        assertEquals(2, map.size());
+        assertEquals(new HashSet<>(Arrays.asList("Message", "tp")), map.keySet());
+        assertEquals(new Integer(2), map.get("message"));
+
+        assertEquals(new Integer(2), map.remove("mEsSaGe"));
+        assertFalse(map.containsKey("Message"));
+        assertEquals(1, map.size());
+
+        Iterator<String> iter = map.keySet().iterator();
+        iter.next();
+        iter.remove();
+        assertTrue(map.isEmpty());
+    }
 }
@@ -0,0 +1,121 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import static org.junit.Assert.*;
+
+public class InlineCacheTest {
+    @Before
+    public void setUp() {
+        InlineCache.resetCounters();
+    }
+
+    @Test
+    public void fieldMonomorphic() throws Exception {
+        InlineCache cache = new InlineCache();
+        Holder holder = new Holder();
+
+        assertEquals(1, cache.getField(holder, "value"));
+        cache.setField(holder, "value", 5);
+        assertEquals(5, cache.getField(holder, "value"));
+        assertEquals(Holder.NAME, cache.getField(Holder.class, null, "NAME"));
+
+        assertEquals(2, cache.size());
+        assertEquals(2, InlineCache.getMisses());
+        assertEquals(2, InlineCache.getHits());
+    }
+
+    @Test(expected = NoSuchFieldException.class)
+    public void fieldNotFound() throws Exception {
+        new InlineCache().getField(new Holder(), "notExist");
+    }
+
+    @Test
+    public void methodPolymorphic() throws Exception {
+        InlineCache cache = new InlineCache();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, cache.invokeMethod(new ArrayList<>(), "size"));
+            assertEquals(0, cache.invokeMethod(new LinkedList<>(), "size"));
+        }
+
+        assertEquals(2, cache.size());
+        assertEquals(2, InlineCache.getMisses());
+        assertEquals(4, InlineCache.getHits());
+    }
+
+    @Test
+    public void methodArgumentTypes() throws Exception {
+        InlineCache cache = new InlineCache();
+
+        assertEquals(1, cache.invokeMethod(Holder.class, (Object) null, "overloaded", 1));
+        assertEquals(2, cache.invokeMethod(Holder.class, (Object) null, "overloaded", "str"));
+        assertEquals(1, cache.invokeMethod(Holder.class, (Object) null, "overloaded", 3));
+        assertEquals(3, cache.invokeMethod(Holder.class, (Object) null, "overloaded", Holder.Option.VALUE));
+
+        assertEquals(3, cache.size());
+        assertEquals(3, InlineCache.getMisses());
+        assertEquals(1, InlineCache.getHits());
+    }
+
+    @Test
+    public void megamorphic() throws Exception {
+        InlineCache cache = new InlineCache();
+        Object[] receivers = {new ArrayList<>(), new LinkedList<>(), new java.util.HashSet<>(),
+                new java.util.TreeSet<>(), new java.util.ArrayDeque<>(), new java.util.LinkedHashSet<>()};
+
+        for (int i = 0; i < 2; i++) {
+            for (Object receiver : receivers) {
+                assertEquals(0, cache.invokeMethod(receiver, "size"));
+            }
+        }
+
+        assertEquals(InlineCache.MAX_ENTRIES, cache.size());
+        assertEquals(InlineCache.MAX_ENTRIES, InlineCache.getHits());
+    }
+
+    @Test
+    public void constructor() throws Exception {
+        InlineCache cache = new InlineCache();
+
+        assertEquals(3, ((Holder) cache.constructNew(Holder.class, 3)).value);
+        assertEquals(4, ((Holder) cache.constructNew(Holder.class, 4)).value);
+        assertEquals(1, ((Holder) cache.constructNew(Holder.class)).value);
+
+        assertEquals(1, InlineCache.getMisses());
+        assertEquals(1, InlineCache.getHits());
+    }
+
+    public static class Holder {
+        public static final String NAME = "holder";
+
+        private int value = 1;
+
+        public Holder() {
+        }
+
+        public Holder(int value) {
+            this.value = value;
+        }
+
+        public static int overloaded(int a) {
+            return 1;
+        }
+
+        public static int overloaded(String a) {
+            return 2;
+        }
+
+        public static int overloaded(Option a) {
+            return 3;
+        }
+
+        public enum Option {
+            VALUE
+        }
+    }
+}
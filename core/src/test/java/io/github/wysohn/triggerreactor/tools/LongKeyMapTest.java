@@ -0,0 +1,84 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongKeyMapTest {
+    @Test
+    public void putGetRemove() {
+        LongKeyMap<String> map = new LongKeyMap<>();
+        assertTrue(map.isEmpty());
+
+        assertNull(map.put(1L, "a"));
+        assertNull(map.put(-1L, "b"));
+        assertNull(map.put(Long.MIN_VALUE, "c"));
+        assertEquals("a", map.put(1L, "a2"));
+        assertEquals(3, map.size());
+
+        assertEquals("a2", map.get(1L));
+        assertEquals("b", map.get(-1L));
+        assertEquals("c", map.get(Long.MIN_VALUE));
+        assertNull(map.get(0L));
+        assertTrue(map.containsKey(-1L));
+        assertFalse(map.containsKey(2L));
+
+        assertEquals("b", map.remove(-1L));
+        assertNull(map.remove(-1L));
+        assertEquals(2, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1L));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullValue() {
+        new LongKeyMap<String>().put(1L, null);
+    }
+
+    @Test
+    public void copy() {
+        LongKeyMap<String> map = new LongKeyMap<>();
+        map.put(1L, "a");
+
+        LongKeyMap<String> copy = new LongKeyMap<>(map);
+        copy.put(2L, "b");
+        copy.remove(1L);
+
+        assertEquals("a", map.get(1L));
+        assertNull(map.get(2L));
+        assertNull(copy.get(1L));
+        assertEquals("b", copy.get(2L));
+    }
+
+    @Test
+    public void randomAgainstHashMap() {
+        Random random = new Random(42);
+        LongKeyMap<Long> map = new LongKeyMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+
+        for (int n = 0; n < 200000; n++) {
+            //small range so the keys collide and get removed often
+            long key = random.nextInt(2000) * 0x100000000L + random.nextInt(3);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                long value = random.nextLong();
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (Map.Entry<Long, Long> entry : expected.entrySet())
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+
+        Map<Long, Long> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+}
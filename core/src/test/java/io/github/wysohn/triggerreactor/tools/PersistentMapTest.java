@@ -0,0 +1,148 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PersistentMapTest {
+    @Test
+    public void plusMinus() {
+        PersistentMap<String, Integer> empty = PersistentMap.empty();
+        PersistentMap<String, Integer> one = empty.plus("a", 1);
+        PersistentMap<String, Integer> two = one.plus("b", 2);
+
+        assertTrue(empty.isEmpty());
+        assertEquals(1, one.size());
+        assertEquals(2, two.size());
+        assertEquals(Integer.valueOf(1), two.get("a"));
+        assertEquals(Integer.valueOf(2), two.get("b"));
+        assertNull(one.get("b"));
+
+        PersistentMap<String, Integer> replaced = two.plus("a", 3);
+        assertEquals(2, replaced.size());
+        assertEquals(Integer.valueOf(3), replaced.get("a"));
+        assertEquals(Integer.valueOf(1), two.get("a"));
+
+        PersistentMap<String, Integer> removed = two.minus("a");
+        assertEquals(1, removed.size());
+        assertFalse(removed.containsKey("a"));
+        assertTrue(two.containsKey("a"));
+        assertTrue(removed.minus("b").isEmpty());
+    }
+
+    @Test
+    public void unchanged() {
+        Integer value = 1;
+        PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty().plus("a", value);
+
+        assertSame(map, map.plus("a", value));
+        assertSame(map, map.minus("b"));
+    }
+
+    @Test
+    public void collision() {
+        // "Aa" and "BB" have the same hash code
+        PersistentMap<String, String> map = PersistentMap.<String, String>empty()
+                .plus("Aa", "1")
+                .plus("BB", "2")
+                .plus("C", "3");
+
+        assertEquals(3, map.size());
+        assertEquals("1", map.get("Aa"));
+        assertEquals("2", map.get("BB"));
+        assertEquals("2", map.minus("Aa").get("BB"));
+        assertNull(map.minus("BB").get("BB"));
+        assertEquals(new HashMap<String, String>() {
+            private static final long serialVersionUID = 1L;
+
+            {
+                put("Aa", "1");
+                put("BB", "2");
+                put("C", "3");
+            }
+        }, map);
+    }
+
+    @Test
+    public void copyOfSkipsNull() {
+        Map<String, Object> source = new HashMap<>();
+        source.put("a", 1);
+        source.put("b", null);
+
+        PersistentMap<String, Object> map = PersistentMap.copyOf(source);
+        assertEquals(1, map.size());
+        assertSame(map, PersistentMap.copyOf(map));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        PersistentMap.<String, Integer>empty().plus("a", 1).put("b", 2);
+    }
+
+    @Test
+    public void sameAsHashMap() {
+        Random random = new Random(7);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentMap<Integer, Integer> map = PersistentMap.empty();
+
+        for (int i = 0; i < 100000; i++) {
+            // large keys spread over the levels, small keys collide after spreading
+            Integer key = random.nextBoolean() ? random.nextInt() : random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    @Test
+    public void builder() {
+        Random random = new Random(11);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentMap.Builder<Integer, Integer> builder = new PersistentMap.Builder<>();
+
+        for (int i = 0; i < 100000; i++) {
+            Integer key = random.nextBoolean() ? random.nextInt() : random.nextInt(2000);
+            expected.put(key, i);
+            builder.put(key, i);
+        }
+        PersistentMap<Integer, Integer> map = builder.build();
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+
+        // still works as the map made by plus()
+        map = map.plus(-1, -1).minus(expected.keySet().iterator().next());
+        assertEquals(expected.size(), map.size());
+        assertEquals(Integer.valueOf(-1), map.get(-1));
+    }
+
+    @Test
+    public void builderCollision() {
+        PersistentMap<String, String> map = new PersistentMap.Builder<String, String>()
+                .put("Aa", "1")
+                .put("BB", "2")
+                .put("Aa", "3")
+                .put("C", "4")
+                .put("C", "5")
+                .build();
+
+        assertEquals(3, map.size());
+        assertEquals("3", map.get("Aa"));
+        assertEquals("2", map.get("BB"));
+        assertEquals("5", map.get("C"));
+        assertEquals(1, map.minus("Aa").minus("C").size());
+        assertTrue(new PersistentMap.Builder<String, String>().build().isEmpty());
+    }
+}
@@ -49,6 +49,17 @@ public class ReflectionUtilTest {
                 7, 7.0, new SomeValue("v1")));
     }
 
+    @Test
+    public void invokeMethodOfParentLoader() throws NoSuchMethodException, IllegalAccessException,
+            InvocationTargetException {
+        // String is cached outside of the class, so it can be cleared
+        assertEquals("bc", ReflectionUtil.invokeMethod((Object) "abc", "substring", 1));
+        assertEquals("c", ReflectionUtil.invokeMethod((Object) "abc", "substring", 2));
+
+        ReflectionUtil.clearCache();
+        assertEquals("bc", ReflectionUtil.invokeMethod((Object) "abc", "substring", 1));
+    }
+
     @Test
     public void invokeMethod2() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
         // test varargs
@@ -144,6 +155,35 @@ public class ReflectionUtilTest {
                 3, 4, new Object(), new SomeValue("v2")));
     }
 
+    @Test
+    public void invokeMethodCached() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException,
+            InstantiationException {
+        // same call site resolved repeatedly must give the same results as the first time
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, ReflectionUtil.invokeMethod(ReflectionUtilTest.class, (Object) null, "method1", 7, 7, 7));
+            assertEquals(2, ReflectionUtil.invokeMethod(ReflectionUtilTest.class, (Object) null, "method1", 7, 7, 7.0));
+            assertEquals(5, ReflectionUtil.invokeMethod(ReflectionUtilTest.class, (Object) null, "method1", "VALUE1"));
+            assertEquals(6, ReflectionUtil.invokeMethod(ReflectionUtilTest.class, (Object) null, "method1",
+                    "VALUE1", SomeEnum.VALUE2));
+            assertArrayEquals(new double[]{6.0, 7.0, 8.0}, (double[]) ReflectionUtil.invokeMethod(ReflectionUtilTest.class,
+                    (Object) null, "method1", 5.0, 6.0, 7.0, 8.0), 0.00001);
+            assertEquals(new OtherValue(1, 55.55),
+                    ReflectionUtil.constructNew(OtherValue.class, 1, 2.5, 3.5, 6.5, 9.9));
+        }
+
+        // the conversion is still done for each call with its own value
+        Object[] args = new Object[]{"VALUE2"};
+        ReflectionUtil.invokeMethod(ReflectionUtilTest.class, (Object) null, "method1", args);
+        assertEquals(SomeEnum.VALUE2, args[0]);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void invokeMethodCachedInvalidEnum() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+        assertEquals(5, ReflectionUtil.invokeMethod(ReflectionUtilTest.class, (Object) null, "method1", "VALUE1"));
+
+        ReflectionUtil.invokeMethod(ReflectionUtilTest.class, (Object) null, "method1", "NOT_EXIST");
+    }
+
     @Test(expected = NoSuchMethodException.class)
     public void searchFail() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
         ReflectionUtil.invokeMethod(ReflectionUtilTest.class, (Object) null, "method88", 1, 4, 5);
@@ -0,0 +1,63 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SnapshotMapTest {
+
+    @Test
+    public void snapshotIsShared() {
+        SnapshotMap<Integer> map = new SnapshotMap<>();
+        map.put("MESSAGE", 1);
+        map.put("tp", 2);
+
+        ImmutableCaseInsensitiveMap<Integer> snapshot = map.snapshot();
+        assertSame(snapshot, map.snapshot());
+        assertSame(snapshot, ImmutableCaseInsensitiveMap.copyOf(snapshot));
+
+        assertEquals(2, snapshot.size());
+        assertEquals(Integer.valueOf(1), snapshot.get("message"));
+        assertEquals(Integer.valueOf(1), snapshot.get("MeSsAgE"));
+        assertEquals(Integer.valueOf(2), snapshot.get("TP"));
+        assertTrue(snapshot.containsKey("Tp"));
+        assertFalse(snapshot.containsKey("tpp"));
+        assertNull(snapshot.get(3));
+    }
+
+    @Test
+    public void modificationCreatesNewSnapshot() {
+        SnapshotMap<Integer> map = new SnapshotMap<>();
+        map.put("a", 1);
+        ImmutableCaseInsensitiveMap<Integer> before = map.snapshot();
+
+        map.put("b", 2);
+        ImmutableCaseInsensitiveMap<Integer> after = map.snapshot();
+        assertNotSame(before, after);
+        assertFalse(before.containsKey("B"));
+        assertEquals(Integer.valueOf(2), after.get("B"));
+
+        map.clear();
+        assertTrue(map.snapshot().isEmpty());
+        assertEquals(2, after.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshotIsReadOnly() {
+        Map<String, Integer> source = new HashMap<>();
+        source.put("a", 1);
+
+        ImmutableCaseInsensitiveMap.copyOf(source).put("b", 2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void viewsAreReadOnly() {
+        SnapshotMap<Integer> map = new SnapshotMap<>();
+        map.put("a", 1);
+
+        map.keySet().remove("a");
+    }
+}
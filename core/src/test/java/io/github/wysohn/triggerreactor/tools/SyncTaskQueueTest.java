@@ -0,0 +1,114 @@
+package io.github.wysohn.triggerreactor.tools;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SyncTaskQueueTest {
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectIfNotOpen() {
+        new SyncTaskQueue().submit(() -> null);
+    }
+
+    @Test
+    public void drainCompletesFutures() throws Exception {
+        SyncTaskQueue queue = new SyncTaskQueue();
+        queue.open();
+
+        Future<Integer> one = queue.submit(() -> 1);
+        Future<Integer> two = queue.submit(() -> {
+            throw new IllegalStateException("failed");
+        });
+        assertFalse(one.isDone());
+        assertEquals(2, queue.size());
+
+        assertEquals(2, queue.drain(Long.MAX_VALUE));
+        assertEquals(0, queue.size());
+        assertEquals(Integer.valueOf(1), one.get(0, TimeUnit.SECONDS));
+        try {
+            two.get(0, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertEquals(2, queue.getExecuted());
+        assertEquals(1, queue.getDrains());
+        assertEquals(2, queue.getLastDrainCount());
+    }
+
+    @Test
+    public void drainStopsAtBudget() {
+        SyncTaskQueue queue = new SyncTaskQueue();
+        queue.open();
+
+        for (int i = 0; i < 3; i++) {
+            queue.submit(() -> {
+                Thread.sleep(2L);
+                return null;
+            });
+        }
+
+        // at least one task runs even if the budget is already used up
+        assertEquals(1, queue.drain(0L));
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.drain(TimeUnit.MILLISECONDS.toNanos(1L)));
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.drain(0L));
+        assertEquals(0, queue.drain(0L));
+    }
+
+    @Test
+    public void closeRunsRemainingTasks() throws Exception {
+        SyncTaskQueue queue = new SyncTaskQueue();
+        queue.open();
+
+        Future<String> future = queue.submit(() -> "done");
+        queue.close();
+
+        assertEquals("done", future.get(0, TimeUnit.SECONDS));
+        assertFalse(queue.isOpen());
+        try {
+            queue.submit(() -> null);
+            fail();
+        } catch (RejectedExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void manyProducers() throws Exception {
+        SyncTaskQueue queue = new SyncTaskQueue();
+        queue.open();
+
+        AtomicInteger sum = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 1000; i++)
+                    queue.submit(sum::incrementAndGet);
+            });
+            producers.add(producer);
+            producer.start();
+        }
+
+        // the consumer drains while the producers are adding
+        while (producers.stream().anyMatch(Thread::isAlive))
+            queue.drain(Long.MAX_VALUE);
+        for (Thread producer : producers)
+            producer.join();
+        queue.drain(Long.MAX_VALUE);
+
+        assertEquals(4000, sum.get());
+        assertEquals(0, queue.size());
+        assertEquals(4000, queue.getExecuted());
+    }
+}
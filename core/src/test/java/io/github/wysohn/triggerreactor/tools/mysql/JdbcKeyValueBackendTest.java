@@ -0,0 +1,59 @@
+package io.github.wysohn.triggerreactor.tools.mysql;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class JdbcKeyValueBackendTest {
+    @Test
+    public void testReopenAfterError() throws Exception {
+        // closed by the server while it was idle
+        Connection stale = mock(Connection.class);
+        PreparedStatement broken = mock(PreparedStatement.class);
+        when(stale.prepareStatement(anyString())).thenReturn(broken);
+        when(broken.executeQuery()).thenThrow(new SQLException("Communications link failure"));
+
+        Connection fresh = mock(Connection.class);
+        PreparedStatement pstmt = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(fresh.prepareStatement(anyString())).thenReturn(pstmt);
+        when(pstmt.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString("dbkey")).thenReturn("a");
+        when(rs.getBytes("dbval")).thenReturn(new byte[]{1});
+
+        MiniConnectionPoolManager pool = mock(MiniConnectionPoolManager.class);
+        // the first one only creates the table
+        when(pool.getValidConnection()).thenReturn(mock(Connection.class, RETURNS_MOCKS), stale, fresh);
+
+        JdbcKeyValueBackend backend = new JdbcKeyValueBackend(pool, 1, "test");
+        Map<String, byte[]> values = backend.read(Collections.singletonList("a"));
+
+        assertArrayEquals(new byte[]{1}, values.get("a"));
+        verify(stale).close();
+        verify(fresh, never()).close();
+    }
+
+    @Test(expected = SQLException.class)
+    public void testErrorAfterReopen() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement broken = mock(PreparedStatement.class);
+        when(conn.prepareStatement(anyString())).thenReturn(broken);
+        doThrow(new SQLException("Table is read only")).when(broken).executeBatch();
+
+        MiniConnectionPoolManager pool = mock(MiniConnectionPoolManager.class);
+        when(pool.getValidConnection()).thenReturn(mock(Connection.class, RETURNS_MOCKS), conn);
+
+        JdbcKeyValueBackend backend = new JdbcKeyValueBackend(pool, 1, "test");
+        backend.write(Collections.singletonMap("a", new byte[]{1}));
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.wysohn.triggerreactor.tools.mysql;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class KeyValueCodecTest {
+    private static Object roundTrip(Object value) throws Exception {
+        return KeyValueCodec.decode(KeyValueCodec.encode(value));
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        assertNull(roundTrip(null));
+        assertEquals(true, roundTrip(true));
+        assertEquals(-1, roundTrip(-1));
+        assertEquals(Integer.MIN_VALUE, roundTrip(Integer.MIN_VALUE));
+        assertEquals(Long.MAX_VALUE, roundTrip(Long.MAX_VALUE));
+        assertEquals(1.5f, roundTrip(1.5f));
+        assertEquals(2.5, roundTrip(2.5));
+        assertEquals("한글 text", roundTrip("한글 text"));
+        assertArrayEquals(new byte[]{1, 2}, (byte[]) roundTrip(new byte[]{1, 2}));
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("list", Arrays.asList(1, "a", null));
+        map.put("uuid", UUID.fromString("968cee8d-ec72-4a2f-a3bc-09a521a06f89"));
+        assertEquals(map, roundTrip(map));
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        assertEquals(2, KeyValueCodec.encode(5).length);
+        assertEquals(7, KeyValueCodec.encode("hello").length);
+    }
+
+    @Test
+    public void testJavaSerialized() throws Exception {
+        // the values saved before
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(new ArrayList<>(Arrays.asList("a", 1)));
+        }
+
+        assertEquals(Arrays.asList("a", 1), KeyValueCodec.decode(bytes.toByteArray()));
+    }
+
+    @Test(expected = NotSerializableException.class)
+    public void testNotSerializable() throws Exception {
+        KeyValueCodec.encode(new Object());
+    }
+}
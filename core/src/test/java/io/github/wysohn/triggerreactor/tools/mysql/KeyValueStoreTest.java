@@ -0,0 +1,228 @@
+package io.github.wysohn.triggerreactor.tools.mysql;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class KeyValueStoreTest {
+    private final MemoryBackend backend = new MemoryBackend();
+    private final AtomicLong time = new AtomicLong();
+    private KeyValueStore store;
+
+    @After
+    public void tearDown() throws Exception {
+        if (store != null)
+            store.close();
+    }
+
+    private KeyValueStore open(long flushIntervalMillis) {
+        store = new KeyValueStore.Builder(backend)
+                .threads(2)
+                .batchSize(3)
+                .flushIntervalMillis(flushIntervalMillis)
+                .cacheSize(2)
+                .cacheTtlMillis(1000L)
+                .clock(time::get)
+                .build();
+        return store;
+    }
+
+    @Test
+    public void testWriteBatched() throws Exception {
+        open(60000L);
+        store.set("a", 1);
+        store.set("b", 2);
+        store.set("a", 3);
+        CompletableFuture<Void> written = store.set("c", "x");
+
+        // not written until the flush, but read back from memory
+        assertTrue(backend.data.isEmpty());
+        assertEquals(3, store.get("a"));
+        assertEquals(3, store.getPendingWrites());
+
+        store.flush();
+        assertTrue(written.isDone());
+        assertEquals(0, store.getPendingWrites());
+        assertEquals(Collections.singletonList(3), backend.writeSizes);
+        assertEquals(3, KeyValueCodec.decode(backend.data.get("a")));
+        assertEquals("x", KeyValueCodec.decode(backend.data.get("c")));
+    }
+
+    @Test
+    public void testWriteFlushedOnInterval() throws Exception {
+        open(10L);
+        store.set("a", 1).get(5, TimeUnit.SECONDS);
+        assertEquals(1, KeyValueCodec.decode(backend.data.get("a")));
+    }
+
+    @Test
+    public void testWriteRetried() throws Exception {
+        open(60000L);
+        backend.fail = true;
+        CompletableFuture<Void> failed = store.set("a", 1);
+        store.flush();
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(1, store.getPendingWrites());
+
+        backend.fail = false;
+        store.flush();
+        assertEquals(1, KeyValueCodec.decode(backend.data.get("a")));
+    }
+
+    @Test(timeout = 10000L)
+    public void testSetWhileWriting() throws Exception {
+        open(10L);
+        backend.blockWrites.drainPermits();
+        CompletableFuture<Void> first = store.set("a", 1);
+        assertTrue(backend.writeStarted.tryAcquire(5, TimeUnit.SECONDS));
+
+        // the flush is stuck in the backend, yet set() returns right away
+        CompletableFuture<Void> second = store.set("b", 2);
+        assertFalse(second.isDone());
+
+        backend.blockWrites.release(100);
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, KeyValueCodec.decode(backend.data.get("b")));
+    }
+
+    @Test
+    public void testReadBatched() throws Exception {
+        for (int i = 0; i < 7; i++)
+            backend.data.put("k" + i, KeyValueCodec.encode(i));
+
+        open(60000L);
+        backend.blockReads.drainPermits();
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            keys.add("k" + i);
+        CompletableFuture<Map<String, Object>> all = store.getAllAsync(keys);
+        // the same key shares the read
+        CompletableFuture<Object> again = store.getAsync("k0");
+
+        backend.blockReads.release(100);
+        Map<String, Object> values = all.get(5, TimeUnit.SECONDS);
+        assertEquals(0, again.get(5, TimeUnit.SECONDS));
+        assertEquals(6, values.get("k6"));
+        assertNull(values.get("k7"));
+        assertTrue(values.containsKey("k7"));
+
+        // 8 keys in the batches of at most 3
+        assertEquals(8, backend.readSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(backend.readSizes.stream().allMatch(size -> size <= 3));
+        assertTrue(backend.readSizes.size() <= 4);
+    }
+
+    @Test
+    public void testNearCache() throws Exception {
+        backend.data.put("a", KeyValueCodec.encode("old"));
+        backend.data.put("b", KeyValueCodec.encode("b"));
+        backend.data.put("c", KeyValueCodec.encode("c"));
+        open(60000L);
+
+        assertEquals("old", store.get("a"));
+        backend.data.put("a", KeyValueCodec.encode("new"));
+        assertEquals("old", store.get("a"));
+        assertEquals(1, backend.readSizes.size());
+
+        // expired
+        time.addAndGet(1000L);
+        assertEquals("new", store.get("a"));
+        assertEquals(2, backend.readSizes.size());
+
+        // evicted, as only 2 are kept
+        store.get("b");
+        store.get("c");
+        backend.data.put("a", KeyValueCodec.encode("newer"));
+        assertEquals("newer", store.get("a"));
+
+        // the keys not found are cached too
+        int reads = backend.readSizes.size();
+        assertNull(store.get("missing"));
+        assertNull(store.get("missing"));
+        assertEquals(reads + 1, backend.readSizes.size());
+    }
+
+    @Test
+    public void testReadFailure() {
+        open(60000L);
+        backend.fail = true;
+        try {
+            store.get("a");
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        backend.fail = false;
+        assertNull(store.get("a"));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        open(60000L);
+        store.set("a", 1);
+        store.close();
+
+        assertEquals(1, KeyValueCodec.decode(backend.data.get("a")));
+        assertTrue(backend.closed);
+        try {
+            store.set("b", 2);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        store = null;
+    }
+
+    /**
+     * Stand-in for the database.
+     */
+    private static class MemoryBackend implements KeyValueStore.Backend {
+        private final Map<String, byte[]> data = new ConcurrentHashMap<>();
+        private final List<Integer> readSizes = new CopyOnWriteArrayList<>();
+        private final List<Integer> writeSizes = new CopyOnWriteArrayList<>();
+        private final Semaphore blockReads = new Semaphore(Integer.MAX_VALUE);
+        private final Semaphore blockWrites = new Semaphore(Integer.MAX_VALUE);
+        private final Semaphore writeStarted = new Semaphore(0);
+        private volatile boolean fail = false;
+        private volatile boolean closed = false;
+
+        @Override
+        public Map<String, byte[]> read(Collection<String> keys) throws Exception {
+            blockReads.acquire();
+            if (fail)
+                throw new IllegalStateException("failed");
+
+            readSizes.add(keys.size());
+            Map<String, byte[]> values = new HashMap<>();
+            for (String key : keys) {
+                if (data.containsKey(key))
+                    values.put(key, data.get(key));
+            }
+            return values;
+        }
+
+        @Override
+        public void write(Map<String, byte[]> values) throws Exception {
+            writeStarted.release();
+            blockWrites.acquire();
+            if (fail)
+                throw new IllegalStateException("failed");
+
+            writeSizes.add(values.size());
+            data.putAll(values);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
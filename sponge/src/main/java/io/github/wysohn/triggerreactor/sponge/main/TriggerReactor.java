@@ -27,6 +27,7 @@ import io.github.wysohn.triggerreactor.core.manager.*;
 import io.github.wysohn.triggerreactor.core.manager.location.SimpleLocation;
 import io.github.wysohn.triggerreactor.core.manager.trigger.AbstractTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.Trigger;
+import io.github.wysohn.triggerreactor.core.manager.trigger.TriggerExecutionService;
 import io.github.wysohn.triggerreactor.core.manager.trigger.TriggerInfo;
 import io.github.wysohn.triggerreactor.core.manager.trigger.area.AbstractAreaTriggerManager;
 import io.github.wysohn.triggerreactor.core.manager.trigger.command.AbstractCommandTriggerManager;
@@ -163,6 +164,7 @@ public class TriggerReactor extends io.github.wysohn.triggerreactor.core.main.Tr
         onCoreEnable();
 
         SYNC_EXECUTOR = Sponge.getScheduler().createSyncExecutor(this);
+        Sponge.getScheduler().createTaskBuilder().execute(createSyncDrainTask()).intervalTicks(1L).submit(this);
         WRAPPER = new SpongeWrapper();
 
         try {
@@ -408,7 +410,7 @@ public class TriggerReactor extends io.github.wysohn.triggerreactor.core.main.Tr
             getLogger().info("OK");
 
             getLogger().info("Finalizing the scheduled script executions...");
-            CACHED_THREAD_POOL.shutdown();
+            TriggerExecutionService.getInstance().shutdown();
             getLogger().info("Shut down complete!");
         }
     }
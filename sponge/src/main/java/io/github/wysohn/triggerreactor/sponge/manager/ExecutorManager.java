@@ -68,7 +68,7 @@ public class ExecutorManager extends AbstractExecutorManager implements SpongeSc
                     if (plugin.isServerThread()) {
                         new DispatchCommand((Player) player, String.valueOf(args[0])).call();
                     } else {
-                        plugin.callSyncMethod(new DispatchCommand((Player) player, String.valueOf(args[0]))).get();
+                        plugin.submitSync(new DispatchCommand((Player) player, String.valueOf(args[0]))).get();
                     }
                 }
 
@@ -60,8 +60,15 @@ public class PlayerLocationManager extends AbstractPlayerLocationManager {
         if (transformFrom.equals(transformTo))
             return;
 
-        SimpleLocation from = getCurrentBlockLocation(player.getUniqueId());
-        SimpleLocation to = LocationUtil.convertToSimpleLocation(transformTo.getLocation());
+        Location<World> moveTo = transformTo.getLocation();
+
+        //Sponge doesn't tell who listens to the event, so only the movements in the same block are skipped
+        SimpleLocation from = filterMove(player.getUniqueId(), moveTo.getExtent().getName(),
+                moveTo.getBlockX(), moveTo.getBlockY(), moveTo.getBlockZ(), true);
+        if (from == null)
+            return;
+
+        SimpleLocation to = LocationUtil.convertToSimpleLocation(moveTo);
 
         PlayerBlockLocationEvent pble = new PlayerBlockLocationEvent(player, from, to);
         onMove(new SpongePlayerBlockLocationEvent(pble));
@@ -37,13 +37,12 @@ import org.spongepowered.api.world.World;
 import java.io.File;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 
 public class AreaTriggerManager extends AbstractAreaTriggerManager {
 
@@ -60,7 +59,7 @@ public class AreaTriggerManager extends AbstractAreaTriggerManager {
                         for (Entity e : w.getEntities()) {
                             UUID uuid = e.getUniqueId();
 
-                            Future<Boolean> future = plugin.callSyncMethod(new Callable<Boolean>() {
+                            Future<Boolean> future = plugin.submitSync(new Callable<Boolean>() {
 
                                 @Override
                                 public Boolean call() throws Exception {
@@ -133,37 +132,67 @@ public class AreaTriggerManager extends AbstractAreaTriggerManager {
     @Listener(order = Order.POST)
     public void onJoin(ClientConnectionEvent.Join e) {
         SimpleLocation currentSloc = LocationUtil.convertToSimpleLocation(e.getTargetEntity().getLocation());
-        getAreaForLocation(currentSloc).stream()
-                .map(Entry::getValue)
-                .forEach((trigger) -> trigger.addEntity(new SpongeEntity(e.getTargetEntity())));
+        SpongeEntity entity = new SpongeEntity(e.getTargetEntity());
+        areaIndex.forEachAt(currentSloc, (area, trigger) -> trigger.addEntity(entity));
     }
 
+    //reused for every movement in the server thread, so moving around doesn't allocate
+    private final MoveVisitor moveVisitor = new MoveVisitor();
+
     @Listener(order = Order.POST)
     public void onLocationChange(PlayerBlockLocationEvent e) {
-        List<Entry<Area, AreaTrigger>> from = getAreaForLocation(e.getFrom());
-        List<Entry<Area, AreaTrigger>> to = getAreaForLocation(e.getTo());
-
-        Map<String, Object> varMap = new HashMap<>();
-        varMap.put("player", e.getTargetEntity());
-        varMap.put("from", e.getFrom());
-        varMap.put("to", e.getTo());
-
-        from.stream()
-                .filter((entry) -> !entry.getKey().isInThisArea(e.getTo()))//only for area leaving
-                .map(Entry::getValue)
-                .forEach((trigger) -> {
-                    trigger.removeEntity(e.getTargetEntity().getUniqueId());
-                    trigger.activate(e, varMap, EventType.EXIT);
-                });
-
-
-        to.stream()
-                .filter((entry) -> !entry.getKey().isInThisArea(e.getFrom()))//only for entering area
-                .map(Entry::getValue)
-                .forEach((trigger) -> {
-                    trigger.addEntity(new SpongeEntity(e.getTargetEntity()));
-                    trigger.activate(e, varMap, EventType.ENTER);
-                });
+        SimpleLocation fromLoc = e.getFrom();
+        SimpleLocation toLoc = e.getTo();
+        if (!hasAreaInChunk(fromLoc.getWorld(), fromLoc.getX() >> 4, fromLoc.getZ() >> 4)
+                && !hasAreaInChunk(toLoc.getWorld(), toLoc.getX() >> 4, toLoc.getZ() >> 4))
+            return;
+
+        //the Triggers may move the player again, while the visitor is still in use
+        MoveVisitor visitor = moveVisitor.event == null ? moveVisitor : new MoveVisitor();
+        visitor.visit(e);
+    }
+
+    /**
+     * Fire the Triggers of the areas left, and then of the areas entered.
+     */
+    private class MoveVisitor implements BiConsumer<Area, AreaTrigger> {
+        private PlayerBlockLocationEvent event;
+        private EventType type;
+        //created only if any Trigger fires
+        private Map<String, Object> varMap;
+
+        private void visit(PlayerBlockLocationEvent event) {
+            this.event = event;
+            try {
+                type = EventType.EXIT;
+                areaIndex.forEachAt(event.getFrom(), this);
+                type = EventType.ENTER;
+                areaIndex.forEachAt(event.getTo(), this);
+            } finally {
+                this.event = null;
+                this.varMap = null;
+            }
+        }
+
+        @Override
+        public void accept(Area area, AreaTrigger trigger) {
+            //only for leaving or entering the area
+            if (area.isInThisArea(type == EventType.EXIT ? event.getTo() : event.getFrom()))
+                return;
+
+            if (varMap == null) {
+                varMap = new HashMap<>();
+                varMap.put("player", event.getTargetEntity());
+                varMap.put("from", event.getFrom());
+                varMap.put("to", event.getTo());
+            }
+
+            if (type == EventType.EXIT)
+                trigger.removeEntity(event.getTargetEntity().getUniqueId());
+            else
+                trigger.addEntity(new SpongeEntity(event.getTargetEntity()));
+            trigger.activate(event, varMap, type);
+        }
     }
 
     @Listener
@@ -173,18 +202,17 @@ public class AreaTriggerManager extends AbstractAreaTriggerManager {
         entityTrackMap.put(e.getTargetEntity().getUniqueId(), new WeakReference<IEntity>(new SpongeEntity(e.getTargetEntity())));
         entityLocationMap.put(e.getTargetEntity().getUniqueId(), sloc);
 
-        getAreaForLocation(sloc).stream()
-                .map(Entry::getValue)
-                .forEach((trigger) -> trigger.addEntity(new SpongeEntity(e.getTargetEntity())));
+        SpongeEntity entity = new SpongeEntity(e.getTargetEntity());
+        areaIndex.forEachAt(sloc, (area, trigger) -> trigger.addEntity(entity));
     }
 
     protected synchronized void onEntityBlockMoveAsync(Entity entity, SimpleLocation from, SimpleLocation current) {
-        getAreaForLocation(from).stream()
-                .map(Entry::getValue)
-                .forEach((trigger) -> trigger.removeEntity(entity.getUniqueId()));
-        getAreaForLocation(current).stream()
-                .map(Entry::getValue)
-                .forEach((trigger) -> trigger.addEntity(new SpongeEntity(entity)));
+        UUID uuid = entity.getUniqueId();
+        if (from != null)
+            areaIndex.forEachAt(from, (area, trigger) -> trigger.removeEntity(uuid));
+
+        SpongeEntity spongeEntity = new SpongeEntity(entity);
+        areaIndex.forEachAt(current, (area, trigger) -> trigger.addEntity(spongeEntity));
     }
 
     @Listener
@@ -194,8 +222,7 @@ public class AreaTriggerManager extends AbstractAreaTriggerManager {
         entityTrackMap.remove(e.getTargetEntity().getUniqueId());
         entityLocationMap.remove(e.getTargetEntity().getUniqueId());
 
-        getAreaForLocation(sloc).stream()
-                .map(Entry::getValue)
-                .forEach((trigger) -> trigger.removeEntity(e.getTargetEntity().getUniqueId()));
+        UUID uuid = e.getTargetEntity().getUniqueId();
+        areaIndex.forEachAt(sloc, (area, trigger) -> trigger.removeEntity(uuid));
     }
 }